@@ -1,6 +1,7 @@
 import de.undercouch.gradle.tasks.download.Download
 import groovy.lang.Closure
 import org.gradle.api.tasks.testing.logging.TestExceptionFormat
+import org.gradle.process.CommandLineArgumentProvider
 import org.jreleaser.model.Active
 import org.jreleaser.model.Signing
 import org.jreleaser.model.api.deploy.maven.Nexus2MavenDeployer
@@ -251,6 +252,36 @@ tasks {
         environment("LD_LIBRARY_PATH" to "/home/janrupf/Downloads")
     }
 
+    // Precompiles modules into a jar of generated classes, for example:
+    // ./gradlew precompileWasm -PwasmPackage=com.example.wasm -PwasmModules=Example=example.wasm
+    register<JavaExec>("precompileWasm") {
+        group = "build"
+        description = "Precompiles WebAssembly modules into a jar of generated classes"
+
+        val wasmPackage = providers.gradleProperty("wasmPackage")
+        val wasmModules = providers.gradleProperty("wasmModules")
+        val output = layout.buildDirectory.file("precompiled/wasm-modules.jar")
+
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("net.janrupf.thunderwasm.assembler.precompile.WasmPrecompiler")
+        outputs.file(output)
+
+        argumentProviders.add(CommandLineArgumentProvider {
+            listOf("--package", wasmPackage.get(), "--output", output.get().asFile.absolutePath) +
+                    wasmModules.get().split(",").map { it.trim() }
+        })
+    }
+
+    jar {
+        manifest {
+            // Read by the class cache to invalidate entries of older library versions
+            attributes(
+                "Implementation-Title" to project.name,
+                "Implementation-Version" to project.version
+            )
+        }
+    }
+
     javadoc {
         options {
             (this as CoreJavadocOptions).addBooleanOption("Xdoclint:none", true)
@@ -0,0 +1,192 @@
+package net.janrupf.thunderwasm.assembler;
+
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisResult;
+import net.janrupf.thunderwasm.eval.EvalContext;
+import net.janrupf.thunderwasm.exports.Export;
+import net.janrupf.thunderwasm.exports.FunctionExportDescription;
+import net.janrupf.thunderwasm.imports.TypeImportDescription;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.lookup.FoundElement;
+import net.janrupf.thunderwasm.module.encoding.LargeArray;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.section.ElementSection;
+import net.janrupf.thunderwasm.module.section.ExportSection;
+import net.janrupf.thunderwasm.module.section.StartSection;
+import net.janrupf.thunderwasm.module.section.segment.ElementSegment;
+import net.janrupf.thunderwasm.runtime.UnresolvedFunctionReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Distributes the functions of a module over multiple classes.
+ * <p>
+ * Functions are visited depth first along the call graph, starting at the exported functions,
+ * the start function and the functions referenced by element segments. The resulting order
+ * is cut into groups of roughly the configured size, which keeps functions calling each
+ * other in the same class.
+ */
+final class FunctionClassLayout {
+    private final ElementLookups lookups;
+    private final Function[] functions;
+    private final int[] costs;
+    private final int[][] callees;
+
+    private FunctionClassLayout(ElementLookups lookups, Function[] functions) {
+        this.lookups = lookups;
+        this.functions = functions;
+        this.costs = new int[functions.length];
+        this.callees = new int[functions.length][];
+    }
+
+    /**
+     * Compute the groups of functions which should be placed in the same class.
+     *
+     * @param lookups   the lookups of the module
+     * @param functions the functions of the module
+     * @param threshold the amount of instructions after which a new group is started
+     * @return the local function indices of each group, a single group if the module does not need to be split
+     * @throws WasmAssemblerException if the functions can not be analyzed
+     */
+    static List<List<LargeArrayIndex>> compute(
+            ElementLookups lookups,
+            LargeArray<Function> functions,
+            int threshold
+    ) throws WasmAssemblerException {
+        Function[] flatFunctions = functions.asFlatArray();
+        if (flatFunctions == null) {
+            throw new WasmAssemblerException("Too many functions to split the module");
+        }
+
+        FunctionClassLayout layout = new FunctionClassLayout(lookups, flatFunctions);
+        layout.analyze();
+
+        List<List<LargeArrayIndex>> groups = new ArrayList<>();
+        List<LargeArrayIndex> currentGroup = new ArrayList<>();
+        long currentCost = 0;
+
+        for (int i : layout.computeOrder()) {
+            if (!currentGroup.isEmpty() && currentCost + layout.costs[i] > threshold) {
+                groups.add(currentGroup);
+                currentGroup = new ArrayList<>();
+                currentCost = 0;
+            }
+
+            currentGroup.add(LargeArrayIndex.fromU32(i));
+            currentCost += layout.costs[i];
+        }
+
+        if (!currentGroup.isEmpty()) {
+            groups.add(currentGroup);
+        }
+
+        return groups;
+    }
+
+    private void analyze() throws WasmAssemblerException {
+        for (int i = 0; i < functions.length; i++) {
+            AnalysisContext analysisContext = AnalysisContext.createForFunction(functions[i].getExpr());
+            analysisContext.run();
+
+            AnalysisResult result = AnalysisResult.compileFromContext(analysisContext);
+            costs[i] = result.getInstructionCount();
+
+            callees[i] = result.getCalledFunctions().stream()
+                    .sorted()
+                    .mapToInt(Integer::intValue)
+                    .map(this::toLocalIndex)
+                    .filter((index) -> index != -1)
+                    .toArray();
+        }
+    }
+
+    private int[] computeOrder() throws WasmAssemblerException {
+        boolean[] visited = new boolean[functions.length];
+        int[] order = new int[functions.length];
+        int orderLength = 0;
+
+        for (int root : collectRoots()) {
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(root);
+
+            while (!stack.isEmpty()) {
+                int current = stack.pop();
+                if (visited[current]) {
+                    continue;
+                }
+
+                visited[current] = true;
+                order[orderLength++] = current;
+
+                // Push in reverse, so the callees are visited in ascending order
+                for (int j = callees[current].length - 1; j >= 0; j--) {
+                    if (!visited[callees[current][j]]) {
+                        stack.push(callees[current][j]);
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+    private List<Integer> collectRoots() throws WasmAssemblerException {
+        List<Integer> roots = new ArrayList<>();
+
+        ExportSection exportSection = lookups.getModuleLookups().findSingleSection(ExportSection.LOCATOR);
+        if (exportSection != null) {
+            for (Export<?> export : exportSection.getExports()) {
+                Export<FunctionExportDescription> functionExport = export.tryCast(FunctionExportDescription.class);
+                if (functionExport != null) {
+                    addRoot(roots, functionExport.getDescription().getIndex());
+                }
+            }
+        }
+
+        StartSection startSection = lookups.getModuleLookups().findSingleSection(StartSection.LOCATOR);
+        if (startSection != null) {
+            addRoot(roots, startSection.getIndex());
+        }
+
+        ElementSection elementSection = lookups.getModuleLookups().findSingleSection(ElementSection.LOCATOR);
+        if (elementSection != null) {
+            for (ElementSegment segment : elementSection.getSegments()) {
+                for (Expr init : segment.getInit()) {
+                    Object value = new EvalContext(lookups, true).evalSingleValue(init, true, segment.getType());
+                    if (value instanceof UnresolvedFunctionReference && !((UnresolvedFunctionReference) value).isNull()) {
+                        addRoot(roots, ((UnresolvedFunctionReference) value).getFunctionIndex());
+                    }
+                }
+            }
+        }
+
+        // Everything not reachable from the roots above is placed in module order
+        for (int i = 0; i < functions.length; i++) {
+            roots.add(i);
+        }
+
+        return roots;
+    }
+
+    private void addRoot(List<Integer> roots, int functionIndex) {
+        int localIndex = toLocalIndex(functionIndex);
+        if (localIndex != -1) {
+            roots.add(localIndex);
+        }
+    }
+
+    private int toLocalIndex(int functionIndex) {
+        try {
+            FoundElement<Integer, TypeImportDescription> found = lookups.requireFunctionTypeIndex(
+                    LargeArrayIndex.fromU32(functionIndex));
+            return found.isImport() ? -1 : (int) found.getIndex().toU64();
+        } catch (WasmAssemblerException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package net.janrupf.thunderwasm.assembler;
+
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
+import net.janrupf.thunderwasm.data.Global;
+import net.janrupf.thunderwasm.eval.EvalContext;
+import net.janrupf.thunderwasm.exports.Export;
+import net.janrupf.thunderwasm.exports.FunctionExportDescription;
+import net.janrupf.thunderwasm.imports.TypeImportDescription;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.lookup.FoundElement;
+import net.janrupf.thunderwasm.module.encoding.LargeArray;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.section.ElementSection;
+import net.janrupf.thunderwasm.module.section.ExportSection;
+import net.janrupf.thunderwasm.module.section.GlobalSection;
+import net.janrupf.thunderwasm.module.section.StartSection;
+import net.janrupf.thunderwasm.module.section.segment.ElementSegment;
+import net.janrupf.thunderwasm.runtime.UnresolvedFunctionReference;
+import net.janrupf.thunderwasm.types.ReferenceType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Determines which functions of a module can ever be called.
+ * <p>
+ * Functions are reachable if they are exported, the start function or can be referenced,
+ * or if they are called directly by a reachable function. Only functions listed in an
+ * element segment or used in the initializer of a global can be referenced, {@code ref.func}
+ * instructions are not allowed to reference other functions. This covers every function
+ * which can end up in a table, so {@code call_indirect} can not reach any other function.
+ */
+final class FunctionReachability {
+    private final ElementLookups lookups;
+    private final Function[] functions;
+    private final boolean[] reachable;
+
+    private FunctionReachability(ElementLookups lookups, Function[] functions) {
+        this.lookups = lookups;
+        this.functions = functions;
+        this.reachable = new boolean[functions.length];
+    }
+
+    /**
+     * Compute which functions of the code section can be called.
+     *
+     * @param lookups   the lookups of the module
+     * @param functions the functions of the module
+     * @return whether each local function is reachable, or null, if there are too many functions to analyze
+     * @throws WasmAssemblerException if the functions can not be analyzed
+     */
+    static boolean[] compute(ElementLookups lookups, LargeArray<Function> functions) throws WasmAssemblerException {
+        Function[] flatFunctions = functions.asFlatArray();
+        if (flatFunctions == null) {
+            return null;
+        }
+
+        FunctionReachability reachability = new FunctionReachability(lookups, flatFunctions);
+        reachability.visit(reachability.collectRoots());
+
+        return reachability.reachable;
+    }
+
+    private void visit(Deque<Integer> pending) throws WasmAssemblerException {
+        while (!pending.isEmpty()) {
+            int current = pending.pop();
+            if (reachable[current]) {
+                continue;
+            }
+
+            reachable[current] = true;
+
+            AnalysisContext analysisContext = AnalysisContext.createForFunction(functions[current].getExpr());
+            analysisContext.run();
+
+            for (int callee : analysisContext.getCalledFunctions()) {
+                int localIndex = toLocalIndex(callee);
+                if (localIndex != -1 && !reachable[localIndex]) {
+                    pending.push(localIndex);
+                }
+            }
+        }
+    }
+
+    private Deque<Integer> collectRoots() throws WasmAssemblerException {
+        Deque<Integer> roots = new ArrayDeque<>();
+
+        ExportSection exportSection = lookups.getModuleLookups().findSingleSection(ExportSection.LOCATOR);
+        if (exportSection != null) {
+            for (Export<?> export : exportSection.getExports()) {
+                Export<FunctionExportDescription> functionExport = export.tryCast(FunctionExportDescription.class);
+                if (functionExport != null) {
+                    addRoot(roots, functionExport.getDescription().getIndex());
+                }
+            }
+        }
+
+        StartSection startSection = lookups.getModuleLookups().findSingleSection(StartSection.LOCATOR);
+        if (startSection != null) {
+            addRoot(roots, startSection.getIndex());
+        }
+
+        // Passive and declarative segments count as well, their functions can still be referenced
+        ElementSection elementSection = lookups.getModuleLookups().findSingleSection(ElementSection.LOCATOR);
+        if (elementSection != null) {
+            for (ElementSegment segment : elementSection.getSegments()) {
+                for (Expr init : segment.getInit()) {
+                    addRoot(roots, new EvalContext(lookups, true).evalSingleValue(init, true, segment.getType()));
+                }
+            }
+        }
+
+        GlobalSection globalSection = lookups.getModuleLookups().findSingleSection(GlobalSection.LOCATOR);
+        if (globalSection != null) {
+            for (Global global : globalSection.getGlobals()) {
+                if (!global.getType().getValueType().equals(ReferenceType.FUNCREF)) {
+                    continue;
+                }
+
+                addRoot(roots, new EvalContext(lookups, false).evalSingleValue(
+                        global.getInit(), true, ReferenceType.FUNCREF));
+            }
+        }
+
+        return roots;
+    }
+
+    private void addRoot(Deque<Integer> roots, Object value) {
+        if (value instanceof UnresolvedFunctionReference && !((UnresolvedFunctionReference) value).isNull()) {
+            addRoot(roots, ((UnresolvedFunctionReference) value).getFunctionIndex());
+        }
+    }
+
+    private void addRoot(Deque<Integer> roots, int functionIndex) {
+        int localIndex = toLocalIndex(functionIndex);
+        if (localIndex != -1) {
+            roots.push(localIndex);
+        }
+    }
+
+    private int toLocalIndex(int functionIndex) {
+        try {
+            FoundElement<Integer, TypeImportDescription> found = lookups.requireFunctionTypeIndex(
+                    LargeArrayIndex.fromU32(functionIndex));
+            return found.isImport() ? -1 : (int) found.getIndex().toU64();
+        } catch (WasmAssemblerException e) {
+            return -1;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
 import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
 import net.janrupf.thunderwasm.assembler.emitter.types.PrimitiveType;
 import net.janrupf.thunderwasm.assembler.generator.TableGenerator;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
 import net.janrupf.thunderwasm.data.Global;
 import net.janrupf.thunderwasm.eval.EvalContext;
 import net.janrupf.thunderwasm.exports.Export;
@@ -32,10 +33,11 @@ import net.janrupf.thunderwasm.runtime.UnresolvedFunctionReference;
 import net.janrupf.thunderwasm.types.*;
 import net.janrupf.thunderwasm.util.ObjectUtil;
 
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
  * Entry point for translating a {@link WasmModule} into java bytecode.
@@ -55,6 +57,9 @@ public final class WasmAssembler {
     private final WasmGenerators generators;
     private final WasmAssemblerConfiguration configuration;
     private final Set<String> seenExportNames;
+    private final List<ClassFileEmitter> companionEmitters;
+    private final Map<LargeArrayIndex, ClassEmitContext> functionContexts;
+    private final List<Future<ClassFileEmitter>> precompiledFunctions;
 
     public WasmAssembler(
             WasmModule module,
@@ -73,6 +78,26 @@ public final class WasmAssembler {
             String className,
             WasmGenerators generators,
             WasmAssemblerConfiguration configuration
+    ) {
+        this(module, emitterFactory, packageName, className, generators, configuration, null);
+    }
+
+    /**
+     * Create an assembler which reuses functions that have been compiled in advance.
+     * <p>
+     * Every future yields a fork of an emitter for the module class containing the compiled
+     * function, or null, if the function has to be compiled by this assembler.
+     *
+     * @param precompiledFunctions the functions compiled in advance, in code section order
+     */
+    WasmAssembler(
+            WasmModule module,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration,
+            List<Future<ClassFileEmitter>> precompiledFunctions
     ) {
         this.configuration = configuration;
         this.packageName = packageName;
@@ -100,6 +125,9 @@ public final class WasmAssembler {
 
         this.generators = generators;
         this.seenExportNames = new HashSet<>();
+        this.companionEmitters = new ArrayList<>();
+        this.functionContexts = new HashMap<>();
+        this.precompiledFunctions = precompiledFunctions;
     }
 
     /**
@@ -122,20 +150,71 @@ public final class WasmAssembler {
 
     /**
      * Assembles the module into a java class.
+     * <p>
+     * This can not be used if the module is split into multiple classes,
+     * see {@link WasmAssemblerConfiguration#classSplitThreshold()}.
      *
      * @return the assembled class
      * @throws WasmAssemblerException if an error occurs during assembly
      */
     public byte[] assembleToModule() throws WasmAssemblerException {
+        Map<String, byte[]> classes = assembleToClasses();
+        if (classes.size() != 1) {
+            throw new WasmAssemblerException("Module has been split into " + classes.size() +
+                    " classes, use assembleToClasses() instead");
+        }
+
+        return classes.values().iterator().next();
+    }
+
+    /**
+     * Make sure the profile of the configuration has been recorded for the assembled module.
+     *
+     * @throws WasmAssemblerException if the profile belongs to a different module
+     */
+    private void checkProfile() throws WasmAssemblerException {
+        WasmProfile profile = configuration.profile();
+        if (profile == null) {
+            return;
+        }
+
+        if (!profile.getModuleHash().equals(elementLookups.findProfileSites().getModuleHash())) {
+            throw new WasmAssemblerException("Profile has been recorded for a different module");
+        }
+    }
+
+    /**
+     * Assembles the module into java classes.
+     * <p>
+     * The first class is always the module class, the others are companion classes
+     * holding functions of the module. All classes have to be defined in the same
+     * package by the same class loader.
+     *
+     * @return the assembled classes keyed by their fully qualified name
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    public Map<String, byte[]> assembleToClasses() throws WasmAssemblerException {
         if (module.getVersion() != 1) {
             throw new IllegalArgumentException("Unsupported WASM version: " + module.getVersion());
         }
 
-        this.emitStaticConstructor();
-        this.emitConstructor();
+        if (configuration.lazyCompilationEnabled()) {
+            // Lazily compiled functions are emitted into companion classes later on
+            emitter.allowCompanionAccess();
+        }
 
-        for (WasmSection section : module.getSections()) {
-            processSection(section);
+        try {
+            this.checkProfile();
+            this.layoutFunctions();
+            this.emitStaticConstructor();
+            this.emitConstructor();
+
+            for (WasmSection section : module.getSections()) {
+                processSection(section);
+            }
+        } finally {
+            // Bodies decoded lazily are decoded once per assembly, not kept around afterwards
+            discardDecodedFunctionBodies();
         }
 
         if (!onceProcessedSections.contains(ProcessedSections.EXPORT)) {
@@ -149,7 +228,52 @@ public final class WasmAssembler {
             );
         }
 
-        return emitter.finish();
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put(qualifiedName(emitter.getOwner()), emitter.finish());
+
+        for (ClassFileEmitter companion : companionEmitters) {
+            classes.put(qualifiedName(companion.getDeclaringType()), companion.finish());
+        }
+
+        return classes;
+    }
+
+    private void discardDecodedFunctionBodies() {
+        for (WasmSection section : module.getSections()) {
+            if (section instanceof CodeSection) {
+                for (Function function : ((CodeSection) section).getFunctions()) {
+                    function.discardDecodedExpr();
+                }
+            }
+        }
+    }
+
+    /**
+     * Distribute the functions over companion classes if the module is too large.
+     *
+     * @throws WasmAssemblerException if the layout can not be computed
+     */
+    private void layoutFunctions() throws WasmAssemblerException {
+        List<List<LargeArrayIndex>> groups = computeFunctionLayout(elementLookups, configuration);
+
+        // The first group stays in the module class itself
+        for (int i = 1; i < groups.size(); i++) {
+            ClassFileEmitter companion = emitter.companion(companionClassName(className, i));
+            companionEmitters.add(companion);
+
+            ClassEmitContext companionContext = new ClassEmitContext(
+                    elementLookups,
+                    companion,
+                    generators,
+                    configuration,
+                    classEmitContext.getMetadataStorage()
+            );
+
+            for (LargeArrayIndex functionIndex : groups.get(i)) {
+                generators.getFunctionGenerator().placeFunction(functionIndex, companion.getDeclaringType());
+                functionContexts.put(functionIndex, companionContext);
+            }
+        }
     }
 
     /**
@@ -169,6 +293,20 @@ public final class WasmAssembler {
 
         CodeEmitter code = staticConstructor.code();
 
+        CodeEmitContext emitContext = new CodeEmitContext(
+                "$clinit$block$",
+                null,
+                classEmitContext.getEmitter(),
+                code,
+                elementLookups,
+                new WasmFrameState(),
+                generators,
+                new LocalVariables(null, null, null),
+                classEmitContext.getConfiguration()
+        );
+
+        generators.getFunctionGenerator().emitStaticFunctionStateConstructor(emitContext);
+
         code.doReturn();
         code.finish();
         staticConstructor.finish();
@@ -212,6 +350,9 @@ public final class WasmAssembler {
             }
         }
 
+        // Create the function state
+        generators.getFunctionGenerator().addFunctionState(classEmitContext);
+
         MethodEmitter constructor = this.emitter.method(
                 "<init>",
                 Visibility.PUBLIC,
@@ -242,6 +383,9 @@ public final class WasmAssembler {
                 classEmitContext.getConfiguration()
         );
 
+        // Initializes the function state, this has to happen before any function may be called
+        generators.getFunctionGenerator().emitFunctionStateConstructor(emitContext);
+
         // Initializes imports if any
         if (importSection != null) {
             for (Import<?> im : importSection.getImports()) {
@@ -528,8 +672,145 @@ public final class WasmAssembler {
         markAsProcessed(ProcessedSections.CODE);
 
         LargeArray<Function> functions = section.getFunctions();
+
+        boolean[] reachable = null;
+        if (configuration.deadFunctionEliminationEnabled() && !configuration.lazyCompilationEnabled()) {
+            // Lazily compiled functions are only ever compiled when called anyway
+            reachable = FunctionReachability.compute(elementLookups, functions);
+        }
+
+        if (precompiledFunctions != null) {
+            joinPrecompiledFunctions(functions, reachable);
+            return;
+        }
+
+        if (configuration.parallelCompilationEnabled() && functions.length() > 1) {
+            processFunctionsInParallel(functions, reachable);
+            return;
+        }
+
         for (LargeArrayIndex i = LargeArrayIndex.ZERO; i.compareTo(functions.largeLength()) < 0; i = i.add(1)) {
-            processFunction(i, functions.get(i), classEmitContext);
+            if (isReachable(reachable, i)) {
+                processFunction(i, functions.get(i), functionContextFor(i));
+            } else {
+                processUnreachableFunction(i, functions.get(i), functionContextFor(i));
+            }
+        }
+    }
+
+    private static boolean isReachable(boolean[] reachable, LargeArrayIndex index) {
+        return reachable == null || reachable[(int) index.toU64()];
+    }
+
+    /**
+     * Processes all functions of a code section in parallel.
+     * <p>
+     * Every function is compiled into its own fork of the emitter of its class, the forks
+     * are then joined in function order. This keeps the generated class identical to the one
+     * generated by sequential compilation.
+     *
+     * @param functions the functions to process
+     * @param reachable whether each function is reachable, or null, if all functions are
+     * @throws WasmAssemblerException if an error occurs during processing
+     */
+    private void processFunctionsInParallel(LargeArray<Function> functions, boolean[] reachable) throws WasmAssemblerException {
+        List<ForkJoinTask<ClassFileEmitter>> tasks = new ArrayList<>();
+        List<ClassFileEmitter> targets = new ArrayList<>();
+
+        for (LargeArrayIndex i = LargeArrayIndex.ZERO; i.compareTo(functions.largeLength()) < 0; i = i.add(1)) {
+            LargeArrayIndex index = i;
+            Function function = functions.get(i);
+            ClassFileEmitter target = functionContextFor(i).getEmitter();
+            targets.add(target);
+
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                ClassFileEmitter fork = target.fork();
+                ClassEmitContext forkContext = new ClassEmitContext(
+                        elementLookups,
+                        fork,
+                        generators,
+                        configuration,
+                        classEmitContext.getMetadataStorage()
+                );
+
+                if (isReachable(reachable, index)) {
+                    processFunction(index, function, forkContext);
+                } else {
+                    processUnreachableFunction(index, function, forkContext);
+                }
+
+                return fork;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                targets.get(i).join(tasks.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WasmAssemblerException("Interrupted while compiling functions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WasmAssemblerException) {
+                throw (WasmAssemblerException) e.getCause();
+            }
+
+            throw new WasmAssemblerException("Failed to compile function", e.getCause());
+        } finally {
+            for (ForkJoinTask<ClassFileEmitter> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Joins the functions compiled in advance into the module class.
+     * <p>
+     * Functions which could not be compiled in advance are compiled now. Unreachable functions
+     * are replaced by stubs once their compilation has validated them.
+     *
+     * @param functions the functions of the code section
+     * @param reachable whether each function is reachable, or null, if all functions are
+     * @throws WasmAssemblerException if an error occurs during processing
+     */
+    private void joinPrecompiledFunctions(LargeArray<Function> functions, boolean[] reachable)
+            throws WasmAssemblerException {
+        if (functions.length() != precompiledFunctions.size()) {
+            throw new WasmAssemblerException("Expected " + precompiledFunctions.size() +
+                    " precompiled functions, but the code section contains " + functions.length());
+        }
+
+        try {
+            for (int i = 0; i < precompiledFunctions.size(); i++) {
+                LargeArrayIndex index = LargeArrayIndex.fromU32(i);
+                ClassFileEmitter fork = precompiledFunctions.get(i).get();
+
+                if (!isReachable(reachable, index)) {
+                    if (fork == null) {
+                        processUnreachableFunction(index, functions.get(index), functionContextFor(index));
+                    } else {
+                        // Already validated by compiling it, the compiled code is discarded
+                        generators.getFunctionGenerator().addUnreachableFunction(index, functionContextFor(index));
+                    }
+                } else if (fork == null) {
+                    processFunction(index, functions.get(index), functionContextFor(index));
+                } else {
+                    emitter.join(fork);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WasmAssemblerException("Interrupted while compiling functions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WasmAssemblerException) {
+                throw (WasmAssemblerException) e.getCause();
+            }
+
+            throw new WasmAssemblerException("Failed to compile function", e.getCause());
+        } finally {
+            for (Future<ClassFileEmitter> function : precompiledFunctions) {
+                function.cancel(false);
+            }
         }
     }
 
@@ -576,6 +857,17 @@ public final class WasmAssembler {
         generators.getExportGenerator().emitExportImplementation(exports, classEmitContext);
     }
 
+    /**
+     * Retrieve the context a function needs to be emitted in.
+     *
+     * @param index the index of the function
+     * @return the context of the class the function is placed in
+     */
+    private ClassEmitContext functionContextFor(LargeArrayIndex index) {
+        ClassEmitContext context = functionContexts.get(index);
+        return context != null ? context : classEmitContext;
+    }
+
     /**
      * Processes a function.
      *
@@ -587,6 +879,76 @@ public final class WasmAssembler {
         generators.getFunctionGenerator().addFunction(index, function, context);
     }
 
+    /**
+     * Process a function which can never be called.
+     * <p>
+     * The function is still compiled into a fork of the emitter, which is then discarded.
+     * This validates the function, invalid modules have to be rejected even if the invalid
+     * function can never be called.
+     *
+     * @param index    the index of the function
+     * @param function the function to process
+     * @param context  the context to add the stub of the function to
+     * @throws WasmAssemblerException if the function is invalid or an error occurs during processing
+     */
+    private void processUnreachableFunction(
+            LargeArrayIndex index,
+            Function function,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassEmitContext validationContext = new ClassEmitContext(
+                elementLookups,
+                context.getEmitter().fork(),
+                generators,
+                configuration,
+                classEmitContext.getMetadataStorage()
+        );
+        processFunction(index, function, validationContext);
+
+        generators.getFunctionGenerator().addUnreachableFunction(index, context);
+    }
+
+    /**
+     * Compute how the functions of a module are distributed over companion classes.
+     *
+     * @param elementLookups the lookups of the module
+     * @param configuration  the configuration to assemble the module with
+     * @return the local function indices of each class, the first group stays in the module class
+     * @throws WasmAssemblerException if the layout can not be computed
+     */
+    static List<List<LargeArrayIndex>> computeFunctionLayout(
+            ElementLookups elementLookups,
+            WasmAssemblerConfiguration configuration
+    ) throws WasmAssemblerException {
+        int threshold = configuration.classSplitThreshold();
+        if (threshold == 0 || configuration.lazyCompilationEnabled()) {
+            // Lazily compiled functions are already placed in their own classes
+            return Collections.emptyList();
+        }
+
+        CodeSection codeSection = elementLookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+        if (codeSection == null) {
+            return Collections.emptyList();
+        }
+
+        return FunctionClassLayout.compute(elementLookups, codeSection.getFunctions(), threshold);
+    }
+
+    /**
+     * Determine the name of a companion class holding functions of a module.
+     *
+     * @param className the name of the module class
+     * @param group     the index of the function group placed in the companion class
+     * @return the name of the companion class
+     */
+    static String companionClassName(String className, int group) {
+        return className + "$Functions" + group;
+    }
+
+    private static String qualifiedName(ObjectType type) {
+        return type.getBinaryName().replace('/', '.');
+    }
+
     /**
      * Marks a section as processed.
      * <p>
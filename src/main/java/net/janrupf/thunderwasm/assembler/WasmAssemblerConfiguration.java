@@ -1,5 +1,7 @@
 package net.janrupf.thunderwasm.assembler;
 
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
+
 /**
  * Configuration data which influences how the assembler generates code.
  */
@@ -13,17 +15,53 @@ public final class WasmAssemblerConfiguration {
     private final boolean enableStrictNumerics;
     private final boolean atomicBoundsChecks;
     private final boolean overflowBoundsChecks;
+    private final boolean enableInlining;
+    private final boolean parallelCompilation;
+    private final int classSplitThreshold;
+    private final boolean lazyCompilation;
+    private final boolean expressionOptimization;
+    private final boolean methodOptimization;
+    private final int blockSplitSizeThreshold;
+    private final int blockSplitDepthThreshold;
+    private final boolean branchHints;
+    private final boolean deadFunctionElimination;
+    private final boolean profileInstrumentation;
+    private final WasmProfile profile;
 
     private WasmAssemblerConfiguration(
             boolean enableContinuations,
             boolean enableStrictNumerics,
             boolean atomicBoundsChecks,
-            boolean overflowBoundsChecks
+            boolean overflowBoundsChecks,
+            boolean enableInlining,
+            boolean parallelCompilation,
+            int classSplitThreshold,
+            boolean lazyCompilation,
+            boolean expressionOptimization,
+            boolean methodOptimization,
+            int blockSplitSizeThreshold,
+            int blockSplitDepthThreshold,
+            boolean branchHints,
+            boolean deadFunctionElimination,
+            boolean profileInstrumentation,
+            WasmProfile profile
     ) {
         this.enableContinuations = enableContinuations;
         this.enableStrictNumerics = enableStrictNumerics;
         this.atomicBoundsChecks = atomicBoundsChecks;
         this.overflowBoundsChecks = overflowBoundsChecks;
+        this.enableInlining = enableInlining;
+        this.parallelCompilation = parallelCompilation;
+        this.classSplitThreshold = classSplitThreshold;
+        this.lazyCompilation = lazyCompilation;
+        this.expressionOptimization = expressionOptimization;
+        this.methodOptimization = methodOptimization;
+        this.blockSplitSizeThreshold = blockSplitSizeThreshold;
+        this.blockSplitDepthThreshold = blockSplitDepthThreshold;
+        this.branchHints = branchHints;
+        this.deadFunctionElimination = deadFunctionElimination;
+        this.profileInstrumentation = profileInstrumentation;
+        this.profile = profile;
     }
 
     /**
@@ -92,6 +130,231 @@ public final class WasmAssemblerConfiguration {
         return overflowBoundsChecks;
     }
 
+    /**
+     * Determines whether small functions are inlined into their callers.
+     * <p>
+     * Only small leaf functions (functions which don't call other functions)
+     * are considered for inlining. Inlining does not change the behavior of
+     * the program, but it removes the inlined frames from stack traces, which
+     * is why it is disabled by default.
+     *
+     * @return true if inlining is enabled, false otherwise
+     */
+    public boolean inliningEnabled() {
+        return enableInlining;
+    }
+
+    /**
+     * Determines whether functions are compiled in parallel.
+     * <p>
+     * Functions are compiled on the common fork join pool and merged into the
+     * generated class in module order afterward, so the output is the same as
+     * with sequential compilation. This requires all generators in use to be
+     * thread safe, which the default generators are.
+     *
+     * @return true if functions are compiled in parallel, false otherwise
+     */
+    public boolean parallelCompilationEnabled() {
+        return parallelCompilation;
+    }
+
+    /**
+     * Retrieves the amount of WASM instructions after which the functions of a module are
+     * distributed over multiple classes.
+     * <p>
+     * Huge modules may exceed limits of the class file format, most notably the size of
+     * the constant pool. Splitting them moves functions into companion classes, grouping
+     * functions calling each other together. Modules assembled with splitting enabled must
+     * be assembled using {@link WasmAssembler#assembleToClasses()}.
+     *
+     * @return the split threshold in instructions, or 0, if modules are never split
+     */
+    public int classSplitThreshold() {
+        return classSplitThreshold;
+    }
+
+    /**
+     * Determines whether function bodies are compiled lazily on their first invocation.
+     * <p>
+     * Instead of the function bodies, the module class only contains stubs which invoke
+     * the function through a call site. The call site is linked to the real function
+     * when it is called for the first time. Modules with lazy compilation enabled can
+     * only be used through a {@link WasmLazyCompiler}, which sets this automatically.
+     *
+     * @return true if functions are compiled lazily, false otherwise
+     */
+    public boolean lazyCompilationEnabled() {
+        return lazyCompilation;
+    }
+
+    /**
+     * Determines whether function bodies are optimized before they are emitted.
+     * <p>
+     * The optimization folds integer arithmetic on constants, resolves branches on
+     * constant conditions and removes unreachable code. This makes the generated methods
+     * smaller. Bodies the optimization changes are emitted a second time without being
+     * optimized, which validates them, so assembling these functions takes longer.
+     *
+     * @return true if function bodies are optimized, false otherwise
+     */
+    public boolean expressionOptimizationEnabled() {
+        return expressionOptimization;
+    }
+
+    /**
+     * Determines whether the generated methods are run through a peephole optimizer.
+     * <p>
+     * The optimizer removes redundant stack operations, temporary locals and jumps the
+     * generators leave behind. It is part of the class file emitter, so this only applies
+     * when the emitter factory is created from this configuration, which is the case for
+     * the {@link net.janrupf.thunderwasm.engine.Engine} and the
+     * {@link net.janrupf.thunderwasm.assembler.precompile.WasmPrecompiler} unless a factory
+     * is set explicitly.
+     *
+     * @return true if the generated methods are optimized, false otherwise
+     */
+    public boolean methodOptimizationEnabled() {
+        return methodOptimization;
+    }
+
+    /**
+     * Retrieves the estimated bytecode size in bytes above which blocks of a function are
+     * split into separate methods.
+     * <p>
+     * The JVM refuses to compile methods whose bytecode is larger than 8000 bytes
+     * (HotSpot's {@code HugeMethodLimit}), such methods are always interpreted. Blocks are
+     * split such that the estimated size of every generated method stays below this
+     * threshold, the default leaves some room for inaccuracies of the estimation.
+     *
+     * @return the split threshold in estimated bytes of bytecode
+     */
+    public int blockSplitSizeThreshold() {
+        return blockSplitSizeThreshold;
+    }
+
+    /**
+     * Retrieves the nesting depth of blocks after which blocks are split into separate
+     * methods regardless of their size.
+     *
+     * @return the split depth, or 0, if blocks are only split based on their size
+     */
+    public int blockSplitDepthThreshold() {
+        return blockSplitDepthThreshold;
+    }
+
+    /**
+     * Determines whether branch hints of the module are used to lay out the generated code.
+     * <p>
+     * Hints are read from the {@code metadata.code.branch_hint} custom section. The likely
+     * branch of an {@code if} becomes the fall through path and large unlikely branches are
+     * moved into separate methods.
+     *
+     * @return true if branch hints are used, false otherwise
+     */
+    public boolean branchHintsEnabled() {
+        return branchHints;
+    }
+
+    /**
+     * Determines whether functions which can never be called are left out.
+     * <p>
+     * A function can only be called if it is reachable through direct calls from an
+     * exported function, the start function or a function which can be referenced.
+     * Functions which can be referenced are those in element segments and in the
+     * initializers of globals. Unreachable functions are replaced by small stubs which
+     * throw when invoked. They are still validated, but the code generated for them is
+     * discarded.
+     *
+     * @return true if unreachable functions are eliminated, false otherwise
+     */
+    public boolean deadFunctionEliminationEnabled() {
+        return deadFunctionElimination;
+    }
+
+    /**
+     * Determines whether the generated code records an execution profile.
+     * <p>
+     * Instrumented code counts function calls, the directions of conditional branches and
+     * the table slots of indirect calls using a
+     * {@link net.janrupf.thunderwasm.assembler.profile.WasmProfileRecorder}. The recorded
+     * profile can be used to assemble the module again, see {@link #profile()}.
+     *
+     * @return true if profile instrumentation is enabled, false otherwise
+     */
+    public boolean profileInstrumentationEnabled() {
+        return profileInstrumentation;
+    }
+
+    /**
+     * Retrieves the execution profile the code is specialized for.
+     * <p>
+     * Hot functions are inlined more aggressively if inlining is enabled, indirect
+     * calls dispatch to their dominant targets directly and rarely taken branches are
+     * treated like branches hinted as unlikely.
+     *
+     * @return the profile, or null, if no profile is used
+     */
+    public WasmProfile profile() {
+        return profile;
+    }
+
+    /**
+     * Describes all values of this configuration.
+     * <p>
+     * Configurations which generate different code always have different descriptions,
+     * which makes this suitable for keying caches of generated code.
+     *
+     * @return the description of this configuration
+     */
+    @Override
+    public String toString() {
+        return "WasmAssemblerConfiguration{" +
+                "enableContinuations=" + enableContinuations +
+                ", enableStrictNumerics=" + enableStrictNumerics +
+                ", atomicBoundsChecks=" + atomicBoundsChecks +
+                ", overflowBoundsChecks=" + overflowBoundsChecks +
+                ", enableInlining=" + enableInlining +
+                ", parallelCompilation=" + parallelCompilation +
+                ", classSplitThreshold=" + classSplitThreshold +
+                ", lazyCompilation=" + lazyCompilation +
+                ", expressionOptimization=" + expressionOptimization +
+                ", methodOptimization=" + methodOptimization +
+                ", blockSplitSizeThreshold=" + blockSplitSizeThreshold +
+                ", blockSplitDepthThreshold=" + blockSplitDepthThreshold +
+                ", branchHints=" + branchHints +
+                ", deadFunctionElimination=" + deadFunctionElimination +
+                ", profileInstrumentation=" + profileInstrumentation +
+                ", profile=" + profile +
+                '}';
+    }
+
+    /**
+     * Create a new builder initialized with the values of this configuration.
+     *
+     * @return the created builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.enableContinuations = this.enableContinuations;
+        builder.enableStrictNumerics = this.enableStrictNumerics;
+        builder.atomicBoundsChecks = this.atomicBoundsChecks;
+        builder.overflowBoundsChecks = this.overflowBoundsChecks;
+        builder.enableInlining = this.enableInlining;
+        builder.parallelCompilation = this.parallelCompilation;
+        builder.classSplitThreshold = this.classSplitThreshold;
+        builder.lazyCompilation = this.lazyCompilation;
+        builder.expressionOptimization = this.expressionOptimization;
+        builder.methodOptimization = this.methodOptimization;
+        builder.blockSplitSizeThreshold = this.blockSplitSizeThreshold;
+        builder.blockSplitDepthThreshold = this.blockSplitDepthThreshold;
+        builder.branchHints = this.branchHints;
+        builder.deadFunctionElimination = this.deadFunctionElimination;
+        builder.profileInstrumentation = this.profileInstrumentation;
+        builder.profile = this.profile;
+
+        return builder;
+    }
+
     /**
      * Create a new configuration builder.
      *
@@ -106,12 +369,36 @@ public final class WasmAssemblerConfiguration {
         private boolean enableStrictNumerics;
         private boolean atomicBoundsChecks;
         private boolean overflowBoundsChecks;
+        private boolean enableInlining;
+        private boolean parallelCompilation;
+        private int classSplitThreshold;
+        private boolean lazyCompilation;
+        private boolean expressionOptimization;
+        private boolean methodOptimization;
+        private int blockSplitSizeThreshold;
+        private int blockSplitDepthThreshold;
+        private boolean branchHints;
+        private boolean deadFunctionElimination;
+        private boolean profileInstrumentation;
+        private WasmProfile profile;
 
         private Builder() {
             this.enableContinuations = false;
             this.enableStrictNumerics = true;
             this.atomicBoundsChecks = true;
             this.overflowBoundsChecks = true;
+            this.enableInlining = false;
+            this.parallelCompilation = false;
+            this.classSplitThreshold = 0;
+            this.lazyCompilation = false;
+            this.expressionOptimization = false;
+            this.methodOptimization = false;
+            this.blockSplitSizeThreshold = 7000;
+            this.blockSplitDepthThreshold = 20;
+            this.branchHints = true;
+            this.deadFunctionElimination = true;
+            this.profileInstrumentation = false;
+            this.profile = null;
         }
 
         /**
@@ -168,6 +455,157 @@ public final class WasmAssemblerConfiguration {
             return this;
         }
 
+        /**
+         * Set whether small leaf functions are inlined into their callers.
+         * <p>
+         * Disabled by default, inlined frames are missing from stack traces.
+         *
+         * @param enable whether inlining is enabled
+         * @return this
+         */
+        public Builder enableInlining(boolean enable) {
+            this.enableInlining = enable;
+            return this;
+        }
+
+        /**
+         * Set whether functions are compiled in parallel.
+         *
+         * @param enable whether parallel compilation is enabled
+         * @return this
+         */
+        public Builder enableParallelCompilation(boolean enable) {
+            this.parallelCompilation = enable;
+            return this;
+        }
+
+        /**
+         * Set the amount of WASM instructions after which the functions of a module
+         * are distributed over multiple classes.
+         *
+         * @param threshold the split threshold in instructions, or 0 to never split modules
+         * @return this
+         */
+        public Builder classSplitThreshold(int threshold) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Split threshold must not be negative");
+            }
+
+            this.classSplitThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Set whether function bodies are compiled lazily on their first invocation.
+         *
+         * @param enable whether lazy compilation is enabled
+         * @return this
+         */
+        public Builder enableLazyCompilation(boolean enable) {
+            this.lazyCompilation = enable;
+            return this;
+        }
+
+        /**
+         * Set whether function bodies are optimized before they are emitted.
+         *
+         * @param enable whether expression optimization is enabled
+         * @return this
+         */
+        public Builder enableExpressionOptimization(boolean enable) {
+            this.expressionOptimization = enable;
+            return this;
+        }
+
+        /**
+         * Set whether the generated methods are run through a peephole optimizer.
+         *
+         * @param enable whether method optimization is enabled
+         * @return this
+         */
+        public Builder enableMethodOptimization(boolean enable) {
+            this.methodOptimization = enable;
+            return this;
+        }
+
+        /**
+         * Set the estimated bytecode size in bytes above which blocks of a function are
+         * split into separate methods.
+         *
+         * @param threshold the split threshold in estimated bytes of bytecode
+         * @return this
+         */
+        public Builder blockSplitSizeThreshold(int threshold) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Block split size threshold must be positive");
+            }
+
+            this.blockSplitSizeThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Set the nesting depth of blocks after which blocks are split into separate methods
+         * regardless of their size.
+         *
+         * @param threshold the split depth, or 0 to only split blocks based on their size
+         * @return this
+         */
+        public Builder blockSplitDepthThreshold(int threshold) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Block split depth threshold must not be negative");
+            }
+
+            this.blockSplitDepthThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Set whether branch hints of the module are used to lay out the generated code.
+         *
+         * @param enable whether branch hints are used
+         * @return this
+         */
+        public Builder enableBranchHints(boolean enable) {
+            this.branchHints = enable;
+            return this;
+        }
+
+        /**
+         * Set whether functions which can never be called are left out.
+         *
+         * @param enable whether unreachable functions are eliminated
+         * @return this
+         */
+        public Builder enableDeadFunctionElimination(boolean enable) {
+            this.deadFunctionElimination = enable;
+            return this;
+        }
+
+        /**
+         * Set whether the generated code records an execution profile.
+         *
+         * @param enable whether profile instrumentation is enabled
+         * @return this
+         */
+        public Builder enableProfileInstrumentation(boolean enable) {
+            this.profileInstrumentation = enable;
+            return this;
+        }
+
+        /**
+         * Set the execution profile the code is specialized for.
+         * <p>
+         * The profile must have been recorded for the same module.
+         *
+         * @param profile the profile, or null to not use a profile
+         * @return this
+         */
+        public Builder profile(WasmProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
         /**
          * Finish this builder and build the configuration.
          *
@@ -178,7 +616,19 @@ public final class WasmAssemblerConfiguration {
                     this.enableContinuations,
                     this.enableStrictNumerics,
                     this.atomicBoundsChecks,
-                    this.overflowBoundsChecks
+                    this.overflowBoundsChecks,
+                    this.enableInlining,
+                    this.parallelCompilation,
+                    this.classSplitThreshold,
+                    this.lazyCompilation,
+                    this.expressionOptimization,
+                    this.methodOptimization,
+                    this.blockSplitSizeThreshold,
+                    this.blockSplitDepthThreshold,
+                    this.branchHints,
+                    this.deadFunctionElimination,
+                    this.profileInstrumentation,
+                    this.profile
             );
         }
     }
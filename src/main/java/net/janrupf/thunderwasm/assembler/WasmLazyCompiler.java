@@ -0,0 +1,351 @@
+package net.janrupf.thunderwasm.assembler;
+
+import net.janrupf.thunderwasm.assembler.emitter.ClassEmitContext;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitter;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.data.MetadataStorage;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.lookup.ModuleLookups;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.module.encoding.LargeArray;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.section.CodeSection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Assembles a {@link WasmModule} with function bodies being compiled on their first invocation.
+ * <p>
+ * The module class only contains stubs for the functions of the module, which invoke the
+ * functions through a {@link MutableCallSite}. The first invocation of a function compiles
+ * it into a class of its own and links the call site to it, later invocations call the
+ * compiled function directly. This trades a slower first call for a much shorter time until
+ * large modules can be instantiated, and never compiles functions that are not called.
+ * <p>
+ * As classes can't be defined in an arbitrary class loader on all supported java versions,
+ * the classes are defined using a {@link ClassDefiner}. All classes have to be defined in
+ * the same package of the same class loader.
+ */
+public final class WasmLazyCompiler {
+    private static final Map<Class<?>, WasmLazyCompiler> PENDING_COMPILERS = new WeakHashMap<>();
+    private static final MethodHandle COMPILE_HANDLE;
+    private static final MethodHandle IS_NOT_NULL_HANDLE;
+
+    static {
+        try {
+            COMPILE_HANDLE = MethodHandles.lookup().findVirtual(
+                    WasmLazyCompiler.class,
+                    "compile",
+                    MethodType.methodType(MethodHandle.class, int.class)
+            );
+            IS_NOT_NULL_HANDLE = MethodHandles.lookup().findStatic(
+                    Objects.class,
+                    "nonNull",
+                    MethodType.methodType(boolean.class, Object.class)
+            );
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Failed to look up compile method", e);
+        }
+    }
+
+    private final WasmModule module;
+    private final ClassFileEmitterFactory emitterFactory;
+    private final String packageName;
+    private final String className;
+    private final Supplier<WasmGenerators> generators;
+    private final WasmAssemblerConfiguration configuration;
+    private final ClassDefiner definer;
+
+    private final ElementLookups elementLookups;
+    private final LargeArray<Function> functions;
+    private final MutableCallSite[] callSites;
+    private final String[] methodNames;
+    private final String[] bodyMethodNames;
+    private final MethodHandle[] compiledFunctions;
+
+    private boolean defined;
+    private int linkedCount;
+    private MethodHandles.Lookup lookup;
+
+    /**
+     * Create a new lazy compiler.
+     *
+     * @param module         the module to compile
+     * @param emitterFactory the factory to create class file emitters with
+     * @param packageName    the package to generate the classes in
+     * @param className      the name of the module class
+     * @param generators     the supplier of the generators, called once per generated class
+     * @param configuration  the configuration to use
+     * @param definer        the definer to define the generated classes with
+     * @throws WasmAssemblerException if the module has too many functions
+     */
+    public WasmLazyCompiler(
+            WasmModule module,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            Supplier<WasmGenerators> generators,
+            WasmAssemblerConfiguration configuration,
+            ClassDefiner definer
+    ) throws WasmAssemblerException {
+        this.module = module;
+        this.emitterFactory = emitterFactory;
+        this.packageName = packageName;
+        this.className = className;
+        this.generators = generators;
+        this.configuration = configuration.toBuilder().enableLazyCompilation(true).build();
+        this.definer = definer;
+
+        this.elementLookups = new ElementLookups(new ModuleLookups(module));
+
+        CodeSection codeSection = elementLookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+        this.functions = codeSection != null ? codeSection.getFunctions() : null;
+
+        int functionCount = functions != null ? (int) functions.length() : 0;
+        if (functions != null && functions.length() != functionCount) {
+            throw new WasmAssemblerException("Too many functions for lazy compilation");
+        }
+
+        this.callSites = new MutableCallSite[functionCount];
+        this.methodNames = new String[functionCount];
+        this.bodyMethodNames = new String[functionCount];
+        this.compiledFunctions = new MethodHandle[functionCount];
+    }
+
+    /**
+     * Assemble and define the module class.
+     * <p>
+     * The module class must not be initialized before this method returns.
+     *
+     * @return the defined module class
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    public synchronized Class<?> defineModuleClass() throws WasmAssemblerException {
+        if (defined) {
+            throw new IllegalStateException("Module class has already been defined");
+        }
+
+        WasmAssembler assembler = new WasmAssembler(
+                module,
+                emitterFactory,
+                packageName,
+                className,
+                generators.get(),
+                configuration
+        );
+
+        byte[] bytes = assembler.assembleToModule();
+        Class<?> moduleClass = definer.define(qualifiedName(packageName, className), bytes);
+        defined = true;
+
+        if (callSites.length > 0) {
+            synchronized (PENDING_COMPILERS) {
+                PENDING_COMPILERS.put(moduleClass, this);
+            }
+        }
+
+        return moduleClass;
+    }
+
+    /**
+     * Link a lazily compiled function.
+     * <p>
+     * This is called by the static initializer of the module class for every function.
+     * The returned method handle has the signature of the body stub of the function, which
+     * takes the state of the trampoline tail calling the function as its last argument.
+     *
+     * @param lookup         the lookup of the module class
+     * @param index          the local index of the function
+     * @param methodName     the name of the method of the function
+     * @param bodyMethodName the name of the method of the body of the function
+     * @return the method handle the module class uses to invoke the function
+     */
+    @SuppressWarnings("unused") // Used by generated code
+    public static MethodHandle link(
+            MethodHandles.Lookup lookup,
+            int index,
+            String methodName,
+            String bodyMethodName
+    ) {
+        WasmLazyCompiler compiler;
+        synchronized (PENDING_COMPILERS) {
+            compiler = PENDING_COMPILERS.get(lookup.lookupClass());
+        }
+
+        if (compiler == null) {
+            throw new IllegalStateException("Class " + lookup.lookupClass().getName() +
+                    " has not been defined by a lazy compiler");
+        }
+
+        return compiler.linkFunction(lookup, index, methodName, bodyMethodName);
+    }
+
+    private synchronized MethodHandle linkFunction(
+            MethodHandles.Lookup lookup,
+            int index,
+            String methodName,
+            String bodyMethodName
+    ) {
+        if (callSites[index] != null) {
+            throw new IllegalStateException("Function " + index + " has already been linked");
+        }
+
+        // The body stub in the module class has exactly the signature of the compiled body
+        MethodType type = findStaticMethodType(lookup.lookupClass(), bodyMethodName);
+
+        if (type == null) {
+            throw new IllegalStateException("Module class does not contain a stub for function " + index);
+        }
+
+        // Compile on the first invocation and continue by invoking the compiled function
+        MethodHandle compileAndInvoke = MethodHandles.foldArguments(
+                MethodHandles.exactInvoker(type),
+                MethodHandles.insertArguments(COMPILE_HANDLE.bindTo(this), 0, index)
+        );
+
+        MutableCallSite callSite = new MutableCallSite(compileAndInvoke);
+
+        this.lookup = lookup;
+        callSites[index] = callSite;
+        methodNames[index] = methodName;
+        bodyMethodNames[index] = bodyMethodName;
+
+        if (++linkedCount == callSites.length) {
+            // All functions are linked, the module class no longer needs to find this compiler
+            synchronized (PENDING_COMPILERS) {
+                PENDING_COMPILERS.remove(lookup.lookupClass());
+            }
+        }
+
+        return callSite.dynamicInvoker();
+    }
+
+    /**
+     * Compile a function and link its call site.
+     *
+     * @param index the local index of the function
+     * @return the compiled function
+     */
+    private MethodHandle compile(int index) {
+        MutableCallSite callSite = callSites[index];
+
+        synchronized (callSite) {
+            if (compiledFunctions[index] != null) {
+                // Another thread won the race to compile the function
+                return compiledFunctions[index];
+            }
+
+            MethodHandle compiled;
+            try {
+                compiled = compileFunction(index, callSite.type());
+            } catch (WasmAssemblerException | ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to compile function " + index, e);
+            } finally {
+                // The body is not needed anymore once the function is compiled
+                functions.get(LargeArrayIndex.fromU32(index)).discardDecodedExpr();
+            }
+
+            compiledFunctions[index] = compiled;
+            callSite.setTarget(compiled);
+
+            return compiled;
+        }
+    }
+
+    private MethodHandle compileFunction(int index, MethodType type)
+            throws WasmAssemblerException, ReflectiveOperationException {
+        // The function is emitted into a companion of the already defined module class
+        ClassFileEmitter moduleEmitter = emitterFactory.createFor(
+                packageName,
+                className,
+                ObjectType.OBJECT,
+                Collections.emptyList()
+        );
+        ClassFileEmitter functionEmitter = moduleEmitter.companion(className + "$Lazy$" + index);
+
+        WasmGenerators functionGenerators = generators.get();
+        ClassEmitContext context = new ClassEmitContext(
+                elementLookups,
+                functionEmitter,
+                functionGenerators,
+                configuration,
+                new MetadataStorage(),
+                true
+        );
+
+        LargeArrayIndex functionIndex = LargeArrayIndex.fromU32(index);
+        functionGenerators.getFunctionGenerator().addFunction(functionIndex, functions.get(functionIndex), context);
+
+        Class<?> functionClass = definer.define(
+                functionEmitter.getDeclaringType().getBinaryName().replace('/', '.'),
+                functionEmitter.finish()
+        );
+
+        // The function runs its own trampoline unless it is tail called with the state of another one
+        int stateIndex = type.parameterCount() - 1;
+        MethodHandle function = MethodHandles.dropArguments(
+                lookup.findStatic(functionClass, methodNames[index], type.dropParameterTypes(stateIndex, stateIndex + 1)),
+                stateIndex,
+                type.parameterType(stateIndex)
+        );
+
+        if (findStaticMethodType(functionClass, bodyMethodNames[index]) == null) {
+            // Not trampolined, tail calls to the function can't be left pending
+            return function;
+        }
+
+        MethodHandle isTailCalled = MethodHandles.dropArguments(
+                IS_NOT_NULL_HANDLE.asType(MethodType.methodType(boolean.class, type.parameterType(stateIndex))),
+                0,
+                type.dropParameterTypes(stateIndex, stateIndex + 1).parameterList()
+        );
+
+        return MethodHandles.guardWithTest(
+                isTailCalled,
+                lookup.findStatic(functionClass, bodyMethodNames[index], type),
+                function
+        );
+    }
+
+    private static MethodType findStaticMethodType(Class<?> clazz, String methodName) {
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.getName().equals(methodName) && Modifier.isStatic(method.getModifiers())) {
+                return MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            }
+        }
+
+        return null;
+    }
+
+    private static String qualifiedName(String packageName, String className) {
+        return new ObjectType(packageName, className).getBinaryName().replace('/', '.');
+    }
+
+    /**
+     * Defines the classes generated by a {@link WasmLazyCompiler}.
+     */
+    @FunctionalInterface
+    public interface ClassDefiner {
+        /**
+         * Define a class.
+         *
+         * @param name  the fully qualified name of the class
+         * @param bytes the bytecode of the class
+         * @return the defined class
+         */
+        Class<?> define(String name, byte[] bytes);
+    }
+}
@@ -0,0 +1,254 @@
+package net.janrupf.thunderwasm.assembler;
+
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.Visibility;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.assembler.generator.defaults.DefaultFunctionGenerator;
+import net.janrupf.thunderwasm.assembler.generator.defaults.DefaultImportGenerator;
+import net.janrupf.thunderwasm.assembler.linking.DirectFunctionLink;
+import net.janrupf.thunderwasm.assembler.linking.DirectFunctionLinks;
+import net.janrupf.thunderwasm.exports.Export;
+import net.janrupf.thunderwasm.exports.FunctionExportDescription;
+import net.janrupf.thunderwasm.imports.TypeImportDescription;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.lookup.FoundElement;
+import net.janrupf.thunderwasm.lookup.ModuleLookups;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.section.ExportSection;
+import net.janrupf.thunderwasm.types.FunctionType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assembles a set of {@link WasmModule}s which import from each other.
+ * <p>
+ * All modules are generated into the same package. Function imports which refer to
+ * a function exported by another module of the set are resolved at assembly time and
+ * emitted as direct static invocations instead of going through a linked function.
+ * <p>
+ * At runtime the module importing from another one needs the instance of the other module,
+ * which is obtained using {@link net.janrupf.thunderwasm.runtime.linker.RuntimeLinker#linkModuleInstance(String)}.
+ * Hence, modules have to be instantiated in dependency order, which
+ * {@link net.janrupf.thunderwasm.runtime.linker.ModuleSetRuntimeLinker} takes care of linking. Function
+ * imports are still linked normally as well, so references to the imported functions keep working.
+ * <p>
+ * Direct linking is not available with continuations enabled, in that case all
+ * imports are linked at runtime.
+ */
+public final class WasmModuleSetAssembler {
+    private final ClassFileEmitterFactory emitterFactory;
+    private final String packageName;
+    private final WasmAssemblerConfiguration configuration;
+    private final Map<String, ModuleEntry> modules;
+
+    public WasmModuleSetAssembler(ClassFileEmitterFactory emitterFactory, String packageName) {
+        this(emitterFactory, packageName, WasmAssemblerConfiguration.DEFAULT);
+    }
+
+    public WasmModuleSetAssembler(
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            WasmAssemblerConfiguration configuration
+    ) {
+        this.emitterFactory = emitterFactory;
+        this.packageName = packageName;
+        this.configuration = configuration;
+        this.modules = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add a module to the set.
+     *
+     * @param moduleName the name other modules use to import from this module
+     * @param className  the name of the class to generate for the module
+     * @param module     the module to add
+     * @return this
+     */
+    public WasmModuleSetAssembler addModule(String moduleName, String className, WasmModule module) {
+        if (modules.containsKey(moduleName)) {
+            throw new IllegalArgumentException("Duplicate module name: " + moduleName);
+        }
+
+        modules.put(moduleName, new ModuleEntry(className, module));
+        return this;
+    }
+
+    /**
+     * Assembles all modules of the set.
+     * <p>
+     * Every module may be split into companion classes, see {@link WasmAssembler#assembleToClasses()}.
+     *
+     * @return the assembled classes of each module keyed by their fully qualified name, keyed by module name
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    public Map<String, Map<String, byte[]>> assemble() throws WasmAssemblerException {
+        DirectFunctionLinks links = configuration.continuationsEnabled() ? DirectFunctionLinks.NONE : resolveLinks();
+
+        Map<String, Map<String, byte[]>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ModuleEntry> entry : modules.entrySet()) {
+            WasmGenerators generators = new WasmGenerators()
+                    .withFunctionGenerator(new DefaultFunctionGenerator(Visibility.PACKAGE_PRIVATE))
+                    .withImportGenerator(new DefaultImportGenerator(links));
+
+            WasmAssembler assembler = new WasmAssembler(
+                    entry.getValue().module,
+                    emitterFactory,
+                    packageName,
+                    entry.getValue().className,
+                    generators,
+                    configuration
+            );
+
+            result.put(entry.getKey(), assembler.assembleToClasses());
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve all function exports of the modules in the set.
+     *
+     * @return the resolved function links
+     * @throws WasmAssemblerException if an export can not be resolved
+     */
+    private DirectFunctionLinks resolveLinks() throws WasmAssemblerException {
+        DirectFunctionLinks.Builder builder = DirectFunctionLinks.builder();
+
+        for (Map.Entry<String, ModuleEntry> entry : modules.entrySet()) {
+            ModuleEntry module = entry.getValue();
+            ExportSection exportSection = module.lookups.getModuleLookups().findSingleSection(ExportSection.LOCATOR);
+            if (exportSection == null) {
+                continue;
+            }
+
+            for (Export<?> export : exportSection.getExports()) {
+                Export<FunctionExportDescription> functionExport = export.tryCast(FunctionExportDescription.class);
+                if (functionExport == null) {
+                    continue;
+                }
+
+                DirectFunctionLink link = resolveFunction(
+                        entry.getKey(),
+                        LargeArrayIndex.fromU32(functionExport.getDescription().getIndex()),
+                        new HashSet<>()
+                );
+
+                if (link != null) {
+                    builder.add(entry.getKey(), export.getName(), link);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Resolve a function of a module to the module defining it.
+     *
+     * @param moduleName    the name of the module to look up the function in
+     * @param functionIndex the index of the function, including imports
+     * @param visited       the modules and functions visited so far, used to detect import cycles
+     * @return the resolved function, or null, if the function is imported from outside the set
+     * @throws WasmAssemblerException if the function can not be resolved
+     */
+    private DirectFunctionLink resolveFunction(
+            String moduleName,
+            LargeArrayIndex functionIndex,
+            Set<String> visited
+    ) throws WasmAssemblerException {
+        if (!visited.add(moduleName + "#" + functionIndex)) {
+            throw new WasmAssemblerException("Cyclic re-export of function " + functionIndex + " in module " + moduleName);
+        }
+
+        ModuleEntry module = modules.get(moduleName);
+        FoundElement<Integer, TypeImportDescription> found = module.lookups.requireFunctionTypeIndex(functionIndex);
+
+        if (!found.isImport()) {
+            return new DirectFunctionLink(
+                    moduleName,
+                    new ObjectType(packageName, module.className),
+                    determineDeclaringType(module, found.getIndex()),
+                    found.getIndex(),
+                    module.lookups.resovleFunctionType(found)
+            );
+        }
+
+        // Re-exported import, follow it if it comes from within the set
+        String importedModule = found.getImport().getModule();
+        ModuleEntry source = modules.get(importedModule);
+        if (source == null) {
+            return null;
+        }
+
+        ExportSection exportSection = source.lookups.getModuleLookups().findSingleSection(ExportSection.LOCATOR);
+        if (exportSection == null) {
+            return null;
+        }
+
+        for (Export<?> export : exportSection.getExports()) {
+            Export<FunctionExportDescription> functionExport = export.tryCast(FunctionExportDescription.class);
+            if (functionExport != null && functionExport.getName().equals(found.getImport().getName())) {
+                return resolveFunction(
+                        importedModule,
+                        LargeArrayIndex.fromU32(functionExport.getDescription().getIndex()),
+                        visited
+                );
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Determine the class a function of a module is placed in.
+     * <p>
+     * This computes the same layout the assembler of the module uses later on.
+     *
+     * @param module        the module defining the function
+     * @param functionIndex the local index of the function
+     * @return the class declaring the method of the function
+     * @throws WasmAssemblerException if the layout can not be computed
+     */
+    private ObjectType determineDeclaringType(ModuleEntry module, LargeArrayIndex functionIndex)
+            throws WasmAssemblerException {
+        if (module.functionGroups == null) {
+            Map<LargeArrayIndex, Integer> functionGroups = new HashMap<>();
+
+            List<List<LargeArrayIndex>> layout = WasmAssembler.computeFunctionLayout(module.lookups, configuration);
+            for (int group = 1; group < layout.size(); group++) {
+                for (LargeArrayIndex index : layout.get(group)) {
+                    functionGroups.put(index, group);
+                }
+            }
+
+            module.functionGroups = functionGroups;
+        }
+
+        Integer group = module.functionGroups.get(functionIndex);
+        if (group == null) {
+            return new ObjectType(packageName, module.className);
+        }
+
+        return new ObjectType(packageName, WasmAssembler.companionClassName(module.className, group));
+    }
+
+    private static final class ModuleEntry {
+        private final String className;
+        private final WasmModule module;
+        private final ElementLookups lookups;
+        private Map<LargeArrayIndex, Integer> functionGroups;
+
+        private ModuleEntry(String className, WasmModule module) {
+            this.className = className;
+            this.module = module;
+            this.lookups = new ElementLookups(new ModuleLookups(module));
+        }
+    }
+}
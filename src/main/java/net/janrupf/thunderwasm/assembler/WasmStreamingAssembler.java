@@ -0,0 +1,175 @@
+package net.janrupf.thunderwasm.assembler;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.assembler.emitter.ClassEmitContext;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitter;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.data.MetadataStorage;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.lookup.ModuleLookups;
+import net.janrupf.thunderwasm.module.WasmLoadListener;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads and assembles a module while it is still being read.
+ * <p>
+ * Every function of the code section is compiled in the background as soon as it has been
+ * read, so that compilation overlaps with reading the remaining module, for example while
+ * it is still being downloaded. Once the module has been read completely, the compiled
+ * functions are joined into the module class in function order.
+ * <p>
+ * Functions are compiled before the sections following the code section are known. Functions
+ * which depend on those sections, such as functions initializing memory from data segments,
+ * are compiled again once the module is complete. As the bodies of the other functions are
+ * not known while a function is compiled, functions are never inlined into each other.
+ * Functions found to be unreachable once the module is complete are still compiled, which
+ * validates them, but are replaced by stubs when the functions are joined.
+ */
+public final class WasmStreamingAssembler {
+    private final InstructionRegistry instructionRegistry;
+    private final ClassFileEmitterFactory emitterFactory;
+    private final String packageName;
+    private final String className;
+    private final WasmGenerators generators;
+    private final WasmAssemblerConfiguration configuration;
+
+    /**
+     * Create a new streaming assembler.
+     *
+     * @param instructionRegistry the instructions to use when reading the module
+     * @param emitterFactory      the factory to create class file emitters with
+     * @param packageName         the package to generate the classes in
+     * @param className           the name of the module class
+     * @param generators          the generators to use
+     * @param configuration       the configuration to use
+     */
+    public WasmStreamingAssembler(
+            InstructionRegistry instructionRegistry,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration
+    ) {
+        if (configuration.lazyCompilationEnabled()) {
+            throw new IllegalArgumentException("Lazy compilation can not be combined with streaming compilation");
+        }
+
+        if (configuration.classSplitThreshold() != 0) {
+            throw new IllegalArgumentException("Modules can not be split into multiple classes when streaming");
+        }
+
+        this.instructionRegistry = instructionRegistry;
+        this.emitterFactory = emitterFactory;
+        this.packageName = packageName;
+        this.className = className;
+        this.generators = generators;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Load and assemble a module into java classes.
+     * <p>
+     * See {@link WasmAssembler#assembleToClasses()} for the returned classes.
+     *
+     * @param stream the stream to read the binary module from
+     * @return the assembled classes keyed by their fully qualified name
+     * @throws IOException          if the module can not be read
+     * @throws ThunderWasmException if the module can not be loaded or assembled
+     */
+    public Map<String, byte[]> assembleToClasses(InputStream stream) throws IOException, ThunderWasmException {
+        StreamingListener listener = new StreamingListener();
+
+        WasmModule module;
+        try {
+            module = new WasmLoader(stream, instructionRegistry).load(listener);
+        } catch (IOException | ThunderWasmException | RuntimeException e) {
+            listener.cancel();
+            throw e;
+        }
+
+        return new WasmAssembler(
+                module,
+                emitterFactory,
+                packageName,
+                className,
+                generators,
+                configuration,
+                listener.compiledFunctions
+        ).assembleToClasses();
+    }
+
+    /**
+     * Starts compiling the functions while the module is being loaded.
+     */
+    private final class StreamingListener implements WasmLoadListener {
+        private final List<Future<ClassFileEmitter>> compiledFunctions;
+
+        private ClassFileEmitter moduleEmitter;
+        private ElementLookups elementLookups;
+
+        private StreamingListener() {
+            this.compiledFunctions = new ArrayList<>();
+        }
+
+        @Override
+        public void onCodeSectionStart(WasmModule precedingSections, LargeArrayIndex functionCount) {
+            // Functions are compiled into forks of an emitter for the same class, which can be
+            // joined into the emitter of the final module class
+            this.moduleEmitter = emitterFactory.createFor(
+                    packageName,
+                    className,
+                    ObjectType.OBJECT,
+                    Collections.singletonList(generators.getExportGenerator().getExportInterface())
+            );
+            this.elementLookups = new ElementLookups(new ModuleLookups(precedingSections));
+        }
+
+        @Override
+        public void onFunctionLoaded(LargeArrayIndex index, Function function) {
+            compiledFunctions.add(ForkJoinPool.commonPool().submit(() -> compile(index, function)));
+        }
+
+        private ClassFileEmitter compile(LargeArrayIndex index, Function function) {
+            ClassFileEmitter fork = moduleEmitter.fork();
+            ClassEmitContext context = new ClassEmitContext(
+                    elementLookups,
+                    fork,
+                    generators,
+                    configuration,
+                    new MetadataStorage()
+            );
+
+            try {
+                generators.getFunctionGenerator().addFunction(index, function, context);
+            } catch (WasmAssemblerException e) {
+                // The function may depend on sections following the code section, compile
+                // it again once the module is complete
+                return null;
+            }
+
+            return fork;
+        }
+
+        private void cancel() {
+            for (Future<ClassFileEmitter> function : compiledFunctions) {
+                function.cancel(false);
+            }
+        }
+    }
+}
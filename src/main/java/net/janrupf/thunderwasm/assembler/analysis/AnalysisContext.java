@@ -2,11 +2,15 @@ package net.janrupf.thunderwasm.assembler.analysis;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.instructions.Expr;
-import net.janrupf.thunderwasm.instructions.InstructionInstance;
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
 import net.janrupf.thunderwasm.util.ObjectUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Context for performing code analysis.
@@ -15,26 +19,47 @@ public final class AnalysisContext {
     private final Expr currentExpr;
     private final LocalVariableUsage localVariableUsage;
     private final AnalysisContext parent;
+    private final Map<Integer, BranchHint> branchHints;
 
     private final List<AnalysisContext> subContexts;
     private WasmAssemblerException analysisException;
     private boolean wasRun;
+    private int currentInstruction;
+    private boolean cold;
 
     private boolean usesDirectReturn;
+    private boolean usesCalls;
+    private final Set<Integer> tailCalledFunctions;
+    private final Set<Integer> tailCalledTypes;
+    private final Set<Integer> calledFunctions;
+    private final Set<Integer> writtenTables;
+    private final Set<Integer> branchSites;
+    private final Set<Integer> indirectCallSites;
 
     private AnalysisContext(
             Expr expr,
             LocalVariableUsage localVariableUsage,
-            AnalysisContext parent
+            AnalysisContext parent,
+            Map<Integer, BranchHint> branchHints
     ) {
         this.currentExpr = expr;
         this.localVariableUsage = localVariableUsage;
         this.parent = parent;
+        this.branchHints = branchHints;
 
         this.subContexts = new ArrayList<>();
         this.analysisException = null;
         this.wasRun = false;
+        this.currentInstruction = -1;
+        this.cold = false;
         this.usesDirectReturn = false;
+        this.usesCalls = false;
+        this.tailCalledFunctions = new HashSet<>();
+        this.tailCalledTypes = new HashSet<>();
+        this.calledFunctions = new HashSet<>();
+        this.writtenTables = new HashSet<>();
+        this.branchSites = new HashSet<>();
+        this.indirectCallSites = new HashSet<>();
     }
 
     /**
@@ -52,16 +77,49 @@ public final class AnalysisContext {
         }
 
         try {
-            for (InstructionInstance instance : this.currentExpr.getInstructions()) {
-                instance.getInstruction().runAnalysis(this, ObjectUtil.forceCast(instance.getData()));
+            for (int i = 0, count = this.currentExpr.getInstructionCount(); i < count; i++) {
+                this.currentInstruction = i;
+                this.currentExpr.getInstructionType(i).runAnalysis(
+                        this, ObjectUtil.forceCast(this.currentExpr.getInstructionData(i)));
             }
         } catch (WasmAssemblerException e) {
             this.analysisException = e;
         } finally {
+            this.currentInstruction = -1;
             this.wasRun = true;
         }
     }
 
+    /**
+     * Retrieve the branch hint of the instruction currently being analyzed.
+     *
+     * @return the hint of the current instruction, or null, if it has no hint
+     */
+    public BranchHint getBranchHint() {
+        if (branchHints.isEmpty() || currentInstruction < 0) {
+            return null;
+        }
+
+        int offset = currentExpr.getInstructionOffset(currentInstruction);
+        return offset < 0 ? null : branchHints.get(offset);
+    }
+
+    /**
+     * Mark the expression as rarely executed.
+     */
+    public void markCold() {
+        this.cold = true;
+    }
+
+    /**
+     * Determines whether the expression is rarely executed.
+     *
+     * @return true if the expression is rarely executed, false otherwise
+     */
+    public boolean isCold() {
+        return this.cold;
+    }
+
     /**
      * Retrieve the local variable usage tracker.
      *
@@ -90,6 +148,179 @@ public final class AnalysisContext {
         return this.usesDirectReturn;
     }
 
+    /**
+     * Mark the expression as calling other functions.
+     */
+    public void markCall() {
+        this.usesCalls = true;
+        if (parent != null) {
+            parent.markCall();
+        }
+    }
+
+    /**
+     * Mark the expression as calling the given function directly.
+     *
+     * @param functionIndex the index of the called function
+     */
+    public void markCall(int functionIndex) {
+        this.calledFunctions.add(functionIndex);
+        if (parent != null) {
+            parent.markCall(functionIndex);
+        }
+
+        markCall();
+    }
+
+    /**
+     * Retrieve the indices of all functions called directly by this expression.
+     *
+     * @return the indices of the called functions
+     */
+    public Set<Integer> getCalledFunctions() {
+        return Collections.unmodifiableSet(this.calledFunctions);
+    }
+
+    /**
+     * Determines whether the expression calls other functions.
+     *
+     * @return true if the expression calls other functions, false otherwise
+     */
+    public boolean usesCalls() {
+        return this.usesCalls;
+    }
+
+    /**
+     * Mark the expression as performing a tail call to the given function.
+     * <p>
+     * Tail calls are direct returns as well, so this also marks the expression
+     * for direct return.
+     *
+     * @param functionIndex the index of the function being tail called
+     */
+    public void markTailCall(int functionIndex) {
+        this.tailCalledFunctions.add(functionIndex);
+        if (parent != null) {
+            parent.markTailCall(functionIndex);
+        }
+
+        markCall(functionIndex);
+        markForDirectReturn();
+    }
+
+    /**
+     * Retrieve the indices of all functions tail called by this expression.
+     *
+     * @return the indices of the tail called functions
+     */
+    public Set<Integer> getTailCalledFunctions() {
+        return Collections.unmodifiableSet(this.tailCalledFunctions);
+    }
+
+    /**
+     * Mark the expression as performing an indirect tail call to a function of the given type.
+     * <p>
+     * Tail calls are direct returns as well, so this also marks the expression
+     * for direct return.
+     *
+     * @param typeIndex the index of the type of the function being tail called
+     */
+    public void markTailCallIndirect(int typeIndex) {
+        this.tailCalledTypes.add(typeIndex);
+        if (parent != null) {
+            parent.markTailCallIndirect(typeIndex);
+        }
+
+        markCall();
+        markForDirectReturn();
+    }
+
+    /**
+     * Retrieve the indices of the types of all functions tail called indirectly by this expression.
+     *
+     * @return the type indices of the indirectly tail called functions
+     */
+    public Set<Integer> getTailCalledTypes() {
+        return Collections.unmodifiableSet(this.tailCalledTypes);
+    }
+
+    /**
+     * Mark the expression as modifying the given table.
+     *
+     * @param tableIndex the index of the modified table
+     */
+    public void markTableWrite(int tableIndex) {
+        this.writtenTables.add(tableIndex);
+        if (parent != null) {
+            parent.markTableWrite(tableIndex);
+        }
+    }
+
+    /**
+     * Retrieve the indices of all tables modified by this expression.
+     *
+     * @return the indices of the modified tables
+     */
+    public Set<Integer> getWrittenTables() {
+        return Collections.unmodifiableSet(this.writtenTables);
+    }
+
+    /**
+     * Mark the instruction currently being analyzed as a conditional branch.
+     * <p>
+     * Instructions without a known offset are not marked.
+     */
+    public void markBranchSite() {
+        int offset = currentInstruction < 0 ? -1 : currentExpr.getInstructionOffset(currentInstruction);
+        if (offset >= 0) {
+            addBranchSite(offset);
+        }
+    }
+
+    private void addBranchSite(int offset) {
+        this.branchSites.add(offset);
+        if (parent != null) {
+            parent.addBranchSite(offset);
+        }
+    }
+
+    /**
+     * Retrieve the offsets of all conditional branches in this expression.
+     *
+     * @return the offsets of the branch instructions in the function body
+     */
+    public Set<Integer> getBranchSites() {
+        return Collections.unmodifiableSet(this.branchSites);
+    }
+
+    /**
+     * Mark the instruction currently being analyzed as an indirect call.
+     * <p>
+     * Instructions without a known offset are not marked.
+     */
+    public void markIndirectCallSite() {
+        int offset = currentInstruction < 0 ? -1 : currentExpr.getInstructionOffset(currentInstruction);
+        if (offset >= 0) {
+            addIndirectCallSite(offset);
+        }
+    }
+
+    private void addIndirectCallSite(int offset) {
+        this.indirectCallSites.add(offset);
+        if (parent != null) {
+            parent.addIndirectCallSite(offset);
+        }
+    }
+
+    /**
+     * Retrieve the offsets of all indirect calls in this expression.
+     *
+     * @return the offsets of the call instructions in the function body
+     */
+    public Set<Integer> getIndirectCallSites() {
+        return Collections.unmodifiableSet(this.indirectCallSites);
+    }
+
     /**
      * Branch the analysis context for a sub expression.
      *
@@ -99,7 +330,7 @@ public final class AnalysisContext {
     public AnalysisContext branchForExpression(Expr expr) {
         LocalVariableUsage subUsage = new LocalVariableUsage(localVariableUsage);
 
-        AnalysisContext subcontext = new AnalysisContext(expr, subUsage, this);
+        AnalysisContext subcontext = new AnalysisContext(expr, subUsage, this, branchHints);
         subContexts.add(subcontext);
 
         return subcontext;
@@ -130,10 +361,22 @@ public final class AnalysisContext {
      * @return the created context
      */
     public static AnalysisContext createForFunction(Expr expr) {
+        return createForFunction(expr, Collections.emptyMap());
+    }
+
+    /**
+     * Create a new top-level analysis context for a function with branch hints.
+     *
+     * @param expr        the expression of the function
+     * @param branchHints the branch hints of the function by instruction offset
+     * @return the created context
+     */
+    public static AnalysisContext createForFunction(Expr expr, Map<Integer, BranchHint> branchHints) {
         return new AnalysisContext(
                 expr,
                 new LocalVariableUsage(null),
-                null
+                null,
+                branchHints
         );
     }
 }
@@ -1,49 +1,163 @@
 package net.janrupf.thunderwasm.assembler.analysis;
 
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.instructions.Expr;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public final class AnalysisResult {
-    private static final int BLOCK_SPLIT_INSTRUCTION_THRESHOLD = 5000;
-    private static final int BLOCK_SPLIT_INSTRUCTION_OVER_ALLOWANCE = 100;
-    private static final int BLOCK_SPLIT_DEPTH_THRESHOLD = 20;
+    /**
+     * The minimum estimated size of a cold block to move it into its own method.
+     * <p>
+     * Smaller cold blocks stay inline, since calling them would cost more than they save.
+     */
+    private static final int COLD_BLOCK_OUTLINE_SIZE = 64;
 
     private final Map<Expr, LocalVariableUsage> localVariableUsage;
     private final Set<Expr> directReturns;
     private final Set<Expr> blockSplitTargets;
+    private final Set<Expr> coldBlocks;
+    private final Set<Integer> tailCalledFunctions;
+    private final Set<Integer> calledFunctions;
+    private final boolean heapLocals;
+    private final boolean instrumented;
+    private final InlinedCallSizes inlinedCallSizes;
+    private int instructionCount;
+    private int estimatedSize;
+    private boolean usesCalls;
 
-    private AnalysisResult() {
+    private AnalysisResult(boolean heapLocals, boolean instrumented, InlinedCallSizes inlinedCallSizes) {
         this.localVariableUsage = new IdentityHashMap<>();
         this.directReturns = Collections.newSetFromMap(new IdentityHashMap<>());
         this.blockSplitTargets = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.coldBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.tailCalledFunctions = new HashSet<>();
+        this.calledFunctions = new HashSet<>();
+        this.heapLocals = heapLocals;
+        this.instrumented = instrumented;
+        this.inlinedCallSizes = inlinedCallSizes;
     }
 
-    private void processContext(AnalysisContext analysisContext, int unsplitInstructionCount, int depth) {
-        int ownSize = analysisContext.getCurrentExpr().getInstructions().size();
-        int totalInstructionCount = ownSize + unsplitInstructionCount;
+    /**
+     * Process an analysis context and decide which of its nested blocks are split.
+     * <p>
+     * Blocks are split bottom up. Once the estimated bytecode size of a block including all
+     * of its unsplit nested blocks exceeds the threshold, its largest nested blocks are
+     * moved into their own methods until it fits again. This keeps every method below the
+     * threshold while splitting as few blocks as possible.
+     * <p>
+     * Blocks which are hinted to be rarely executed are moved out regardless of the size of
+     * the enclosing block, as long as they are large enough for the call to pay off. This
+     * keeps the hot path of a function compact.
+     *
+     * @param analysisContext the context to process
+     * @param configuration   the configuration to take the thresholds from
+     * @param localCount      the amount of locals saved across calls, or -1 if none are saved
+     * @param depth           the nesting depth since the last split block
+     * @return the estimated bytecode size of the context including its unsplit nested blocks
+     */
+    private int processContext(
+            AnalysisContext analysisContext,
+            WasmAssemblerConfiguration configuration,
+            int localCount,
+            int depth
+    ) {
+        Expr expr = analysisContext.getCurrentExpr();
+
+        int depthThreshold = configuration.blockSplitDepthThreshold();
+        if (depthThreshold > 0 && depth >= depthThreshold) {
+            blockSplitTargets.add(expr);
+            depth = 0;
+        }
+
+        List<AnalysisContext> subContexts = analysisContext.getSubContexts();
+        int[] subSizes = new int[subContexts.size()];
+
+        long size = BytecodeSizeEstimator.estimate(
+                expr,
+                localCount,
+                heapLocals,
+                instrumented,
+                (functionIndex) -> inlinedCallSizes.estimate(functionIndex, instructionCount)
+        );
+        for (int i = 0; i < subSizes.length; i++) {
+            AnalysisContext subContext = subContexts.get(i);
+            subSizes[i] = processContext(subContext, configuration, localCount, depth + 1);
+
+            if (subContext.isCold()) {
+                coldBlocks.add(subContext.getCurrentExpr());
 
-        boolean doBlockSplit = totalInstructionCount >= BLOCK_SPLIT_INSTRUCTION_THRESHOLD &&
-                (ownSize > BLOCK_SPLIT_INSTRUCTION_OVER_ALLOWANCE ||
-                        totalInstructionCount > BLOCK_SPLIT_INSTRUCTION_THRESHOLD + BLOCK_SPLIT_INSTRUCTION_OVER_ALLOWANCE) || (depth >= BLOCK_SPLIT_DEPTH_THRESHOLD);
+                if (subSizes[i] >= COLD_BLOCK_OUTLINE_SIZE && subSizes[i] > splitOverhead(subContext)) {
+                    blockSplitTargets.add(subContext.getCurrentExpr());
+                }
+            }
 
-        if (doBlockSplit) {
-            blockSplitTargets.add(analysisContext.getCurrentExpr());
+            if (blockSplitTargets.contains(subContext.getCurrentExpr())) {
+                size += splitOverhead(subContext);
+            } else {
+                size += subSizes[i];
+            }
         }
 
-        for (AnalysisContext subcontext : analysisContext.getSubContexts()) {
-            processContext(subcontext, doBlockSplit ? 0 : totalInstructionCount, doBlockSplit ? 0 : depth + 1);
+        // Leave room for the overhead in case this block ends up being split itself
+        int sizeThreshold = configuration.blockSplitSizeThreshold() - splitOverhead(analysisContext);
+        if (size > sizeThreshold) {
+            Integer[] candidates = new Integer[subSizes.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = i;
+            }
+            // Prefer moving rarely executed code out, then the largest blocks
+            Arrays.sort(candidates, (a, b) -> {
+                boolean aCold = subContexts.get(a).isCold();
+                boolean bCold = subContexts.get(b).isCold();
+                if (aCold != bCold) {
+                    return aCold ? -1 : 1;
+                }
+
+                return Integer.compare(subSizes[b], subSizes[a]);
+            });
+
+            for (int i = 0; i < candidates.length && size > sizeThreshold; i++) {
+                AnalysisContext subContext = subContexts.get(candidates[i]);
+                if (subContext.isCold() && subSizes[candidates[i]] <= splitOverhead(subContext)) {
+                    // Splitting would only grow the block
+                    continue;
+                }
+
+                if (blockSplitTargets.add(subContext.getCurrentExpr())) {
+                    size -= subSizes[candidates[i]] - splitOverhead(subContext);
+                }
+            }
         }
 
-        this.localVariableUsage.put(analysisContext.getCurrentExpr(), analysisContext.getLocalVariableUsage());
+        this.localVariableUsage.put(expr, analysisContext.getLocalVariableUsage());
 
         if (analysisContext.usesDirectReturn()) {
-            this.directReturns.add(analysisContext.getCurrentExpr());
+            this.directReturns.add(expr);
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static int countInstructions(AnalysisContext analysisContext) {
+        int count = analysisContext.getCurrentExpr().getInstructionCount();
+        for (AnalysisContext subContext : analysisContext.getSubContexts()) {
+            count += countInstructions(subContext);
         }
+
+        return count;
+    }
+
+    private static int splitOverhead(AnalysisContext analysisContext) {
+        return BytecodeSizeEstimator.SPLIT_BLOCK_SIZE +
+                BytecodeSizeEstimator.SPLIT_BLOCK_LOCAL_SIZE * analysisContext.getLocalVariableUsage().getStatus().size();
     }
 
     /**
@@ -82,15 +196,144 @@ public final class AnalysisResult {
     }
 
     /**
-     * Compile the result from the given analysis context.
+     * Determine whether an expression is hinted to be rarely executed.
+     *
+     * @param expr the expression to check
+     * @return true if the expression is cold, false otherwise
+     */
+    public boolean isColdBlock(Expr expr) {
+        return this.coldBlocks.contains(expr);
+    }
+
+    /**
+     * Determine whether any expression will be split into an extra method.
+     *
+     * @return true if at least one block will be split, false otherwise
+     */
+    public boolean hasBlockSplits() {
+        return !this.blockSplitTargets.isEmpty();
+    }
+
+    /**
+     * Retrieve the total amount of instructions in all analyzed expressions.
+     *
+     * @return the total instruction count
+     */
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * Retrieve the estimated bytecode size of the analyzed code, excluding split blocks.
+     *
+     * @return the estimated size in bytes
+     */
+    public int getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Determine whether the analyzed code calls other functions.
+     *
+     * @return true if the code calls other functions, false otherwise
+     */
+    public boolean usesCalls() {
+        return usesCalls;
+    }
+
+    /**
+     * Retrieve the indices of all functions which are the target of a tail call.
+     *
+     * @return the indices of the tail called functions
+     */
+    public Set<Integer> getTailCalledFunctions() {
+        return Collections.unmodifiableSet(this.tailCalledFunctions);
+    }
+
+    /**
+     * Retrieve the indices of all functions which are called directly, including tail calls.
+     *
+     * @return the indices of the called functions
+     */
+    public Set<Integer> getCalledFunctions() {
+        return Collections.unmodifiableSet(this.calledFunctions);
+    }
+
+    /**
+     * Compile the result from the given analysis context using the default configuration.
      *
      * @param analysisContext the context to compile the result from
      * @return the compiled result
      */
     public static AnalysisResult compileFromContext(AnalysisContext analysisContext) {
-        AnalysisResult result = new AnalysisResult();
-        result.processContext(analysisContext, 0, 0);
+        return compileFromContext(analysisContext, WasmAssemblerConfiguration.DEFAULT);
+    }
+
+    /**
+     * Compile the result from the given analysis context.
+     * <p>
+     * The locals are assumed to be stored in JVM locals and no function to be inlined.
+     *
+     * @param analysisContext the context to compile the result from
+     * @param configuration   the configuration the analyzed code is assembled with
+     * @return the compiled result
+     */
+    public static AnalysisResult compileFromContext(
+            AnalysisContext analysisContext,
+            WasmAssemblerConfiguration configuration
+    ) {
+        return compileFromContext(analysisContext, configuration, false, (functionIndex, callerInstructionCount) -> -1);
+    }
+
+    /**
+     * Compile the result from the given analysis context.
+     * <p>
+     * Inlined functions and heap locals are taken into account when deciding which
+     * blocks to split, since they can grow the emitted code considerably.
+     *
+     * @param analysisContext  the context to compile the result from
+     * @param configuration    the configuration the analyzed code is assembled with
+     * @param heapLocals       whether the locals of the code are stored on the heap
+     * @param inlinedCallSizes the estimates of the code emitted in place of calls to inlined functions
+     * @return the compiled result
+     */
+    public static AnalysisResult compileFromContext(
+            AnalysisContext analysisContext,
+            WasmAssemblerConfiguration configuration,
+            boolean heapLocals,
+            InlinedCallSizes inlinedCallSizes
+    ) {
+        int localCount = configuration.continuationsEnabled()
+                ? analysisContext.getLocalVariableUsage().getStatus().size()
+                : -1;
+        boolean instrumented = configuration.profileInstrumentationEnabled();
+
+        AnalysisResult result = new AnalysisResult(heapLocals, instrumented, inlinedCallSizes);
+        result.instructionCount = countInstructions(analysisContext);
+        result.estimatedSize = result.processContext(analysisContext, configuration, localCount, 0);
+        if (instrumented) {
+            // Every invocation of the function is recorded on entry
+            result.estimatedSize += BytecodeSizeEstimator.PROFILE_CALL_SIZE;
+        }
+        result.tailCalledFunctions.addAll(analysisContext.getTailCalledFunctions());
+        result.calledFunctions.addAll(analysisContext.getCalledFunctions());
+        result.usesCalls = analysisContext.usesCalls();
 
         return result;
     }
+
+    /**
+     * Estimates the size of the code emitted in place of calls to inlined functions.
+     */
+    @FunctionalInterface
+    public interface InlinedCallSizes {
+        /**
+         * Estimate the size of the code emitted for a call.
+         *
+         * @param functionIndex          the index of the called function
+         * @param callerInstructionCount the total amount of instructions in the calling function
+         * @return the estimated size in bytes, or -1 if the function is not inlined
+         */
+        int estimate(int functionIndex, int callerInstructionCount);
+    }
 }
@@ -0,0 +1,158 @@
+package net.janrupf.thunderwasm.assembler.analysis;
+
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.WasmInstruction;
+import net.janrupf.thunderwasm.instructions.control.BrTable;
+import net.janrupf.thunderwasm.instructions.control.Call;
+import net.janrupf.thunderwasm.instructions.variable.LocalGet;
+import net.janrupf.thunderwasm.instructions.variable.LocalSet;
+import net.janrupf.thunderwasm.instructions.variable.LocalTee;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Estimates the size of the JVM bytecode emitted for WASM instructions.
+ * <p>
+ * The estimates are derived from the code the default generators emit and err on the
+ * larger side. They only need to be precise enough to keep generated methods below the
+ * size limits of the JVM.
+ */
+final class BytecodeSizeEstimator {
+    /**
+     * The size of invoking a split block, excluding the transfer of locals.
+     */
+    static final int SPLIT_BLOCK_SIZE = 48;
+
+    /**
+     * The size of transferring a single local into and out of a split block.
+     */
+    static final int SPLIT_BLOCK_LOCAL_SIZE = 14;
+
+    /**
+     * The size of recording a call to a function when profile instrumentation is enabled.
+     */
+    static final int PROFILE_CALL_SIZE = 9;
+
+    // Size of saving and restoring the state of a function around a call when continuations are enabled
+    private static final int CONTINUATION_CALL_SIZE = 24;
+    private static final int CONTINUATION_CALL_LOCAL_SIZE = 4;
+
+    // Size of recording a branch or indirect call when profile instrumentation is enabled
+    private static final int PROFILE_SITE_SIZE = 12;
+
+    // Size of accessing a local stored on the heap instead of in a JVM local
+    private static final int HEAP_LOCAL_ACCESS_SIZE = 9;
+
+    private static final int DEFAULT_SIZE = 4;
+    private static final int[] SIZES = new int[256];
+
+    static {
+        for (int i = 0; i < SIZES.length; i++) {
+            SIZES[i] = DEFAULT_SIZE;
+        }
+
+        set(0x00, 0x00, 8);  // unreachable
+        set(0x01, 0x03, 0);  // nop, block, loop
+        set(0x04, 0x04, 4);  // if
+        set(0x05, 0x05, 3);  // else
+        set(0x0C, 0x0C, 3);  // br
+        set(0x0D, 0x0D, 7);  // br_if
+        set(0x0F, 0x0F, 2);  // return
+        set(0x10, 0x10, 6);  // call
+        set(0x11, 0x11, 54); // call_indirect
+        set(0x12, 0x12, 8);  // return_call
+        set(0x13, 0x13, 58); // return_call_indirect
+        set(0x1A, 0x1A, 1);  // drop
+        set(0x1B, 0x1C, 6);  // select
+        set(0x20, 0x21, 2);  // local.get, local.set
+        set(0x22, 0x22, 3);  // local.tee
+        set(0x23, 0x23, 5);  // global.get
+        set(0x24, 0x24, 6);  // global.set
+        set(0x25, 0x26, 12); // table.get, table.set
+        set(0x28, 0x2B, 9);  // full width loads
+        set(0x2C, 0x35, 12); // narrow loads
+        set(0x36, 0x3E, 14); // stores
+        set(0x3F, 0x40, 10); // memory.size, memory.grow
+        set(0x41, 0x41, 2);  // i32.const
+        set(0x42, 0x44, 3);  // i64.const, f32.const, f64.const
+        set(0x45, 0x66, 8);  // comparisons materializing a boolean
+        set(0x67, 0x8A, 1);  // integer arithmetic mapping to a single instruction
+        set(0x67, 0x69, 3);  // i32.clz, i32.ctz, i32.popcnt
+        set(0x6D, 0x70, 3);  // i32 division and remainder
+        set(0x77, 0x7B, 3);  // i32 rotations, i64.clz, i64.ctz, i64.popcnt
+        set(0x7F, 0x82, 3);  // i64 division and remainder
+        set(0x89, 0x8A, 3);  // i64 rotations
+        set(0x8B, 0xC4, 2);  // floating point arithmetic and conversions
+        set(0xD0, 0xD0, 2);  // ref.null
+        set(0xD1, 0xD2, 8);  // ref.is_null, ref.func
+        set(0xFC, 0xFC, 16); // saturating truncations, bulk memory and table operations
+    }
+
+    private BytecodeSizeEstimator() {
+        throw new AssertionError("Static utility class");
+    }
+
+    private static void set(int firstOpCode, int lastOpCode, int size) {
+        for (int i = firstOpCode; i <= lastOpCode; i++) {
+            SIZES[i] = size;
+        }
+    }
+
+    /**
+     * Estimate the size of the bytecode emitted for the instructions of an expression.
+     * <p>
+     * Nested expressions of blocks are not included.
+     *
+     * @param expr             the expression to estimate
+     * @param localCount       the amount of locals which need to be saved across calls, or -1 if
+     *                         calls don't save locals
+     * @param heapLocals       whether the locals are stored on the heap
+     * @param instrumented     whether the code records a profile
+     * @param inlinedCallSizes the size of the code emitted in place of a call to a function
+     *                         with the given index, or -1 if the function is not inlined
+     * @return the estimated size in bytes
+     */
+    static int estimate(
+            Expr expr,
+            int localCount,
+            boolean heapLocals,
+            boolean instrumented,
+            IntUnaryOperator inlinedCallSizes
+    ) {
+        int size = 0;
+
+        for (int i = 0, count = expr.getInstructionCount(); i < count; i++) {
+            WasmInstruction<?> instruction = expr.getInstructionType(i);
+            int opCode = instruction.getOpCode() & 0xFF;
+
+            size += SIZES[opCode];
+
+            if (instrumented && (opCode == 0x04 || opCode == 0x0D || opCode == 0x11 || opCode == 0x13)) {
+                size += PROFILE_SITE_SIZE;
+            }
+
+            if (instruction instanceof LocalGet || instruction instanceof LocalSet || instruction instanceof LocalTee) {
+                if (heapLocals) {
+                    size += HEAP_LOCAL_ACCESS_SIZE - SIZES[opCode];
+                } else if (expr.getPackedData(i) < 3) {
+                    // The first locals are accessed using the short forms of the instructions
+                    size--;
+                }
+            } else if (instruction instanceof Call && localCount < 0) {
+                // Functions are only inlined without continuations
+                int inlinedSize = inlinedCallSizes.applyAsInt(((Call.Data) expr.getInstructionData(i)).getFunctionIndex());
+                if (inlinedSize >= 0) {
+                    // The body of the function replaces the call, recording the call if instrumented
+                    size += inlinedSize - SIZES[opCode] + (instrumented ? PROFILE_CALL_SIZE : 0);
+                }
+            } else if (instruction instanceof BrTable) {
+                // Table switch with one entry per label
+                size += 20 + 4 * (int) Math.min(((BrTable.Data) expr.getInstructionData(i)).getBranchLabels().length(), 1 << 20);
+            } else if (localCount >= 0 && opCode >= 0x10 && opCode <= 0x11) {
+                size += CONTINUATION_CALL_SIZE + CONTINUATION_CALL_LOCAL_SIZE * localCount;
+            }
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,221 @@
+package net.janrupf.thunderwasm.assembler.analysis;
+
+import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.WasmInstruction;
+import net.janrupf.thunderwasm.instructions.control.*;
+import net.janrupf.thunderwasm.instructions.variable.LocalGet;
+import net.janrupf.thunderwasm.instructions.variable.LocalSet;
+import net.janrupf.thunderwasm.instructions.variable.LocalTee;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.encoding.LargeIntArray;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Liveness analysis of the local variables of a function.
+ * <p>
+ * Where {@link LocalVariableUsage} only records which locals a block touches, this
+ * analysis follows the control flow of the function to determine which locals may
+ * still be read at every point. Two locals interfere if one of them is written while
+ * the other one is still live. Locals which don't interfere can share a single JVM
+ * local slot.
+ * <p>
+ * All locals of a function start out zeroed, which is the same value for all locals
+ * sharing a slot, so reading a local before writing to it does not require special
+ * treatment beyond the local being live from the start of the function.
+ */
+public final class LocalVariableLiveness {
+    /**
+     * The maximum amount of locals to analyze, the interference graph grows quadratically.
+     */
+    public static final int MAX_LOCALS = 4096;
+
+    private final BitSet[] interference;
+
+    private LocalVariableLiveness(int localCount) {
+        this.interference = new BitSet[localCount];
+        for (int i = 0; i < localCount; i++) {
+            this.interference[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Analyze the body of a function.
+     *
+     * @param body       the body of the function
+     * @param localCount the amount of locals of the function, including its arguments
+     * @return the liveness of the locals, or null, if the function has more than {@link #MAX_LOCALS} locals
+     */
+    public static LocalVariableLiveness analyze(Expr body, int localCount) {
+        if (localCount > MAX_LOCALS) {
+            return null;
+        }
+
+        LocalVariableLiveness liveness = new LocalVariableLiveness(localCount);
+
+        // Branching to the label of the function returns, after which no local is live
+        List<BitSet> labels = new ArrayList<>();
+        labels.add(new BitSet());
+
+        liveness.liveBefore(body, new BitSet(), labels);
+        return liveness;
+    }
+
+    /**
+     * Determine whether two locals interfere, which means they can not share a slot.
+     *
+     * @param a the id of the first local
+     * @param b the id of the second local
+     * @return true if the locals interfere, false otherwise
+     */
+    public boolean interferes(int a, int b) {
+        return interference[a].get(b);
+    }
+
+    /**
+     * Assign slots to locals such that locals sharing a slot never interfere.
+     * <p>
+     * Only locals of the same type share a slot. Arguments are never considered, as
+     * their slots are fixed by the method signature.
+     *
+     * @param firstLocal the id of the first local which is not an argument
+     * @param types      the java types of the locals starting at {@code firstLocal}
+     * @return the slot index of every local, slots are numbered starting at 0
+     */
+    public int[] assignSlots(int firstLocal, List<JavaType> types) {
+        int[] slots = new int[types.size()];
+        List<BitSet> slotMembers = new ArrayList<>();
+        List<JavaType> slotTypes = new ArrayList<>();
+
+        for (int i = 0; i < slots.length; i++) {
+            int id = firstLocal + i;
+            JavaType type = types.get(i);
+
+            int slot = 0;
+            while (slot < slotMembers.size() &&
+                    (!slotTypes.get(slot).equals(type) || interference[id].intersects(slotMembers.get(slot)))) {
+                slot++;
+            }
+
+            if (slot == slotMembers.size()) {
+                slotMembers.add(new BitSet());
+                slotTypes.add(type);
+            }
+
+            slotMembers.get(slot).set(id);
+            slots[i] = slot;
+        }
+
+        return slots;
+    }
+
+    /**
+     * Compute the locals live before an expression.
+     *
+     * @param expr      the expression to analyze
+     * @param liveAfter the locals live after the expression
+     * @param labels    the locals live at the targets of all labels, the innermost label is last
+     * @return the locals live before the expression
+     */
+    private BitSet liveBefore(Expr expr, BitSet liveAfter, List<BitSet> labels) {
+        BitSet live = (BitSet) liveAfter.clone();
+
+        for (int i = expr.getInstructionCount() - 1; i >= 0; i--) {
+            WasmInstruction<?> instruction = expr.getInstructionType(i);
+
+            if (instruction instanceof LocalGet) {
+                live.set((int) expr.getPackedData(i));
+            } else if (instruction instanceof LocalSet || instruction instanceof LocalTee) {
+                int id = (int) expr.getPackedData(i);
+                define(id, live);
+                live.clear(id);
+            } else if (instruction instanceof Block) {
+                BlockData data = (BlockData) expr.getInstructionData(i);
+                live = liveInBlock(data.getPrimaryExpression(), live, live, labels);
+            } else if (instruction instanceof Loop) {
+                live = liveInLoop(((BlockData) expr.getInstructionData(i)).getPrimaryExpression(), live, labels);
+            } else if (instruction instanceof If) {
+                BlockData data = (BlockData) expr.getInstructionData(i);
+
+                BitSet liveInPrimary = liveInBlock(data.getPrimaryExpression(), live, live, labels);
+                if (data.getSecondaryExpression() != null) {
+                    liveInPrimary.or(liveInBlock(data.getSecondaryExpression(), live, live, labels));
+                } else {
+                    liveInPrimary.or(live);
+                }
+
+                live = liveInPrimary;
+            } else if (instruction instanceof Br) {
+                live = (BitSet) label(labels, (int) expr.getPackedData(i)).clone();
+            } else if (instruction instanceof BrIf) {
+                live.or(label(labels, (int) expr.getPackedData(i)));
+            } else if (instruction instanceof BrTable) {
+                BrTable.Data data = (BrTable.Data) expr.getInstructionData(i);
+                LargeIntArray branchLabels = data.getBranchLabels();
+
+                live = (BitSet) label(labels, data.getDefaultLabel()).clone();
+                for (LargeArrayIndex j = LargeArrayIndex.ZERO; j.toU64() < branchLabels.length(); j = j.add(1)) {
+                    live.or(label(labels, branchLabels.get(j)));
+                }
+            } else if (instruction instanceof Return ||
+                    instruction instanceof ReturnCall ||
+                    instruction instanceof ReturnCallIndirect ||
+                    instruction instanceof Unreachable) {
+                live.clear();
+            }
+        }
+
+        return live;
+    }
+
+    private BitSet liveInBlock(Expr body, BitSet liveAfter, BitSet liveAtLabel, List<BitSet> labels) {
+        labels.add(liveAtLabel);
+        try {
+            return liveBefore(body, liveAfter, labels);
+        } finally {
+            labels.remove(labels.size() - 1);
+        }
+    }
+
+    private BitSet liveInLoop(Expr body, BitSet liveAfter, List<BitSet> labels) {
+        // Branches to a loop continue at its start, iterate until the locals live there are stable
+        BitSet liveAtStart = new BitSet();
+        while (true) {
+            BitSet liveIn = liveInBlock(body, liveAfter, liveAtStart, labels);
+            if (liveIn.equals(liveAtStart)) {
+                return liveIn;
+            }
+
+            liveAtStart = liveIn;
+        }
+    }
+
+    /**
+     * Record a write to a local, it interferes with all other locals live after the write.
+     */
+    private void define(int id, BitSet liveAfter) {
+        if (id >= interference.length) {
+            // Invalid, reported when the function is emitted
+            return;
+        }
+
+        for (int other = liveAfter.nextSetBit(0); other >= 0; other = liveAfter.nextSetBit(other + 1)) {
+            if (other != id && other < interference.length) {
+                interference[id].set(other);
+                interference[other].set(id);
+            }
+        }
+    }
+
+    private static BitSet label(List<BitSet> labels, int depth) {
+        if (depth < 0 || depth >= labels.size()) {
+            // Invalid, reported when the function is emitted
+            return new BitSet();
+        }
+
+        return labels.get(labels.size() - 1 - depth);
+    }
+}
@@ -0,0 +1,441 @@
+package net.janrupf.thunderwasm.assembler.cache;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.data.ResourceSink;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.WasmModule;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of the classes generated for modules.
+ * <p>
+ * Every entry is stored in its own file in the cache directory, named after its
+ * {@link WasmClassCacheKey}. Besides the classes, an entry holds the resources the
+ * generators have emitted, such as data segments, which are replayed on a hit. Entries are written to a temporary file first and then
+ * moved into place, so concurrent processes sharing the directory never observe partially
+ * written entries. Once the entries exceed the maximum size, the least recently used
+ * entries are removed.
+ */
+public final class WasmClassCache {
+    private static final int MAGIC = 0x54574343; // "TWCC"
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_SUFFIX = ".classes";
+
+    private final Path directory;
+    private final long maxSize;
+
+    /**
+     * Create a new cache.
+     *
+     * @param directory the directory to store the entries in, created if it does not exist
+     * @param maxSize   the maximum size of all entries in bytes
+     */
+    public WasmClassCache(Path directory, long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size must not be negative");
+        }
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Load and assemble a module, unless its classes are cached already.
+     * <p>
+     * On a cache hit neither the module is parsed nor any code is generated. The generators
+     * must not emit resources, as these would be missing on a cache hit. Use
+     * {@link #assemble(byte[], InstructionRegistry, ClassFileEmitterFactory, String, String, Function, WasmAssemblerConfiguration, ResourceSink)}
+     * for generators emitting resources.
+     *
+     * @param moduleBytes         the binary encoding of the module
+     * @param instructionRegistry the instructions to use when parsing the module
+     * @param emitterFactory      the factory to create class file emitters with
+     * @param packageName         the package to generate the classes in
+     * @param className           the name of the module class
+     * @param generators          the generators to use
+     * @param configuration       the configuration to use
+     * @return the classes of the module, keyed by their fully qualified name, module class first
+     * @throws IOException          if the cache can not be accessed
+     * @throws ThunderWasmException if the module can not be loaded or assembled
+     */
+    public Map<String, byte[]> assemble(
+            byte[] moduleBytes,
+            InstructionRegistry instructionRegistry,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration
+    ) throws IOException, ThunderWasmException {
+        WasmClassCacheKey key = WasmClassCacheKey.of(
+                moduleBytes,
+                emitterFactory,
+                packageName,
+                className,
+                generators,
+                configuration
+        );
+
+        return assemble(
+                key,
+                moduleBytes,
+                instructionRegistry,
+                emitterFactory,
+                packageName,
+                className,
+                generators,
+                configuration,
+                null
+        );
+    }
+
+    /**
+     * Load and assemble a module emitting resources, unless its classes are cached already.
+     * <p>
+     * The generators are created for a sink, which the cache captures the resources with.
+     * The resources are stored alongside the classes and passed to the resource sink both
+     * when the module is assembled and on a cache hit. Generators may be created more than
+     * once and have to be identical for every sink.
+     *
+     * @param moduleBytes         the binary encoding of the module
+     * @param instructionRegistry the instructions to use when parsing the module
+     * @param emitterFactory      the factory to create class file emitters with
+     * @param packageName         the package to generate the classes in
+     * @param className           the name of the module class
+     * @param generators          creates the generators to use for a sink receiving the resources
+     * @param configuration       the configuration to use
+     * @param resourceSink        the sink receiving the resources of the module
+     * @return the classes of the module, keyed by their fully qualified name, module class first
+     * @throws IOException          if the cache can not be accessed
+     * @throws ThunderWasmException if the module can not be loaded or assembled
+     */
+    public Map<String, byte[]> assemble(
+            byte[] moduleBytes,
+            InstructionRegistry instructionRegistry,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            Function<ResourceSink, WasmGenerators> generators,
+            WasmAssemblerConfiguration configuration,
+            ResourceSink resourceSink
+    ) throws IOException, ThunderWasmException {
+        WasmClassCacheKey key = WasmClassCacheKey.of(
+                moduleBytes,
+                emitterFactory,
+                packageName,
+                className,
+                generators.apply(resourceSink),
+                configuration,
+                true
+        );
+
+        Map<String, byte[]> resources = new LinkedHashMap<>();
+        return assemble(
+                key,
+                moduleBytes,
+                instructionRegistry,
+                emitterFactory,
+                packageName,
+                className,
+                generators.apply(resources::put),
+                configuration,
+                new CapturedResources(resources, resourceSink)
+        );
+    }
+
+    private Map<String, byte[]> assemble(
+            WasmClassCacheKey key,
+            byte[] moduleBytes,
+            InstructionRegistry instructionRegistry,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration,
+            CapturedResources resources
+    ) throws IOException, ThunderWasmException {
+        if (configuration.lazyCompilationEnabled()) {
+            throw new IllegalArgumentException("Lazily compiled modules can not be cached");
+        }
+
+        Map<String, byte[]> classes = load(key, resources != null ? resources.target : null);
+        if (classes != null) {
+            return classes;
+        }
+
+        WasmLoader loader = new WasmLoader(ByteBuffer.wrap(moduleBytes), instructionRegistry);
+        loader.setParallelFunctionDecoding(configuration.parallelCompilationEnabled());
+
+        WasmModule module = loader.load();
+        classes = new WasmAssembler(
+                module,
+                emitterFactory,
+                packageName,
+                className,
+                generators,
+                configuration
+        ).assembleToClasses();
+
+        if (resources == null) {
+            store(key, classes);
+            return classes;
+        }
+
+        store(key, classes, resources.captured);
+        for (Map.Entry<String, byte[]> resource : resources.captured.entrySet()) {
+            resources.target.addResource(resource.getKey(), resource.getValue());
+        }
+
+        return classes;
+    }
+
+    /**
+     * Load the classes of an entry.
+     *
+     * @param key the key of the entry
+     * @return the classes of the entry, or null, if the entry does not exist
+     * @throws IOException if the cache can not be accessed
+     */
+    public Map<String, byte[]> load(WasmClassCacheKey key) throws IOException {
+        return load(key, null);
+    }
+
+    /**
+     * Load the classes and resources of an entry.
+     * <p>
+     * The resources are only passed to the sink if the entry exists.
+     *
+     * @param key          the key of the entry
+     * @param resourceSink the sink receiving the resources of the entry, or null, to discard them
+     * @return the classes of the entry, or null, if the entry does not exist
+     * @throws IOException if the cache can not be accessed
+     */
+    public Map<String, byte[]> load(WasmClassCacheKey key, ResourceSink resourceSink) throws IOException {
+        Path entry = entryPath(key);
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        Map<String, byte[]> resources = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            readEntry(in, classes, resources);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException | InvalidCacheEntryException e) {
+            // Damaged entry, regenerate it
+            Files.deleteIfExists(entry);
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException ignored) {
+            // Evicted concurrently, the loaded classes are still valid
+        }
+
+        if (resourceSink != null) {
+            for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+                resourceSink.addResource(resource.getKey(), resource.getValue());
+            }
+        }
+
+        return classes;
+    }
+
+    /**
+     * Store the classes of an entry, replacing the entry if it exists.
+     *
+     * @param key     the key of the entry
+     * @param classes the classes to store, keyed by their fully qualified name
+     * @throws IOException if the cache can not be accessed
+     */
+    public void store(WasmClassCacheKey key, Map<String, byte[]> classes) throws IOException {
+        store(key, classes, Collections.emptyMap());
+    }
+
+    /**
+     * Store the classes and resources of an entry, replacing the entry if it exists.
+     *
+     * @param key       the key of the entry
+     * @param classes   the classes to store, keyed by their fully qualified name
+     * @param resources the resources to store, keyed by their name
+     * @throws IOException if the cache can not be accessed
+     */
+    public void store(
+            WasmClassCacheKey key,
+            Map<String, byte[]> classes,
+            Map<String, byte[]> resources
+    ) throws IOException {
+        Files.createDirectories(directory);
+
+        Path temporary = Files.createTempFile(directory, key.getHash(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                writeEntry(out, classes, resources);
+            }
+
+            Path entry = entryPath(key);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        evict(entryPath(key));
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits into its maximum size.
+     *
+     * @param keep an entry which should not be removed
+     * @throws IOException if the cache directory can not be listed
+     */
+    private void evict(Path keep) throws IOException {
+        List<CachedEntry> entries = new ArrayList<>();
+        long totalSize = 0;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Path file = it.next();
+                if (!file.getFileName().toString().endsWith(ENTRY_SUFFIX)) {
+                    continue;
+                }
+
+                try {
+                    CachedEntry entry = new CachedEntry(file, Files.size(file), Files.getLastModifiedTime(file));
+                    entries.add(entry);
+                    totalSize += entry.size;
+                } catch (NoSuchFileException ignored) {
+                    // Removed concurrently
+                }
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing((CachedEntry entry) -> entry.lastUsed));
+        for (CachedEntry entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+
+            if (entry.path.equals(keep)) {
+                continue;
+            }
+
+            Files.deleteIfExists(entry.path);
+            totalSize -= entry.size;
+        }
+    }
+
+    private Path entryPath(WasmClassCacheKey key) {
+        return directory.resolve(key.getHash() + ENTRY_SUFFIX);
+    }
+
+    private static void writeEntry(
+            DataOutputStream out,
+            Map<String, byte[]> classes,
+            Map<String, byte[]> resources
+    ) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+
+        writeBlobs(out, classes);
+        writeBlobs(out, resources);
+    }
+
+    private static void writeBlobs(DataOutputStream out, Map<String, byte[]> blobs) throws IOException {
+        out.writeInt(blobs.size());
+
+        for (Map.Entry<String, byte[]> entry : blobs.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+    }
+
+    private static void readEntry(
+            DataInputStream in,
+            Map<String, byte[]> classes,
+            Map<String, byte[]> resources
+    ) throws IOException, InvalidCacheEntryException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new InvalidCacheEntryException();
+        }
+
+        readBlobs(in, classes);
+        if (classes.isEmpty()) {
+            throw new InvalidCacheEntryException();
+        }
+
+        readBlobs(in, resources);
+
+        if (in.read() != -1) {
+            throw new InvalidCacheEntryException();
+        }
+    }
+
+    private static void readBlobs(DataInputStream in, Map<String, byte[]> blobs)
+            throws IOException, InvalidCacheEntryException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new InvalidCacheEntryException();
+        }
+
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+
+            int length = in.readInt();
+            if (length < 0) {
+                throw new InvalidCacheEntryException();
+            }
+
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            blobs.put(name, bytes);
+        }
+    }
+
+    private static final class CapturedResources {
+        private final Map<String, byte[]> captured;
+        private final ResourceSink target;
+
+        private CapturedResources(Map<String, byte[]> captured, ResourceSink target) {
+            this.captured = captured;
+            this.target = target;
+        }
+    }
+
+    private static final class CachedEntry {
+        private final Path path;
+        private final long size;
+        private final FileTime lastUsed;
+
+        private CachedEntry(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static final class InvalidCacheEntryException extends Exception {
+        private InvalidCacheEntryException() {
+            super(null, null, false, false);
+        }
+    }
+}
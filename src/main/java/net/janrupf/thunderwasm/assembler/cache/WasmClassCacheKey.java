@@ -0,0 +1,248 @@
+package net.janrupf.thunderwasm.assembler.cache;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the classes generated for a module in a {@link WasmClassCache}.
+ * <p>
+ * The key is a hash over everything that influences the generated code: the module
+ * itself, the names of the generated classes, the assembler configuration, the
+ * emitter factory, the generators and the version of this library. Without a version,
+ * for example when running from a build directory, the code of the library is hashed instead.
+ * <p>
+ * Generators are identified by their class and its bytecode. Generators which generate
+ * different code depending on how they have been constructed can't be told apart and
+ * should not share a cache directory. The emitter factory is identified by its class, its
+ * bytecode and its {@link Object#toString()}, which has to describe the settings of the factory.
+ */
+public final class WasmClassCacheKey {
+    private static final String LIBRARY_VERSION = determineLibraryVersion();
+
+    private final String hash;
+
+    private WasmClassCacheKey(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Compute the key for a module.
+     *
+     * @param moduleBytes    the binary encoding of the module
+     * @param emitterFactory the factory used for emitting the classes
+     * @param packageName    the package the classes are generated in
+     * @param className      the name of the module class
+     * @param generators     the generators used for generating the classes
+     * @param configuration  the configuration used for generating the classes
+     * @return the computed key
+     */
+    public static WasmClassCacheKey of(
+            byte[] moduleBytes,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration
+    ) {
+        return of(moduleBytes, emitterFactory, packageName, className, generators, configuration, false);
+    }
+
+    /**
+     * Compute the key for a module.
+     * <p>
+     * Generators emitting resources generate different code than the same generators
+     * embedding the data, so both are told apart by the key.
+     *
+     * @param moduleBytes    the binary encoding of the module
+     * @param emitterFactory the factory used for emitting the classes
+     * @param packageName    the package the classes are generated in
+     * @param className      the name of the module class
+     * @param generators     the generators used for generating the classes
+     * @param configuration  the configuration used for generating the classes
+     * @param emitsResources whether the generators emit resources to a sink
+     * @return the computed key
+     */
+    public static WasmClassCacheKey of(
+            byte[] moduleBytes,
+            ClassFileEmitterFactory emitterFactory,
+            String packageName,
+            String className,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration,
+            boolean emitsResources
+    ) {
+        MessageDigest digest = createDigest();
+        digest.update((byte) (emitsResources ? 1 : 0));
+
+        digest.update(moduleBytes);
+        updateString(digest, packageName);
+        updateString(digest, className);
+        updateString(digest, configuration.toString());
+        updateString(digest, LIBRARY_VERSION);
+
+        updateClass(digest, emitterFactory.getClass());
+        updateString(digest, emitterFactory.toString());
+
+        updateClass(digest, generators.getFunctionGenerator().getClass());
+        updateClass(digest, generators.getGlobalGenerator().getClass());
+        updateClass(digest, generators.getImportGenerator().getClass());
+        updateClass(digest, generators.getMemoryGenerator().getClass());
+        updateClass(digest, generators.getTableGenerator().getClass());
+        updateClass(digest, generators.getExportGenerator().getClass());
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hash.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return new WasmClassCacheKey(hash.toString());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported by every java platform", e);
+        }
+    }
+
+    private static void updateString(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        // Prefix with the length, so that concatenated strings can't collide
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateClass(MessageDigest digest, Class<?> type) {
+        updateString(digest, type.getName());
+
+        // Include the bytecode, generators may change without the library version changing
+        String resourceName = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream stream = type.getResourceAsStream(resourceName)) {
+            if (stream == null) {
+                return;
+            }
+
+            updateStream(digest, stream);
+        } catch (IOException ignored) {
+            // Fall back to only the name of the class
+        }
+    }
+
+    private static void updateStream(MessageDigest digest, InputStream stream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private static String determineLibraryVersion() {
+        Package libraryPackage = WasmAssembler.class.getPackage();
+        String version = libraryPackage != null ? libraryPackage.getImplementationVersion() : null;
+
+        return version != null ? version : hashLibraryCode();
+    }
+
+    /**
+     * Hash the code of this library, used if it has no version.
+     * <p>
+     * This is either the jar the library is loaded from, or all of its classes
+     * if it is loaded from a directory.
+     *
+     * @return the hash of the library code, or "unknown", if the code can not be located
+     */
+    private static String hashLibraryCode() {
+        CodeSource codeSource = WasmAssembler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return "unknown";
+        }
+
+        MessageDigest digest = createDigest();
+
+        try {
+            Path location = Paths.get(codeSource.getLocation().toURI());
+            if (Files.isRegularFile(location)) {
+                try (InputStream stream = Files.newInputStream(location)) {
+                    updateStream(digest, stream);
+                }
+            } else if (Files.isDirectory(location)) {
+                Path libraryDirectory = location.resolve("net/janrupf/thunderwasm");
+
+                List<Path> classFiles;
+                try (Stream<Path> files = Files.walk(libraryDirectory)) {
+                    classFiles = files
+                            .filter((file) -> file.toString().endsWith(".class"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+
+                for (Path classFile : classFiles) {
+                    updateString(digest, libraryDirectory.relativize(classFile).toString());
+                    try (InputStream stream = Files.newInputStream(classFile)) {
+                        updateStream(digest, stream);
+                    }
+                }
+            } else {
+                return "unknown";
+            }
+        } catch (URISyntaxException | IOException | IllegalArgumentException | SecurityException e) {
+            return "unknown";
+        }
+
+        StringBuilder hash = new StringBuilder("code-");
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hash.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return hash.toString();
+    }
+
+    /**
+     * Retrieve the hash this key consists of.
+     *
+     * @return the hash as a hex string
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WasmClassCacheKey)) return false;
+        return hash.equals(((WasmClassCacheKey) o).hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return hash;
+    }
+}
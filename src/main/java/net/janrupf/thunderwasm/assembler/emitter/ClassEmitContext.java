@@ -10,6 +10,7 @@ public final class ClassEmitContext {
     private final WasmGenerators generators;
     private final WasmAssemblerConfiguration configuration;
     private final MetadataStorage metadataStorage;
+    private final boolean lazyFunction;
 
     public ClassEmitContext(
             ElementLookups lookups,
@@ -17,12 +18,24 @@ public final class ClassEmitContext {
             WasmGenerators generators,
             WasmAssemblerConfiguration configuration,
             MetadataStorage metadataStorage
+    ) {
+        this(lookups, emitter, generators, configuration, metadataStorage, false);
+    }
+
+    public ClassEmitContext(
+            ElementLookups lookups,
+            ClassFileEmitter emitter,
+            WasmGenerators generators,
+            WasmAssemblerConfiguration configuration,
+            MetadataStorage metadataStorage,
+            boolean lazyFunction
     ) {
         this.lookups = lookups;
         this.emitter = emitter;
         this.generators = generators;
         this.configuration = configuration;
         this.metadataStorage = metadataStorage;
+        this.lazyFunction = lazyFunction;
     }
 
     /**
@@ -69,4 +82,16 @@ public final class ClassEmitContext {
     public MetadataStorage getMetadataStorage() {
         return metadataStorage;
     }
+
+    /**
+     * Determines whether this context emits the body of a lazily compiled function.
+     * <p>
+     * The configuration still has lazy compilation enabled in this case, but the
+     * function has to be emitted instead of the stub the module class contains.
+     *
+     * @return true if a lazily compiled function is emitted, false otherwise
+     */
+    public boolean isLazyFunction() {
+        return lazyFunction;
+    }
 }
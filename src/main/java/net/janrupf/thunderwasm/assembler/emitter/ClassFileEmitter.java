@@ -25,6 +25,39 @@ public interface ClassFileEmitter {
      */
     ObjectType getOwner();
 
+    /**
+     * Retrieve the type of the class members are actually added to.
+     * <p>
+     * This is the same as {@link #getOwner()}, except for companion classes created using
+     * {@link #companion}. Code referencing members declared by this emitter, like methods
+     * added to it, needs to use this type instead of the owner.
+     *
+     * @return the type of the class members are added to
+     */
+    ObjectType getDeclaringType();
+
+    /**
+     * Create a companion class of this class.
+     * <p>
+     * Companion classes hold static members on behalf of this class, which allows distributing
+     * the members of a huge class over multiple class files. Code emitted into a companion
+     * class reports this class as its owner, so members of this class can be accessed as usual.
+     * For this to be possible, members of classes with companions are emitted with at least
+     * package private visibility. The companion class needs to be finished separately.
+     *
+     * @param className the name of the companion class, in the same package as this class
+     * @return the emitter for the companion class
+     */
+    ClassFileEmitter companion(String className);
+
+    /**
+     * Emit the members of this class with at least package private visibility.
+     * <p>
+     * This is implied when creating a companion using {@link #companion}, but is required
+     * explicitly if companion classes are emitted later by another emitter with the same owner.
+     */
+    void allowCompanionAccess();
+
     /**
      * Add a field to the class file.
      *
@@ -78,6 +111,27 @@ public interface ClassFileEmitter {
      */
     CodeEmitter unboundCode(JavaFrameSnapshot initialState, JavaType returnType);
 
+    /**
+     * Create a fork of this emitter.
+     * <p>
+     * Members added to the fork are buffered and only become part of the class once the
+     * fork is joined using {@link #join}. Different forks may be used concurrently from
+     * different threads, which allows generating members in parallel while keeping the
+     * order of the members in the class deterministic.
+     * <p>
+     * {@link #finish} must not be called on a fork.
+     *
+     * @return the forked emitter
+     */
+    ClassFileEmitter fork();
+
+    /**
+     * Join a fork created by {@link #fork}, appending all members added to it to this class.
+     *
+     * @param fork the fork to join
+     */
+    void join(ClassFileEmitter fork);
+
     /**
      * Finalizes the class file and returns the bytecode.
      *
@@ -29,6 +29,8 @@ public final class CodeEmitContext {
     private final ContinuationContext continuationContext;
 
     private int blockNameCounter;
+    private int functionIndex;
+    private int instructionOffset;
 
     public CodeEmitContext(
             String blockNamePrefix,
@@ -83,6 +85,8 @@ public final class CodeEmitContext {
         this.configuration = configuration;
         this.localGadgets = new LocalGadgets();
         this.continuationContext = new ContinuationContext();
+        this.functionIndex = -1;
+        this.instructionOffset = -1;
     }
 
     /**
@@ -270,4 +274,44 @@ public final class CodeEmitContext {
     public ContinuationContext getContinuationContext() {
         return continuationContext;
     }
+
+    /**
+     * Set the function the emitted code belongs to.
+     * <p>
+     * For inlined function bodies this is the inlined function and not the caller.
+     *
+     * @param functionIndex the index of the function in the code section
+     */
+    public void setFunctionIndex(int functionIndex) {
+        this.functionIndex = functionIndex;
+    }
+
+    /**
+     * Retrieves the function the emitted code belongs to.
+     *
+     * @return the index of the function in the code section, or -1 if unknown
+     */
+    public int getFunctionIndex() {
+        return functionIndex;
+    }
+
+    /**
+     * Set the offset of the instruction currently being emitted.
+     *
+     * @param instructionOffset the offset of the instruction in the function body, or -1 if unknown
+     */
+    public void setInstructionOffset(int instructionOffset) {
+        this.instructionOffset = instructionOffset;
+    }
+
+    /**
+     * Retrieves the offset of the instruction currently being emitted.
+     * <p>
+     * Only valid until nested expressions of the instruction are emitted.
+     *
+     * @return the offset of the instruction in the function body, or -1 if unknown
+     */
+    public int getInstructionOffset() {
+        return instructionOffset;
+    }
 }
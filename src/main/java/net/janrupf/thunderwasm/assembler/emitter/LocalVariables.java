@@ -21,13 +21,49 @@ public final class LocalVariables {
     private final JavaLocal thisLocal;
     private final JavaLocal heapLocals;
     private final JavaLocal continuationLocal;
+    private final JavaLocal splitBlockFrame;
+    private final JavaLocal returnArea;
+    private final JavaLocal tailCallState;
     private final Map<Integer, JavaLocal> localsById;
     private final Map<Integer, HeapLocal> heapLocalsById;
 
     public LocalVariables(JavaLocal thisLocal, JavaLocal heapLocals, JavaLocal continuationLocal) {
+        this(thisLocal, heapLocals, continuationLocal, null);
+    }
+
+    public LocalVariables(
+            JavaLocal thisLocal,
+            JavaLocal heapLocals,
+            JavaLocal continuationLocal,
+            JavaLocal splitBlockFrame
+    ) {
+        this(thisLocal, heapLocals, continuationLocal, splitBlockFrame, null);
+    }
+
+    public LocalVariables(
+            JavaLocal thisLocal,
+            JavaLocal heapLocals,
+            JavaLocal continuationLocal,
+            JavaLocal splitBlockFrame,
+            JavaLocal returnArea
+    ) {
+        this(thisLocal, heapLocals, continuationLocal, splitBlockFrame, returnArea, null);
+    }
+
+    public LocalVariables(
+            JavaLocal thisLocal,
+            JavaLocal heapLocals,
+            JavaLocal continuationLocal,
+            JavaLocal splitBlockFrame,
+            JavaLocal returnArea,
+            JavaLocal tailCallState
+    ) {
         this.thisLocal = thisLocal;
         this.heapLocals = heapLocals;
         this.continuationLocal = continuationLocal;
+        this.splitBlockFrame = splitBlockFrame;
+        this.returnArea = returnArea;
+        this.tailCallState = tailCallState;
 
         this.localsById = new HashMap<>();
         this.heapLocalsById = new HashMap<>();
@@ -99,6 +135,45 @@ public final class LocalVariables {
         return continuationLocal;
     }
 
+    /**
+     * Retrieve the local holding the frame shared with split blocks.
+     * <p>
+     * Split blocks exchange values with their caller through this multi value instead
+     * of allocating new objects for every invocation. The local may hold null until
+     * the first split block is invoked.
+     *
+     * @return the local holding the split block frame, or null, if the function has no split blocks
+     */
+    public JavaLocal getSplitBlockFrame() {
+        return splitBlockFrame;
+    }
+
+    /**
+     * Retrieve the local holding the multi value functions return multiple values in.
+     * <p>
+     * The multi value is owned by the current invocation. It is passed to every called
+     * function returning multiple values, which return their values in it, and is used
+     * to return the values of the current function if it returns multiple values. The
+     * local may hold null until a function allocates the multi value.
+     *
+     * @return the local holding the return area, or null, if the code has no return area
+     */
+    public JavaLocal getReturnArea() {
+        return returnArea;
+    }
+
+    /**
+     * Retrieve the local holding the state of the trampoline the code is running in.
+     * <p>
+     * Tail calls store their target and arguments in the state and return, the trampoline
+     * of the function then performs them.
+     *
+     * @return the local holding the tail call state, or null, if tail calls can't be left pending
+     */
+    public JavaLocal getTailCallState() {
+        return tailCallState;
+    }
+
     /**
      * Retrieve the locals by id mapping.
      *
@@ -1,13 +1,19 @@
 package net.janrupf.thunderwasm.assembler.emitter.data;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Storage for metadata attached to an emit context.
+ * <p>
+ * The storage is thread safe, so it can be shared by functions being compiled in parallel.
+ */
 public final class MetadataStorage {
     private final Map<MetadataKey<?>, Object> stored;
 
     public MetadataStorage() {
-        this.stored = new HashMap<>();
+        this.stored = Collections.synchronizedMap(new HashMap<>());
     }
 
     /**
@@ -30,6 +36,23 @@ public final class MetadataStorage {
         put(key, null);
     }
 
+    /**
+     * Atomically add a tag to the storage if it is not present yet.
+     *
+     * @param key the key to add as a tag
+     * @return true if the tag has been added, false if it was present already
+     */
+    public boolean tryAddTag(MetadataKey<Void> key) {
+        synchronized (stored) {
+            if (stored.containsKey(key)) {
+                return false;
+            }
+
+            stored.put(key, null);
+            return true;
+        }
+    }
+
     /**
      * Store metadata associated with the given key.
      *
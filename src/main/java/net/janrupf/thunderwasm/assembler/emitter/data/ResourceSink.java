@@ -0,0 +1,19 @@
+package net.janrupf.thunderwasm.assembler.emitter.data;
+
+/**
+ * Receives resources which the generated classes load at runtime instead of
+ * embedding them into their bytecode.
+ */
+@FunctionalInterface
+public interface ResourceSink {
+    /**
+     * Add a resource.
+     * <p>
+     * The resource has to be made available on the class path of the generated classes
+     * under the given name.
+     *
+     * @param name the name of the resource, relative to the class path root
+     * @param data the content of the resource
+     */
+    void addResource(String name, byte[] data);
+}
@@ -8,6 +8,29 @@ import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
 import java.util.List;
 
 public class ObjectWebASMClassFileEmitterFactory implements ClassFileEmitterFactory {
+    private final boolean optimizeMethods;
+
+    /**
+     * Create a new factory which emits the generated code as is.
+     */
+    public ObjectWebASMClassFileEmitterFactory() {
+        this(false);
+    }
+
+    /**
+     * Create a new factory.
+     * <p>
+     * When enabled, a peephole optimizer runs over every method before the class is written.
+     * It removes redundant stack operations, temporary locals and jumps the generators leave
+     * behind, which makes the classes smaller and leaves the JIT less work to do. This costs
+     * some additional time while assembling.
+     *
+     * @param optimizeMethods whether to optimize the generated methods
+     */
+    public ObjectWebASMClassFileEmitterFactory(boolean optimizeMethods) {
+        this.optimizeMethods = optimizeMethods;
+    }
+
     @Override
     public ClassFileEmitter createFor(
             String packageName,
@@ -15,6 +38,13 @@ public class ObjectWebASMClassFileEmitterFactory implements ClassFileEmitterFact
             ObjectType superType,
             List<ObjectType> interfaces
     ) {
-        return new ASMClassFileEmitter(packageName, className, superType, interfaces);
+        return new ASMClassFileEmitter(packageName, className, superType, interfaces, optimizeMethods);
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectWebASMClassFileEmitterFactory{" +
+                "optimizeMethods=" + optimizeMethods +
+                '}';
     }
 }
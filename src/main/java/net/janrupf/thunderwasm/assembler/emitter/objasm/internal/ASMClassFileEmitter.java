@@ -14,8 +14,10 @@ import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -23,15 +25,43 @@ import java.util.List;
 public final class ASMClassFileEmitter implements ClassFileEmitter {
     private final ClassNode classNode;
     private final ObjectType owner;
+    private final ObjectType declaringType;
+    private final boolean isCompanion;
+    private final List<ASMClassFileEmitter> companions;
+    private final boolean optimizeMethods;
+    private boolean companionAccess;
 
     public ASMClassFileEmitter(
             String packageName,
             String className,
             ObjectType superType,
             List<ObjectType> interfaces
+    ) {
+        this(packageName, className, superType, interfaces, false);
+    }
+
+    /**
+     * Create a new class file emitter.
+     *
+     * @param packageName     the package of the class
+     * @param className       the name of the class
+     * @param superType       the super type of the class
+     * @param interfaces      the interfaces implemented by the class
+     * @param optimizeMethods whether to run the peephole optimizer over all methods when finishing the class
+     */
+    public ASMClassFileEmitter(
+            String packageName,
+            String className,
+            ObjectType superType,
+            List<ObjectType> interfaces,
+            boolean optimizeMethods
     ) {
         classNode = new ClassNode(Opcodes.ASM9);
         owner = new ObjectType(packageName, className);
+        declaringType = owner;
+        isCompanion = false;
+        companions = new ArrayList<>();
+        this.optimizeMethods = optimizeMethods;
 
         // Generate a Java 8 class
         classNode.visit(
@@ -44,11 +74,65 @@ public final class ASMClassFileEmitter implements ClassFileEmitter {
         );
     }
 
+    private ASMClassFileEmitter(
+            ObjectType owner,
+            ObjectType declaringType,
+            boolean isCompanion,
+            boolean optimizeMethods
+    ) {
+        this.classNode = new ClassNode(Opcodes.ASM9);
+        this.owner = owner;
+        this.declaringType = declaringType;
+        this.isCompanion = isCompanion;
+        this.companions = new ArrayList<>();
+        this.optimizeMethods = optimizeMethods;
+    }
+
     @Override
     public ObjectType getOwner() {
         return owner;
     }
 
+    @Override
+    public ObjectType getDeclaringType() {
+        return declaringType;
+    }
+
+    @Override
+    public ClassFileEmitter companion(String className) {
+        if (isCompanion) {
+            throw new IllegalStateException("Companion classes can not have companions themselves");
+        }
+
+        ASMClassFileEmitter companion = new ASMClassFileEmitter(
+                owner,
+                new ObjectType(owner.getPackageName(), className),
+                true,
+                optimizeMethods
+        );
+
+        companion.classNode.visit(
+                Opcodes.V1_8,
+                Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                ASMConverter.convertType(companion.declaringType).getInternalName(),
+                null,
+                ASMConverter.convertType(ObjectType.OBJECT).getInternalName(),
+                null
+        );
+
+        companions.add(companion);
+        return companion;
+    }
+
+    @Override
+    public void allowCompanionAccess() {
+        if (isCompanion) {
+            throw new IllegalStateException("Companion classes can not have companions themselves");
+        }
+
+        companionAccess = true;
+    }
+
     @Override
     public void field(
             String fieldName,
@@ -112,13 +196,54 @@ public final class ASMClassFileEmitter implements ClassFileEmitter {
         );
     }
 
+    @Override
+    public ClassFileEmitter fork() {
+        return new ASMClassFileEmitter(owner, declaringType, isCompanion, optimizeMethods);
+    }
+
+    @Override
+    public void join(ClassFileEmitter fork) {
+        if (!(fork instanceof ASMClassFileEmitter) ||
+                !((ASMClassFileEmitter) fork).declaringType.equals(declaringType)) {
+            throw new IllegalArgumentException("Can only join forks of this emitter");
+        }
+
+        ClassNode forkNode = ((ASMClassFileEmitter) fork).classNode;
+        classNode.fields.addAll(forkNode.fields);
+        classNode.methods.addAll(forkNode.methods);
+    }
+
     @Override
     public byte[] finish() {
         classNode.visitEnd();
 
+        if (isCompanion || companionAccess || !companions.isEmpty()) {
+            relaxPrivateMembers();
+        }
+
+        if (optimizeMethods) {
+            for (MethodNode method : classNode.methods) {
+                ASMPeepholeOptimizer.optimize(method);
+            }
+        }
+
         ClassWriter writer = new ClassWriter(0);
         classNode.accept(writer);
 
         return writer.toByteArray();
     }
+
+    /**
+     * Turn all private members into package private ones, so that the members
+     * can be accessed from companion classes and vice versa.
+     */
+    private void relaxPrivateMembers() {
+        for (FieldNode field : classNode.fields) {
+            field.access &= ~Opcodes.ACC_PRIVATE;
+        }
+
+        for (MethodNode method : classNode.methods) {
+            method.access &= ~Opcodes.ACC_PRIVATE;
+        }
+    }
 }
@@ -0,0 +1,668 @@
+package net.janrupf.thunderwasm.assembler.emitter.objasm.internal;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+
+/**
+ * Rewrites short instruction sequences of generated methods into cheaper equivalents.
+ * <p>
+ * The generators favor simple, composable code over compact code. This pass removes
+ * the most common redundancies afterward:
+ * <ul>
+ *     <li>values which are pushed and immediately popped again</li>
+ *     <li>{@code SWAP}s after pushing two side effect free values</li>
+ *     <li>chains of constant additions</li>
+ *     <li>conditional jumps over a {@code GOTO}, and booleans which are materialized only to be branched on</li>
+ *     <li>locals which are only stored to, or loaded once right after being stored</li>
+ * </ul>
+ * All rewrites keep the state of the stack and of all live locals unchanged at every label,
+ * so the existing stack map frames stay valid. Frames are only adjusted to mark removed locals
+ * as unused.
+ */
+final class ASMPeepholeOptimizer {
+    private static final int MAX_PASSES = 8;
+
+    private ASMPeepholeOptimizer() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Optimize a method in place.
+     *
+     * @param method the method to optimize
+     */
+    static void optimize(MethodNode method) {
+        if (method.instructions.size() == 0) {
+            return;
+        }
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean changed = removeRedundantPairs(method.instructions);
+            changed |= reorderSwaps(method.instructions);
+            changed |= foldConstantAdditions(method.instructions);
+            changed |= simplifyConditionalJumps(method);
+            changed |= removeDeadLocals(method);
+
+            if (!changed) {
+                break;
+            }
+        }
+
+        removeDuplicateFrames(method.instructions);
+    }
+
+    /**
+     * Remove pushes which are immediately popped and operations which cancel each other out.
+     */
+    private static boolean removeRedundantPairs(InsnList instructions) {
+        boolean changed = false;
+
+        AbstractInsnNode node = instructions.getFirst();
+        while (node != null) {
+            AbstractInsnNode next = node.getNext();
+            if (next == null) {
+                break;
+            }
+
+            int opcode = node.getOpcode();
+            int nextOpcode = next.getOpcode();
+
+            boolean redundant = (opcode == Opcodes.DUP && nextOpcode == Opcodes.POP) ||
+                    (opcode == Opcodes.DUP2 && nextOpcode == Opcodes.POP2) ||
+                    (opcode == Opcodes.SWAP && nextOpcode == Opcodes.SWAP) ||
+                    (nextOpcode == Opcodes.POP && isSimplePush(node)) ||
+                    (nextOpcode == Opcodes.POP2 && isSimpleWidePush(node));
+
+            if (redundant) {
+                AbstractInsnNode following = next.getNext();
+                instructions.remove(node);
+                instructions.remove(next);
+
+                node = following;
+                changed = true;
+            } else {
+                node = next;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Replace {@code X Y SWAP} by {@code Y X} if pushing X and Y has no side effects
+     * which could depend on their order.
+     */
+    private static boolean reorderSwaps(InsnList instructions) {
+        boolean changed = false;
+
+        for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node.getOpcode() != Opcodes.SWAP) {
+                continue;
+            }
+
+            AbstractInsnNode secondEnd = node.getPrevious();
+            AbstractInsnNode secondStart = findSingleValueStart(secondEnd);
+            if (secondStart == null) {
+                continue;
+            }
+
+            AbstractInsnNode first = secondStart.getPrevious();
+            if (!isSimplePush(first)) {
+                continue;
+            }
+
+            AbstractInsnNode swap = node;
+            node = first.getPrevious() != null ? first.getPrevious() : instructions.getFirst();
+
+            instructions.remove(first);
+            instructions.insert(secondEnd, first);
+            instructions.remove(swap);
+
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Find the start of an instruction sequence pushing a single category 1 value without
+     * side effects on locals.
+     *
+     * @param end the last instruction of the sequence
+     * @return the first instruction of the sequence, or null, if there is no such sequence
+     */
+    private static AbstractInsnNode findSingleValueStart(AbstractInsnNode end) {
+        if (isSimplePush(end)) {
+            return end;
+        }
+
+        if (end instanceof FieldInsnNode && Type.getType(((FieldInsnNode) end).desc).getSize() == 1) {
+            if (end.getOpcode() == Opcodes.GETSTATIC) {
+                return end;
+            }
+
+            AbstractInsnNode receiver = end.getPrevious();
+            if (end.getOpcode() == Opcodes.GETFIELD && receiver != null && receiver.getOpcode() == Opcodes.ALOAD) {
+                return receiver;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Fold {@code c1 IADD c2 IADD} into a single addition and remove additions of zero.
+     */
+    private static boolean foldConstantAdditions(InsnList instructions) {
+        boolean changed = false;
+
+        AbstractInsnNode node = instructions.getFirst();
+        while (node != null) {
+            Integer delta = constantAddition(node);
+            if (delta == null) {
+                node = node.getNext();
+                continue;
+            }
+
+            AbstractInsnNode operation = node.getNext();
+            AbstractInsnNode nextConstant = operation.getNext();
+            Integer nextDelta = constantAddition(nextConstant);
+
+            if (nextDelta != null) {
+                AbstractInsnNode nextOperation = nextConstant.getNext();
+                instructions.remove(nextConstant);
+                instructions.remove(nextOperation);
+
+                AbstractInsnNode combined = pushInt(delta + nextDelta);
+                instructions.set(node, combined);
+                if (operation.getOpcode() != Opcodes.IADD) {
+                    instructions.set(operation, new InsnNode(Opcodes.IADD));
+                }
+
+                // Revisit the combined pair, it may be folded further or be an addition of zero
+                node = combined;
+                changed = true;
+                continue;
+            }
+
+            if (delta == 0) {
+                AbstractInsnNode following = operation.getNext();
+                instructions.remove(node);
+                instructions.remove(operation);
+
+                node = following;
+                changed = true;
+                continue;
+            }
+
+            node = operation;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Determine the value added to the top of the stack by a constant followed by
+     * {@code IADD} or {@code ISUB}.
+     *
+     * @param node the constant
+     * @return the added value, or null, if the node does not start such a pair
+     */
+    private static Integer constantAddition(AbstractInsnNode node) {
+        if (node == null) {
+            return null;
+        }
+
+        Integer value = intConstant(node);
+        AbstractInsnNode operation = node.getNext();
+        if (value == null || operation == null) {
+            return null;
+        }
+
+        if (operation.getOpcode() == Opcodes.IADD) {
+            return value;
+        } else if (operation.getOpcode() == Opcodes.ISUB) {
+            return -value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Simplify conditional jumps around unconditional jumps and branches on materialized
+     * booleans.
+     */
+    private static boolean simplifyConditionalJumps(MethodNode method) {
+        InsnList instructions = method.instructions;
+        Map<LabelNode, Integer> references = countLabelReferences(method);
+        boolean changed = false;
+
+        for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (!(node instanceof JumpInsnNode) || negateCondition(node.getOpcode()) < 0) {
+                continue;
+            }
+
+            JumpInsnNode jump = (JumpInsnNode) node;
+            AbstractInsnNode next = jump.getNext();
+
+            // IF La; GOTO Lb; La: => IF_NOT Lb; La:
+            if (next != null && next.getOpcode() == Opcodes.GOTO && next.getNext() == jump.label) {
+                LabelNode target = ((JumpInsnNode) next).label;
+
+                decrementReference(references, jump.label);
+                jump.setOpcode(negateCondition(jump.getOpcode()));
+                jump.label = target;
+
+                instructions.remove(next);
+                changed = true;
+                continue;
+            }
+
+            // IF L1; ICONST a; GOTO L2; L1: ICONST b; L2: IFEQ/IFNE L3 => IF(_NOT) L3
+            if (simplifyMaterializedBoolean(instructions, jump, references)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean simplifyMaterializedBoolean(
+            InsnList instructions,
+            JumpInsnNode jump,
+            Map<LabelNode, Integer> references
+    ) {
+        AbstractInsnNode fallthroughValue = jump.getNext();
+        AbstractInsnNode skip = fallthroughValue != null ? fallthroughValue.getNext() : null;
+        if (!isBooleanConstant(fallthroughValue) || skip == null || skip.getOpcode() != Opcodes.GOTO) {
+            return false;
+        }
+
+        LabelNode jumpLabel = jump.label;
+        LabelNode skipLabel = ((JumpInsnNode) skip).label;
+        if (skip.getNext() != jumpLabel || references.getOrDefault(jumpLabel, 0) != 1 ||
+                references.getOrDefault(skipLabel, 0) != 1) {
+            return false;
+        }
+
+        AbstractInsnNode jumpValue = skipFrame(jumpLabel.getNext());
+        if (!isBooleanConstant(jumpValue) || jumpValue.getNext() != skipLabel) {
+            return false;
+        }
+
+        int fallthroughBoolean = intConstant(fallthroughValue);
+        int jumpBoolean = intConstant(jumpValue);
+        if (fallthroughBoolean == jumpBoolean) {
+            return false;
+        }
+
+        AbstractInsnNode test = skipFrame(skipLabel.getNext());
+        if (test == null || (test.getOpcode() != Opcodes.IFEQ && test.getOpcode() != Opcodes.IFNE)) {
+            return false;
+        }
+
+        // The test jumps if the materialized boolean is true for IFNE, or false for IFEQ
+        boolean testJumpsOnTrue = test.getOpcode() == Opcodes.IFNE;
+        boolean jumpYieldsTrue = jumpBoolean == 1;
+        if (testJumpsOnTrue != jumpYieldsTrue) {
+            jump.setOpcode(negateCondition(jump.getOpcode()));
+        }
+
+        jump.label = ((JumpInsnNode) test).label;
+
+        AbstractInsnNode end = test.getNext();
+        for (AbstractInsnNode node = jump.getNext(); node != end; ) {
+            AbstractInsnNode following = node.getNext();
+            instructions.remove(node);
+            node = following;
+        }
+
+        references.remove(jumpLabel);
+        references.remove(skipLabel);
+        return true;
+    }
+
+    /**
+     * Remove locals which are never read, and stores which are immediately followed by
+     * the only load of the local.
+     */
+    private static boolean removeDeadLocals(MethodNode method) {
+        InsnList instructions = method.instructions;
+
+        for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof FrameNode && ((FrameNode) node).type != Opcodes.F_FULL) {
+                // Only full frames can be adjusted reliably
+                return false;
+            }
+        }
+
+        int firstLocal = Type.getArgumentsAndReturnSizes(method.desc) >> 2;
+        if ((method.access & Opcodes.ACC_STATIC) != 0) {
+            firstLocal--;
+        }
+
+        int[] loads = new int[method.maxLocals];
+        boolean[] incremented = new boolean[method.maxLocals];
+        boolean[] stored = new boolean[method.maxLocals];
+
+        for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof VarInsnNode) {
+                int slot = ((VarInsnNode) node).var;
+                if (isLoad(node.getOpcode())) {
+                    loads[slot]++;
+                } else if (isStore(node.getOpcode())) {
+                    stored[slot] = true;
+                } else {
+                    // RET, treat as used
+                    incremented[slot] = true;
+                }
+            } else if (node instanceof IincInsnNode) {
+                incremented[((IincInsnNode) node).var] = true;
+            }
+        }
+
+        boolean changed = false;
+
+        // STORE n; LOAD n where this is the only load of n
+        AbstractInsnNode node = instructions.getFirst();
+        while (node != null) {
+            AbstractInsnNode next = node.getNext();
+            if (next instanceof VarInsnNode && node instanceof VarInsnNode && isStore(node.getOpcode())) {
+                int slot = ((VarInsnNode) node).var;
+                if (slot >= firstLocal && !incremented[slot] && loads[slot] == 1 &&
+                        ((VarInsnNode) next).var == slot && next.getOpcode() == loadFor(node.getOpcode())) {
+                    AbstractInsnNode following = next.getNext();
+                    instructions.remove(node);
+                    instructions.remove(next);
+                    loads[slot] = 0;
+
+                    node = following;
+                    changed = true;
+                    continue;
+                }
+            }
+
+            node = next;
+        }
+
+        // Stores to locals which are never read only need to discard the value
+        Set<Integer> deadSlots = new HashSet<>();
+        for (int slot = firstLocal; slot < loads.length; slot++) {
+            if (stored[slot] && loads[slot] == 0 && !incremented[slot]) {
+                deadSlots.add(slot);
+            }
+        }
+
+        if (deadSlots.isEmpty()) {
+            return changed;
+        }
+
+        for (node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof VarInsnNode && isStore(node.getOpcode()) && deadSlots.contains(((VarInsnNode) node).var)) {
+                int opcode = node.getOpcode();
+                InsnNode pop = new InsnNode(opcode == Opcodes.LSTORE || opcode == Opcodes.DSTORE ? Opcodes.POP2 : Opcodes.POP);
+
+                instructions.set(node, pop);
+                node = pop;
+            } else if (node instanceof FrameNode) {
+                clearFrameLocals((FrameNode) node, deadSlots);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Mark the given local slots as unused in a full frame.
+     */
+    private static void clearFrameLocals(FrameNode frame, Set<Integer> slots) {
+        if (frame.local == null) {
+            return;
+        }
+
+        // Expand the frame so that every slot has its own entry, wide types are followed by null
+        List<Object> expanded = new ArrayList<>();
+        for (Object type : frame.local) {
+            expanded.add(type);
+            if (type == Opcodes.LONG || type == Opcodes.DOUBLE) {
+                expanded.add(null);
+            }
+        }
+
+        for (int slot : slots) {
+            if (slot >= expanded.size()) {
+                continue;
+            }
+
+            Object type = expanded.get(slot);
+            expanded.set(slot, Opcodes.TOP);
+            if ((type == Opcodes.LONG || type == Opcodes.DOUBLE) && slot + 1 < expanded.size()) {
+                expanded.set(slot + 1, Opcodes.TOP);
+            }
+        }
+
+        // Wide types imply the following slot, so their second half must not be emitted
+        List<Object> result = new ArrayList<>();
+        for (int i = 0; i < expanded.size(); i++) {
+            Object type = expanded.get(i);
+            result.add(type == null ? Opcodes.TOP : type);
+            if (type == Opcodes.LONG || type == Opcodes.DOUBLE) {
+                i++;
+            }
+        }
+
+        frame.local = result;
+    }
+
+    /**
+     * Remove frames which are directly followed by another frame.
+     * <p>
+     * The later frame is kept, as it has to be satisfied by the earlier one anyway.
+     */
+    private static void removeDuplicateFrames(InsnList instructions) {
+        FrameNode lastFrame = null;
+
+        for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof FrameNode) {
+                if (lastFrame != null) {
+                    instructions.remove(lastFrame);
+                }
+
+                lastFrame = (FrameNode) node;
+            } else if (node.getOpcode() >= 0) {
+                lastFrame = null;
+            }
+        }
+    }
+
+    private static Map<LabelNode, Integer> countLabelReferences(MethodNode method) {
+        Map<LabelNode, Integer> references = new HashMap<>();
+
+        for (AbstractInsnNode node = method.instructions.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof JumpInsnNode) {
+                incrementReference(references, ((JumpInsnNode) node).label);
+            } else if (node instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) node;
+                incrementReference(references, tableSwitch.dflt);
+                tableSwitch.labels.forEach((label) -> incrementReference(references, label));
+            } else if (node instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) node;
+                incrementReference(references, lookupSwitch.dflt);
+                lookupSwitch.labels.forEach((label) -> incrementReference(references, label));
+            }
+        }
+
+        if (method.tryCatchBlocks != null) {
+            for (TryCatchBlockNode block : method.tryCatchBlocks) {
+                incrementReference(references, block.start);
+                incrementReference(references, block.end);
+                incrementReference(references, block.handler);
+            }
+        }
+
+        if (method.localVariables != null) {
+            for (LocalVariableNode variable : method.localVariables) {
+                incrementReference(references, variable.start);
+                incrementReference(references, variable.end);
+            }
+        }
+
+        return references;
+    }
+
+    private static void incrementReference(Map<LabelNode, Integer> references, LabelNode label) {
+        references.merge(label, 1, Integer::sum);
+    }
+
+    private static void decrementReference(Map<LabelNode, Integer> references, LabelNode label) {
+        references.computeIfPresent(label, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static AbstractInsnNode skipFrame(AbstractInsnNode node) {
+        return node instanceof FrameNode ? node.getNext() : node;
+    }
+
+    private static boolean isBooleanConstant(AbstractInsnNode node) {
+        return node != null && (node.getOpcode() == Opcodes.ICONST_0 || node.getOpcode() == Opcodes.ICONST_1);
+    }
+
+    /**
+     * Determine whether an instruction pushes a single category 1 value without any side effects.
+     */
+    private static boolean isSimplePush(AbstractInsnNode node) {
+        if (node == null) {
+            return false;
+        }
+
+        switch (node.getOpcode()) {
+            case Opcodes.ILOAD:
+            case Opcodes.FLOAD:
+            case Opcodes.ALOAD:
+            case Opcodes.ACONST_NULL:
+            case Opcodes.FCONST_0:
+            case Opcodes.FCONST_1:
+            case Opcodes.FCONST_2:
+                return true;
+
+            case Opcodes.LDC: {
+                Object value = ((LdcInsnNode) node).cst;
+                return value instanceof Integer || value instanceof Float || value instanceof String;
+            }
+
+            default:
+                return intConstant(node) != null;
+        }
+    }
+
+    /**
+     * Determine whether an instruction pushes a single category 2 value without any side effects.
+     */
+    private static boolean isSimpleWidePush(AbstractInsnNode node) {
+        switch (node.getOpcode()) {
+            case Opcodes.LLOAD:
+            case Opcodes.DLOAD:
+            case Opcodes.LCONST_0:
+            case Opcodes.LCONST_1:
+            case Opcodes.DCONST_0:
+            case Opcodes.DCONST_1:
+                return true;
+
+            case Opcodes.LDC: {
+                Object value = ((LdcInsnNode) node).cst;
+                return value instanceof Long || value instanceof Double;
+            }
+
+            default:
+                return false;
+        }
+    }
+
+    private static Integer intConstant(AbstractInsnNode node) {
+        if (node == null) {
+            return null;
+        }
+
+        int opcode = node.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+            return opcode - Opcodes.ICONST_0;
+        } else if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+            return ((IntInsnNode) node).operand;
+        } else if (opcode == Opcodes.LDC && ((LdcInsnNode) node).cst instanceof Integer) {
+            return (Integer) ((LdcInsnNode) node).cst;
+        }
+
+        return null;
+    }
+
+    private static AbstractInsnNode pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(Opcodes.SIPUSH, value);
+        }
+
+        return new LdcInsnNode(value);
+    }
+
+    private static boolean isLoad(int opcode) {
+        return opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+    }
+
+    private static boolean isStore(int opcode) {
+        return opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE;
+    }
+
+    private static int loadFor(int storeOpcode) {
+        return storeOpcode - Opcodes.ISTORE + Opcodes.ILOAD;
+    }
+
+    /**
+     * Determine the opcode of the jump with the opposite condition.
+     *
+     * @param opcode the opcode of a conditional jump
+     * @return the negated opcode, or -1, if the opcode is not a conditional jump
+     */
+    private static int negateCondition(int opcode) {
+        switch (opcode) {
+            case Opcodes.IFEQ:
+                return Opcodes.IFNE;
+            case Opcodes.IFNE:
+                return Opcodes.IFEQ;
+            case Opcodes.IFLT:
+                return Opcodes.IFGE;
+            case Opcodes.IFGE:
+                return Opcodes.IFLT;
+            case Opcodes.IFGT:
+                return Opcodes.IFLE;
+            case Opcodes.IFLE:
+                return Opcodes.IFGT;
+            case Opcodes.IF_ICMPEQ:
+                return Opcodes.IF_ICMPNE;
+            case Opcodes.IF_ICMPNE:
+                return Opcodes.IF_ICMPEQ;
+            case Opcodes.IF_ICMPLT:
+                return Opcodes.IF_ICMPGE;
+            case Opcodes.IF_ICMPGE:
+                return Opcodes.IF_ICMPLT;
+            case Opcodes.IF_ICMPGT:
+                return Opcodes.IF_ICMPLE;
+            case Opcodes.IF_ICMPLE:
+                return Opcodes.IF_ICMPGT;
+            case Opcodes.IF_ACMPEQ:
+                return Opcodes.IF_ACMPNE;
+            case Opcodes.IF_ACMPNE:
+                return Opcodes.IF_ACMPEQ;
+            case Opcodes.IFNULL:
+                return Opcodes.IFNONNULL;
+            case Opcodes.IFNONNULL:
+                return Opcodes.IFNULL;
+            default:
+                return -1;
+        }
+    }
+}
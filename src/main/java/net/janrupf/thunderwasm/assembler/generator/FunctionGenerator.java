@@ -3,11 +3,51 @@ package net.janrupf.thunderwasm.assembler.generator;
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.assembler.emitter.ClassEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
 import net.janrupf.thunderwasm.instructions.Function;
 import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
 import net.janrupf.thunderwasm.types.FunctionType;
 
 public interface FunctionGenerator {
+    /**
+     * Add the per-instance state shared by all functions to the generated class.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void addFunctionState(ClassEmitContext context) throws WasmAssemblerException;
+
+    /**
+     * Emit the code to initialize the per-instance state shared by all functions.
+     * <p>
+     * This is called in the constructor before any function can be invoked.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void emitFunctionStateConstructor(CodeEmitContext context) throws WasmAssemblerException;
+
+    /**
+     * Emit the code to initialize the static state shared by all functions.
+     * <p>
+     * This is called in the static initializer of the module class.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void emitStaticFunctionStateConstructor(CodeEmitContext context) throws WasmAssemblerException;
+
+    /**
+     * Place the function with the given index in a companion class instead of the module class.
+     * <p>
+     * This is called before any function is added. The function will later be added using
+     * a context which emits into the given class.
+     *
+     * @param i             the index of the function
+     * @param declaringType the class declaring the function
+     */
+    void placeFunction(LargeArrayIndex i, ObjectType declaringType);
+
     /**
      * Add a function to the generated class.
      *
@@ -18,6 +58,18 @@ public interface FunctionGenerator {
      */
     void addFunction(LargeArrayIndex i, Function function, ClassEmitContext context) throws WasmAssemblerException;
 
+    /**
+     * Add a stub for a function which can never be called to the generated class.
+     * <p>
+     * The stub has the same signature as the function, but does not need to be compiled.
+     * It throws when invoked.
+     *
+     * @param i       the index of the function
+     * @param context the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void addUnreachableFunction(LargeArrayIndex i, ClassEmitContext context) throws WasmAssemblerException;
+
 
     /**
      * Emit the code to invoke a module local function by its index.
@@ -41,6 +93,37 @@ public interface FunctionGenerator {
     void emitInvokeFunctionIndirect(FunctionType functionType, LargeArrayIndex tableIndex, CodeEmitContext context)
             throws WasmAssemblerException;
 
+    /**
+     * Emit the code to tail call a module local function by its index.
+     * <p>
+     * The emitted code returns from the calling function.
+     *
+     * @param functionIndex the index of the function to tail call (of only local functions)
+     * @param function      the function type
+     * @param context       the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void emitTailCallFunction(LargeArrayIndex functionIndex, FunctionType function, CodeEmitContext context)
+            throws WasmAssemblerException;
+
+    /**
+     * Emit the code to tail call a function indirectly via the function table.
+     * <p>
+     * The emitted code returns from the calling function.
+     *
+     * @param typeIndex    the index of the type of the function to tail call
+     * @param functionType the type of the function to tail call
+     * @param tableIndex   the index of the function table to use
+     * @param context      the context to use
+     * @throws WasmAssemblerException if an error occurs during assembly
+     */
+    void emitTailCallFunctionIndirect(
+            LargeArrayIndex typeIndex,
+            FunctionType functionType,
+            LargeArrayIndex tableIndex,
+            CodeEmitContext context
+    ) throws WasmAssemblerException;
+
     /**
      * Emit the code to load a function reference from the function table.
      *
@@ -1,27 +1,39 @@
 package net.janrupf.thunderwasm.assembler.generator.defaults;
 
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.assembler.WasmFrameState;
+import net.janrupf.thunderwasm.assembler.WasmLazyCompiler;
 import net.janrupf.thunderwasm.assembler.WasmPushedLabel;
 import net.janrupf.thunderwasm.assembler.WasmTypeConverter;
 import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.analysis.AnalysisResult;
+import net.janrupf.thunderwasm.assembler.analysis.LocalVariableLiveness;
 import net.janrupf.thunderwasm.assembler.continuation.ContinuationContext;
 import net.janrupf.thunderwasm.assembler.emitter.*;
 import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
 import net.janrupf.thunderwasm.assembler.emitter.types.*;
 import net.janrupf.thunderwasm.assembler.generator.FunctionGenerator;
+import net.janrupf.thunderwasm.assembler.optimize.ExpressionOptimizer;
 import net.janrupf.thunderwasm.assembler.part.TranslatedFunctionSignature;
+import net.janrupf.thunderwasm.assembler.profile.ProfileHelper;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
 import net.janrupf.thunderwasm.imports.TableImportDescription;
+import net.janrupf.thunderwasm.imports.TypeImportDescription;
+import net.janrupf.thunderwasm.instructions.Expr;
 import net.janrupf.thunderwasm.instructions.Function;
 import net.janrupf.thunderwasm.instructions.Local;
 import net.janrupf.thunderwasm.instructions.control.internal.ContinuationHelper;
 import net.janrupf.thunderwasm.instructions.control.internal.ControlHelper;
 import net.janrupf.thunderwasm.instructions.control.internal.MultiValueHelper;
+import net.janrupf.thunderwasm.instructions.control.internal.TailCallHelper;
 import net.janrupf.thunderwasm.lookup.ElementLookups;
 import net.janrupf.thunderwasm.lookup.FoundElement;
 import net.janrupf.thunderwasm.module.encoding.LargeArray;
 import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
+import net.janrupf.thunderwasm.module.section.CodeSection;
+import net.janrupf.thunderwasm.module.section.TypeSection;
 import net.janrupf.thunderwasm.runtime.WasmDynamicDispatch;
 import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
 import net.janrupf.thunderwasm.types.FunctionType;
@@ -34,7 +46,13 @@ import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DefaultFunctionGenerator implements FunctionGenerator {
     private static final ObjectType LINKED_FUNCTION_TYPE = ObjectType.of(LinkedFunction.class);
@@ -42,6 +60,133 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
     private static final ObjectType DYNAMIC_DISPATCH_HELPER_TYPE = ObjectType.of(WasmDynamicDispatch.class);
     private static final ObjectType METHOD_HANDLE_TYPE = ObjectType.of(MethodHandle.class);
     private static final ObjectType METHOD_HANDLES_HELPER_TYPE = ObjectType.of(MethodHandles.class);
+    private static final ObjectType LOOKUP_TYPE = ObjectType.of(MethodHandles.Lookup.class);
+    private static final ObjectType LAZY_COMPILER_TYPE = ObjectType.of(WasmLazyCompiler.class);
+    private static final ObjectType ILLEGAL_STATE_EXCEPTION_TYPE = ObjectType.of(IllegalStateException.class);
+
+    private static final int INLINE_INSTRUCTION_THRESHOLD = 32;
+    private static final int INLINE_LOCAL_THRESHOLD = 16;
+
+    // Functions the profile reports as hot are inlined up to these limits instead
+    private static final int HOT_INLINE_INSTRUCTION_THRESHOLD = 128;
+    private static final int HOT_INLINE_LOCAL_THRESHOLD = 32;
+
+    // Callers with more instructions than this only inline small functions, otherwise
+    // repeatedly inlining hot functions could exceed the maximum method size
+    private static final int HOT_INLINE_CALLER_THRESHOLD = 2048;
+
+    // Estimated size of storing an argument or initializing a local of an inlined function
+    private static final int INLINE_LOCAL_SIZE = 4;
+    private static final int DEVIRTUALIZE_TABLE_SIZE_THRESHOLD = 64;
+
+    // Functions needing more JVM locals than this store their locals on the heap instead
+    private static final int MAX_JAVA_LOCALS = 128;
+
+    // Keyed by the local function index, the generator is only used to assemble a single module
+    private final Map<LargeArrayIndex, InlineCandidate> inlineCandidates = Collections.synchronizedMap(new HashMap<>());
+    private final Visibility functionVisibility;
+    private final Map<LargeArrayIndex, ObjectType> functionDeclaringTypes = new ConcurrentHashMap<>();
+    private final Map<LargeArrayIndex, TailCallTargets> tailCallTargets = new ConcurrentHashMap<>();
+
+    public DefaultFunctionGenerator() {
+        this(Visibility.PRIVATE);
+    }
+
+    /**
+     * Create a function generator which emits the function methods with the given visibility.
+     * <p>
+     * Functions need to be at least package private if other classes should be able to
+     * invoke them directly.
+     *
+     * @param functionVisibility the visibility of the generated function methods
+     */
+    public DefaultFunctionGenerator(Visibility functionVisibility) {
+        this.functionVisibility = functionVisibility;
+    }
+
+    @Override
+    public void addFunctionState(ClassEmitContext context) throws WasmAssemblerException {
+        if (context.getConfiguration().profileInstrumentationEnabled()) {
+            context.getEmitter().field(
+                    ProfileHelper.RECORDER_FIELD_NAME,
+                    Visibility.PRIVATE,
+                    true,
+                    true,
+                    ProfileHelper.RECORDER_TYPE,
+                    null
+            );
+        }
+
+        if (context.getConfiguration().lazyCompilationEnabled()) {
+            // Every function is invoked through a call site which is linked on the first call
+            int functionCount = countLocalFunctions(context.getLookups());
+            for (int i = 0; i < functionCount; i++) {
+                context.getEmitter().field(
+                        determineLazyHandleName(LargeArrayIndex.fromU32(i)),
+                        Visibility.PRIVATE,
+                        true,
+                        true,
+                        METHOD_HANDLE_TYPE,
+                        null
+                );
+            }
+        }
+    }
+
+    @Override
+    public void emitFunctionStateConstructor(CodeEmitContext context) {
+        // No-op, multiple values are returned in return areas owned by the callers
+    }
+
+    @Override
+    public void emitStaticFunctionStateConstructor(CodeEmitContext context) throws WasmAssemblerException {
+        if (context.getConfiguration().profileInstrumentationEnabled()) {
+            ProfileHelper.emitCreateRecorder(context, countLocalFunctions(context.getLookups()));
+        }
+
+        if (!context.getConfiguration().lazyCompilationEnabled()) {
+            return;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+
+        int functionCount = countLocalFunctions(context.getLookups());
+        for (int i = 0; i < functionCount; i++) {
+            LargeArrayIndex functionIndex = LargeArrayIndex.fromU32(i);
+
+            emitter.invoke(
+                    METHOD_HANDLES_HELPER_TYPE,
+                    "lookup",
+                    new JavaType[0],
+                    LOOKUP_TYPE,
+                    InvokeType.STATIC,
+                    false
+            );
+            emitter.loadConstant(i);
+            emitter.loadConstant(determineMethodName(functionIndex));
+            emitter.loadConstant(determineBodyMethodName(functionIndex));
+            emitter.invoke(
+                    LAZY_COMPILER_TYPE,
+                    "link",
+                    new JavaType[]{LOOKUP_TYPE, PrimitiveType.INT, ObjectType.of(String.class), ObjectType.of(String.class)},
+                    METHOD_HANDLE_TYPE,
+                    InvokeType.STATIC,
+                    false
+            );
+            emitter.accessField(
+                    emitter.getOwner(),
+                    determineLazyHandleName(functionIndex),
+                    METHOD_HANDLE_TYPE,
+                    true,
+                    true
+            );
+        }
+    }
+
+    @Override
+    public void placeFunction(LargeArrayIndex i, ObjectType declaringType) {
+        functionDeclaringTypes.put(i, declaringType);
+    }
 
     @Override
     public void addFunction(LargeArrayIndex i, Function function, ClassEmitContext context) throws WasmAssemblerException {
@@ -49,27 +194,89 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         FunctionType functionType = determineFunctionType(i, context.getLookups());
         ClassFileEmitter classEmitter = context.getEmitter();
 
-        // Run code analysis
-        AnalysisContext analysisContext = AnalysisContext.createForFunction(function.getExpr());
-        analysisContext.run();
+        if (context.getConfiguration().lazyCompilationEnabled() && !context.isLazyFunction()) {
+            addLazyFunctionStub(i, functionType, context);
+            return;
+        }
 
-        AnalysisResult analysisResult = AnalysisResult.compileFromContext(analysisContext);
+        Expr expr = function.getExpr();
+        if (context.getConfiguration().expressionOptimizationEnabled()) {
+            Expr optimized = ExpressionOptimizer.optimize(expr);
+
+            if (optimized != expr) {
+                // The optimizer drops unreachable code without validating it, so emit the
+                // original body into a fork which is discarded to validate it first
+                ClassEmitContext validationContext = new ClassEmitContext(
+                        context.getLookups(),
+                        classEmitter.fork(),
+                        context.getGenerators(),
+                        context.getConfiguration(),
+                        context.getMetadataStorage(),
+                        context.isLazyFunction()
+                );
+                addFunctionBody(i, function, expr, functionType, validationContext);
+
+                expr = optimized;
+            }
+        }
+
+        addFunctionBody(i, function, expr, functionType, context);
+    }
+
+    /**
+     * Emit the methods of a function.
+     *
+     * @param i            the local index of the function
+     * @param function     the function to emit
+     * @param expr         the body of the function to emit
+     * @param functionType the type of the function
+     * @param context      the context to use
+     * @throws WasmAssemblerException if the function is invalid or could not be emitted
+     */
+    private void addFunctionBody(
+            LargeArrayIndex i,
+            Function function,
+            Expr expr,
+            FunctionType functionType,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassFileEmitter classEmitter = context.getEmitter();
+
+        Map<Integer, BranchHint> branchHints = context.getConfiguration().branchHintsEnabled()
+                ? context.getLookups().findBranchHints(i)
+                : Collections.emptyMap();
+
+        WasmProfile profile = context.getConfiguration().profile();
+        if (profile != null) {
+            // Observed branch ratios take precedence over the hints of the module
+            Map<Integer, BranchHint> profileHints = profile.getBranchHints((int) i.toU64());
+            if (!profileHints.isEmpty()) {
+                branchHints = new HashMap<>(branchHints);
+                branchHints.putAll(profileHints);
+            }
+        }
 
         TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
                 functionType,
                 classEmitter.getOwner(),
-                context.getConfiguration().continuationsEnabled()
+                context.getConfiguration().continuationsEnabled(),
+                true
         );
         LargeArray<Local> locals = function.getLocals();
 
-        String methodName = determineMethodName(i);
+        // Functions performing tail calls through the trampoline are emitted as a body which
+        // leaves the tail calls pending and a method running the trampoline around it
+        TailCallTargets tailCalls = findTailCallTargets(i, function, context.getLookups(), context.getConfiguration());
+        boolean trampolined = tailCalls.isTrampolined();
+
+        String methodName = trampolined ? determineBodyMethodName(i) : determineMethodName(i);
         MethodEmitter methodEmitter = classEmitter.method(
                 methodName,
-                Visibility.PRIVATE,
+                functionVisibility,
                 true,
                 false,
                 signature.getJavaReturnType(),
-                signature.getJavaArgumentTypes(),
+                trampolined ? determineBodyArgumentTypes(signature) : signature.getJavaArgumentTypes(),
                 Collections.emptyList()
         );
 
@@ -85,7 +292,38 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
             expandedLocalCount += local.getCount();
         }
 
-        boolean useHeapLocals = expandedLocalCount + signature.getJavaArgumentTypes().size() > 128;
+        boolean useHeapLocals = expandedLocalCount + signature.getJavaArgumentTypes().size() > MAX_JAVA_LOCALS;
+
+        // Locals which are never live at the same time can share a slot, which keeps most
+        // functions with many locals in JVM locals
+        int[] sharedLocalSlots = null;
+        if (useHeapLocals) {
+            sharedLocalSlots = assignSharedLocalSlots(expr, functionType, locals, expandedLocalCount);
+
+            if (sharedLocalSlots != null) {
+                int sharedSlotCount = 0;
+                for (int slot : sharedLocalSlots) {
+                    sharedSlotCount = Math.max(sharedSlotCount, slot + 1);
+                }
+
+                useHeapLocals = sharedSlotCount + signature.getJavaArgumentTypes().size() > MAX_JAVA_LOCALS;
+                if (useHeapLocals) {
+                    sharedLocalSlots = null;
+                }
+            }
+        }
+
+        // Run code analysis, accessing heap locals and inlining functions grows the code to split
+        AnalysisContext analysisContext = AnalysisContext.createForFunction(expr, branchHints);
+        analysisContext.run();
+
+        AnalysisResult analysisResult = AnalysisResult.compileFromContext(
+                analysisContext,
+                context.getConfiguration(),
+                useHeapLocals,
+                inlinedCallSizes(context.getLookups(), context.getConfiguration())
+        );
+
         JavaLocal heapLocal = null;
         if (useHeapLocals) {
             heapLocal = codeEmitter.allocateLocal(MultiValueHelper.MULTI_VALUE_TYPE);
@@ -96,10 +334,44 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
             continuationLocal = methodEmitter.getArgumentLocals().get(signature.getContinuationArgumentIndex());
         }
 
-        LocalVariables localVariables = new LocalVariables(thisLocal, heapLocal, continuationLocal);
+        JavaLocal splitBlockFrame = null;
+        if (analysisResult.hasBlockSplits()) {
+            // Allocated lazily by the first split block invocation
+            splitBlockFrame = codeEmitter.allocateLocal(MultiValueHelper.MULTI_VALUE_TYPE);
+            codeEmitter.loadNull(MultiValueHelper.MULTI_VALUE_TYPE);
+            codeEmitter.storeLocal(splitBlockFrame);
+        }
+
+        JavaLocal returnArea = null;
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            returnArea = methodEmitter.getArgumentLocals().get(signature.getReturnAreaArgumentIndex());
+        } else if (analysisResult.usesCalls() && hasMultiValueFunctionTypes(context.getLookups())) {
+            // Allocated lazily by the first called function returning multiple values
+            returnArea = codeEmitter.allocateLocal(MultiValueHelper.MULTI_VALUE_TYPE);
+            codeEmitter.loadNull(MultiValueHelper.MULTI_VALUE_TYPE);
+            codeEmitter.storeLocal(returnArea);
+        }
+
+        JavaLocal tailCallState = null;
+        if (trampolined) {
+            // The body is invoked with the state of the trampoline as its last argument
+            List<JavaLocal> bodyArgumentLocals = methodEmitter.getArgumentLocals();
+            tailCallState = bodyArgumentLocals.get(bodyArgumentLocals.size() - 1);
+        }
+
+        LocalVariables localVariables = new LocalVariables(
+                thisLocal,
+                heapLocal,
+                continuationLocal,
+                splitBlockFrame,
+                returnArea,
+                tailCallState
+        );
 
         for (int argIndex = 0; argIndex < signature.getJavaArgumentTypes().size(); argIndex++) {
-            if (argIndex == signature.getOwnerArgumentIndex() || argIndex == signature.getContinuationArgumentIndex()) {
+            if (argIndex == signature.getOwnerArgumentIndex() ||
+                    argIndex == signature.getContinuationArgumentIndex() ||
+                    argIndex == signature.getReturnAreaArgumentIndex()) {
                 continue;
             }
 
@@ -113,6 +385,7 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         // Expand WASM locals
         List<ValueType> expandedLocals = new ArrayList<>();
         MultiValueHelper.IndexedBuilder heapLocalBuilder = useHeapLocals ? MultiValueHelper.indexedBuilder() : null;
+        Map<Integer, JavaLocal> sharedLocals = new HashMap<>();
 
         int localId = argumentLocals.size();
         for (Local local : locals.asFlatArray()) {
@@ -131,6 +404,28 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
 
                     localVariables.registerKnownHeapLocal(localId++, javaType, heapIndex);
                 }
+            } else if (sharedLocalSlots != null) {
+                for (int localIndex = 0; localIndex < local.getCount(); localIndex++) {
+                    int slot = sharedLocalSlots[expandedLocals.size()];
+                    expandedLocals.add(local.getType());
+
+                    JavaLocal javaLocal = sharedLocals.get(slot);
+                    if (javaLocal == null) {
+                        javaLocal = codeEmitter.allocateLocal(javaType);
+                        sharedLocals.put(slot, javaLocal);
+
+                        Object defaultValue = javaType.getDefaultValue();
+                        if (defaultValue == null) {
+                            codeEmitter.loadNull((ObjectType) javaType);
+                        } else {
+                            codeEmitter.loadConstant(defaultValue);
+                        }
+
+                        codeEmitter.storeLocal(javaLocal);
+                    }
+
+                    localVariables.registerKnownLocal(localId++, javaLocal);
+                }
             } else {
                 Object defaultValue = javaType.getDefaultValue();
                 if (defaultValue == null) {
@@ -181,11 +476,21 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
                 localVariables,
                 context.getConfiguration()
         );
+        codeEmitContext.setFunctionIndex((int) i.toU64());
+
+        if (isSelfTailCalled(i, analysisResult, context.getLookups())) {
+            // Self tail calls jump back to here instead of growing the stack
+            CodeLabel selfTailCallEntry = codeEmitter.newLabel();
+            codeEmitter.resolveLabel(selfTailCallEntry);
+            TailCallHelper.registerSelfTailCallEntry(codeEmitContext, i, selfTailCallEntry);
+        }
+
+        ProfileHelper.emitRecordCall(codeEmitContext);
 
         // TODO: This should probably happen before initializing locals with zero values
         ContinuationHelper.emitContinuationFunctionEntry(codeEmitContext);
 
-        ControlHelper.emitExpression(codeEmitContext, function.getExpr());
+        ControlHelper.emitExpression(codeEmitContext, expr);
 
         if (returnLabel.isReachable()) {
             // Only resolve if its reachable either way
@@ -198,6 +503,673 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         // Finish code generation
         codeEmitter.finish();
         methodEmitter.finish();
+
+        if (trampolined) {
+            addTailCallTrampoline(i, signature, context);
+            addTailCallAdapters(i, tailCalls, context);
+        }
+    }
+
+    /**
+     * Add the method which invokes the body of a function and performs the tail calls it leaves pending.
+     * <p>
+     * Tail called functions are invoked through their body as well, so the stack does not grow
+     * with the amount of tail calls performed. Every invocation of the trampoline owns a state
+     * the pending tail calls are stored in, which is saved into the continuation if the function
+     * is paused and restored once it resumes.
+     *
+     * @param i         the local index of the function
+     * @param signature the signature of the function
+     * @param context   the context to use
+     * @throws WasmAssemblerException if the trampoline could not be emitted
+     */
+    private void addTailCallTrampoline(
+            LargeArrayIndex i,
+            TranslatedFunctionSignature signature,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassFileEmitter classEmitter = context.getEmitter();
+        JavaType returnType = signature.getJavaReturnType();
+
+        MethodEmitter methodEmitter = classEmitter.method(
+                determineMethodName(i),
+                functionVisibility,
+                true,
+                false,
+                returnType,
+                signature.getJavaArgumentTypes(),
+                Collections.emptyList()
+        );
+
+        CodeEmitter codeEmitter = methodEmitter.code();
+        List<JavaLocal> argumentLocals = methodEmitter.getArgumentLocals();
+
+        JavaLocal continuationLocal = null;
+        if (signature.getContinuationArgumentIndex() != -1) {
+            continuationLocal = argumentLocals.get(signature.getContinuationArgumentIndex());
+        }
+
+        JavaLocal returnAreaLocal = null;
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            returnAreaLocal = argumentLocals.get(signature.getReturnAreaArgumentIndex());
+        }
+
+        JavaLocal stateLocal = codeEmitter.allocateLocal(TailCallHelper.TAIL_CALL_STATE_TYPE);
+        if (continuationLocal != null) {
+            codeEmitter.loadLocal(continuationLocal);
+        } else {
+            codeEmitter.loadNull(ContinuationHelper.CONTINUATION_TYPE);
+        }
+        codeEmitter.invoke(
+                TailCallHelper.TAIL_CALL_STATE_TYPE,
+                "enter",
+                new JavaType[]{ContinuationHelper.CONTINUATION_TYPE},
+                TailCallHelper.TAIL_CALL_STATE_TYPE,
+                InvokeType.STATIC,
+                false
+        );
+        codeEmitter.storeLocal(stateLocal);
+
+        JavaLocal resultLocal = null;
+        if (returnAreaLocal != null) {
+            // Pass the return area allocated by the body on to the tail called functions
+            resultLocal = returnAreaLocal;
+        } else if (!returnType.equals(PrimitiveType.VOID)) {
+            // Initialized, a resumed trampoline may skip the body
+            resultLocal = codeEmitter.allocateLocal(returnType);
+
+            Object defaultValue = returnType.getDefaultValue();
+            if (defaultValue == null) {
+                codeEmitter.loadNull((ObjectType) returnType);
+            } else {
+                codeEmitter.loadConstant(defaultValue);
+            }
+            codeEmitter.storeLocal(resultLocal);
+        }
+
+        JavaLocal targetLocal = codeEmitter.allocateLocal(METHOD_HANDLE_TYPE);
+        codeEmitter.loadNull(METHOD_HANDLE_TYPE);
+        codeEmitter.storeLocal(targetLocal);
+
+        CodeLabel loop = codeEmitter.newLabel();
+        CodeLabel invokeTarget = codeEmitter.newLabel();
+        CodeLabel done = codeEmitter.newLabel();
+
+        if (continuationLocal != null) {
+            // Repeat the tail call which was running when the continuation paused
+            codeEmitter.loadLocal(stateLocal);
+            codeEmitter.invoke(
+                    TailCallHelper.TAIL_CALL_STATE_TYPE,
+                    "getRunning",
+                    new JavaType[0],
+                    METHOD_HANDLE_TYPE,
+                    InvokeType.VIRTUAL,
+                    false
+            );
+            codeEmitter.storeLocal(targetLocal);
+            codeEmitter.loadLocal(targetLocal);
+            codeEmitter.jump(JumpCondition.IS_NOT_NULL, invokeTarget);
+        }
+
+        for (JavaLocal argumentLocal : argumentLocals) {
+            codeEmitter.loadLocal(argumentLocal);
+        }
+        codeEmitter.loadLocal(stateLocal);
+
+        codeEmitter.invoke(
+                classEmitter.getDeclaringType(),
+                determineBodyMethodName(i),
+                determineBodyArgumentTypes(signature).toArray(new JavaType[0]),
+                returnType,
+                InvokeType.STATIC,
+                false
+        );
+
+        if (resultLocal != null) {
+            codeEmitter.storeLocal(resultLocal);
+        }
+
+        codeEmitter.resolveLabel(loop);
+        if (continuationLocal != null) {
+            CodeLabel notPaused = codeEmitter.newLabel();
+
+            codeEmitter.loadLocal(continuationLocal);
+            codeEmitter.invoke(
+                    ContinuationHelper.CONTINUATION_TYPE,
+                    "isPaused",
+                    new JavaType[]{ContinuationHelper.CONTINUATION_TYPE},
+                    PrimitiveType.BOOLEAN,
+                    InvokeType.STATIC,
+                    false
+            );
+            codeEmitter.jump(JumpCondition.INT_EQUAL_ZERO, notPaused);
+
+            // The paused function has saved its own state already, save the tail call it belongs to
+            codeEmitter.loadLocal(stateLocal);
+            codeEmitter.loadLocal(continuationLocal);
+            codeEmitter.invoke(
+                    TailCallHelper.TAIL_CALL_STATE_TYPE,
+                    "suspend",
+                    new JavaType[]{TailCallHelper.TAIL_CALL_STATE_TYPE, ContinuationHelper.CONTINUATION_TYPE},
+                    PrimitiveType.VOID,
+                    InvokeType.STATIC,
+                    false
+            );
+            codeEmitter.jump(JumpCondition.ALWAYS, done);
+
+            codeEmitter.resolveLabel(notPaused);
+        }
+
+        codeEmitter.loadLocal(stateLocal);
+        codeEmitter.invoke(
+                TailCallHelper.TAIL_CALL_STATE_TYPE,
+                "next",
+                new JavaType[0],
+                METHOD_HANDLE_TYPE,
+                InvokeType.VIRTUAL,
+                false
+        );
+        codeEmitter.storeLocal(targetLocal);
+        codeEmitter.loadLocal(targetLocal);
+        codeEmitter.jump(JumpCondition.IS_NULL, done);
+
+        if (invokeTarget.isReachable()) {
+            codeEmitter.resolveLabel(invokeTarget);
+        }
+
+        codeEmitter.loadLocal(targetLocal);
+        codeEmitter.loadLocal(argumentLocals.get(signature.getOwnerArgumentIndex()));
+        if (continuationLocal != null) {
+            codeEmitter.loadLocal(continuationLocal);
+        }
+        if (returnAreaLocal != null) {
+            codeEmitter.loadLocal(returnAreaLocal);
+        }
+        codeEmitter.loadLocal(stateLocal);
+
+        codeEmitter.invoke(
+                METHOD_HANDLE_TYPE,
+                "invokeExact",
+                determineTailCallAdapterArgumentTypes(signature, classEmitter.getOwner()).toArray(new JavaType[0]),
+                returnType,
+                InvokeType.VIRTUAL,
+                false
+        );
+
+        if (resultLocal != null) {
+            codeEmitter.storeLocal(resultLocal);
+        }
+
+        codeEmitter.jump(JumpCondition.ALWAYS, loop);
+
+        codeEmitter.resolveLabel(done);
+        if (resultLocal != null) {
+            codeEmitter.loadLocal(resultLocal);
+        }
+
+        codeEmitter.doReturn();
+
+        codeEmitter.finish();
+        methodEmitter.finish();
+    }
+
+    /**
+     * Add the methods the trampoline invokes to perform the tail calls of a function.
+     * <p>
+     * The adapters take the instance, the continuation, the return area and the state of
+     * the trampoline and load the arguments of the tail call from the state.
+     *
+     * @param i         the local index of the function
+     * @param tailCalls the tail calls performed by the function
+     * @param context   the context to use
+     * @throws WasmAssemblerException if the adapters could not be emitted
+     */
+    private void addTailCallAdapters(
+            LargeArrayIndex i,
+            TailCallTargets tailCalls,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassFileEmitter classEmitter = context.getEmitter();
+        ObjectType owner = classEmitter.getOwner();
+        boolean continuationsEnabled = context.getConfiguration().continuationsEnabled();
+
+        for (LargeArrayIndex callee : tailCalls.getFunctions()) {
+            FunctionType calleeType = determineFunctionType(callee, context.getLookups());
+            TranslatedFunctionSignature calleeSignature = TranslatedFunctionSignature.of(
+                    calleeType,
+                    owner,
+                    continuationsEnabled,
+                    true
+            );
+            List<JavaType> adapterArgumentTypes = determineTailCallAdapterArgumentTypes(calleeSignature, owner);
+
+            MethodEmitter methodEmitter = classEmitter.method(
+                    determineTailCallAdapterName(i, callee),
+                    Visibility.PRIVATE,
+                    true,
+                    false,
+                    calleeSignature.getJavaReturnType(),
+                    adapterArgumentTypes,
+                    Collections.emptyList()
+            );
+
+            CodeEmitter codeEmitter = methodEmitter.code();
+            List<JavaLocal> adapterArgumentLocals = methodEmitter.getArgumentLocals();
+            JavaLocal stateLocal = adapterArgumentLocals.get(adapterArgumentLocals.size() - 1);
+
+            TailCallHelper.emitLoadArguments(codeEmitter, stateLocal, ControlHelper.getJavaTypes(calleeType.getInputs()));
+
+            // The instance, continuation and return area follow the arguments of the callee
+            for (int argIndex = 0; argIndex < adapterArgumentLocals.size() - 1; argIndex++) {
+                codeEmitter.loadLocal(adapterArgumentLocals.get(argIndex));
+            }
+
+            // Skip the trampoline of the callee, the one of the caller is still running
+            boolean calleeHasBody = hasBodyMethod(callee, context.getLookups(), context.getConfiguration());
+            if (calleeHasBody) {
+                codeEmitter.loadLocal(stateLocal);
+            }
+
+            codeEmitter.invoke(
+                    determineDeclaringType(callee, owner),
+                    calleeHasBody ? determineBodyMethodName(callee) : determineMethodName(callee),
+                    (calleeHasBody ? determineBodyArgumentTypes(calleeSignature) : calleeSignature.getJavaArgumentTypes())
+                            .toArray(new JavaType[0]),
+                    calleeSignature.getJavaReturnType(),
+                    InvokeType.STATIC,
+                    false
+            );
+            codeEmitter.doReturn();
+
+            codeEmitter.finish();
+            methodEmitter.finish();
+        }
+
+        for (int typeIndex : tailCalls.getTypes()) {
+            FunctionType type = context.getLookups().requireType(LargeArrayIndex.fromU32(typeIndex));
+            TranslatedFunctionSignature typeSignature = TranslatedFunctionSignature.of(
+                    type,
+                    owner,
+                    continuationsEnabled,
+                    true
+            );
+
+            MethodEmitter methodEmitter = classEmitter.method(
+                    determineIndirectTailCallAdapterName(i, typeIndex),
+                    Visibility.PRIVATE,
+                    true,
+                    false,
+                    typeSignature.getJavaReturnType(),
+                    determineTailCallAdapterArgumentTypes(typeSignature, owner),
+                    Collections.emptyList()
+            );
+
+            CodeEmitter codeEmitter = methodEmitter.code();
+            List<JavaLocal> adapterArgumentLocals = methodEmitter.getArgumentLocals();
+            JavaLocal stateLocal = adapterArgumentLocals.get(adapterArgumentLocals.size() - 1);
+
+            // The function is kept in the state, a resumed continuation invokes it again
+            codeEmitter.loadLocal(stateLocal);
+            codeEmitter.invoke(
+                    TailCallHelper.TAIL_CALL_STATE_TYPE,
+                    "getFunction",
+                    new JavaType[0],
+                    METHOD_HANDLE_TYPE,
+                    InvokeType.VIRTUAL,
+                    false
+            );
+
+            List<JavaType> handleArgumentTypes = ControlHelper.getJavaTypes(type.getInputs());
+            TailCallHelper.emitLoadArguments(codeEmitter, stateLocal, handleArgumentTypes);
+
+            handleArgumentTypes = new ArrayList<>(handleArgumentTypes);
+            if (typeSignature.getReturnAreaArgumentIndex() != -1) {
+                // The return area precedes the state in the arguments of the adapter
+                codeEmitter.loadLocal(adapterArgumentLocals.get(adapterArgumentLocals.size() - 2));
+                handleArgumentTypes.add(MultiValueHelper.MULTI_VALUE_TYPE);
+            }
+
+            codeEmitter.loadLocal(stateLocal);
+            handleArgumentTypes.add(TailCallHelper.TAIL_CALL_STATE_TYPE);
+
+            codeEmitter.invoke(
+                    METHOD_HANDLE_TYPE,
+                    "invokeExact",
+                    handleArgumentTypes.toArray(new JavaType[0]),
+                    typeSignature.getJavaReturnType(),
+                    InvokeType.VIRTUAL,
+                    false
+            );
+            codeEmitter.doReturn();
+
+            codeEmitter.finish();
+            methodEmitter.finish();
+        }
+    }
+
+    /**
+     * Determine the argument types of the body of a trampolined function.
+     *
+     * @param signature the signature of the function
+     * @return the argument types of the function followed by the tail call state
+     */
+    private static List<JavaType> determineBodyArgumentTypes(TranslatedFunctionSignature signature) {
+        List<JavaType> argumentTypes = new ArrayList<>(signature.getJavaArgumentTypes());
+        argumentTypes.add(TailCallHelper.TAIL_CALL_STATE_TYPE);
+        return argumentTypes;
+    }
+
+    /**
+     * Determine the argument types of the methods the trampoline invokes to perform tail calls.
+     *
+     * @param signature the signature of the tail called function
+     * @param owner     the type of the instance
+     * @return the argument types of the tail call adapters
+     */
+    private static List<JavaType> determineTailCallAdapterArgumentTypes(
+            TranslatedFunctionSignature signature,
+            ObjectType owner
+    ) {
+        List<JavaType> argumentTypes = new ArrayList<>();
+        argumentTypes.add(owner);
+
+        if (signature.getContinuationArgumentIndex() != -1) {
+            argumentTypes.add(ContinuationHelper.CONTINUATION_TYPE);
+        }
+
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            // The return area of the trampoline is passed on
+            argumentTypes.add(MultiValueHelper.MULTI_VALUE_TYPE);
+        }
+
+        argumentTypes.add(TailCallHelper.TAIL_CALL_STATE_TYPE);
+        return argumentTypes;
+    }
+
+    /**
+     * Look up the tail calls of a function which are performed through the trampoline.
+     * <p>
+     * The decision is based on the unoptimized body, so it stays the same no matter
+     * whether the function or one of its callers looks it up.
+     *
+     * @param i             the local index of the function
+     * @param function      the function, or null, to look it up in the code section
+     * @param lookups       the lookups to use
+     * @param configuration the configuration of the assembler
+     * @return the tail call targets
+     * @throws WasmAssemblerException if the function can not be analyzed
+     */
+    private TailCallTargets findTailCallTargets(
+            LargeArrayIndex i,
+            Function function,
+            ElementLookups lookups,
+            WasmAssemblerConfiguration configuration
+    ) throws WasmAssemblerException {
+        TailCallTargets targets = tailCallTargets.get(i);
+        if (targets != null) {
+            return targets;
+        }
+
+        if (function == null) {
+            CodeSection codeSection = lookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+            if (codeSection == null || !codeSection.getFunctions().isValid(i)) {
+                throw new WasmAssemblerException("Body of function " + i + " is required to emit tail calls");
+            }
+
+            function = codeSection.getFunctions().get(i);
+        }
+
+        targets = TailCallTargets.analyze(i, function, lookups, configuration, inlinedCallSizes(lookups, configuration));
+
+        TailCallTargets existing = tailCallTargets.putIfAbsent(i, targets);
+        return existing != null ? existing : targets;
+    }
+
+    private boolean isTrampolined(
+            LargeArrayIndex i,
+            ElementLookups lookups,
+            WasmAssemblerConfiguration configuration
+    ) throws WasmAssemblerException {
+        return findTailCallTargets(i, null, lookups, configuration).isTrampolined();
+    }
+
+    /**
+     * Determine whether a function can be invoked through its body, taking the state of a trampoline.
+     * <p>
+     * The module class of lazily compiled modules has a body stub for every function, as
+     * the functions are only analyzed once they are compiled. The stub of a function which
+     * is not trampolined invokes the function itself.
+     *
+     * @param i             the local index of the function
+     * @param lookups       the lookups to use
+     * @param configuration the configuration of the assembler
+     * @return true if the function has a body method, false otherwise
+     * @throws WasmAssemblerException if the function can not be analyzed
+     */
+    private boolean hasBodyMethod(
+            LargeArrayIndex i,
+            ElementLookups lookups,
+            WasmAssemblerConfiguration configuration
+    ) throws WasmAssemblerException {
+        return configuration.lazyCompilationEnabled() || isTrampolined(i, lookups, configuration);
+    }
+
+    /**
+     * Determine whether the code currently being emitted belongs to a trampolined function.
+     *
+     * @param context the context to use
+     * @return true if tail calls can be left pending, false otherwise
+     */
+    private boolean isEmittingTrampolinedFunction(CodeEmitContext context) {
+        return context.getLocalVariables().getTailCallState() != null;
+    }
+
+    /**
+     * Assign shared JVM local slots to the locals of a function based on their liveness.
+     *
+     * @param expr               the body of the function
+     * @param functionType       the type of the function
+     * @param locals             the locals of the function
+     * @param expandedLocalCount the amount of locals after expanding them
+     * @return the slot of every expanded local, or null, if the function has too many locals to analyze
+     * @throws WasmAssemblerException if the type of a local can not be converted
+     */
+    private int[] assignSharedLocalSlots(
+            Expr expr,
+            FunctionType functionType,
+            LargeArray<Local> locals,
+            int expandedLocalCount
+    ) throws WasmAssemblerException {
+        int argumentCount = (int) functionType.getInputs().length();
+
+        LocalVariableLiveness liveness = LocalVariableLiveness.analyze(expr, argumentCount + expandedLocalCount);
+        if (liveness == null) {
+            return null;
+        }
+
+        List<JavaType> localTypes = new ArrayList<>(expandedLocalCount);
+        for (Local local : locals.asFlatArray()) {
+            JavaType javaType = WasmTypeConverter.toJavaType(local.getType());
+            for (int localIndex = 0; localIndex < local.getCount(); localIndex++) {
+                localTypes.add(javaType);
+            }
+        }
+
+        return liveness.assignSlots(argumentCount, localTypes);
+    }
+
+    /**
+     * Add the stubs of a lazily compiled function.
+     * <p>
+     * The stubs forward all arguments to the call site of the function, which compiles
+     * the function on the first invocation. The call site takes the state of a trampoline
+     * as its last argument, the body stub passes the state of the trampoline tail calling
+     * the function and the regular stub passes null, so the function runs its own trampoline.
+     *
+     * @param i            the local index of the function
+     * @param functionType the type of the function
+     * @param context      the context to use
+     * @throws WasmAssemblerException if the stubs could not be emitted
+     */
+    private void addLazyFunctionStub(
+            LargeArrayIndex i,
+            FunctionType functionType,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassFileEmitter classEmitter = context.getEmitter();
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
+                functionType,
+                classEmitter.getOwner(),
+                context.getConfiguration().continuationsEnabled(),
+                true
+        );
+
+        addLazyFunctionStubMethod(i, determineMethodName(i), signature.getJavaArgumentTypes(), signature, context);
+        addLazyFunctionStubMethod(i, determineBodyMethodName(i), determineBodyArgumentTypes(signature), signature, context);
+    }
+
+    private void addLazyFunctionStubMethod(
+            LargeArrayIndex i,
+            String methodName,
+            List<JavaType> argumentTypes,
+            TranslatedFunctionSignature signature,
+            ClassEmitContext context
+    ) throws WasmAssemblerException {
+        ClassFileEmitter classEmitter = context.getEmitter();
+        List<JavaType> bodyArgumentTypes = determineBodyArgumentTypes(signature);
+
+        MethodEmitter methodEmitter = classEmitter.method(
+                methodName,
+                functionVisibility,
+                true,
+                false,
+                signature.getJavaReturnType(),
+                argumentTypes,
+                Collections.emptyList()
+        );
+
+        CodeEmitter codeEmitter = methodEmitter.code();
+        codeEmitter.accessField(
+                classEmitter.getDeclaringType(),
+                determineLazyHandleName(i),
+                METHOD_HANDLE_TYPE,
+                true,
+                false
+        );
+
+        for (JavaLocal argumentLocal : methodEmitter.getArgumentLocals()) {
+            codeEmitter.loadLocal(argumentLocal);
+        }
+
+        if (argumentTypes.size() < bodyArgumentTypes.size()) {
+            // Not tail called, the function runs its own trampoline
+            codeEmitter.loadNull(TailCallHelper.TAIL_CALL_STATE_TYPE);
+        }
+
+        codeEmitter.invoke(
+                METHOD_HANDLE_TYPE,
+                "invokeExact",
+                bodyArgumentTypes.toArray(new JavaType[0]),
+                signature.getJavaReturnType(),
+                InvokeType.VIRTUAL,
+                false
+        );
+        codeEmitter.doReturn();
+
+        codeEmitter.finish();
+        methodEmitter.finish();
+    }
+
+    @Override
+    public void addUnreachableFunction(LargeArrayIndex i, ClassEmitContext context) throws WasmAssemblerException {
+        FunctionType functionType = determineFunctionType(i, context.getLookups());
+        ClassFileEmitter classEmitter = context.getEmitter();
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
+                functionType,
+                classEmitter.getOwner(),
+                context.getConfiguration().continuationsEnabled(),
+                true
+        );
+
+        MethodEmitter methodEmitter = classEmitter.method(
+                determineMethodName(i),
+                functionVisibility,
+                true,
+                false,
+                signature.getJavaReturnType(),
+                signature.getJavaArgumentTypes(),
+                Collections.emptyList()
+        );
+
+        // Nothing can call the function, but keep the method so references to it still resolve
+        CodeEmitter codeEmitter = methodEmitter.code();
+        codeEmitter.doNew(ILLEGAL_STATE_EXCEPTION_TYPE);
+        codeEmitter.duplicate();
+        codeEmitter.loadConstant("Unreachable function called");
+        codeEmitter.invoke(
+                ILLEGAL_STATE_EXCEPTION_TYPE,
+                "<init>",
+                new JavaType[]{ObjectType.of(String.class)},
+                PrimitiveType.VOID,
+                InvokeType.SPECIAL,
+                false
+        );
+        codeEmitter.op(Op.THROW);
+
+        codeEmitter.finish();
+        methodEmitter.finish();
+    }
+
+    private int countLocalFunctions(ElementLookups lookups) throws WasmAssemblerException {
+        CodeSection codeSection = lookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+        if (codeSection == null) {
+            return 0;
+        }
+
+        if (codeSection.getFunctions().length() > Integer.MAX_VALUE) {
+            throw new WasmAssemblerException("Too many functions for lazy compilation");
+        }
+
+        return (int) codeSection.getFunctions().length();
+    }
+
+    /**
+     * Determine whether the module has any function type returning multiple values.
+     *
+     * @param lookups the lookups to use
+     * @return true if functions may return multiple values, false otherwise
+     * @throws WasmAssemblerException if the type section can not be looked up
+     */
+    private static boolean hasMultiValueFunctionTypes(ElementLookups lookups) throws WasmAssemblerException {
+        TypeSection typeSection = lookups.getModuleLookups().findSingleSection(TypeSection.LOCATOR);
+        if (typeSection == null) {
+            return false;
+        }
+
+        for (FunctionType type : typeSection.getTypes()) {
+            if (type.getOutputs().length() > 1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isSelfTailCalled(
+            LargeArrayIndex i,
+            AnalysisResult analysisResult,
+            ElementLookups lookups
+    ) throws WasmAssemblerException {
+        for (int tailCalledFunction : analysisResult.getTailCalledFunctions()) {
+            FoundElement<Integer, TypeImportDescription> element = lookups.requireFunctionTypeIndex(
+                    LargeArrayIndex.fromU32(tailCalledFunction));
+
+            if (!element.isImport() && element.getIndex().equals(i)) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     private void processFunctionEpilogue(
@@ -219,8 +1191,8 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         if (reachable) {
             if (!wasmOutputs.isEmpty() && wasmOutputs.size() > 1) {
                 List<JavaType> javaTypes = Arrays.asList(WasmTypeConverter.toJavaTypes(wasmOutputs.toArray(new ValueType[0])));
-                // Package up the return values into a MultiValue
-                MultiValueHelper.emitCreateMultiValue(codeEmitter, javaTypes);
+                // Package up the return values into the return area of the caller
+                MultiValueHelper.emitLoadReturnArea(context, javaTypes);
                 MultiValueHelper.emitSaveStack(
                         codeEmitter,
                         javaTypes,
@@ -238,50 +1210,368 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
                 function,
                 context.getEmitter().getOwner(),
-                context.getConfiguration().continuationsEnabled()
+                context.getConfiguration().continuationsEnabled(),
+                true
+        );
+        CodeEmitter emitter = context.getEmitter();
+
+        if (context.getConfiguration().inliningEnabled() && context.getLocalVariables().getContinuationLocal() == null) {
+            InlineCandidate candidate = findInlineCandidate(functionIndex, context.getLookups());
+            if (candidate != null && shouldInline(candidate, context)) {
+                emitInlinedFunction(candidate, function, context);
+                return;
+            }
+        }
+
+        ContinuationContext.PointAndLabel afterCallPause = null;
+        if (context.getLocalVariables().getContinuationLocal() != null) {
+            afterCallPause = ContinuationHelper.emitFunctionContinuationPoint(
+                    context,
+                    function.getInputs().asFlatList(),
+                    Collections.emptyList(),
+                    signature.getJavaReturnType()
+            );
+        }
+
+
+        // TODO: This currently assumes that the owner and continuation are always the last arguments - for now
+        //       this is true, but we should probably at least add an assertion that this is really the case
+        //       as API wise they could be at arbitrary indices
+        emitter.loadLocal(context.getLocalVariables().getThis());
+
+        if (context.getLocalVariables().getContinuationLocal() != null) {
+            emitter.loadLocal(context.getLocalVariables().getContinuationLocal());
+        }
+
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            MultiValueHelper.emitPassReturnArea(context);
+        }
+
+        emitter.invoke(
+                determineDeclaringType(functionIndex, emitter.getOwner()),
+                determineMethodName(functionIndex),
+                signature.getJavaArgumentTypes().toArray(new JavaType[0]),
+                signature.getJavaReturnType(),
+                InvokeType.STATIC,
+                false
+        );
+
+        if (afterCallPause != null) {
+            ContinuationHelper.emitFunctionContinuationPointPostReturn(context, afterCallPause);
+        }
+
+        if (function.getOutputs().length() > 1) {
+            MultiValueHelper.emitKeepReturnArea(context);
+            MultiValueHelper.emitRestoreStack(
+                    emitter,
+                    Arrays.asList(WasmTypeConverter.toJavaTypes(function.getOutputs().asFlatArray())),
+                    null,
+                    false
+            );
+        }
+    }
+
+    /**
+     * Invoke a function of another generated class directly.
+     * <p>
+     * Expects the function arguments followed by the instance of the owner class on
+     * top of the stack. The other class must have been generated by a function generator
+     * using the same method naming scheme and a visibility which allows access from the
+     * current class. Continuations are not supported.
+     *
+     * @param owner         the module class the function belongs to
+     * @param declaringType the class declaring the method of the function, the owner or one of its companions
+     * @param functionIndex the local index of the function in the defining module
+     * @param function      the type of the function
+     * @param context       the context to use
+     * @throws WasmAssemblerException if the invocation can not be emitted
+     */
+    public void emitInvokeDirectFunction(
+            ObjectType owner,
+            ObjectType declaringType,
+            LargeArrayIndex functionIndex,
+            FunctionType function,
+            CodeEmitContext context
+    ) throws WasmAssemblerException {
+        if (context.getLocalVariables().getContinuationLocal() != null) {
+            throw new WasmAssemblerException("Direct function invocations are not supported with continuations");
+        }
+
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(function, owner, false, true);
+        CodeEmitter emitter = context.getEmitter();
+
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            MultiValueHelper.emitPassReturnArea(context);
+        }
+
+        emitter.invoke(
+                declaringType,
+                determineMethodName(functionIndex),
+                signature.getJavaArgumentTypes().toArray(new JavaType[0]),
+                signature.getJavaReturnType(),
+                InvokeType.STATIC,
+                false
+        );
+
+        if (function.getOutputs().length() > 1) {
+            MultiValueHelper.emitKeepReturnArea(context);
+            MultiValueHelper.emitRestoreStack(
+                    emitter,
+                    Arrays.asList(WasmTypeConverter.toJavaTypes(function.getOutputs().asFlatArray())),
+                    null,
+                    false
+            );
+        }
+    }
+
+    /**
+     * Decide whether to inline a candidate at a call site.
+     * <p>
+     * Without a profile only small functions are inlined. With a profile, larger
+     * functions are inlined into callers of moderate size as well if they are hot.
+     *
+     * @param candidate the candidate to inline
+     * @param context   the context of the call site
+     * @return true if the candidate should be inlined, false otherwise
+     */
+    protected boolean shouldInline(InlineCandidate candidate, CodeEmitContext context) {
+        return shouldInline(candidate, context.getConfiguration(), context.getAnalysisResult().getInstructionCount());
+    }
+
+    /**
+     * Decide whether to inline a candidate into a caller.
+     *
+     * @param candidate              the candidate to inline
+     * @param configuration          the configuration of the assembler
+     * @param callerInstructionCount the total amount of instructions in the caller
+     * @return true if the candidate should be inlined, false otherwise
+     * @see #shouldInline(InlineCandidate, CodeEmitContext)
+     */
+    protected boolean shouldInline(
+            InlineCandidate candidate,
+            WasmAssemblerConfiguration configuration,
+            int callerInstructionCount
+    ) {
+        if (candidate.getInstructionCount() <= INLINE_INSTRUCTION_THRESHOLD &&
+                candidate.getLocalCount() <= INLINE_LOCAL_THRESHOLD) {
+            return true;
+        }
+
+        WasmProfile profile = configuration.profile();
+        return profile != null &&
+                callerInstructionCount <= HOT_INLINE_CALLER_THRESHOLD &&
+                profile.isHotFunction((int) candidate.getIndex().toU64());
+    }
+
+    /**
+     * Create the estimates of the code emitted in place of calls to the functions which are inlined.
+     * <p>
+     * The estimates make the same decisions as {@link #emitInvokeFunction}, so the blocks of
+     * a function are split according to the size of the code actually emitted.
+     *
+     * @param lookups       the lookups to use
+     * @param configuration the configuration of the assembler
+     * @return the estimates of inlined calls
+     */
+    private AnalysisResult.InlinedCallSizes inlinedCallSizes(
+            ElementLookups lookups,
+            WasmAssemblerConfiguration configuration
+    ) {
+        if (!configuration.inliningEnabled() || configuration.continuationsEnabled()) {
+            return (functionIndex, callerInstructionCount) -> -1;
+        }
+
+        return (functionIndex, callerInstructionCount) -> {
+            try {
+                FoundElement<Integer, TypeImportDescription> element = lookups.requireFunctionTypeIndex(
+                        LargeArrayIndex.fromU32(functionIndex));
+                if (element.isImport()) {
+                    return -1;
+                }
+
+                InlineCandidate candidate = findInlineCandidate(element.getIndex(), lookups);
+                if (candidate == null || !shouldInline(candidate, configuration, callerInstructionCount)) {
+                    return -1;
+                }
+
+                // Storing the arguments and initializing the locals precedes the body
+                int inputCount = (int) determineFunctionType(element.getIndex(), lookups).getInputs().length();
+                return candidate.getAnalysisResult().getEstimatedSize() +
+                        INLINE_LOCAL_SIZE * (inputCount + candidate.getLocalCount());
+            } catch (WasmAssemblerException e) {
+                // Reported when the call is emitted
+                return -1;
+            }
+        };
+    }
+
+    /**
+     * Look up whether the function with the given index can be inlined.
+     * <p>
+     * Candidates may exceed the limits for inlining functions without a profile,
+     * use {@link #shouldInline(InlineCandidate, CodeEmitContext)} to decide whether to
+     * actually inline them.
+     *
+     * @param i       the local index of the function
+     * @param lookups the lookups to use
+     * @return the inline candidate, or null, if the function should not be inlined
+     * @throws WasmAssemblerException if the lookup fails
+     */
+    protected InlineCandidate findInlineCandidate(LargeArrayIndex i, ElementLookups lookups)
+            throws WasmAssemblerException {
+        CodeSection codeSection = lookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+        if (codeSection == null || !codeSection.getFunctions().isValid(i)) {
+            return null;
+        }
+
+        if (inlineCandidates.containsKey(i)) {
+            return inlineCandidates.get(i);
+        }
+
+        InlineCandidate candidate = analyzeInlineCandidate(i, codeSection.getFunctions().get(i));
+        inlineCandidates.put(i, candidate);
+
+        return candidate;
+    }
+
+    private InlineCandidate analyzeInlineCandidate(LargeArrayIndex i, Function function) {
+        int expandedLocalCount = 0;
+        for (Local local : function.getLocals()) {
+            expandedLocalCount += local.getCount();
+            if (expandedLocalCount > HOT_INLINE_LOCAL_THRESHOLD) {
+                return null;
+            }
+        }
+
+        Expr expr;
+        AnalysisResult analysisResult;
+        try {
+            expr = function.getExpr();
+
+            AnalysisContext analysisContext = AnalysisContext.createForFunction(expr);
+            analysisContext.run();
+
+            analysisResult = AnalysisResult.compileFromContext(analysisContext);
+        } catch (WasmAssemblerException e) {
+            // Reported when the function itself is compiled
+            return null;
+        }
+
+        // Only small leaf functions qualify, this rules out recursion as well. Direct returns
+        // are excluded because they would return from the caller.
+        if (analysisResult.getInstructionCount() > HOT_INLINE_INSTRUCTION_THRESHOLD ||
+                analysisResult.usesCalls() ||
+                analysisResult.usesDirectReturn(expr) ||
+                analysisResult.hasBlockSplits()) {
+            return null;
+        }
+
+        return new InlineCandidate(i, function.getLocals(), expr, analysisResult, expandedLocalCount);
+    }
+
+    /**
+     * Emit the body of a function in place of a call to it.
+     * <p>
+     * The arguments are moved from the stack into freshly allocated locals and the
+     * function body is emitted with its own local and label numbering.
+     *
+     * @param candidate the function to inline
+     * @param type      the type of the function
+     * @param context   the context of the caller
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    protected void emitInlinedFunction(InlineCandidate candidate, FunctionType type, CodeEmitContext context)
+            throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        LocalVariables localVariables = new LocalVariables(context.getLocalVariables().getThis(), null, null);
+        List<JavaLocal> inlineLocals = new ArrayList<>();
+
+        List<ValueType> inputs = type.getInputs().asFlatList();
+        JavaLocal[] argumentLocals = new JavaLocal[inputs.size()];
+        for (int argIndex = inputs.size() - 1; argIndex >= 0; argIndex--) {
+            JavaLocal argumentLocal = emitter.allocateLocal(WasmTypeConverter.toJavaType(inputs.get(argIndex)));
+            emitter.storeLocal(argumentLocal);
+
+            argumentLocals[argIndex] = argumentLocal;
+            inlineLocals.add(argumentLocal);
+        }
+
+        for (int argIndex = 0; argIndex < argumentLocals.length; argIndex++) {
+            localVariables.registerKnownLocal(argIndex, argumentLocals[argIndex]);
+        }
+
+        List<ValueType> expandedLocals = new ArrayList<>();
+        int localId = argumentLocals.length;
+        for (Local local : candidate.getLocals()) {
+            JavaType javaType = WasmTypeConverter.toJavaType(local.getType());
+
+            for (int localIndex = 0; localIndex < local.getCount(); localIndex++) {
+                Object defaultValue = javaType.getDefaultValue();
+                if (defaultValue == null) {
+                    emitter.loadNull((ObjectType) javaType);
+                } else {
+                    emitter.loadConstant(defaultValue);
+                }
+
+                JavaLocal javaLocal = emitter.allocateLocal(javaType);
+                emitter.storeLocal(javaLocal);
+
+                expandedLocals.add(local.getType());
+                localVariables.registerKnownLocal(localId++, javaLocal);
+                inlineLocals.add(javaLocal);
+            }
+        }
+
+        List<ValueType> outputs = type.getOutputs().asFlatList();
+        WasmFrameState frameState = new WasmFrameState(inputs, expandedLocals, outputs, outputs);
+
+        CodeLabel endLabel = emitter.newLabel();
+        WasmPushedLabel topLevelLabel = new WasmPushedLabel(endLabel, type.getOutputs(), false);
+
+        CodeEmitContext inlineContext = new CodeEmitContext(
+                null,
+                candidate.getAnalysisResult(),
+                context.getClassFileEmitter(),
+                emitter,
+                context.getLookups(),
+                frameState,
+                Collections.singletonList(topLevelLabel),
+                context.getGenerators(),
+                localVariables,
+                context.getConfiguration()
         );
-        CodeEmitter emitter = context.getEmitter();
+        inlineContext.setFunctionIndex((int) candidate.getIndex().toU64());
 
-        ContinuationContext.PointAndLabel afterCallPause = null;
-        if (context.getLocalVariables().getContinuationLocal() != null) {
-            afterCallPause = ContinuationHelper.emitFunctionContinuationPoint(
-                    context,
-                    function.getInputs().asFlatList(),
-                    Collections.emptyList(),
-                    signature.getJavaReturnType()
-            );
-        }
+        ProfileHelper.emitRecordCall(inlineContext);
+        ControlHelper.emitExpression(inlineContext, candidate.getExpr());
 
+        if (endLabel.isReachable()) {
+            emitter.resolveLabel(endLabel);
+        }
 
-        // TODO: This currently assumes that the owner and continuation are always the last arguments - for now
-        //       this is true, but we should probably at least add an assertion that this is really the case
-        //       as API wise they could be at arbitrary indices
-        emitter.loadLocal(context.getLocalVariables().getThis());
+        // Control flow may have replaced the frame state, use the current one
+        WasmFrameState endFrameState = inlineContext.getFrameState();
+        boolean reachable = endFrameState.isReachable() || endLabel.isReachable();
 
-        if (context.getLocalVariables().getContinuationLocal() != null) {
-            emitter.loadLocal(context.getLocalVariables().getContinuationLocal());
+        for (int i = outputs.size() - 1; i >= 0; i--) {
+            endFrameState.popOperand(outputs.get(i));
         }
 
-        emitter.invoke(
-                emitter.getOwner(),
-                determineMethodName(functionIndex),
-                signature.getJavaArgumentTypes().toArray(new JavaType[0]),
-                signature.getJavaReturnType(),
-                InvokeType.STATIC,
-                false
-        );
+        if (!endFrameState.getOperandStack().isEmpty()) {
+            throw new WasmAssemblerException("Expected stack to be empty at end of inlined function, found "
+                    + endFrameState.getOperandStack().size() + " values");
+        }
 
-        if (afterCallPause != null) {
-            ContinuationHelper.emitFunctionContinuationPointPostReturn(context, afterCallPause);
+        if (!reachable) {
+            // The inlined function never returns, neither does the call
+            context.getFrameState().markUnreachablePreserveStack();
+            return;
         }
 
-        if (function.getOutputs().length() > 1) {
-            MultiValueHelper.emitRestoreStack(
-                    emitter,
-                    Arrays.asList(WasmTypeConverter.toJavaTypes(function.getOutputs().asFlatArray())),
-                    null,
-                    false
-            );
+        // The frame state may have been restored from a label snapshot, so free the
+        // locals through the current state instead of the one they were allocated in
+        for (JavaLocal inlineLocal : inlineLocals) {
+            emitter.getStackFrameState().freeLocal(inlineLocal);
         }
     }
 
@@ -293,6 +1583,29 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
     ) throws WasmAssemblerException {
         FoundElement<TableType, TableImportDescription> element = context.getLookups().requireTable(tableIndex);
 
+        ProfileHelper.emitRecordIndirectCall(context);
+
+        if (!element.isImport() && context.getLocalVariables().getContinuationLocal() == null) {
+            int[] tableContents = context.getLookups().findImmutableTableContents(tableIndex);
+            if (tableContents != null && tableContents.length > 0 && tableContents.length <= DEVIRTUALIZE_TABLE_SIZE_THRESHOLD) {
+                emitDevirtualizedInvokeFunctionIndirect(functionType, tableIndex, element, tableContents, context);
+                return;
+            }
+
+            WasmProfile profile = context.getConfiguration().profile();
+            if (tableContents != null && profile != null && context.getInstructionOffset() >= 0) {
+                // Too large to dispatch every slot directly, but the common targets still can be
+                int[] dominantSlots = profile.getDominantIndirectCallTargets(
+                        context.getFunctionIndex(), context.getInstructionOffset());
+
+                if (dominantSlots.length > 0) {
+                    emitDevirtualizedInvokeFunctionIndirect(
+                            functionType, tableIndex, element, tableContents, dominantSlots, context);
+                    return;
+                }
+            }
+        }
+
         ContinuationContext.PointAndLabel afterCallPause = null;
         if (context.getLocalVariables().getContinuationLocal() != null) {
             TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(functionType, null, false);
@@ -325,6 +1638,142 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         }
     }
 
+    /**
+     * Emit an indirect call through a table whose contents are known at assembly time.
+     * <p>
+     * The table index is dispatched with a tableswitch to direct calls of the possible
+     * targets. Null entries, entries with a mismatching type and out of bounds indices
+     * take the regular dynamic dispatch path, which produces the appropriate trap.
+     *
+     * @param functionType  the expected type of the called function
+     * @param tableIndex    the index of the table
+     * @param element       the table
+     * @param tableContents the function indices in the table, -1 for null entries
+     * @param context       the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    protected void emitDevirtualizedInvokeFunctionIndirect(
+            FunctionType functionType,
+            LargeArrayIndex tableIndex,
+            FoundElement<TableType, TableImportDescription> element,
+            int[] tableContents,
+            CodeEmitContext context
+    ) throws WasmAssemblerException {
+        emitDevirtualizedInvokeFunctionIndirect(functionType, tableIndex, element, tableContents, null, context);
+    }
+
+    /**
+     * Emit an indirect call through a table whose contents are known at assembly time.
+     * <p>
+     * Only the given slots are dispatched to direct calls, all other slots take the
+     * regular dynamic dispatch path.
+     *
+     * @param functionType  the expected type of the called function
+     * @param tableIndex    the index of the table
+     * @param element       the table
+     * @param tableContents the function indices in the table, -1 for null entries
+     * @param slots         the slots to dispatch directly, or null to dispatch all slots directly
+     * @param context       the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    protected void emitDevirtualizedInvokeFunctionIndirect(
+            FunctionType functionType,
+            LargeArrayIndex tableIndex,
+            FoundElement<TableType, TableImportDescription> element,
+            int[] tableContents,
+            int[] slots,
+            CodeEmitContext context
+    ) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        CodeLabel dynamicDispatch = emitter.newLabel();
+        CodeLabel end = emitter.newLabel();
+
+        // Share the case label between all slots pointing to the same function
+        Map<Integer, CodeLabel> functionLabels = new LinkedHashMap<>();
+
+        if (slots == null) {
+            CodeLabel[] targets = new CodeLabel[tableContents.length];
+            for (int slot = 0; slot < tableContents.length; slot++) {
+                targets[slot] = findDevirtualizedTarget(
+                        tableContents[slot], functionType, functionLabels, dynamicDispatch, context);
+            }
+
+            // Keep the table index around for the dynamic path
+            emitter.duplicate();
+            emitter.tableSwitch(0, dynamicDispatch, targets);
+        } else {
+            Map<Integer, CodeLabel> targets = new HashMap<>();
+            for (int slot : slots) {
+                if (slot < 0 || slot >= tableContents.length) {
+                    continue;
+                }
+
+                CodeLabel target = findDevirtualizedTarget(
+                        tableContents[slot], functionType, functionLabels, dynamicDispatch, context);
+                if (target != dynamicDispatch) {
+                    targets.put(slot, target);
+                }
+            }
+
+            // Keep the table index around for the dynamic path
+            emitter.duplicate();
+            emitter.lookupSwitch(dynamicDispatch, targets);
+        }
+
+        for (Map.Entry<Integer, CodeLabel> entry : functionLabels.entrySet()) {
+            emitter.resolveLabel(entry.getValue());
+            emitter.pop();
+
+            FoundElement<Integer, TypeImportDescription> target = context.getLookups().requireFunctionTypeIndex(
+                    LargeArrayIndex.fromU32(entry.getKey()));
+
+            WasmFrameState beforeCall = context.getFrameState().branch();
+            if (target.isImport()) {
+                context.getGenerators().getImportGenerator().emitInvokeFunction(target.getImport(), context);
+            } else {
+                emitInvokeFunction(target.getIndex(), functionType, context);
+            }
+
+            if (context.getFrameState().isReachable()) {
+                emitter.jump(JumpCondition.ALWAYS, end);
+            } else {
+                // The target never returns (inlined trap), the other cases still do
+                context.restoreFrameStateAfterBranch(beforeCall);
+            }
+        }
+
+        emitter.resolveLabel(dynamicDispatch);
+        context.getGenerators().getTableGenerator().emitTableGet(
+                element.getIndex(),
+                element.getElement(),
+                context
+        );
+        emitInvokeLinkedFunction(functionType, context);
+
+        emitter.resolveLabel(end);
+    }
+
+    private CodeLabel findDevirtualizedTarget(
+            int functionIndex,
+            FunctionType functionType,
+            Map<Integer, CodeLabel> functionLabels,
+            CodeLabel dynamicDispatch,
+            CodeEmitContext context
+    ) throws WasmAssemblerException {
+        if (functionIndex == -1) {
+            return dynamicDispatch;
+        }
+
+        FoundElement<Integer, TypeImportDescription> target = context.getLookups().requireFunctionTypeIndex(
+                LargeArrayIndex.fromU32(functionIndex));
+        if (!context.getLookups().resovleFunctionType(target).equals(functionType)) {
+            return dynamicDispatch;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+        return functionLabels.computeIfAbsent(functionIndex, (k) -> emitter.newLabel());
+    }
+
     public void emitInvokeLinkedFunction(FunctionType functionType, CodeEmitContext context)
             throws WasmAssemblerException {
         CodeEmitter emitter = context.getEmitter();
@@ -335,26 +1784,30 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
             emitter.loadNull(ContinuationHelper.CONTINUATION_TYPE);
         }
 
+        // Use owner null here - we don't know the owner at this point, and prepareCallIndirect
+        // will have bound the method handle to the correct owner if there is one. Same
+        // goes for the continuation
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(functionType, null, false, true);
+
         emitter.invoke(
                 DYNAMIC_DISPATCH_HELPER_TYPE,
-                "prepareCallIndirect",
+                signature.getReturnAreaArgumentIndex() != -1 ? "prepareMultiValueCallIndirect" : "prepareCallIndirect",
                 new JavaType[]{LINKED_FUNCTION_TYPE, ContinuationHelper.CONTINUATION_TYPE},
                 METHOD_HANDLE_TYPE,
                 InvokeType.STATIC,
                 false
         );
 
-        // Use owner null here - we don't know the owner at this point, and prepareCallIndirect
-        // will have bound the method handle to the correct owner if there is one. Same
-        // goes for the continuation
-        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(functionType, null, false);
-
         JavaLocal methodHandleLocal = emitter.allocateLocal(METHOD_HANDLE_TYPE);
         emitter.storeLocal(methodHandleLocal);
-        CommonBytecodeGenerator.loadBelow(emitter, signature.getJavaArgumentTypes().size(), METHOD_HANDLE_TYPE,
+        CommonBytecodeGenerator.loadBelow(emitter, (int) functionType.getInputs().length(), METHOD_HANDLE_TYPE,
                 () -> emitter.loadLocal(methodHandleLocal));
         methodHandleLocal.free();
 
+        if (signature.getReturnAreaArgumentIndex() != -1) {
+            MultiValueHelper.emitPassReturnArea(context);
+        }
+
         emitter.invoke(
                 METHOD_HANDLE_TYPE,
                 "invokeExact",
@@ -365,6 +1818,7 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         );
 
         if (functionType.getOutputs().length() > 1) {
+            MultiValueHelper.emitKeepReturnArea(context);
             MultiValueHelper.emitRestoreStack(
                     emitter,
                     Arrays.asList(WasmTypeConverter.toJavaTypes(functionType.getOutputs().asFlatArray())),
@@ -374,6 +1828,116 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         }
     }
 
+    @Override
+    public void emitTailCallFunction(LargeArrayIndex functionIndex, FunctionType function, CodeEmitContext context)
+            throws WasmAssemblerException {
+        if (!isEmittingTrampolinedFunction(context)) {
+            // The JVM has no tail calls, so perform a regular call followed by a return
+            emitInvokeFunction(functionIndex, function, context);
+            TailCallHelper.emitReturnAfterCall(context, function);
+            return;
+        }
+
+        LargeArrayIndex caller = LargeArrayIndex.fromU32(context.getFunctionIndex());
+        CodeEmitter emitter = context.getEmitter();
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
+                function,
+                emitter.getOwner(),
+                context.getConfiguration().continuationsEnabled(),
+                true
+        );
+
+        TailCallHelper.emitStoreArguments(context, ControlHelper.getJavaTypes(function.getInputs()));
+        TailCallHelper.emitPendingReturn(context, new JavaMethodHandle(
+                // The adapters are declared next to the trampoline of the caller
+                context.getClassFileEmitter().getDeclaringType(),
+                determineTailCallAdapterName(caller, functionIndex),
+                signature.getJavaReturnType(),
+                determineTailCallAdapterArgumentTypes(signature, emitter.getOwner()),
+                InvokeType.STATIC,
+                false
+        ), function);
+    }
+
+    @Override
+    public void emitTailCallFunctionIndirect(
+            LargeArrayIndex typeIndex,
+            FunctionType functionType,
+            LargeArrayIndex tableIndex,
+            CodeEmitContext context
+    ) throws WasmAssemblerException {
+        if (!isEmittingTrampolinedFunction(context)) {
+            // The JVM has no tail calls, so perform a regular call followed by a return
+            emitInvokeFunctionIndirect(functionType, tableIndex, context);
+            TailCallHelper.emitReturnAfterCall(context, functionType);
+            return;
+        }
+
+        LargeArrayIndex caller = LargeArrayIndex.fromU32(context.getFunctionIndex());
+        FoundElement<TableType, TableImportDescription> element = context.getLookups().requireTable(tableIndex);
+        CodeEmitter emitter = context.getEmitter();
+        TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
+                functionType,
+                emitter.getOwner(),
+                context.getConfiguration().continuationsEnabled(),
+                true
+        );
+
+        ProfileHelper.emitRecordIndirectCall(context);
+
+        if (element.isImport()) {
+            context.getGenerators().getImportGenerator().emitTableGet(
+                    element.getImport(),
+                    context
+            );
+        } else {
+            context.getGenerators().getTableGenerator().emitTableGet(
+                    element.getIndex(),
+                    element.getElement(),
+                    context
+            );
+        }
+
+        emitter.loadLocal(context.getLocalVariables().getThis());
+        JavaLocal continuationLocal = context.getLocalVariables().getContinuationLocal();
+        if (continuationLocal != null) {
+            emitter.loadLocal(continuationLocal);
+        } else {
+            emitter.loadNull(ContinuationHelper.CONTINUATION_TYPE);
+        }
+
+        emitter.invoke(
+                DYNAMIC_DISPATCH_HELPER_TYPE,
+                "prepareTailCallIndirect",
+                new JavaType[]{LINKED_FUNCTION_TYPE, ObjectType.OBJECT, ContinuationHelper.CONTINUATION_TYPE},
+                METHOD_HANDLE_TYPE,
+                InvokeType.STATIC,
+                false
+        );
+
+        emitter.loadLocal(context.getLocalVariables().getTailCallState());
+        emitter.op(Op.SWAP);
+        emitter.invoke(
+                TailCallHelper.TAIL_CALL_STATE_TYPE,
+                "setFunction",
+                new JavaType[]{METHOD_HANDLE_TYPE},
+                PrimitiveType.VOID,
+                InvokeType.VIRTUAL,
+                false
+        );
+
+        TailCallHelper.emitStoreArguments(context, ControlHelper.getJavaTypes(functionType.getInputs()));
+        TailCallHelper.emitPendingReturn(context, new JavaMethodHandle(
+                // The adapters are declared next to the trampoline of the caller
+                context.getClassFileEmitter().getDeclaringType(),
+                determineIndirectTailCallAdapterName(caller, (int) typeIndex.toU64()),
+                signature.getJavaReturnType(),
+                determineTailCallAdapterArgumentTypes(signature, emitter.getOwner()),
+                InvokeType.STATIC,
+                false
+        ), functionType);
+    }
+
     @Override
     public void emitLoadFunctionReference(LargeArrayIndex i, FunctionType functionType, CodeEmitContext context) throws WasmAssemblerException {
         emitLoadLinkedFunction(i, functionType, context);
@@ -396,10 +1960,11 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(
                 type,
                 emitter.getOwner(),
-                context.getConfiguration().continuationsEnabled()
+                context.getConfiguration().continuationsEnabled(),
+                true
         );
         JavaMethodHandle handle = new JavaMethodHandle(
-                emitter.getOwner(),
+                determineDeclaringType(i, emitter.getOwner()),
                 determineMethodName(i),
                 signature.getJavaReturnType(),
                 signature.getJavaArgumentTypes(),
@@ -408,25 +1973,7 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         );
 
         emitter.loadConstant(handle);
-
-        if (signature.getOwnerArgumentIndex() != -1) {
-            // Bind the handle to this
-            emitter.loadConstant(signature.getOwnerArgumentIndex());
-            emitter.loadConstant(1);
-            emitter.doNew(new ArrayType(ObjectType.OBJECT));
-            emitter.duplicate();
-            emitter.loadConstant(0);
-            emitter.loadLocal(context.getLocalVariables().getThis());
-            emitter.storeArrayElement();
-            emitter.invoke(
-                    METHOD_HANDLES_HELPER_TYPE,
-                    "insertArguments",
-                    new JavaType[]{METHOD_HANDLE_TYPE, PrimitiveType.INT, new ArrayType(ObjectType.OBJECT)},
-                    METHOD_HANDLE_TYPE,
-                    InvokeType.STATIC,
-                    false
-            );
-        }
+        emitBindOwner(signature, context);
 
         if (type.getOutputs().length() <= 1) {
             // Can use automatic inference
@@ -439,10 +1986,7 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
                     false
             );
         } else {
-            // Manually pass the types
-            emitter.doNew(SIMPLE_LINKED_FUNCTION_TYPE);
-            emitter.duplicate(1, 1);
-            emitter.op(Op.SWAP);
+            // Manually pass the types, callers outside of generated code don't pass a return area
             loadValueTypeList(context, type.getInputs());
             loadValueTypeList(context, type.getOutputs());
 
@@ -454,15 +1998,71 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
             emitter.loadConstant(continuationArgumentIndex);
             emitter.invoke(
                     SIMPLE_LINKED_FUNCTION_TYPE,
-                    "<init>",
+                    "fromReturnAreaMethodHandle",
                     new JavaType[]{METHOD_HANDLE_TYPE, ObjectType.of(List.class), ObjectType.of(List.class), PrimitiveType.INT},
-                    PrimitiveType.VOID,
-                    InvokeType.SPECIAL,
+                    SIMPLE_LINKED_FUNCTION_TYPE,
+                    InvokeType.STATIC,
+                    false
+            );
+        }
+
+        if (hasBodyMethod(i, context.getLookups(), context.getConfiguration())) {
+            // Indirect tail calls from this instance invoke the body directly and leave
+            // pending tail calls to the trampoline of the caller
+            emitter.loadConstant(new JavaMethodHandle(
+                    determineDeclaringType(i, emitter.getOwner()),
+                    determineBodyMethodName(i),
+                    signature.getJavaReturnType(),
+                    determineBodyArgumentTypes(signature),
+                    InvokeType.STATIC,
+                    false
+            ));
+            emitBindOwner(signature, context);
+
+            emitter.loadLocal(context.getLocalVariables().getThis());
+            emitter.invoke(
+                    SIMPLE_LINKED_FUNCTION_TYPE,
+                    "withTailCall",
+                    new JavaType[]{METHOD_HANDLE_TYPE, ObjectType.OBJECT},
+                    SIMPLE_LINKED_FUNCTION_TYPE,
+                    InvokeType.VIRTUAL,
                     false
             );
         }
     }
 
+    /**
+     * Bind the owner argument of the method handle on top of the stack to this.
+     *
+     * @param signature the signature of the method handle
+     * @param context   the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    private void emitBindOwner(TranslatedFunctionSignature signature, CodeEmitContext context)
+            throws WasmAssemblerException {
+        if (signature.getOwnerArgumentIndex() == -1) {
+            return;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+
+        emitter.loadConstant(signature.getOwnerArgumentIndex());
+        emitter.loadConstant(1);
+        emitter.doNew(new ArrayType(ObjectType.OBJECT));
+        emitter.duplicate();
+        emitter.loadConstant(0);
+        emitter.loadLocal(context.getLocalVariables().getThis());
+        emitter.storeArrayElement();
+        emitter.invoke(
+                METHOD_HANDLES_HELPER_TYPE,
+                "insertArguments",
+                new JavaType[]{METHOD_HANDLE_TYPE, PrimitiveType.INT, new ArrayType(ObjectType.OBJECT)},
+                METHOD_HANDLE_TYPE,
+                InvokeType.STATIC,
+                false
+        );
+    }
+
     private void loadValueTypeList(
             CodeEmitContext context,
             LargeArray<ValueType> types
@@ -493,10 +2093,117 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         );
     }
 
+    /**
+     * A function which has been determined to be suitable for inlining.
+     */
+    protected static final class InlineCandidate {
+        private final LargeArrayIndex index;
+        private final LargeArray<Local> locals;
+        private final Expr expr;
+        private final AnalysisResult analysisResult;
+        private final int localCount;
+
+        private InlineCandidate(
+                LargeArrayIndex index,
+                LargeArray<Local> locals,
+                Expr expr,
+                AnalysisResult analysisResult,
+                int localCount
+        ) {
+            this.index = index;
+            this.locals = locals;
+            this.expr = expr;
+            this.analysisResult = analysisResult;
+            this.localCount = localCount;
+        }
+
+        /**
+         * Retrieve the local index of the function to inline.
+         *
+         * @return the local index of the function
+         */
+        public LargeArrayIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * Retrieve the locals of the function to inline, excluding its arguments.
+         *
+         * @return the locals of the function
+         */
+        public LargeArray<Local> getLocals() {
+            return locals;
+        }
+
+        /**
+         * Retrieve the body of the function the analysis result belongs to.
+         *
+         * @return the body of the function
+         */
+        public Expr getExpr() {
+            return expr;
+        }
+
+        /**
+         * Retrieve the analysis result of the function body.
+         *
+         * @return the analysis result
+         */
+        public AnalysisResult getAnalysisResult() {
+            return analysisResult;
+        }
+
+        /**
+         * Retrieve the amount of instructions of the function.
+         *
+         * @return the amount of instructions
+         */
+        public int getInstructionCount() {
+            return analysisResult.getInstructionCount();
+        }
+
+        /**
+         * Retrieve the amount of locals of the function, excluding its arguments.
+         *
+         * @return the amount of locals
+         */
+        public int getLocalCount() {
+            return localCount;
+        }
+    }
+
+    /**
+     * Determine the class which declares the method of a function.
+     *
+     * @param i     the local index of the function
+     * @param owner the module class
+     * @return the declaring class of the function
+     */
+    protected ObjectType determineDeclaringType(LargeArrayIndex i, ObjectType owner) {
+        ObjectType declaringType = functionDeclaringTypes.get(i);
+        return declaringType != null ? declaringType : owner;
+    }
+
     protected String determineMethodName(LargeArrayIndex i) {
         return "$code_" + i;
     }
 
+    protected String determineLazyHandleName(LargeArrayIndex i) {
+        return determineMethodName(i) + "$lazy";
+    }
+
+    protected String determineBodyMethodName(LargeArrayIndex i) {
+        return determineMethodName(i) + "$body";
+    }
+
+    protected String determineTailCallAdapterName(LargeArrayIndex i, LargeArrayIndex callee) {
+        return determineMethodName(i) + "$tail$" + callee;
+    }
+
+    protected String determineIndirectTailCallAdapterName(LargeArrayIndex i, int typeIndex) {
+        return determineMethodName(i) + "$tailIndirect$" + Integer.toUnsignedString(typeIndex);
+    }
+
     protected final FunctionType determineFunctionType(
             LargeArrayIndex i,
             ElementLookups lookups
@@ -504,4 +2211,87 @@ public class DefaultFunctionGenerator implements FunctionGenerator {
         int functionTypeIndex = lookups.requireLocalFunctionTypeIndex(i);
         return lookups.requireType(LargeArrayIndex.fromU32(functionTypeIndex));
     }
+
+    /**
+     * The tail calls of a function which are performed through the trampoline.
+     */
+    private static final class TailCallTargets {
+        private static final TailCallTargets NONE =
+                new TailCallTargets(false, Collections.emptySet(), Collections.emptySet());
+
+        private final boolean trampolined;
+        private final Set<LargeArrayIndex> functions;
+        private final Set<Integer> types;
+
+        private TailCallTargets(boolean trampolined, Set<LargeArrayIndex> functions, Set<Integer> types) {
+            this.trampolined = trampolined;
+            this.functions = functions;
+            this.types = types;
+        }
+
+        /**
+         * Analyze the tail calls of a function.
+         * <p>
+         * Self tail calls loop within the function, unless they are located in a split block.
+         *
+         * @param i                the local index of the function
+         * @param function         the function to analyze
+         * @param lookups          the lookups to use
+         * @param configuration    the configuration of the assembler
+         * @param inlinedCallSizes the estimates of the calls the function inlines
+         * @return the tail call targets of the function
+         * @throws WasmAssemblerException if the function can not be analyzed
+         */
+        static TailCallTargets analyze(
+                LargeArrayIndex i,
+                Function function,
+                ElementLookups lookups,
+                WasmAssemblerConfiguration configuration,
+                AnalysisResult.InlinedCallSizes inlinedCallSizes
+        ) throws WasmAssemblerException {
+            AnalysisContext analysisContext = AnalysisContext.createForFunction(function.getExpr());
+            analysisContext.run();
+
+            if (analysisContext.getTailCalledFunctions().isEmpty() && analysisContext.getTailCalledTypes().isEmpty()) {
+                return NONE;
+            }
+
+            // Sorted, so the adapters are emitted in a stable order
+            Set<LargeArrayIndex> functions = new TreeSet<>();
+            for (int tailCalledFunction : analysisContext.getTailCalledFunctions()) {
+                FoundElement<Integer, TypeImportDescription> element = lookups.requireFunctionTypeIndex(
+                        LargeArrayIndex.fromU32(tailCalledFunction));
+
+                if (!element.isImport()) {
+                    functions.add(element.getIndex());
+                }
+            }
+
+            Set<Integer> types = new TreeSet<>(analysisContext.getTailCalledTypes());
+
+            boolean trampolined = !types.isEmpty();
+            for (LargeArrayIndex callee : functions) {
+                trampolined |= !callee.equals(i);
+            }
+
+            if (!trampolined && functions.contains(i)) {
+                trampolined = AnalysisResult.compileFromContext(analysisContext, configuration, false, inlinedCallSizes)
+                        .hasBlockSplits();
+            }
+
+            return new TailCallTargets(trampolined, functions, types);
+        }
+
+        public boolean isTrampolined() {
+            return trampolined;
+        }
+
+        public Set<LargeArrayIndex> getFunctions() {
+            return functions;
+        }
+
+        public Set<Integer> getTypes() {
+            return types;
+        }
+    }
 }
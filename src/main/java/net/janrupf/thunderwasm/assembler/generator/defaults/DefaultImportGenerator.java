@@ -11,6 +11,8 @@ import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
 import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
 import net.janrupf.thunderwasm.assembler.emitter.types.PrimitiveType;
 import net.janrupf.thunderwasm.assembler.generator.ImportGenerator;
+import net.janrupf.thunderwasm.assembler.linking.DirectFunctionLink;
+import net.janrupf.thunderwasm.assembler.linking.DirectFunctionLinks;
 import net.janrupf.thunderwasm.assembler.part.TranslatedFunctionSignature;
 import net.janrupf.thunderwasm.data.Limits;
 import net.janrupf.thunderwasm.imports.*;
@@ -29,8 +31,8 @@ import net.janrupf.thunderwasm.types.*;
 
 import java.lang.invoke.MethodHandle;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DefaultImportGenerator implements ImportGenerator {
     private static final ObjectType RUNTIME_LINKER_TYPE = ObjectType.of(RuntimeLinker.class);
@@ -41,12 +43,23 @@ public class DefaultImportGenerator implements ImportGenerator {
     private final Map<String, DefaultTableGenerator> importedTableGenerators;
     private final Map<String, DefaultMemoryGenerator> importedMemoryGenerators;
     private final DefaultFunctionGenerator functionGenerator;
+    private final DirectFunctionLinks directFunctionLinks;
 
     public DefaultImportGenerator() {
-        this.identifierNameCache = new HashMap<>();
-        this.importedTableGenerators = new HashMap<>();
-        this.importedMemoryGenerators = new HashMap<>();
+        this(DirectFunctionLinks.NONE);
+    }
+
+    /**
+     * Create an import generator which calls statically resolved function imports directly.
+     *
+     * @param directFunctionLinks the statically resolved function imports
+     */
+    public DefaultImportGenerator(DirectFunctionLinks directFunctionLinks) {
+        this.identifierNameCache = new ConcurrentHashMap<>();
+        this.importedTableGenerators = new ConcurrentHashMap<>();
+        this.importedMemoryGenerators = new ConcurrentHashMap<>();
         this.functionGenerator = new DefaultFunctionGenerator();
+        this.directFunctionLinks = directFunctionLinks;
     }
 
     @Override
@@ -140,6 +153,18 @@ public class DefaultImportGenerator implements ImportGenerator {
                 LINKED_FUNCTION_TYPE,
                 null
         );
+
+        DirectFunctionLink link = directFunctionLinks.find(im.getModule(), im.getName());
+        if (link != null) {
+            emitter.field(
+                    generateImportFieldNameForAttachment(im, "instance"),
+                    Visibility.PRIVATE,
+                    false,
+                    true,
+                    link.getOwner(),
+                    null
+            );
+        }
     }
 
     @Override
@@ -312,6 +337,12 @@ public class DefaultImportGenerator implements ImportGenerator {
         int typeIndex = im.getDescription().getIndex();
         FunctionType type = context.getLookups().requireType(LargeArrayIndex.fromU32(typeIndex));
 
+        DirectFunctionLink link = findDirectFunctionLink(im, type);
+        if (link != null) {
+            // Keep the linker around for linking the instance
+            emitter.duplicate();
+        }
+
         emitter.loadConstant(im.getModule());
         emitter.loadConstant(im.getName());
 
@@ -340,6 +371,31 @@ public class DefaultImportGenerator implements ImportGenerator {
                 false,
                 true
         );
+
+        if (link != null) {
+            // Direct calls need the instance of the module defining the function, which
+            // is not necessarily the module imported from in case of re-exports
+            emitter.loadConstant(link.getModuleName());
+            emitter.invoke(
+                    RUNTIME_LINKER_TYPE,
+                    "linkModuleInstance",
+                    new JavaType[]{ObjectType.of(String.class)},
+                    ObjectType.OBJECT,
+                    InvokeType.INTERFACE,
+                    true
+            );
+            emitter.checkCast(link.getOwner());
+
+            emitter.loadLocal(context.getLocalVariables().getThis());
+            emitter.op(Op.SWAP);
+            emitter.accessField(
+                    emitter.getOwner(),
+                    generateImportFieldNameForAttachment(im, "instance"),
+                    link.getOwner(),
+                    false,
+                    true
+            );
+        }
     }
 
     @Override
@@ -570,6 +626,27 @@ public class DefaultImportGenerator implements ImportGenerator {
         int typeIndex = im.getDescription().getIndex();
         FunctionType functionType = context.getLookups().requireType(LargeArrayIndex.fromU32(typeIndex));
 
+        DirectFunctionLink link = findDirectFunctionLink(im, functionType);
+        if (link != null && context.getLocalVariables().getContinuationLocal() == null) {
+            emitter.loadLocal(context.getLocalVariables().getThis());
+            emitter.accessField(
+                    emitter.getOwner(),
+                    generateImportFieldNameForAttachment(im, "instance"),
+                    link.getOwner(),
+                    false,
+                    false
+            );
+
+            functionGenerator.emitInvokeDirectFunction(
+                    link.getOwner(),
+                    link.getDeclaringType(),
+                    link.getFunctionIndex(),
+                    functionType,
+                    context
+            );
+            return;
+        }
+
         ContinuationContext.PointAndLabel afterCallPause = null;
         if (context.getLocalVariables().getContinuationLocal() != null) {
             TranslatedFunctionSignature signature = TranslatedFunctionSignature.of(functionType, null, false);
@@ -706,6 +783,25 @@ public class DefaultImportGenerator implements ImportGenerator {
         return generateImportFieldName(im) + "$" + attachmentName;
     }
 
+    /**
+     * Find the function a function import has been statically resolved to.
+     *
+     * @param im   the import to look up
+     * @param type the type the import is expected to have
+     * @return the resolved function, or null, if the import is linked at runtime
+     * @throws WasmAssemblerException if the resolved function does not match the expected type
+     */
+    private DirectFunctionLink findDirectFunctionLink(Import<TypeImportDescription> im, FunctionType type)
+            throws WasmAssemblerException {
+        DirectFunctionLink link = directFunctionLinks.find(im.getModule(), im.getName());
+        if (link != null && !link.getType().equals(type)) {
+            throw new WasmAssemblerException("Import " + im.getModule() + "." + im.getName() + " expects type " +
+                    type + " but the linked function has type " + link.getType());
+        }
+
+        return link;
+    }
+
     /**
      * Generate the code for accessing an import field.
      *
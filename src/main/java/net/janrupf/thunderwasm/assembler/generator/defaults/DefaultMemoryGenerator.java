@@ -5,6 +5,7 @@ import net.janrupf.thunderwasm.assembler.WasmFrameState;
 import net.janrupf.thunderwasm.assembler.WasmTypeConverter;
 import net.janrupf.thunderwasm.assembler.emitter.*;
 import net.janrupf.thunderwasm.assembler.emitter.data.MetadataKey;
+import net.janrupf.thunderwasm.assembler.emitter.data.ResourceSink;
 import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
 import net.janrupf.thunderwasm.assembler.emitter.types.*;
 import net.janrupf.thunderwasm.assembler.generator.MemoryGenerator;
@@ -16,10 +17,12 @@ import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
 import net.janrupf.thunderwasm.module.encoding.LargeByteArray;
 import net.janrupf.thunderwasm.module.section.segment.DataSegment;
 import net.janrupf.thunderwasm.runtime.BoundsChecks;
+import net.janrupf.thunderwasm.runtime.WasmDataSegments;
 import net.janrupf.thunderwasm.runtime.linker.memory.LinkedMemory;
 import net.janrupf.thunderwasm.types.*;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
@@ -36,13 +39,29 @@ public class DefaultMemoryGenerator implements MemoryGenerator {
     private static final ObjectType LINKED_MEMORY_HANDLE_TYPE = ObjectType.of(LinkedMemory.Handle.class);
 
     private final String fieldName;
+    private final ResourceSink dataSegmentSink;
 
     public DefaultMemoryGenerator() {
         this.fieldName = null;
+        this.dataSegmentSink = null;
     }
 
     public DefaultMemoryGenerator(String fieldName) {
         this.fieldName = fieldName;
+        this.dataSegmentSink = null;
+    }
+
+    /**
+     * Create a memory generator which stores the data segments as resources.
+     * <p>
+     * This keeps the content of data segments out of the generated bytecode, the
+     * resources are loaded next to the module class when it is instantiated.
+     *
+     * @param dataSegmentSink the sink receiving the data segment resources
+     */
+    public DefaultMemoryGenerator(ResourceSink dataSegmentSink) {
+        this.fieldName = null;
+        this.dataSegmentSink = dataSegmentSink;
     }
 
     @Override
@@ -99,6 +118,15 @@ public class DefaultMemoryGenerator implements MemoryGenerator {
             throw new WasmAssemblerException("Data segment is too large: " + segment.getInit().length());
         }
 
+        if (dataSegmentSink != null && data.length > 0) {
+            emitLoadDataSegmentResource(i, data, emitter.getOwner(), codeEmitter);
+
+            codeEmitter.doReturn();
+            codeEmitter.finish();
+            initMethodEmitter.finish();
+            return;
+        }
+
         JavaLocal dataLocal = codeEmitter.allocateLocal(new ArrayType(PrimitiveType.BYTE));
 
         // Create a new byte array for the data segment
@@ -155,6 +183,40 @@ public class DefaultMemoryGenerator implements MemoryGenerator {
         initMethodEmitter.finish();
     }
 
+    private void emitLoadDataSegmentResource(
+            LargeArrayIndex i,
+            byte[] data,
+            ObjectType owner,
+            CodeEmitter codeEmitter
+    ) throws WasmAssemblerException {
+        String resourceName = owner.getClassName() + "$" + generateDataSegmentFieldName(i) + ".bin";
+        String packagePath = owner.getPackageName().replace('.', '/');
+
+        dataSegmentSink.addResource(
+                packagePath.isEmpty() ? resourceName : packagePath + "/" + resourceName,
+                data
+        );
+
+        codeEmitter.invoke(
+                ObjectType.of(MethodHandles.class),
+                "lookup",
+                new JavaType[0],
+                ObjectType.of(MethodHandles.Lookup.class),
+                InvokeType.STATIC,
+                false
+        );
+        codeEmitter.loadConstant(resourceName);
+        codeEmitter.loadConstant(data.length);
+        codeEmitter.invoke(
+                ObjectType.of(WasmDataSegments.class),
+                "loadResource",
+                new JavaType[]{ObjectType.of(MethodHandles.Lookup.class), ObjectType.of(String.class), PrimitiveType.INT},
+                DATA_SEGMENT_TYPE,
+                InvokeType.STATIC,
+                false
+        );
+    }
+
     @Override
     public void emitMemoryConstructor(LargeArrayIndex i, MemoryType type, CodeEmitContext context) throws WasmAssemblerException {
         CodeEmitter emitter = context.getEmitter();
@@ -784,12 +846,10 @@ public class DefaultMemoryGenerator implements MemoryGenerator {
                 MetadataKey.named(generateMemoryHelperName(i, "grow"))
         );
 
-        if (context.getMetadataStorage().contains(growMethodKey)) {
+        if (!context.getMetadataStorage().tryAddTag(growMethodKey)) {
             return;
         }
 
-        context.getMetadataStorage().addTag(growMethodKey);
-
         MethodEmitter methodEmitter = context.getEmitter().method(
                 generateMemoryHelperName(i, "grow"),
                 Visibility.PRIVATE,
@@ -0,0 +1,78 @@
+package net.janrupf.thunderwasm.assembler.linking;
+
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.types.FunctionType;
+
+/**
+ * Describes a function of another module which is assembled in the same set
+ * and can thus be called directly instead of through a linked function.
+ */
+public final class DirectFunctionLink {
+    private final String moduleName;
+    private final ObjectType owner;
+    private final ObjectType declaringType;
+    private final LargeArrayIndex functionIndex;
+    private final FunctionType type;
+
+    public DirectFunctionLink(
+            String moduleName,
+            ObjectType owner,
+            ObjectType declaringType,
+            LargeArrayIndex functionIndex,
+            FunctionType type
+    ) {
+        this.moduleName = moduleName;
+        this.owner = owner;
+        this.declaringType = declaringType;
+        this.functionIndex = functionIndex;
+        this.type = type;
+    }
+
+    /**
+     * Retrieves the name of the module which defines the function.
+     *
+     * @return the defining module name
+     */
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * Retrieves the class generated for the module which defines the function.
+     *
+     * @return the owner class
+     */
+    public ObjectType getOwner() {
+        return owner;
+    }
+
+    /**
+     * Retrieves the class declaring the method of the function.
+     * <p>
+     * This is either the owner class or one of its companion classes.
+     *
+     * @return the declaring class
+     */
+    public ObjectType getDeclaringType() {
+        return declaringType;
+    }
+
+    /**
+     * Retrieves the local (non-import) index of the function in its defining module.
+     *
+     * @return the local function index
+     */
+    public LargeArrayIndex getFunctionIndex() {
+        return functionIndex;
+    }
+
+    /**
+     * Retrieves the type of the function.
+     *
+     * @return the function type
+     */
+    public FunctionType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,77 @@
+package net.janrupf.thunderwasm.assembler.linking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of function imports which have been statically resolved to
+ * functions of other modules assembled together.
+ */
+public final class DirectFunctionLinks {
+    /**
+     * Links which don't resolve any import.
+     */
+    public static final DirectFunctionLinks NONE = new DirectFunctionLinks(Collections.emptyMap());
+
+    private final Map<String, Map<String, DirectFunctionLink>> links;
+
+    private DirectFunctionLinks(Map<String, Map<String, DirectFunctionLink>> links) {
+        this.links = links;
+    }
+
+    /**
+     * Find the function an import resolves to.
+     *
+     * @param moduleName the module name of the import
+     * @param importName the import name of the import
+     * @return the linked function, or null, if the import is not statically resolved
+     */
+    public DirectFunctionLink find(String moduleName, String importName) {
+        Map<String, DirectFunctionLink> moduleLinks = links.get(moduleName);
+        if (moduleLinks == null) {
+            return null;
+        }
+
+        return moduleLinks.get(importName);
+    }
+
+    /**
+     * Create a new builder for direct function links.
+     *
+     * @return the created builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final Map<String, Map<String, DirectFunctionLink>> links;
+
+        private Builder() {
+            this.links = new HashMap<>();
+        }
+
+        /**
+         * Add a function which can be resolved under the given import name.
+         *
+         * @param moduleName the module name imports refer to
+         * @param importName the name imports refer to
+         * @param link       the function to resolve to
+         * @return this
+         */
+        public Builder add(String moduleName, String importName, DirectFunctionLink link) {
+            this.links.computeIfAbsent(moduleName, (k) -> new HashMap<>()).put(importName, link);
+            return this;
+        }
+
+        /**
+         * Build the direct function links.
+         *
+         * @return the built links
+         */
+        public DirectFunctionLinks build() {
+            return new DirectFunctionLinks(links);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package net.janrupf.thunderwasm.assembler.optimize;
+
+import net.janrupf.thunderwasm.instructions.EmptyInstructionData;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.InstructionInstance;
+import net.janrupf.thunderwasm.instructions.WasmInstruction;
+import net.janrupf.thunderwasm.instructions.control.*;
+import net.janrupf.thunderwasm.instructions.numeric.*;
+import net.janrupf.thunderwasm.instructions.parametric.Drop;
+import net.janrupf.thunderwasm.instructions.parametric.Select;
+import net.janrupf.thunderwasm.instructions.reference.RefFunc;
+import net.janrupf.thunderwasm.instructions.reference.RefNull;
+import net.janrupf.thunderwasm.instructions.variable.GlobalGet;
+import net.janrupf.thunderwasm.instructions.variable.LocalGet;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.encoding.LargeIntArray;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Simplifies function bodies before they are emitted.
+ * <p>
+ * The optimizer folds integer arithmetic on constants, resolves branches on constant
+ * conditions and removes code which can never be reached because it follows an
+ * unconditional control transfer. Everything it removes would otherwise still be
+ * processed by the emitter, even if no bytecode is generated for unreachable code.
+ * <p>
+ * Floating point operations are never folded, the JVM does not guarantee to preserve
+ * NaN payloads, so folding them could change the results. Integer operations which
+ * would trap, such as a division by zero, are left in place as well.
+ * <p>
+ * The optimizer does not validate the removed code, the original expression has to be
+ * validated separately.
+ */
+public final class ExpressionOptimizer {
+    private static final Map<WasmInstruction<?>, Function<Object, Object>> UNARY_FOLDINGS = new HashMap<>();
+    private static final Map<WasmInstruction<?>, BiFunction<Object, Object, Object>> BINARY_FOLDINGS = new HashMap<>();
+    private static final Set<WasmInstruction<?>> ZERO_IDENTITIES = new HashSet<>(Arrays.asList(
+            I32Add.INSTANCE, I32Sub.INSTANCE, I32Or.INSTANCE, I32Xor.INSTANCE,
+            I32Shl.INSTANCE, I32ShrS.INSTANCE, I32ShrU.INSTANCE, I32Rotl.INSTANCE, I32Rotr.INSTANCE,
+            I64Add.INSTANCE, I64Sub.INSTANCE, I64Or.INSTANCE, I64Xor.INSTANCE,
+            I64Shl.INSTANCE, I64ShrS.INSTANCE, I64ShrU.INSTANCE, I64Rotl.INSTANCE, I64Rotr.INSTANCE
+    ));
+
+    static {
+        // i32 operations
+        unary(I32Eqz.INSTANCE, Integer.class, (a) -> bool(a == 0));
+        unary(I32Clz.INSTANCE, Integer.class, Integer::numberOfLeadingZeros);
+        unary(I32Ctz.INSTANCE, Integer.class, Integer::numberOfTrailingZeros);
+        unary(I32Popcnt.INSTANCE, Integer.class, Integer::bitCount);
+        unary(I32Extend8S.INSTANCE, Integer.class, (a) -> (int) (byte) (int) a);
+        unary(I32Extend16S.INSTANCE, Integer.class, (a) -> (int) (short) (int) a);
+
+        binaryI32(I32Add.INSTANCE, Integer::sum);
+        binaryI32(I32Sub.INSTANCE, (a, b) -> a - b);
+        binaryI32(I32Mul.INSTANCE, (a, b) -> a * b);
+        binaryI32(I32And.INSTANCE, (a, b) -> a & b);
+        binaryI32(I32Or.INSTANCE, (a, b) -> a | b);
+        binaryI32(I32Xor.INSTANCE, (a, b) -> a ^ b);
+        binaryI32(I32Shl.INSTANCE, (a, b) -> a << b);
+        binaryI32(I32ShrS.INSTANCE, (a, b) -> a >> b);
+        binaryI32(I32ShrU.INSTANCE, (a, b) -> a >>> b);
+        binaryI32(I32Rotl.INSTANCE, Integer::rotateLeft);
+        binaryI32(I32Rotr.INSTANCE, Integer::rotateRight);
+        binaryI32(I32DivS.INSTANCE, (a, b) -> b == 0 || (a == Integer.MIN_VALUE && b == -1) ? null : a / b);
+        binaryI32(I32DivU.INSTANCE, (a, b) -> b == 0 ? null : Integer.divideUnsigned(a, b));
+        binaryI32(I32RemS.INSTANCE, (a, b) -> b == 0 ? null : (b == -1 ? 0 : a % b));
+        binaryI32(I32RemU.INSTANCE, (a, b) -> b == 0 ? null : Integer.remainderUnsigned(a, b));
+        binaryI32(I32Eq.INSTANCE, (a, b) -> bool(a.equals(b)));
+        binaryI32(I32Ne.INSTANCE, (a, b) -> bool(!a.equals(b)));
+        binaryI32(I32LtS.INSTANCE, (a, b) -> bool(a < b));
+        binaryI32(I32LtU.INSTANCE, (a, b) -> bool(Integer.compareUnsigned(a, b) < 0));
+        binaryI32(I32GtS.INSTANCE, (a, b) -> bool(a > b));
+        binaryI32(I32GtU.INSTANCE, (a, b) -> bool(Integer.compareUnsigned(a, b) > 0));
+        binaryI32(I32LeS.INSTANCE, (a, b) -> bool(a <= b));
+        binaryI32(I32LeU.INSTANCE, (a, b) -> bool(Integer.compareUnsigned(a, b) <= 0));
+        binaryI32(I32GeS.INSTANCE, (a, b) -> bool(a >= b));
+        binaryI32(I32GeU.INSTANCE, (a, b) -> bool(Integer.compareUnsigned(a, b) >= 0));
+
+        // i64 operations
+        unary(I64Eqz.INSTANCE, Long.class, (a) -> bool(a == 0));
+        unary(I64Clz.INSTANCE, Long.class, (a) -> (long) Long.numberOfLeadingZeros(a));
+        unary(I64Ctz.INSTANCE, Long.class, (a) -> (long) Long.numberOfTrailingZeros(a));
+        unary(I64Popcnt.INSTANCE, Long.class, (a) -> (long) Long.bitCount(a));
+        unary(I64Extend8S.INSTANCE, Long.class, (a) -> (long) (byte) (long) a);
+        unary(I64Extend16S.INSTANCE, Long.class, (a) -> (long) (short) (long) a);
+        unary(I64Extend32S.INSTANCE, Long.class, (a) -> (long) (int) (long) a);
+        unary(I32WrapI64.INSTANCE, Long.class, (a) -> (int) (long) a);
+        unary(I64ExtendI32S.INSTANCE, Integer.class, (a) -> (long) a);
+        unary(I64ExtendI32U.INSTANCE, Integer.class, Integer::toUnsignedLong);
+
+        binaryI64(I64Add.INSTANCE, Long::sum);
+        binaryI64(I64Sub.INSTANCE, (a, b) -> a - b);
+        binaryI64(I64Mul.INSTANCE, (a, b) -> a * b);
+        binaryI64(I64And.INSTANCE, (a, b) -> a & b);
+        binaryI64(I64Or.INSTANCE, (a, b) -> a | b);
+        binaryI64(I64Xor.INSTANCE, (a, b) -> a ^ b);
+        binaryI64(I64Shl.INSTANCE, (a, b) -> a << b);
+        binaryI64(I64ShrS.INSTANCE, (a, b) -> a >> b);
+        binaryI64(I64ShrU.INSTANCE, (a, b) -> a >>> b);
+        binaryI64(I64Rotl.INSTANCE, (a, b) -> Long.rotateLeft(a, (int) (long) b));
+        binaryI64(I64Rotr.INSTANCE, (a, b) -> Long.rotateRight(a, (int) (long) b));
+        binaryI64(I64DivS.INSTANCE, (a, b) -> b == 0 || (a == Long.MIN_VALUE && b == -1) ? null : a / b);
+        binaryI64(I64DivU.INSTANCE, (a, b) -> b == 0 ? null : Long.divideUnsigned(a, b));
+        binaryI64(I64RemS.INSTANCE, (a, b) -> b == 0 ? null : (b == -1 ? 0L : a % b));
+        binaryI64(I64RemU.INSTANCE, (a, b) -> b == 0 ? null : Long.remainderUnsigned(a, b));
+        binaryI64(I64Eq.INSTANCE, (a, b) -> bool(a.equals(b)));
+        binaryI64(I64Ne.INSTANCE, (a, b) -> bool(!a.equals(b)));
+        binaryI64(I64LtS.INSTANCE, (a, b) -> bool(a < b));
+        binaryI64(I64LtU.INSTANCE, (a, b) -> bool(Long.compareUnsigned(a, b) < 0));
+        binaryI64(I64GtS.INSTANCE, (a, b) -> bool(a > b));
+        binaryI64(I64GtU.INSTANCE, (a, b) -> bool(Long.compareUnsigned(a, b) > 0));
+        binaryI64(I64LeS.INSTANCE, (a, b) -> bool(a <= b));
+        binaryI64(I64LeU.INSTANCE, (a, b) -> bool(Long.compareUnsigned(a, b) <= 0));
+        binaryI64(I64GeS.INSTANCE, (a, b) -> bool(a >= b));
+        binaryI64(I64GeU.INSTANCE, (a, b) -> bool(Long.compareUnsigned(a, b) >= 0));
+    }
+
+    private ExpressionOptimizer() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Optimize a function body or any other expression.
+     * <p>
+     * Nested blocks are optimized as well. If nothing could be optimized, the expression
+     * is returned as is. Instructions keep the offset of the instruction they replace, so
+     * code metadata still applies to the optimized expression.
+     *
+     * @param expr the expression to optimize
+     * @return the optimized expression
+     */
+    public static Expr optimize(Expr expr) {
+        List<InstructionInstance> optimized = new ArrayList<>(expr.getInstructionCount());
+        int[] offsets = expr.hasInstructionOffsets() ? new int[expr.getInstructionCount()] : null;
+        boolean changed = false;
+
+        for (int i = 0, count = expr.getInstructionCount(); i < count; i++) {
+            InstructionInstance instance = expr.getInstruction(i);
+            InstructionInstance replacement = optimizeInstruction(optimized, instance);
+
+            if (replacement != null) {
+                if (offsets != null) {
+                    // Folding only ever removes instructions from the end, so the offsets stay aligned
+                    offsets[optimized.size()] = expr.getInstructionOffset(i);
+                }
+
+                optimized.add(replacement);
+            }
+
+            changed |= replacement != instance;
+
+            if (replacement != null && transfersControl(replacement.getInstruction())) {
+                // Everything after an unconditional control transfer is unreachable
+                changed |= i + 1 < count;
+                break;
+            }
+        }
+
+        return changed ? new Expr(optimized, offsets) : expr;
+    }
+
+    /**
+     * Optimize a single instruction.
+     * <p>
+     * This may remove the constant operands of the instruction from the already optimized
+     * instructions.
+     *
+     * @param optimized the optimized instructions preceding the instruction
+     * @param instance  the instruction to optimize
+     * @return the replacement of the instruction, or null, if the instruction is removed
+     */
+    private static InstructionInstance optimizeInstruction(
+            List<InstructionInstance> optimized,
+            InstructionInstance instance
+    ) {
+        WasmInstruction<?> instruction = instance.getInstruction();
+
+        if (instruction instanceof Nop) {
+            return null;
+        } else if (instruction instanceof Block || instruction instanceof Loop) {
+            BlockData data = (BlockData) instance.getData();
+            Expr body = optimize(data.getPrimaryExpression());
+
+            return body == data.getPrimaryExpression()
+                    ? instance
+                    : instance(instruction, new BlockData(data.getType(), body, null));
+        } else if (instruction instanceof If) {
+            return optimizeIf(optimized, instance);
+        } else if (instruction instanceof BrIf) {
+            Integer condition = takeConstant(optimized, Integer.class);
+            if (condition == null) {
+                return instance;
+            }
+
+            return condition != 0 ? instance(Br.INSTANCE, (LabelData) instance.getData()) : null;
+        } else if (instruction instanceof BrTable) {
+            Integer index = takeConstant(optimized, Integer.class);
+            if (index == null) {
+                return instance;
+            }
+
+            BrTable.Data data = (BrTable.Data) instance.getData();
+            LargeIntArray labels = data.getBranchLabels();
+
+            int label = Integer.toUnsignedLong(index) < labels.length()
+                    ? labels.get(LargeArrayIndex.fromU32(index))
+                    : data.getDefaultLabel();
+            return instance(Br.INSTANCE, LabelData.of(label));
+        } else if (instruction instanceof Select) {
+            // A true condition selects the first operand, so the second one can be dropped
+            InstructionInstance last = lastOf(optimized);
+            if (last == null || !(last.getInstruction() instanceof I32Const) ||
+                    ((I32Const.Data) last.getData()).getValue() == 0) {
+                return instance;
+            }
+
+            optimized.remove(optimized.size() - 1);
+            return optimizeInstruction(optimized, InstructionInstance.of(Drop.INSTANCE, EmptyInstructionData.INSTANCE));
+        } else if (instruction instanceof Drop) {
+            InstructionInstance last = lastOf(optimized);
+            if (last != null && isPureSingleValue(last.getInstruction())) {
+                optimized.remove(optimized.size() - 1);
+                return null;
+            }
+
+            return instance;
+        }
+
+        return fold(optimized, instance);
+    }
+
+    private static InstructionInstance optimizeIf(List<InstructionInstance> optimized, InstructionInstance instance) {
+        BlockData data = (BlockData) instance.getData();
+        Integer condition = takeConstant(optimized, Integer.class);
+
+        if (condition != null) {
+            // The if turns into a plain block executing the taken branch, which keeps the
+            // label indices within the branch the same
+            Expr taken = condition != 0 ? data.getPrimaryExpression() : data.getSecondaryExpression();
+            if (taken == null) {
+                taken = new Expr(Collections.emptyList());
+            }
+
+            return instance(Block.INSTANCE, new BlockData(data.getType(), optimize(taken), null));
+        }
+
+        Expr primary = optimize(data.getPrimaryExpression());
+        Expr secondary = data.getSecondaryExpression() == null ? null : optimize(data.getSecondaryExpression());
+
+        if (primary == data.getPrimaryExpression() && secondary == data.getSecondaryExpression()) {
+            return instance;
+        }
+
+        return instance(instruction(instance), new BlockData(data.getType(), primary, secondary));
+    }
+
+    private static InstructionInstance fold(List<InstructionInstance> optimized, InstructionInstance instance) {
+        WasmInstruction<?> instruction = instance.getInstruction();
+
+        Function<Object, Object> unary = UNARY_FOLDINGS.get(instruction);
+        if (unary != null) {
+            Object operand = constantValue(lastOf(optimized));
+            Object result = operand == null ? null : unary.apply(operand);
+
+            if (result == null) {
+                return instance;
+            }
+
+            optimized.remove(optimized.size() - 1);
+            return constant(result);
+        }
+
+        BiFunction<Object, Object, Object> binary = BINARY_FOLDINGS.get(instruction);
+        if (binary != null && optimized.size() >= 2) {
+            Object right = constantValue(optimized.get(optimized.size() - 1));
+            Object left = constantValue(optimized.get(optimized.size() - 2));
+            Object result = left == null || right == null ? null : binary.apply(left, right);
+
+            if (result != null) {
+                optimized.remove(optimized.size() - 1);
+                optimized.remove(optimized.size() - 1);
+                return constant(result);
+            }
+        }
+
+        if (ZERO_IDENTITIES.contains(instruction)) {
+            // x + 0, x | 0, x << 0 and similar operations leave the other operand unchanged
+            Object right = constantValue(lastOf(optimized));
+            Class<?> operandType = instruction.getName().startsWith("i32") ? Integer.class : Long.class;
+
+            if (operandType.isInstance(right) && ((Number) right).longValue() == 0) {
+                optimized.remove(optimized.size() - 1);
+                return null;
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Remove the constant directly preceding an instruction.
+     *
+     * @param optimized the optimized instructions
+     * @param type      the type of the constant
+     * @param <T>       the type of the constant
+     * @return the removed constant, or null, if the preceding instruction is not a constant of the type
+     */
+    private static <T> T takeConstant(List<InstructionInstance> optimized, Class<T> type) {
+        Object value = constantValue(lastOf(optimized));
+        if (!type.isInstance(value)) {
+            return null;
+        }
+
+        optimized.remove(optimized.size() - 1);
+        return type.cast(value);
+    }
+
+    private static Object constantValue(InstructionInstance instance) {
+        if (instance == null) {
+            return null;
+        } else if (instance.getInstruction() instanceof I32Const) {
+            return ((I32Const.Data) instance.getData()).getValue();
+        } else if (instance.getInstruction() instanceof I64Const) {
+            return ((I64Const.Data) instance.getData()).getValue();
+        }
+
+        return null;
+    }
+
+    private static InstructionInstance constant(Object value) {
+        if (value instanceof Integer) {
+            return instance(I32Const.INSTANCE, new I32Const.Data((Integer) value));
+        }
+
+        return instance(I64Const.INSTANCE, new I64Const.Data((Long) value));
+    }
+
+    private static InstructionInstance lastOf(List<InstructionInstance> optimized) {
+        return optimized.isEmpty() ? null : optimized.get(optimized.size() - 1);
+    }
+
+    /**
+     * Determine whether an instruction pushes a single value without consuming any
+     * and without any side effects.
+     */
+    private static boolean isPureSingleValue(WasmInstruction<?> instruction) {
+        return instruction instanceof I32Const ||
+                instruction instanceof I64Const ||
+                instruction instanceof F32Const ||
+                instruction instanceof F64Const ||
+                instruction instanceof LocalGet ||
+                instruction instanceof GlobalGet ||
+                instruction instanceof RefNull ||
+                instruction instanceof RefFunc;
+    }
+
+    /**
+     * Determine whether an instruction never continues with the following instruction.
+     */
+    private static boolean transfersControl(WasmInstruction<?> instruction) {
+        return instruction instanceof Br ||
+                instruction instanceof BrTable ||
+                instruction instanceof Return ||
+                instruction instanceof ReturnCall ||
+                instruction instanceof ReturnCallIndirect ||
+                instruction instanceof Unreachable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WasmInstruction<BlockData> instruction(InstructionInstance instance) {
+        return (WasmInstruction<BlockData>) instance.getInstruction();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <D extends WasmInstruction.Data> InstructionInstance instance(WasmInstruction<?> instruction, D data) {
+        return InstructionInstance.of((WasmInstruction<D>) instruction, data);
+    }
+
+    private static int bool(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static <T> void unary(
+            WasmInstruction<EmptyInstructionData> instruction,
+            Class<T> operandType,
+            Function<T, Object> operation
+    ) {
+        UNARY_FOLDINGS.put(instruction, (a) -> operandType.isInstance(a) ? operation.apply(operandType.cast(a)) : null);
+    }
+
+    private static void binaryI32(
+            WasmInstruction<EmptyInstructionData> instruction,
+            BiFunction<Integer, Integer, Integer> operation
+    ) {
+        BINARY_FOLDINGS.put(instruction, (a, b) -> a instanceof Integer && b instanceof Integer
+                ? operation.apply((Integer) a, (Integer) b)
+                : null);
+    }
+
+    private static void binaryI64(
+            WasmInstruction<EmptyInstructionData> instruction,
+            BiFunction<Long, Long, Object> operation
+    ) {
+        BINARY_FOLDINGS.put(instruction, (a, b) -> a instanceof Long && b instanceof Long
+                ? operation.apply((Long) a, (Long) b)
+                : null);
+    }
+}
@@ -23,6 +23,7 @@ public final class TranslatedFunctionSignature {
     private final JavaType javaReturnType;
     private final int ownerArgumentIndex;
     private final int continuationArgumentIndex;
+    private final int returnAreaArgumentIndex;
 
     private TranslatedFunctionSignature(
             List<ValueType> wasmArgumentTypes,
@@ -30,7 +31,8 @@ public final class TranslatedFunctionSignature {
             List<ValueType> wasmReturnTypes,
             JavaType javaReturnType,
             int ownerArgumentIndex,
-            int continuationArgumentIndex
+            int continuationArgumentIndex,
+            int returnAreaArgumentIndex
     ) {
         this.wasmArgumentTypes = wasmArgumentTypes;
         this.javaArgumentTypes = javaArgumentTypes;
@@ -38,6 +40,7 @@ public final class TranslatedFunctionSignature {
         this.javaReturnType = javaReturnType;
         this.ownerArgumentIndex = ownerArgumentIndex;
         this.continuationArgumentIndex = continuationArgumentIndex;
+        this.returnAreaArgumentIndex = returnAreaArgumentIndex;
     }
 
     /**
@@ -94,6 +97,19 @@ public final class TranslatedFunctionSignature {
         return continuationArgumentIndex;
     }
 
+    /**
+     * Retrieves the index of the return area argument in the Java function signature.
+     * <p>
+     * Functions returning multiple values may receive the multi value to return them in
+     * from their caller. The argument may be null, in which case the function allocates
+     * a new multi value.
+     *
+     * @return the index of the return area argument, or -1, if there is no return area argument
+     */
+    public int getReturnAreaArgumentIndex() {
+        return returnAreaArgumentIndex;
+    }
+
     /**
      * Retrieves the index of the given argument in the Java function signature.
      *
@@ -109,6 +125,10 @@ public final class TranslatedFunctionSignature {
             argument++;
         }
 
+        if (returnAreaArgumentIndex != -1 && argument >= returnAreaArgumentIndex) {
+            argument++;
+        }
+
         return argument;
     }
 
@@ -126,7 +146,26 @@ public final class TranslatedFunctionSignature {
             ObjectType owner,
             boolean enableContinuation
     ) throws WasmAssemblerException {
-        return of(functionType.getInputs(), functionType.getOutputs(), owner, enableContinuation);
+        return of(functionType.getInputs(), functionType.getOutputs(), owner, enableContinuation, false);
+    }
+
+    /**
+     * Compute the translated function signature from the given WebAssembly function type.
+     *
+     * @param functionType       the WebAssembly function type to translate
+     * @param owner              the type that owns the function
+     * @param enableContinuation whether the function has continuations enabled
+     * @param enableReturnArea   whether the caller passes the multi value to return multiple values in
+     * @return the translated function signature
+     * @throws WasmAssemblerException if the translation fails
+     */
+    public static TranslatedFunctionSignature of(
+            FunctionType functionType,
+            ObjectType owner,
+            boolean enableContinuation,
+            boolean enableReturnArea
+    ) throws WasmAssemblerException {
+        return of(functionType.getInputs(), functionType.getOutputs(), owner, enableContinuation, enableReturnArea);
     }
 
     /**
@@ -144,6 +183,29 @@ public final class TranslatedFunctionSignature {
             LargeArray<ValueType> outputs,
             ObjectType owner,
             boolean enableContinuation
+    ) throws WasmAssemblerException {
+        return of(inputs, outputs, owner, enableContinuation, false);
+    }
+
+    /**
+     * Compute the translated function signature from the given inputs and outputs.
+     * <p>
+     * The return area argument is only added if the function returns multiple values.
+     *
+     * @param inputs             the inputs of the function
+     * @param outputs            the outputs of the function
+     * @param owner              the type that owns the function
+     * @param enableContinuation whether the function has continuations enabled
+     * @param enableReturnArea   whether the caller passes the multi value to return multiple values in
+     * @return the translated function signature
+     * @throws WasmAssemblerException if the translation fails
+     */
+    public static TranslatedFunctionSignature of(
+            LargeArray<ValueType> inputs,
+            LargeArray<ValueType> outputs,
+            ObjectType owner,
+            boolean enableContinuation,
+            boolean enableReturnArea
     ) throws WasmAssemblerException {
         if (Long.compareUnsigned(inputs.length(), 255) > 0) {
             throw new WasmAssemblerException(
@@ -166,6 +228,13 @@ public final class TranslatedFunctionSignature {
             javaArgumentTypes.add(ContinuationHelper.CONTINUATION_TYPE);
         }
 
+        // The return area follows all other arguments
+        int returnAreaArgumentIndex = -1;
+        if (enableReturnArea && outputs.length() > 1) {
+            returnAreaArgumentIndex = javaArgumentTypes.size();
+            javaArgumentTypes.add(ObjectType.of(MultiValue.class));
+        }
+
         JavaType returnType;
         switch ((int) outputs.length()) {
             case 0:
@@ -191,7 +260,8 @@ public final class TranslatedFunctionSignature {
                 wasmReturnTypes,
                 returnType,
                 ownerArgumentIndex,
-                continuationArgumentIndex
+                continuationArgumentIndex,
+                returnAreaArgumentIndex
         );
     }
 }
@@ -0,0 +1,338 @@
+package net.janrupf.thunderwasm.assembler.precompile;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.generator.defaults.DefaultMemoryGenerator;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.instructions.InstructionSet;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.WasmModule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Compiles modules at build time into a jar.
+ * <p>
+ * The jar contains the generated classes, the data segments of the modules as resources
+ * and a descriptor at {@value #DESCRIPTOR_NAME}, which maps every module to its classes.
+ * Using the jar at runtime only requires the runtime part of this library, neither the
+ * assembler nor ASM are needed. The exception are modules compiled with profile
+ * instrumentation, their classes record to the
+ * {@link net.janrupf.thunderwasm.assembler.profile.WasmProfileRecorder}, so the
+ * {@code net.janrupf.thunderwasm.assembler.profile} package has to be available at runtime.
+ * <p>
+ * A profile applies to a single module, so it can only be used when precompiling one module.
+ * <p>
+ * The jar is reproducible, compiling the same modules twice results in identical jars.
+ */
+public final class WasmPrecompiler {
+    /**
+     * The name of the descriptor in the generated jar.
+     */
+    public static final String DESCRIPTOR_NAME = "META-INF/thunder-wasm/modules.properties";
+
+    // Fixed timestamp for all entries, keeps the jar reproducible
+    private static final long ENTRY_TIME = 315532800000L; // 1980-01-01T00:00:00Z
+
+    private final String packageName;
+    private final WasmAssemblerConfiguration configuration;
+    private final InstructionRegistry instructionRegistry;
+    private final Map<String, Path> modules;
+
+    /**
+     * Create a new precompiler.
+     *
+     * @param packageName   the package to generate the classes in
+     * @param configuration the configuration to use
+     */
+    public WasmPrecompiler(String packageName, WasmAssemblerConfiguration configuration) {
+        if (configuration.lazyCompilationEnabled()) {
+            throw new IllegalArgumentException("Lazy compilation can not be used when precompiling");
+        }
+
+        this.packageName = packageName;
+        this.configuration = configuration;
+        this.instructionRegistry = InstructionRegistry.builder().with(InstructionSet.BASE).build();
+        this.modules = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add a module to compile.
+     *
+     * @param className  the name of the module class
+     * @param modulePath the path of the binary module
+     * @return this
+     * @throws IllegalArgumentException if a module with the same class name has been added already,
+     *                                  or a profile is used and a module has been added already
+     */
+    public WasmPrecompiler addModule(String className, Path modulePath) {
+        if (modules.containsKey(className)) {
+            throw new IllegalArgumentException("Duplicate module class name: " + className);
+        }
+
+        if (configuration.profile() != null && !modules.isEmpty()) {
+            throw new IllegalArgumentException("A profile can only be used when precompiling a single module");
+        }
+
+        modules.put(className, modulePath);
+        return this;
+    }
+
+    /**
+     * Compile all modules and write the jar.
+     *
+     * @param output the path of the jar to write
+     * @throws IOException          if a module can not be read or the jar can not be written
+     * @throws ThunderWasmException if a module can not be loaded or assembled
+     */
+    public void writeJar(Path output) throws IOException, ThunderWasmException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        StringBuilder descriptor = new StringBuilder();
+
+        appendProperty(descriptor, "package", packageName);
+        appendProperty(descriptor, "configuration", configuration.toString());
+
+        for (Map.Entry<String, Path> module : modules.entrySet()) {
+            String className = module.getKey();
+            Map<String, byte[]> resources = new LinkedHashMap<>();
+
+            Map<String, byte[]> classes = compileModule(className, Files.readAllBytes(module.getValue()), resources);
+
+            for (Map.Entry<String, byte[]> generatedClass : classes.entrySet()) {
+                entries.put(generatedClass.getKey().replace('.', '/') + ".class", generatedClass.getValue());
+            }
+            entries.putAll(resources);
+
+            appendProperty(descriptor, className + ".source", module.getValue().getFileName().toString());
+            appendProperty(descriptor, className + ".class", classes.keySet().iterator().next());
+            appendProperty(descriptor, className + ".classes", String.join(",", classes.keySet()));
+            appendProperty(descriptor, className + ".resources", String.join(",", resources.keySet()));
+        }
+
+        entries.put(DESCRIPTOR_NAME, descriptor.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (OutputStream stream = Files.newOutputStream(output);
+             JarOutputStream jar = new JarOutputStream(stream)) {
+            writeEntry(jar, "META-INF/MANIFEST.MF", null);
+            manifest.write(jar);
+            jar.closeEntry();
+
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writeEntry(jar, entry.getKey(), entry.getValue());
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private Map<String, byte[]> compileModule(
+            String className,
+            byte[] moduleBytes,
+            Map<String, byte[]> resources
+    ) throws IOException, ThunderWasmException {
+        WasmLoader loader = new WasmLoader(ByteBuffer.wrap(moduleBytes), instructionRegistry);
+        loader.setParallelFunctionDecoding(configuration.parallelCompilationEnabled());
+
+        WasmModule module = loader.load();
+
+        WasmGenerators generators = new WasmGenerators()
+                .withMemoryGenerator(new DefaultMemoryGenerator(resources::put));
+
+        return new WasmAssembler(
+                module,
+                new ObjectWebASMClassFileEmitterFactory(configuration.methodOptimizationEnabled()),
+                packageName,
+                className,
+                generators,
+                configuration
+        ).assembleToClasses();
+    }
+
+    private static void writeEntry(JarOutputStream jar, String name, byte[] data) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(ENTRY_TIME);
+        jar.putNextEntry(entry);
+
+        if (data != null) {
+            jar.write(data);
+        }
+    }
+
+    private static void appendProperty(StringBuilder descriptor, String key, String value) {
+        descriptor.append(escapeProperty(key)).append('=').append(escapeProperty(value)).append('\n');
+    }
+
+    private static String escapeProperty(String value) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == '\\' || c == '=' || c == ':' || c == '#' || c == '!' || c == ' ') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Usage: {@code WasmPrecompiler [options] <ClassName>=<module.wasm>...}
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+        } catch (IOException | ThunderWasmException e) {
+            System.err.println("Failed to precompile modules: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static int run(String[] args) throws IOException, ThunderWasmException {
+        String packageName = null;
+        Path output = null;
+        WasmAssemblerConfiguration.Builder configuration = WasmAssemblerConfiguration.builder();
+        Map<String, Path> modules = new LinkedHashMap<>();
+        boolean profile = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+
+            switch (arg) {
+                case "--package":
+                    packageName = requireValue(args, ++i, arg);
+                    break;
+                case "--output":
+                    output = Paths.get(requireValue(args, ++i, arg));
+                    break;
+                case "--continuations":
+                    configuration.enableContinuations(true);
+                    break;
+                case "--inlining":
+                    configuration.enableInlining(true);
+                    break;
+                case "--parallel":
+                    configuration.enableParallelCompilation(true);
+                    break;
+                case "--optimize-expressions":
+                    configuration.enableExpressionOptimization(true);
+                    break;
+                case "--optimize-methods":
+                    configuration.enableMethodOptimization(true);
+                    break;
+                case "--block-split-size":
+                    configuration.blockSplitSizeThreshold(Integer.parseInt(requireValue(args, ++i, arg)));
+                    break;
+                case "--block-split-depth":
+                    configuration.blockSplitDepthThreshold(Integer.parseInt(requireValue(args, ++i, arg)));
+                    break;
+                case "--no-branch-hints":
+                    configuration.enableBranchHints(false);
+                    break;
+                case "--keep-dead-functions":
+                    configuration.enableDeadFunctionElimination(false);
+                    break;
+                case "--instrument":
+                    configuration.enableProfileInstrumentation(true);
+                    break;
+                case "--profile":
+                    configuration.profile(WasmProfile.read(Paths.get(requireValue(args, ++i, arg))));
+                    profile = true;
+                    break;
+                case "--class-split-threshold":
+                    configuration.classSplitThreshold(Integer.parseInt(requireValue(args, ++i, arg)));
+                    break;
+                case "--help":
+                    printUsage();
+                    return 0;
+                default: {
+                    int separator = arg.indexOf('=');
+                    if (arg.startsWith("--") || separator < 1) {
+                        System.err.println("Unknown argument: " + arg);
+                        printUsage();
+                        return 2;
+                    }
+
+                    modules.put(arg.substring(0, separator), Paths.get(arg.substring(separator + 1)));
+                    break;
+                }
+            }
+        }
+
+        if (packageName == null || output == null || modules.isEmpty()) {
+            printUsage();
+            return 2;
+        }
+
+        if (profile && modules.size() > 1) {
+            throw new IllegalArgumentException("A profile can only be used when precompiling a single module");
+        }
+
+        WasmPrecompiler precompiler = new WasmPrecompiler(packageName, configuration.build());
+        for (Map.Entry<String, Path> module : modules.entrySet()) {
+            precompiler.addModule(module.getKey(), module.getValue());
+        }
+
+        precompiler.writeJar(output);
+        return 0;
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+
+        return args[index];
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: WasmPrecompiler --package <name> --output <jar> [options] <ClassName>=<module.wasm>...");
+        System.err.println();
+        System.err.println("Options:");
+        System.err.println("  --continuations                  enable continuations");
+        System.err.println("  --inlining                       inline small functions into their callers");
+        System.err.println("  --parallel                       compile functions in parallel");
+        System.err.println("  --optimize-expressions           fold constants and remove unreachable code before emitting");
+        System.err.println("  --optimize-methods               run a peephole optimizer over the generated methods");
+        System.err.println("  --block-split-size <bytes>       split blocks out of methods larger than about <bytes> of bytecode");
+        System.err.println("  --block-split-depth <depth>      split blocks nested deeper than <depth>, 0 to disable");
+        System.err.println("  --no-branch-hints                ignore branch hints of the modules");
+        System.err.println("  --keep-dead-functions            compile functions which can never be called as well");
+        System.err.println("  --instrument                     record an execution profile when the modules run,");
+        System.err.println("                                   requires the assembler's profile package at runtime");
+        System.err.println("  --profile <file>                 optimize using a recorded profile, only for a single module");
+        System.err.println("  --class-split-threshold <count>  split modules into classes of about <count> instructions");
+    }
+}
@@ -0,0 +1,156 @@
+package net.janrupf.thunderwasm.assembler.profile;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
+import net.janrupf.thunderwasm.assembler.emitter.CodeEmitter;
+import net.janrupf.thunderwasm.assembler.emitter.InvokeType;
+import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.assembler.emitter.types.PrimitiveType;
+
+/**
+ * Helper for emitting the profile instrumentation of generated code.
+ * <p>
+ * Instrumented code records to the {@link WasmProfileRecorder} stored in a static field
+ * of the module class. All methods do nothing unless profile instrumentation is enabled.
+ */
+public final class ProfileHelper {
+    /**
+     * The name of the static field holding the recorder of the module.
+     */
+    public static final String RECORDER_FIELD_NAME = "$profile";
+
+    /**
+     * The type of the recorder.
+     */
+    public static final ObjectType RECORDER_TYPE = ObjectType.of(WasmProfileRecorder.class);
+
+    private ProfileHelper() {
+        throw new AssertionError("Static utility class");
+    }
+
+    /**
+     * Determine whether code emitted in the given context is instrumented.
+     *
+     * @param context the context to check
+     * @return true if the code is instrumented, false otherwise
+     */
+    public static boolean isInstrumented(CodeEmitContext context) {
+        return context.getConfiguration().profileInstrumentationEnabled() && context.getFunctionIndex() >= 0;
+    }
+
+    /**
+     * Emit the creation of the recorder in the static initializer of the module class.
+     *
+     * @param context       the context of the static initializer
+     * @param functionCount the amount of functions in the code section
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitCreateRecorder(CodeEmitContext context, int functionCount) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        ProfileSites sites = context.getLookups().findProfileSites();
+
+        emitter.loadConstant(emitter.getOwner());
+        emitter.loadConstant(sites.getModuleHash());
+        emitter.loadConstant(functionCount);
+        emitter.loadConstant(sites.getBranchSiteCount());
+        emitter.loadConstant(sites.getIndirectCallSiteCount());
+        emitter.invoke(
+                RECORDER_TYPE,
+                "register",
+                new JavaType[]{
+                        ObjectType.of(Class.class),
+                        ObjectType.of(String.class),
+                        PrimitiveType.INT,
+                        PrimitiveType.INT,
+                        PrimitiveType.INT
+                },
+                RECORDER_TYPE,
+                InvokeType.STATIC,
+                false
+        );
+        emitter.accessField(emitter.getOwner(), RECORDER_FIELD_NAME, RECORDER_TYPE, true, true);
+    }
+
+    /**
+     * Record a call of the function the context belongs to.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitRecordCall(CodeEmitContext context) throws WasmAssemblerException {
+        if (!isInstrumented(context)) {
+            return;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+
+        emitter.accessField(emitter.getOwner(), RECORDER_FIELD_NAME, RECORDER_TYPE, true, false);
+        emitter.loadConstant(context.getFunctionIndex());
+        emitter.invoke(
+                RECORDER_TYPE,
+                "recordCall",
+                new JavaType[]{PrimitiveType.INT},
+                PrimitiveType.VOID,
+                InvokeType.VIRTUAL,
+                false
+        );
+    }
+
+    /**
+     * Record the execution of the conditional branch currently being emitted.
+     * <p>
+     * Expects the condition on top of the stack and leaves it there.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitRecordBranch(CodeEmitContext context) throws WasmAssemblerException {
+        if (!isInstrumented(context) || context.getInstructionOffset() < 0) {
+            return;
+        }
+
+        int site = context.getLookups().findProfileSites()
+                .findBranchSite(context.getFunctionIndex(), context.getInstructionOffset());
+        emitRecordSite(context, "recordBranch", site);
+    }
+
+    /**
+     * Record the execution of the indirect call currently being emitted.
+     * <p>
+     * Expects the table slot on top of the stack and leaves it there.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitRecordIndirectCall(CodeEmitContext context) throws WasmAssemblerException {
+        if (!isInstrumented(context) || context.getInstructionOffset() < 0) {
+            return;
+        }
+
+        int site = context.getLookups().findProfileSites()
+                .findIndirectCallSite(context.getFunctionIndex(), context.getInstructionOffset());
+        emitRecordSite(context, "recordIndirectCall", site);
+    }
+
+    private static void emitRecordSite(CodeEmitContext context, String method, int site) throws WasmAssemblerException {
+        if (site < 0) {
+            // Not part of the original function body
+            return;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+
+        emitter.accessField(emitter.getOwner(), RECORDER_FIELD_NAME, RECORDER_TYPE, true, false);
+        emitter.loadConstant(site);
+        emitter.loadConstant(WasmProfile.siteKey(context.getFunctionIndex(), context.getInstructionOffset()));
+        emitter.invoke(
+                RECORDER_TYPE,
+                method,
+                new JavaType[]{PrimitiveType.INT, RECORDER_TYPE, PrimitiveType.INT, PrimitiveType.LONG},
+                PrimitiveType.INT,
+                InvokeType.STATIC,
+                false
+        );
+    }
+}
@@ -0,0 +1,229 @@
+package net.janrupf.thunderwasm.assembler.profile;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.instructions.Local;
+import net.janrupf.thunderwasm.lookup.ElementLookups;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.section.CodeSection;
+import net.janrupf.thunderwasm.module.section.FunctionSection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The sites of a module which are instrumented to record a profile.
+ * <p>
+ * Every conditional branch and every indirect call of the module is assigned a dense id,
+ * in code section order and ordered by instruction offset within a function. The ids only
+ * depend on the module, so all classes of a module agree on them, regardless of whether
+ * the functions are compiled in parallel, into companion classes or lazily. The recorder
+ * keeps its counters in arrays indexed by these ids.
+ * <p>
+ * Additionally, the code of the module is hashed, which allows detecting profiles
+ * which have been recorded for a different module.
+ */
+public final class ProfileSites {
+    private final int[][] branchOffsets;
+    private final int[] branchBases;
+    private final int branchSiteCount;
+
+    private final int[][] indirectCallOffsets;
+    private final int[] indirectCallBases;
+    private final int indirectCallSiteCount;
+
+    private final String moduleHash;
+
+    private ProfileSites(int[][] branchOffsets, int[][] indirectCallOffsets, String moduleHash) {
+        this.branchOffsets = branchOffsets;
+        this.branchBases = new int[branchOffsets.length];
+        this.branchSiteCount = assignBases(branchOffsets, branchBases);
+
+        this.indirectCallOffsets = indirectCallOffsets;
+        this.indirectCallBases = new int[indirectCallOffsets.length];
+        this.indirectCallSiteCount = assignBases(indirectCallOffsets, indirectCallBases);
+
+        this.moduleHash = moduleHash;
+    }
+
+    private static int assignBases(int[][] offsets, int[] bases) {
+        int count = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            bases[i] = count;
+            count += offsets[i].length;
+        }
+
+        return count;
+    }
+
+    /**
+     * Determine the sites of a module.
+     *
+     * @param lookups the lookups of the module
+     * @return the sites of the module
+     * @throws WasmAssemblerException if the functions of the module can not be analyzed
+     */
+    public static ProfileSites compute(ElementLookups lookups) throws WasmAssemblerException {
+        CodeSection codeSection = lookups.getModuleLookups().findSingleSection(CodeSection.LOCATOR);
+        FunctionSection functionSection = lookups.getModuleLookups().findSingleSection(FunctionSection.LOCATOR);
+
+        if (codeSection == null) {
+            if (functionSection != null && functionSection.getTypes().length() > 0) {
+                throw new WasmAssemblerException("Profile sites can not be determined before the code section is loaded");
+            }
+
+            return new ProfileSites(new int[0][], new int[0][], hash(new ByteArrayOutputStream()));
+        }
+
+        Function[] functions = codeSection.getFunctions().asFlatArray();
+        if (functions == null) {
+            throw new WasmAssemblerException("Too many functions for profile instrumentation");
+        }
+
+        int[][] branchOffsets = new int[functions.length][];
+        int[][] indirectCallOffsets = new int[functions.length][];
+
+        ByteArrayOutputStream hashed = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(hashed);
+
+        try {
+            out.writeInt(functions.length);
+            for (int i = 0; i < functions.length; i++) {
+                Expr expr = functions[i].getExpr();
+
+                AnalysisContext analysisContext = AnalysisContext.createForFunction(expr);
+                analysisContext.run();
+
+                branchOffsets[i] = sorted(analysisContext.getBranchSites());
+                indirectCallOffsets[i] = sorted(analysisContext.getIndirectCallSites());
+
+                out.writeInt(functionSection == null ? -1 : functionSection.getTypes().get(LargeArrayIndex.fromU32(i)));
+                writeFunction(out, functions[i], expr);
+                writeOffsets(out, branchOffsets[i]);
+                writeOffsets(out, indirectCallOffsets[i]);
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            throw new WasmAssemblerException("Failed to hash module", e);
+        }
+
+        return new ProfileSites(branchOffsets, indirectCallOffsets, hash(hashed));
+    }
+
+    private static int[] sorted(Set<Integer> offsets) {
+        int[] sorted = new int[offsets.size()];
+
+        int i = 0;
+        for (int offset : offsets) {
+            sorted[i++] = offset;
+        }
+
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void writeFunction(DataOutputStream out, Function function, Expr expr) throws IOException {
+        out.writeInt((int) function.getLocals().length());
+        for (Local local : function.getLocals()) {
+            out.writeInt(local.getCount());
+            out.writeUTF(local.getType().getName());
+        }
+
+        // Nested blocks are covered by the offsets of the instructions following them
+        out.writeInt(expr.getInstructionCount());
+        for (int i = 0; i < expr.getInstructionCount(); i++) {
+            out.writeByte(expr.getInstructionType(i).getOpCode());
+            out.writeUTF(expr.getInstructionType(i).getName());
+            out.writeInt(expr.getInstructionOffset(i));
+            out.writeLong(expr.hasPackedData(i) ? expr.getPackedData(i) : 0);
+        }
+    }
+
+    private static void writeOffsets(DataOutputStream out, int[] offsets) throws IOException {
+        out.writeInt(offsets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+    }
+
+    private static String hash(ByteArrayOutputStream hashed) throws WasmAssemblerException {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : messageDigest.digest(hashed.toByteArray())) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new WasmAssemblerException("Failed to hash module", e);
+        }
+    }
+
+    /**
+     * Find the id of a conditional branch.
+     *
+     * @param function the index of the function in the code section
+     * @param offset   the offset of the branch instruction in the function body
+     * @return the id of the site, or -1, if the instruction is not a known branch
+     */
+    public int findBranchSite(int function, int offset) {
+        return findSite(branchOffsets, branchBases, function, offset);
+    }
+
+    /**
+     * Find the id of an indirect call.
+     *
+     * @param function the index of the function in the code section
+     * @param offset   the offset of the call instruction in the function body
+     * @return the id of the site, or -1, if the instruction is not a known indirect call
+     */
+    public int findIndirectCallSite(int function, int offset) {
+        return findSite(indirectCallOffsets, indirectCallBases, function, offset);
+    }
+
+    private static int findSite(int[][] offsets, int[] bases, int function, int offset) {
+        if (function < 0 || function >= offsets.length) {
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(offsets[function], offset);
+        return index < 0 ? -1 : bases[function] + index;
+    }
+
+    /**
+     * Retrieve the amount of conditional branches in the module.
+     *
+     * @return the amount of branch sites
+     */
+    public int getBranchSiteCount() {
+        return branchSiteCount;
+    }
+
+    /**
+     * Retrieve the amount of indirect calls in the module.
+     *
+     * @return the amount of indirect call sites
+     */
+    public int getIndirectCallSiteCount() {
+        return indirectCallSiteCount;
+    }
+
+    /**
+     * Retrieve the hash of the code of the module.
+     *
+     * @return the hash as a hex string
+     */
+    public String getModuleHash() {
+        return moduleHash;
+    }
+}
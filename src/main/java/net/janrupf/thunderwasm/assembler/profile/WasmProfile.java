@@ -0,0 +1,371 @@
+package net.janrupf.thunderwasm.assembler.profile;
+
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Execution profile of a module recorded by an instrumented build.
+ * <p>
+ * The profile contains how often every function has been called, how often every
+ * conditional branch has been taken and which table slots every {@code call_indirect}
+ * dispatched to. Functions are identified by their index in the code section, branches
+ * and indirect calls by their function and the offset of the instruction in the function
+ * body. Profiles are therefore only valid for exactly the module they were recorded for,
+ * which is why they carry a hash of the module the assembler checks them against.
+ * <p>
+ * Use {@link WasmProfileRecorder} to record a profile and pass it to
+ * {@link net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration.Builder#profile(WasmProfile)}
+ * to assemble the module using it.
+ */
+public final class WasmProfile {
+    private static final int MAGIC = 0x54575046; // "TWPF"
+    private static final int FORMAT_VERSION = 2;
+
+    // Branches need to be executed at least this often for their ratio to be meaningful
+    private static final long MIN_BRANCH_COUNT = 64;
+
+    // A branch taken at most once in this many executions is unlikely
+    private static final long UNLIKELY_BRANCH_RATIO = 16;
+
+    // Functions with at least 1 / HOT_FUNCTION_RATIO of all calls are hot
+    private static final long HOT_FUNCTION_RATIO = 100;
+
+    // Targets of at least 1 / DOMINANT_TARGET_RATIO of the calls of a site are dominant
+    private static final long DOMINANT_TARGET_RATIO = 10;
+    private static final int MAX_DOMINANT_TARGETS = 4;
+    private static final long MIN_INDIRECT_CALL_COUNT = 64;
+
+    /**
+     * The slot under which calls to slots which have not been tracked individually are counted.
+     */
+    static final int UNTRACKED_SLOT = -1;
+
+    private final String moduleHash;
+    private final long[] callCounts;
+    private final Map<Long, long[]> branchCounts;
+    private final Map<Long, Map<Integer, Long>> indirectCallCounts;
+
+    private final long totalCalls;
+    private final Map<Integer, Map<Integer, BranchHint>> branchHints;
+    private volatile String digest;
+
+    /**
+     * Create a new profile.
+     *
+     * @param moduleHash         the hash of the module the profile has been recorded for
+     * @param callCounts         the amount of calls by function
+     * @param branchCounts       the taken and not taken counts by branch site
+     * @param indirectCallCounts the calls by table slot by indirect call site
+     */
+    WasmProfile(
+            String moduleHash,
+            long[] callCounts,
+            Map<Long, long[]> branchCounts,
+            Map<Long, Map<Integer, Long>> indirectCallCounts
+    ) {
+        this.moduleHash = moduleHash;
+        this.callCounts = callCounts;
+        this.branchCounts = branchCounts;
+        this.indirectCallCounts = indirectCallCounts;
+
+        long total = 0;
+        for (long count : callCounts) {
+            total += count;
+        }
+        this.totalCalls = total;
+
+        this.branchHints = new HashMap<>();
+        for (Map.Entry<Long, long[]> entry : branchCounts.entrySet()) {
+            BranchHint hint = deriveBranchHint(entry.getValue()[0], entry.getValue()[1]);
+            if (hint != null) {
+                branchHints.computeIfAbsent(siteFunction(entry.getKey()), (k) -> new HashMap<>())
+                        .put(siteOffset(entry.getKey()), hint);
+            }
+        }
+    }
+
+    private static BranchHint deriveBranchHint(long taken, long notTaken) {
+        long total = taken + notTaken;
+        if (total < MIN_BRANCH_COUNT) {
+            return null;
+        }
+
+        if (taken * UNLIKELY_BRANCH_RATIO <= total) {
+            return BranchHint.UNLIKELY;
+        } else if (notTaken * UNLIKELY_BRANCH_RATIO <= total) {
+            return BranchHint.LIKELY;
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieve the hash of the module this profile has been recorded for.
+     *
+     * @return the module hash, see {@link ProfileSites#getModuleHash()}
+     */
+    public String getModuleHash() {
+        return moduleHash;
+    }
+
+    /**
+     * Retrieve how often a function has been called.
+     *
+     * @param function the index of the function in the code section
+     * @return the amount of calls
+     */
+    public long getCallCount(int function) {
+        return function >= 0 && function < callCounts.length ? callCounts[function] : 0;
+    }
+
+    /**
+     * Determine whether a function accounts for a significant share of all calls.
+     *
+     * @param function the index of the function in the code section
+     * @return true if the function is hot, false otherwise
+     */
+    public boolean isHotFunction(int function) {
+        long count = getCallCount(function);
+        return count > 0 && count * HOT_FUNCTION_RATIO >= totalCalls;
+    }
+
+    /**
+     * Retrieve the branch hints derived from the recorded branch ratios of a function.
+     * <p>
+     * Only branches which have been executed often enough and are heavily biased
+     * towards one direction have a hint.
+     *
+     * @param function the index of the function in the code section
+     * @return the hints by the offset of the branch instruction
+     */
+    public Map<Integer, BranchHint> getBranchHints(int function) {
+        Map<Integer, BranchHint> hints = branchHints.get(function);
+        return hints == null ? Collections.emptyMap() : Collections.unmodifiableMap(hints);
+    }
+
+    /**
+     * Retrieve the table slots an indirect call site dispatches to most of the time.
+     *
+     * @param function the index of the function in the code section
+     * @param offset   the offset of the call instruction in the function body
+     * @return the dominant slots, most frequently called first, empty if there are none
+     */
+    public int[] getDominantIndirectCallTargets(int function, int offset) {
+        Map<Integer, Long> slots = indirectCallCounts.get(siteKey(function, offset));
+        if (slots == null) {
+            return new int[0];
+        }
+
+        long total = 0;
+        for (long count : slots.values()) {
+            total += count;
+        }
+
+        if (total < MIN_INDIRECT_CALL_COUNT) {
+            return new int[0];
+        }
+
+        List<Map.Entry<Integer, Long>> entries = new ArrayList<>(slots.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        int[] dominant = new int[Math.min(entries.size(), MAX_DOMINANT_TARGETS)];
+        int count = 0;
+        for (Map.Entry<Integer, Long> entry : entries) {
+            if (count == dominant.length || entry.getValue() * DOMINANT_TARGET_RATIO < total) {
+                break;
+            }
+
+            if (entry.getKey() == UNTRACKED_SLOT) {
+                continue;
+            }
+
+            dominant[count++] = entry.getKey();
+        }
+
+        return Arrays.copyOf(dominant, count);
+    }
+
+    /**
+     * Write this profile to a file.
+     *
+     * @param path the file to write to
+     * @throws IOException if the file can not be written
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Write this profile to a stream.
+     *
+     * @param stream the stream to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(moduleHash);
+
+        out.writeInt(callCounts.length);
+        for (long count : callCounts) {
+            out.writeLong(count);
+        }
+
+        // Sort the sites, equal profiles always have the same encoding
+        out.writeInt(branchCounts.size());
+        for (Map.Entry<Long, long[]> entry : new TreeMap<>(branchCounts).entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+
+        out.writeInt(indirectCallCounts.size());
+        for (Map.Entry<Long, Map<Integer, Long>> entry : new TreeMap<>(indirectCallCounts).entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeInt(entry.getValue().size());
+
+            for (Map.Entry<Integer, Long> slot : new TreeMap<>(entry.getValue()).entrySet()) {
+                out.writeInt(slot.getKey());
+                out.writeLong(slot.getValue());
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Read a profile from a file.
+     *
+     * @param path the file to read from
+     * @return the read profile
+     * @throws IOException if the file can not be read or is not a valid profile
+     */
+    public static WasmProfile read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Read a profile from a stream.
+     *
+     * @param stream the stream to read from
+     * @return the read profile
+     * @throws IOException if an I/O error occurs or the data is not a valid profile
+     */
+    public static WasmProfile read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a profile");
+        }
+
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported profile version " + version);
+        }
+
+        String moduleHash = in.readUTF();
+
+        long[] callCounts = new long[requireCount(in.readInt())];
+        for (int i = 0; i < callCounts.length; i++) {
+            callCounts[i] = in.readLong();
+        }
+
+        int branchSiteCount = requireCount(in.readInt());
+        Map<Long, long[]> branchCounts = new HashMap<>();
+        for (int i = 0; i < branchSiteCount; i++) {
+            long site = in.readLong();
+            branchCounts.put(site, new long[]{in.readLong(), in.readLong()});
+        }
+
+        int indirectSiteCount = requireCount(in.readInt());
+        Map<Long, Map<Integer, Long>> indirectCallCounts = new HashMap<>();
+        for (int i = 0; i < indirectSiteCount; i++) {
+            long site = in.readLong();
+            int slotCount = requireCount(in.readInt());
+
+            Map<Integer, Long> slots = new HashMap<>();
+            for (int j = 0; j < slotCount; j++) {
+                int slot = in.readInt();
+                slots.put(slot, in.readLong());
+            }
+
+            indirectCallCounts.put(site, slots);
+        }
+
+        return new WasmProfile(moduleHash, callCounts, branchCounts, indirectCallCounts);
+    }
+
+    private static int requireCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Invalid count " + count + " in profile");
+        }
+
+        return count;
+    }
+
+    /**
+     * Combine a function and instruction offset into a key identifying a site.
+     *
+     * @param function the index of the function in the code section
+     * @param offset   the offset of the instruction in the function body
+     * @return the key of the site
+     */
+    static long siteKey(int function, int offset) {
+        return ((long) function << 32) | Integer.toUnsignedLong(offset);
+    }
+
+    private static int siteFunction(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int siteOffset(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Describes this profile by a digest of its contents.
+     * <p>
+     * Profiles with different contents have different descriptions, which keeps
+     * configuration descriptions suitable for keying caches of generated code.
+     *
+     * @return the description of this profile
+     */
+    @Override
+    public String toString() {
+        String digest = this.digest;
+        if (digest == null) {
+            digest = computeDigest();
+            this.digest = digest;
+        }
+
+        return "WasmProfile{" + digest + "}";
+    }
+
+    private String computeDigest() {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            write(encoded);
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : messageDigest.digest(encoded.toByteArray())) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("Failed to compute profile digest", e);
+        }
+    }
+}
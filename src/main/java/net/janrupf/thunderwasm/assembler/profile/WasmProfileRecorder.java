@@ -0,0 +1,238 @@
+package net.janrupf.thunderwasm.assembler.profile;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the execution profile of a module assembled with profile instrumentation.
+ * <p>
+ * Every instrumented module class registers a recorder when it is initialized, which is
+ * shared by all of its instances. The counters are kept in arrays indexed by the ids the
+ * sites have been assigned during instrumentation, see {@link ProfileSites}. Counters are
+ * updated without atomic increments to keep the overhead of instrumented code low, so
+ * concurrent executions may lose some counts. The profile only needs to reflect the rough
+ * distribution of the execution.
+ */
+public final class WasmProfileRecorder {
+    private static final Map<Class<?>, WasmProfileRecorder> RECORDERS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Sites dispatching to more slots only track the first ones individually
+    private static final int MAX_TRACKED_SLOTS = 32;
+
+    // The slots of indirect call sites are stored incremented by one, so 0 marks a free entry
+    private static final int FREE_SLOT = 0;
+
+    private final String moduleHash;
+    private final AtomicLongArray callCounts;
+
+    private final AtomicLongArray branchSites;
+    private final AtomicLongArray branchCounts;
+
+    private final AtomicLongArray indirectCallSites;
+    private final AtomicIntegerArray indirectCallSlots;
+    private final AtomicLongArray indirectCallCounts;
+
+    private WasmProfileRecorder(String moduleHash, int functionCount, int branchSiteCount, int indirectCallSiteCount) {
+        this.moduleHash = moduleHash;
+        this.callCounts = new AtomicLongArray(functionCount);
+
+        this.branchSites = new AtomicLongArray(branchSiteCount);
+        this.branchCounts = new AtomicLongArray(branchSiteCount * 2);
+
+        this.indirectCallSites = new AtomicLongArray(indirectCallSiteCount);
+        this.indirectCallSlots = new AtomicIntegerArray(indirectCallSiteCount * MAX_TRACKED_SLOTS);
+        this.indirectCallCounts = new AtomicLongArray(indirectCallSiteCount * (MAX_TRACKED_SLOTS + 1));
+    }
+
+    /**
+     * Create the recorder of a module class.
+     * <p>
+     * Called by the static initializer of instrumented module classes.
+     *
+     * @param moduleClass           the module class
+     * @param moduleHash            the hash of the module, see {@link ProfileSites#getModuleHash()}
+     * @param functionCount         the amount of functions in the code section of the module
+     * @param branchSiteCount       the amount of conditional branches in the module
+     * @param indirectCallSiteCount the amount of indirect calls in the module
+     * @return the created recorder
+     */
+    public static WasmProfileRecorder register(
+            Class<?> moduleClass,
+            String moduleHash,
+            int functionCount,
+            int branchSiteCount,
+            int indirectCallSiteCount
+    ) {
+        WasmProfileRecorder recorder = new WasmProfileRecorder(
+                moduleHash, functionCount, branchSiteCount, indirectCallSiteCount);
+        RECORDERS.put(moduleClass, recorder);
+
+        return recorder;
+    }
+
+    /**
+     * Retrieve the recorder of a module class.
+     *
+     * @param moduleClass the module class
+     * @return the recorder of the class, or null, if the module has not been assembled
+     * with profile instrumentation or its class has not been initialized yet
+     */
+    public static WasmProfileRecorder forModuleClass(Class<?> moduleClass) {
+        return RECORDERS.get(moduleClass);
+    }
+
+    /**
+     * Record a call of a function.
+     *
+     * @param function the index of the function in the code section
+     */
+    public void recordCall(int function) {
+        increment(callCounts, function);
+    }
+
+    /**
+     * Record the execution of a conditional branch.
+     * <p>
+     * The condition is passed through, so the call can be inserted in front of the branch.
+     *
+     * @param condition the condition of the branch
+     * @param recorder  the recorder to record to
+     * @param site      the id of the branch site
+     * @param key       the key identifying the site in the profile
+     * @return the condition
+     */
+    public static int recordBranch(int condition, WasmProfileRecorder recorder, int site, long key) {
+        enterSite(recorder.branchSites, site, key);
+        increment(recorder.branchCounts, site * 2 + (condition != 0 ? 0 : 1));
+
+        return condition;
+    }
+
+    /**
+     * Record the execution of an indirect call.
+     * <p>
+     * The table slot is passed through, so the call can be inserted in front of the dispatch.
+     *
+     * @param slot     the table slot the call dispatches through
+     * @param recorder the recorder to record to
+     * @param site     the id of the indirect call site
+     * @param key      the key identifying the site in the profile
+     * @return the table slot
+     */
+    public static int recordIndirectCall(int slot, WasmProfileRecorder recorder, int site, long key) {
+        enterSite(recorder.indirectCallSites, site, key);
+
+        int tracked = recorder.findTrackedSlot(site, slot);
+        increment(recorder.indirectCallCounts, site * (MAX_TRACKED_SLOTS + 1) + tracked);
+
+        return slot;
+    }
+
+    private static void enterSite(AtomicLongArray sites, int site, long key) {
+        // Keys are stored incremented by one, so sites which have never been executed are 0
+        if (sites.get(site) == 0) {
+            sites.lazySet(site, key + 1);
+        }
+    }
+
+    private static void increment(AtomicLongArray counts, int index) {
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    private int findTrackedSlot(int site, int slot) {
+        if (slot < 0) {
+            // Out of bounds, the call is going to trap
+            return MAX_TRACKED_SLOTS;
+        }
+
+        int base = site * MAX_TRACKED_SLOTS;
+        for (int i = 0; i < MAX_TRACKED_SLOTS; i++) {
+            int tracked = indirectCallSlots.get(base + i);
+            if (tracked == slot + 1) {
+                return i;
+            }
+
+            // Another thread may claim the free entry first, possibly for the same slot
+            if (tracked == FREE_SLOT && (indirectCallSlots.compareAndSet(base + i, FREE_SLOT, slot + 1)
+                    || indirectCallSlots.get(base + i) == slot + 1)) {
+                return i;
+            }
+        }
+
+        // Megamorphic site, only count the call so the other slots are weighted correctly
+        return MAX_TRACKED_SLOTS;
+    }
+
+    /**
+     * Capture the counts recorded so far as a profile.
+     *
+     * @return the recorded profile
+     */
+    public WasmProfile snapshot() {
+        long[] calls = new long[callCounts.length()];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = callCounts.get(i);
+        }
+
+        Map<Long, long[]> branches = new HashMap<>();
+        for (int site = 0; site < branchSites.length(); site++) {
+            long taken = branchCounts.get(site * 2);
+            long notTaken = branchCounts.get(site * 2 + 1);
+            long key = branchSites.get(site);
+
+            if (key != 0 && taken + notTaken > 0) {
+                branches.put(key - 1, new long[]{taken, notTaken});
+            }
+        }
+
+        Map<Long, Map<Integer, Long>> indirectCalls = new HashMap<>();
+        for (int site = 0; site < indirectCallSites.length(); site++) {
+            Map<Integer, Long> slots = new HashMap<>();
+
+            int countBase = site * (MAX_TRACKED_SLOTS + 1);
+            for (int i = 0; i < MAX_TRACKED_SLOTS; i++) {
+                int slot = indirectCallSlots.get(site * MAX_TRACKED_SLOTS + i);
+                long count = indirectCallCounts.get(countBase + i);
+
+                if (slot != FREE_SLOT && count > 0) {
+                    slots.put(slot - 1, count);
+                }
+            }
+
+            long untracked = indirectCallCounts.get(countBase + MAX_TRACKED_SLOTS);
+            if (untracked > 0) {
+                slots.put(WasmProfile.UNTRACKED_SLOT, untracked);
+            }
+
+            long key = indirectCallSites.get(site);
+            if (key != 0 && !slots.isEmpty()) {
+                indirectCalls.put(key - 1, slots);
+            }
+        }
+
+        return new WasmProfile(moduleHash, calls, branches, indirectCalls);
+    }
+
+    /**
+     * Discard all counts recorded so far.
+     * <p>
+     * This allows excluding the startup of a service from the profile.
+     */
+    public void reset() {
+        clear(callCounts);
+        clear(branchCounts);
+        clear(indirectCallCounts);
+
+        for (int i = 0; i < indirectCallSlots.length(); i++) {
+            indirectCallSlots.set(i, FREE_SLOT);
+        }
+    }
+
+    private static void clear(AtomicLongArray counts) {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.janrupf.thunderwasm.engine;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * A module which has been compiled and defined by an {@link Engine}.
+ * <p>
+ * Compiled modules can be instantiated any number of times, concurrently from
+ * multiple threads. Instantiating does not generate or define any classes.
+ */
+public final class CompiledModule {
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, RuntimeLinker.class);
+
+    private final WasmModule module;
+    private final Class<?> moduleClass;
+    private final MethodHandle constructor;
+
+    CompiledModule(WasmModule module, Class<?> moduleClass) {
+        this.module = module;
+        this.moduleClass = moduleClass;
+
+        try {
+            this.constructor = MethodHandles.publicLookup()
+                    .findConstructor(moduleClass, MethodType.methodType(void.class, RuntimeLinker.class))
+                    .asType(CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Generated module class has no accessible constructor", e);
+        }
+    }
+
+    /**
+     * Retrieve the module this module has been compiled from.
+     *
+     * @return the source module
+     */
+    public WasmModule getModule() {
+        return module;
+    }
+
+    /**
+     * Retrieve the generated module class.
+     *
+     * @return the module class
+     */
+    public Class<?> getModuleClass() {
+        return moduleClass;
+    }
+
+    /**
+     * Create a new instance of this module.
+     *
+     * @param linker the linker to resolve the imports of the module with
+     * @return the created instance
+     * @throws ThunderWasmException if the imports can not be linked or the instance fails to initialize
+     */
+    public Instance instantiate(RuntimeLinker linker) throws ThunderWasmException {
+        Object instance;
+        try {
+            instance = (Object) constructor.invokeExact(linker);
+        } catch (ThunderWasmException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ThunderWasmException("Failed to instantiate module", t);
+        }
+
+        return new Instance(this, instance);
+    }
+}
@@ -0,0 +1,297 @@
+package net.janrupf.thunderwasm.engine;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.WasmLazyCompiler;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.instructions.InstructionSet;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.WasmModule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Compiles modules into {@link CompiledModule}s.
+ * <p>
+ * Every compiled module is defined in a class loader of its own, which allows the module
+ * to be unloaded once it and all of its instances are no longer referenced. Engines are
+ * thread safe, multiple modules may be compiled concurrently.
+ */
+public final class Engine {
+    private final WasmAssemblerConfiguration configuration;
+    private final Supplier<WasmGenerators> generators;
+    private final ClassFileEmitterFactory emitterFactory;
+    private final InstructionRegistry instructionRegistry;
+    private final ClassLoader parentClassLoader;
+    private final String packageName;
+    private final AtomicInteger moduleCounter;
+
+    private Engine(
+            WasmAssemblerConfiguration configuration,
+            Supplier<WasmGenerators> generators,
+            ClassFileEmitterFactory emitterFactory,
+            InstructionRegistry instructionRegistry,
+            ClassLoader parentClassLoader,
+            String packageName
+    ) {
+        this.configuration = configuration;
+        this.generators = generators;
+        this.emitterFactory = emitterFactory;
+        this.instructionRegistry = instructionRegistry;
+        this.parentClassLoader = parentClassLoader;
+        this.packageName = packageName;
+        this.moduleCounter = new AtomicInteger();
+    }
+
+    /**
+     * Create an engine with the default settings.
+     *
+     * @return the created engine
+     */
+    public static Engine create() {
+        return builder().build();
+    }
+
+    /**
+     * Load and compile a module.
+     *
+     * @param stream the stream to read the binary module from
+     * @return the compiled module
+     * @throws IOException          if the module can not be read
+     * @throws ThunderWasmException if the module can not be loaded or compiled
+     */
+    public CompiledModule compile(InputStream stream) throws IOException, ThunderWasmException {
+        return compile(load(new WasmLoader(stream, instructionRegistry)));
+    }
+
+    /**
+     * Load and compile a module from a file.
+     * <p>
+     * The file is mapped into memory, which is faster than reading it through a stream.
+     *
+     * @param path the path of the binary module
+     * @return the compiled module
+     * @throws IOException          if the module can not be read
+     * @throws ThunderWasmException if the module can not be loaded or compiled
+     */
+    public CompiledModule compile(Path path) throws IOException, ThunderWasmException {
+        return compile(load(WasmLoader.fromFile(path, instructionRegistry)));
+    }
+
+    /**
+     * Load and compile a module from a buffer.
+     *
+     * @param buffer the buffer containing the binary module, read from its position to its limit
+     * @return the compiled module
+     * @throws IOException          if the module can not be read
+     * @throws ThunderWasmException if the module can not be loaded or compiled
+     */
+    public CompiledModule compile(ByteBuffer buffer) throws IOException, ThunderWasmException {
+        return compile(load(new WasmLoader(buffer, instructionRegistry)));
+    }
+
+    private WasmModule load(WasmLoader loader) throws IOException, ThunderWasmException {
+        loader.setParallelFunctionDecoding(configuration.parallelCompilationEnabled());
+        return loader.load();
+    }
+
+    /**
+     * Compile a module.
+     *
+     * @param module the module to compile
+     * @return the compiled module
+     * @throws WasmAssemblerException if the module can not be compiled
+     */
+    public CompiledModule compile(WasmModule module) throws WasmAssemblerException {
+        String className = "Module" + moduleCounter.getAndIncrement();
+        ModuleClassLoader classLoader = new ModuleClassLoader(parentClassLoader);
+
+        Class<?> moduleClass;
+        if (configuration.lazyCompilationEnabled()) {
+            moduleClass = new WasmLazyCompiler(
+                    module,
+                    emitterFactory,
+                    packageName,
+                    className,
+                    generators,
+                    configuration,
+                    classLoader::define
+            ).defineModuleClass();
+        } else {
+            Map<String, byte[]> classes = new WasmAssembler(
+                    module,
+                    emitterFactory,
+                    packageName,
+                    className,
+                    generators.get(),
+                    configuration
+            ).assembleToClasses();
+
+            moduleClass = null;
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Class<?> defined = classLoader.define(entry.getKey(), entry.getValue());
+                if (moduleClass == null) {
+                    // The module class always comes first
+                    moduleClass = defined;
+                }
+            }
+        }
+
+        return new CompiledModule(module, moduleClass);
+    }
+
+    /**
+     * Create a new engine builder.
+     *
+     * @return the created builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private WasmAssemblerConfiguration configuration;
+        private Supplier<WasmGenerators> generators;
+        private ClassFileEmitterFactory emitterFactory;
+        private InstructionRegistry instructionRegistry;
+        private ClassLoader parentClassLoader;
+        private String packageName;
+
+        private Builder() {
+            this.configuration = WasmAssemblerConfiguration.DEFAULT;
+            this.generators = WasmGenerators::new;
+            this.emitterFactory = null;
+            this.instructionRegistry = null;
+            this.parentClassLoader = Engine.class.getClassLoader();
+            this.packageName = "net.janrupf.thunderwasm.generated";
+        }
+
+        /**
+         * Set the configuration modules are compiled with.
+         *
+         * @param configuration the configuration to use
+         * @return this
+         */
+        public Builder configuration(WasmAssemblerConfiguration configuration) {
+            this.configuration = configuration;
+            return this;
+        }
+
+        /**
+         * Set the supplier of the generators modules are compiled with.
+         * <p>
+         * The supplier is called for every generated class.
+         *
+         * @param generators the supplier of the generators
+         * @return this
+         */
+        public Builder generators(Supplier<WasmGenerators> generators) {
+            this.generators = generators;
+            return this;
+        }
+
+        /**
+         * Set the factory of the class file emitters modules are compiled with.
+         * <p>
+         * By default, an {@link ObjectWebASMClassFileEmitterFactory} is used, which optimizes
+         * the generated methods if {@link WasmAssemblerConfiguration#methodOptimizationEnabled()}.
+         *
+         * @param emitterFactory the factory to use, or null to use the default
+         * @return this
+         */
+        public Builder emitterFactory(ClassFileEmitterFactory emitterFactory) {
+            this.emitterFactory = emitterFactory;
+            return this;
+        }
+
+        /**
+         * Set the instructions known when loading modules.
+         *
+         * @param instructionRegistry the instruction registry to use
+         * @return this
+         */
+        public Builder instructionRegistry(InstructionRegistry instructionRegistry) {
+            this.instructionRegistry = instructionRegistry;
+            return this;
+        }
+
+        /**
+         * Set the parent of the class loaders the compiled modules are defined in.
+         * <p>
+         * The parent needs to be able to load the runtime classes of this library and
+         * the classes used by the generators.
+         *
+         * @param parentClassLoader the parent class loader
+         * @return this
+         */
+        public Builder parentClassLoader(ClassLoader parentClassLoader) {
+            this.parentClassLoader = parentClassLoader;
+            return this;
+        }
+
+        /**
+         * Set the package the classes of compiled modules are generated in.
+         *
+         * @param packageName the package name
+         * @return this
+         */
+        public Builder packageName(String packageName) {
+            this.packageName = packageName;
+            return this;
+        }
+
+        /**
+         * Finish this builder and build the engine.
+         *
+         * @return the built engine
+         */
+        public Engine build() {
+            InstructionRegistry registry = this.instructionRegistry;
+            if (registry == null) {
+                registry = InstructionRegistry.builder().with(InstructionSet.BASE).build();
+            }
+
+            ClassFileEmitterFactory factory = this.emitterFactory;
+            if (factory == null) {
+                factory = new ObjectWebASMClassFileEmitterFactory(configuration.methodOptimizationEnabled());
+            }
+
+            return new Engine(
+                    this.configuration,
+                    this.generators,
+                    factory,
+                    registry,
+                    this.parentClassLoader,
+                    this.packageName
+            );
+        }
+    }
+
+    /**
+     * Class loader holding the classes of a single compiled module.
+     */
+    private static final class ModuleClassLoader extends ClassLoader {
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private ModuleClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
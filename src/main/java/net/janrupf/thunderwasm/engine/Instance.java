@@ -0,0 +1,63 @@
+package net.janrupf.thunderwasm.engine;
+
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+
+import java.util.Map;
+
+/**
+ * An instance of a {@link CompiledModule}.
+ */
+public final class Instance {
+    private final CompiledModule compiledModule;
+    private final Object moduleInstance;
+
+    Instance(CompiledModule compiledModule, Object moduleInstance) {
+        this.compiledModule = compiledModule;
+        this.moduleInstance = moduleInstance;
+    }
+
+    /**
+     * Retrieve the compiled module this is an instance of.
+     *
+     * @return the compiled module
+     */
+    public CompiledModule getCompiledModule() {
+        return compiledModule;
+    }
+
+    /**
+     * Retrieve the instance of the generated module class.
+     *
+     * @return the module instance
+     */
+    public Object getModuleInstance() {
+        return moduleInstance;
+    }
+
+    /**
+     * Retrieve all exports of this instance.
+     *
+     * @return the exports, keyed by their name
+     * @throws IllegalStateException if the module has been generated without the default export interface
+     */
+    public Map<String, Object> getExports() {
+        if (!(moduleInstance instanceof WasmModuleExports)) {
+            throw new IllegalStateException("Module class does not implement " + WasmModuleExports.class.getName());
+        }
+
+        return ((WasmModuleExports) moduleInstance).getExports();
+    }
+
+    /**
+     * Retrieve a single export of this instance.
+     *
+     * @param name the name of the export
+     * @param type the expected type of the export
+     * @param <T>  the expected type of the export
+     * @return the export, or null, if there is no export with the given name
+     * @throws ClassCastException if the export is not of the expected type
+     */
+    public <T> T getExport(String name, Class<T> type) {
+        return type.cast(getExports().get(name));
+    }
+}
@@ -2,7 +2,6 @@ package net.janrupf.thunderwasm.eval;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.instructions.Expr;
-import net.janrupf.thunderwasm.instructions.InstructionInstance;
 import net.janrupf.thunderwasm.instructions.WasmInstruction;
 import net.janrupf.thunderwasm.lookup.ElementLookups;
 import net.janrupf.thunderwasm.types.ValueType;
@@ -52,9 +51,9 @@ public final class EvalContext {
      * @throws WasmAssemblerException if the evaluation fails
      */
     public void eval(Expr expr, boolean requireConst) throws WasmAssemblerException {
-        for (InstructionInstance instructionInstance : expr.getInstructions()) {
-            WasmInstruction<?> instruction = instructionInstance.getInstruction();
-            WasmInstruction.Data data = instructionInstance.getData();
+        for (int i = 0, count = expr.getInstructionCount(); i < count; i++) {
+            WasmInstruction<?> instruction = expr.getInstructionType(i);
+            WasmInstruction.Data data = expr.getInstructionData(i);
 
             if (requireConst && !instruction.isConst()) {
                 throw new WasmAssemblerException("Found non-const instruction in const expression: " + instruction.getName());
@@ -5,32 +5,223 @@ import net.janrupf.thunderwasm.module.WasmLoader;
 import net.janrupf.thunderwasm.util.CommonAlgorithms;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A collection of instructions that form an expression.
+ * <p>
+ * Expressions are stored packed to keep the footprint of decoded modules small. Every
+ * instruction is stored as its id in an int array and its immediate in a long array.
+ * Instructions without data don't store anything else, instructions which can pack their
+ * data (see {@link WasmInstruction#hasPackedData()}) store it as the immediate. All other
+ * data, including the nested expressions of blocks, is kept in a side table and the
+ * immediate is the index into the side table.
+ * <p>
+ * Analysis and emission should iterate the instructions using {@link #getInstructionType(int)}
+ * and {@link #getInstructionData(int)}, which don't allocate an {@link InstructionInstance}.
  */
 public final class Expr {
-    private final List<InstructionInstance> instructions;
+    /**
+     * The largest id an instruction can have to be stored in an expression.
+     */
+    static final int MAX_INSTRUCTION_ID = (1 << 28) - 1;
+
+    // The upper bits of an encoded instruction determine where its data is stored
+    private static final int DATA_KIND_SHIFT = 28;
+    private static final int DATA_EMPTY = 0;
+    private static final int DATA_PACKED = 1;
+    private static final int DATA_SIDE_TABLE = 2;
+
+    private static final long[] NO_IMMEDIATES = new long[0];
+    private static final WasmInstruction.Data[] NO_SIDE_TABLE = new WasmInstruction.Data[0];
+
+    private final int[] instructions;
+    private final long[] immediates;
+    private final WasmInstruction.Data[] sideTable;
+    private final int[] instructionOffsets;
+    private List<InstructionInstance> instructionList;
 
     public Expr(List<InstructionInstance> instructions) {
-        this.instructions = instructions;
+        this(instructions, null);
+    }
+
+    /**
+     * Create an expression which knows where its instructions are located in the function body.
+     *
+     * @param instructions       the instructions of the expression
+     * @param instructionOffsets the offsets of the instructions in the function body, or null if unknown
+     */
+    public Expr(List<InstructionInstance> instructions, int[] instructionOffsets) {
+        this(pack(instructions), instructionOffsets);
+    }
+
+    private Expr(Builder builder, int[] instructionOffsets) {
+        if (instructionOffsets != null && instructionOffsets.length < builder.size) {
+            throw new IllegalArgumentException("Expected at least " + builder.size +
+                    " instruction offsets, but got " + instructionOffsets.length);
+        }
+
+        this.instructions = Arrays.copyOf(builder.instructions, builder.size);
+        this.immediates = builder.hasImmediates ? Arrays.copyOf(builder.immediates, builder.size) : NO_IMMEDIATES;
+        this.sideTable = builder.sideTableSize > 0 ?
+                Arrays.copyOf(builder.sideTable, builder.sideTableSize) : NO_SIDE_TABLE;
+        this.instructionOffsets = instructionOffsets;
+    }
+
+    private static Builder pack(List<InstructionInstance> instructions) {
+        Builder builder = new Builder(instructions.size());
+        for (InstructionInstance instance : instructions) {
+            builder.add(instance.getInstruction(), instance.getData());
+        }
+
+        return builder;
     }
 
     /**
      * Retrieves the instructions of this expression.
+     * <p>
+     * The instances are created when accessed. Code iterating over the instructions should
+     * prefer {@link #getInstructionType(int)} and {@link #getInstructionData(int)}.
      *
      * @return the instructions of this expression
      */
     public List<InstructionInstance> getInstructions() {
-        return Collections.unmodifiableList(instructions);
+        // Racing threads create equivalent views, keeping either one is fine
+        List<InstructionInstance> list = instructionList;
+        if (list == null) {
+            list = new AbstractList<InstructionInstance>() {
+                @Override
+                public InstructionInstance get(int index) {
+                    return getInstruction(index);
+                }
+
+                @Override
+                public int size() {
+                    return instructions.length;
+                }
+            };
+            instructionList = list;
+        }
+
+        return list;
+    }
+
+    /**
+     * Retrieves the amount of instructions in this expression.
+     *
+     * @return the amount of instructions
+     */
+    public int getInstructionCount() {
+        return instructions.length;
+    }
+
+    /**
+     * Retrieves an instruction of this expression together with its data.
+     *
+     * @param index the index of the instruction
+     * @return the instruction at the given index
+     */
+    public InstructionInstance getInstruction(int index) {
+        return instance(getInstructionType(index), getInstructionData(index));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <D extends WasmInstruction.Data> InstructionInstance instance(
+            WasmInstruction<D> instruction,
+            WasmInstruction.Data data
+    ) {
+        return InstructionInstance.of(instruction, (D) data);
+    }
+
+    /**
+     * Retrieves the type of an instruction of this expression.
+     *
+     * @param index the index of the instruction
+     * @return the type of the instruction at the given index
+     */
+    public WasmInstruction<?> getInstructionType(int index) {
+        return WasmInstruction.byId(instructions[index] & MAX_INSTRUCTION_ID);
+    }
+
+    /**
+     * Retrieves the data of an instruction of this expression.
+     * <p>
+     * Packed data is unpacked by the instruction, which may create a new data object
+     * on every call.
+     *
+     * @param index the index of the instruction
+     * @return the data of the instruction at the given index
+     */
+    public WasmInstruction.Data getInstructionData(int index) {
+        int instruction = instructions[index];
+
+        switch (instruction >>> DATA_KIND_SHIFT) {
+            case DATA_EMPTY:
+                return EmptyInstructionData.INSTANCE;
+
+            case DATA_PACKED:
+                return WasmInstruction.byId(instruction & MAX_INSTRUCTION_ID).unpackData(immediates[index]);
+
+            default:
+                return sideTable[(int) immediates[index]];
+        }
+    }
+
+    /**
+     * Determines whether the data of an instruction is stored packed.
+     *
+     * @param index the index of the instruction
+     * @return true if the data is packed, false otherwise
+     */
+    public boolean hasPackedData(int index) {
+        return (instructions[index] >>> DATA_KIND_SHIFT) == DATA_PACKED;
+    }
+
+    /**
+     * Retrieves the packed data of an instruction without unpacking it.
+     * <p>
+     * This allows reading the immediates of frequent instructions without creating the data
+     * object, the instruction defines the meaning of the value.
+     *
+     * @param index the index of the instruction
+     * @return the packed data of the instruction
+     * @throws IllegalStateException if the data of the instruction is not packed
+     */
+    public long getPackedData(int index) {
+        if (!hasPackedData(index)) {
+            throw new IllegalStateException("Data of instruction " + index + " is not packed");
+        }
+
+        return immediates[index];
+    }
+
+    /**
+     * Determines whether the offsets of the instructions in the function body are known.
+     *
+     * @return true if the offsets are known, false otherwise
+     */
+    public boolean hasInstructionOffsets() {
+        return instructionOffsets != null;
+    }
+
+    /**
+     * Retrieves the offset of an instruction in the function body.
+     * <p>
+     * The offset is relative to the start of the function body including its local
+     * declarations, as used by code metadata sections.
+     *
+     * @param index the index of the instruction
+     * @return the offset of the instruction, or -1 if unknown
+     */
+    public int getInstructionOffset(int index) {
+        return instructionOffsets != null ? instructionOffsets[index] : -1;
     }
 
     @Override
     public String toString() {
-        return "<" + instructions.size() + " instructions>";
+        return "<" + instructions.length + " instructions>";
     }
 
     /**
@@ -75,10 +266,12 @@ public final class Expr {
      * @throws InvalidModuleException if the module is invalid
      */
     public static Pair readPair(WasmLoader loader, boolean allowSecondary) throws IOException, InvalidModuleException {
-        List<InstructionInstance> primaryInstructions = new ArrayList<>();
-        List<InstructionInstance> secondaryInstructions;
+        Builder primaryInstructions = new Builder(8);
+        Builder secondaryInstructions;
+        OffsetBuffer primaryOffsets = new OffsetBuffer();
+        OffsetBuffer secondaryOffsets = null;
 
-        byte opCode = readInstructionsUntil(loader, primaryInstructions, (byte) 0x0B, (byte) 0x05);
+        byte opCode = readInstructionsUntil(loader, primaryInstructions, primaryOffsets, (byte) 0x0B, (byte) 0x05);
 
         if (opCode == 0x05) {
             if (!allowSecondary) {
@@ -87,15 +280,16 @@ public final class Expr {
                 );
             }
 
-            secondaryInstructions = new ArrayList<>();
-            readInstructionsUntil(loader, secondaryInstructions, (byte) 0x0B);
+            secondaryInstructions = new Builder(8);
+            secondaryOffsets = new OffsetBuffer();
+            readInstructionsUntil(loader, secondaryInstructions, secondaryOffsets, (byte) 0x0B);
         } else {
             secondaryInstructions = null;
         }
 
         return new Pair(
-                new Expr(primaryInstructions),
-                secondaryInstructions == null ? null : new Expr(secondaryInstructions)
+                new Expr(primaryInstructions, primaryOffsets.toArray()),
+                secondaryInstructions == null ? null : new Expr(secondaryInstructions, secondaryOffsets.toArray())
         );
     }
 
@@ -103,7 +297,8 @@ public final class Expr {
      * Read instructions until one of the given endings is reached.
      *
      * @param loader       the loader to read the data from
-     * @param instructions the list to add the instructions to
+     * @param instructions the builder to add the instructions to
+     * @param offsets      the buffer to add the offsets of the instructions to
      * @param endings      the endings to stop at
      * @return the ending that was reached
      * @throws IOException            if an I/O error occurs
@@ -111,16 +306,93 @@ public final class Expr {
      */
     private static byte readInstructionsUntil(
             WasmLoader loader,
-            List<InstructionInstance> instructions,
+            Builder instructions,
+            OffsetBuffer offsets,
             byte... endings
     ) throws IOException, InvalidModuleException {
         while (true) {
+            int offset = loader.instructionOffset();
             byte opCode = loader.requireByte();
             if (CommonAlgorithms.byteArrayContains(endings, opCode)) {
                 return opCode;
             }
 
-            instructions.add(loader.readInstructionData(opCode));
+            offsets.add(offset);
+            readInstruction(loader, loader.decodeInstruction(opCode), instructions);
+        }
+    }
+
+    private static <D extends WasmInstruction.Data> void readInstruction(
+            WasmLoader loader,
+            WasmInstruction<D> instruction,
+            Builder instructions
+    ) throws IOException, InvalidModuleException {
+        instructions.add(instruction, instruction.readData(loader));
+    }
+
+    /**
+     * Growable packed buffer of instructions.
+     */
+    private static final class Builder {
+        private int[] instructions;
+        private long[] immediates;
+        private WasmInstruction.Data[] sideTable;
+        private int size;
+        private int sideTableSize;
+        private boolean hasImmediates;
+
+        Builder(int capacity) {
+            this.instructions = new int[Math.max(capacity, 1)];
+            this.immediates = new long[Math.max(capacity, 1)];
+            this.sideTable = NO_SIDE_TABLE;
+        }
+
+        @SuppressWarnings("unchecked")
+        <D extends WasmInstruction.Data> void add(WasmInstruction<D> instruction, WasmInstruction.Data data) {
+            if (size == instructions.length) {
+                instructions = Arrays.copyOf(instructions, size * 2);
+                immediates = Arrays.copyOf(immediates, size * 2);
+            }
+
+            int kind;
+            if (data == EmptyInstructionData.INSTANCE) {
+                kind = DATA_EMPTY;
+            } else if (instruction.hasPackedData()) {
+                kind = DATA_PACKED;
+                immediates[size] = instruction.packData((D) data);
+                hasImmediates = true;
+            } else {
+                if (sideTableSize == sideTable.length) {
+                    sideTable = Arrays.copyOf(sideTable, Math.max(sideTableSize * 2, 4));
+                }
+
+                kind = DATA_SIDE_TABLE;
+                immediates[size] = sideTableSize;
+                sideTable[sideTableSize++] = data;
+                hasImmediates = true;
+            }
+
+            instructions[size++] = instruction.getId() | (kind << DATA_KIND_SHIFT);
+        }
+    }
+
+    /**
+     * Growable buffer of instruction offsets which avoids boxing.
+     */
+    private static final class OffsetBuffer {
+        private int[] offsets = new int[8];
+        private int size;
+
+        void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+
+            offsets[size++] = offset;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(offsets, size);
         }
     }
 
@@ -1,23 +1,74 @@
 package net.janrupf.thunderwasm.instructions;
 
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.module.InvalidModuleException;
 import net.janrupf.thunderwasm.module.encoding.LargeArray;
 
+import java.io.IOException;
+
 public final class Function {
     private final Expr expr;
+    private final BodyDecoder bodyDecoder;
     private final LargeArray<Local> locals;
 
+    private Expr decodedExpr;
+
     public Function(Expr expr, LargeArray<Local> locals) {
         this.expr = expr;
+        this.bodyDecoder = null;
+        this.locals = locals;
+    }
+
+    /**
+     * Create a function whose body is decoded when it is first needed.
+     * <p>
+     * The body is decoded once and kept until {@link #discardDecodedExpr()} is called, which
+     * the assembler does once it has assembled the module.
+     *
+     * @param bodyDecoder the decoder for the function body
+     * @param locals      the local variables of the function
+     */
+    public Function(BodyDecoder bodyDecoder, LargeArray<Local> locals) {
+        this.expr = null;
+        this.bodyDecoder = bodyDecoder;
         this.locals = locals;
     }
 
     /**
      * Retrieves the function body as an expression.
+     * <p>
+     * Bodies which are decoded lazily are decoded on the first call and returned from
+     * then on, until the decoded body is discarded.
      *
      * @return the function body
+     * @throws WasmAssemblerException if the body is decoded lazily and is invalid
+     */
+    public Expr getExpr() throws WasmAssemblerException {
+        if (expr != null) {
+            return expr;
+        }
+
+        synchronized (this) {
+            if (decodedExpr == null) {
+                try {
+                    decodedExpr = bodyDecoder.decode();
+                } catch (IOException | InvalidModuleException e) {
+                    throw new WasmAssemblerException("Failed to decode function body", e);
+                }
+            }
+
+            return decodedExpr;
+        }
+    }
+
+    /**
+     * Discard the decoded body of a function whose body is decoded lazily.
+     * <p>
+     * The body is decoded again on the next call to {@link #getExpr()}. Bodies which
+     * have been decoded when the function was loaded are kept.
      */
-    public Expr getExpr() {
-        return expr;
+    public synchronized void discardDecodedExpr() {
+        decodedExpr = null;
     }
 
     /**
@@ -28,4 +79,19 @@ public final class Function {
     public LargeArray<Local> getLocals() {
         return locals;
     }
+
+    /**
+     * Decodes the body of a function on demand.
+     */
+    @FunctionalInterface
+    public interface BodyDecoder {
+        /**
+         * Decode the function body.
+         *
+         * @return the decoded body
+         * @throws IOException            if the body can not be read
+         * @throws InvalidModuleException if the body is invalid
+         */
+        Expr decode() throws IOException, InvalidModuleException;
+    }
 }
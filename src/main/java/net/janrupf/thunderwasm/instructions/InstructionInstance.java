@@ -12,6 +12,25 @@ public final class InstructionInstance {
         this.data = data;
     }
 
+    /**
+     * Retrieves an instance of an instruction with its data.
+     * <p>
+     * Instances are immutable, so instructions without data share a single instance
+     * instead of allocating one per occurrence.
+     *
+     * @param instruction the instruction
+     * @param data        the data of the instruction
+     * @param <T>         the type of the instruction data
+     * @return the instruction instance
+     */
+    public static <T extends WasmInstruction.Data> InstructionInstance of(WasmInstruction<T> instruction, T data) {
+        if (data == EmptyInstructionData.INSTANCE) {
+            return instruction.getEmptyDataInstance();
+        }
+
+        return new InstructionInstance(instruction, data);
+    }
+
     /**
      * Retrieves the actual instruction of this instance.
      *
@@ -73,6 +73,8 @@ public final class InstructionSet {
             Return.INSTANCE,
             Call.INSTANCE,
             CallIndirect.INSTANCE,
+            ReturnCall.INSTANCE,
+            ReturnCallIndirect.INSTANCE,
 
             // Variable instructions
             LocalGet.INSTANCE,
@@ -9,15 +9,58 @@ import net.janrupf.thunderwasm.module.InvalidModuleException;
 import net.janrupf.thunderwasm.module.WasmLoader;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 
 public abstract class WasmInstruction<D extends WasmInstruction.Data> {
+    // Copied on every registration, instructions are only created once per type
+    private static volatile WasmInstruction<?>[] instructionsById = new WasmInstruction<?>[0];
+
     private final String name;
     private final byte opCode;
+    private final int id;
+    private volatile InstructionInstance emptyDataInstance;
 
     public WasmInstruction(String name, byte opCode) {
         this.name = name;
         this.opCode = opCode;
+        this.id = register(this);
+    }
+
+    private static synchronized int register(WasmInstruction<?> instruction) {
+        WasmInstruction<?>[] instructions = Arrays.copyOf(instructionsById, instructionsById.length + 1);
+
+        int id = instructions.length - 1;
+        if (id > Expr.MAX_INSTRUCTION_ID) {
+            throw new IllegalStateException("Too many instructions, can not register " + instruction.getName());
+        }
+
+        instructions[id] = instruction;
+        instructionsById = instructions;
+
+        return id;
+    }
+
+    /**
+     * Retrieves an instruction by its id.
+     *
+     * @param id the id of the instruction
+     * @return the instruction with the given id
+     */
+    static WasmInstruction<?> byId(int id) {
+        return instructionsById[id];
+    }
+
+    /**
+     * Retrieves the id of the instruction.
+     * <p>
+     * The id is unique among all instructions and used by {@link Expr} to store the
+     * instruction in a primitive array.
+     *
+     * @return the id of the instruction
+     */
+    final int getId() {
+        return id;
     }
 
     /**
@@ -49,6 +92,23 @@ public abstract class WasmInstruction<D extends WasmInstruction.Data> {
         return InstructionDecoder.opCodeOnly(this);
     }
 
+    /**
+     * Retrieves the shared instance of this instruction without data.
+     *
+     * @return the shared instance
+     */
+    @SuppressWarnings("unchecked")
+    final InstructionInstance getEmptyDataInstance() {
+        InstructionInstance instance = emptyDataInstance;
+        if (instance == null) {
+            // Racing threads create equivalent instances, keeping either one is fine
+            instance = new InstructionInstance((WasmInstruction<EmptyInstructionData>) this, EmptyInstructionData.INSTANCE);
+            emptyDataInstance = instance;
+        }
+
+        return instance;
+    }
+
     @Override
     public final String toString() {
         return getName() + " (0x" + Integer.toUnsignedString(((int) getOpCode()) & 0xFF, 16) + ")";
@@ -77,6 +137,39 @@ public abstract class WasmInstruction<D extends WasmInstruction.Data> {
      */
     public abstract D readData(WasmLoader loader) throws IOException, InvalidModuleException;
 
+    /**
+     * Determines whether the data of this instruction can be packed into a single long.
+     * <p>
+     * Expressions store packed data in a primitive array instead of keeping the data
+     * objects alive, the data is recreated using {@link #unpackData(long)} when required.
+     * Data which can't be packed is kept in a side table of the expression.
+     *
+     * @return true if the data can be packed, false otherwise
+     */
+    public boolean hasPackedData() {
+        return false;
+    }
+
+    /**
+     * Pack the data of this instruction into a single long.
+     *
+     * @param data the data to pack
+     * @return the packed data
+     */
+    public long packData(D data) {
+        throw new UnsupportedOperationException("Instruction " + getName() + " does not pack its data");
+    }
+
+    /**
+     * Recreate the data of this instruction from its packed form.
+     *
+     * @param packed the packed data
+     * @return the unpacked data
+     */
+    public D unpackData(long packed) {
+        throw new UnsupportedOperationException("Instruction " + getName() + " does not pack its data");
+    }
+
     /**
      * Process inputs and prepare for code generation.
      * This phase validates instruction inputs and consumes operands from the stack.
@@ -13,7 +13,7 @@ public final class BlockData implements WasmInstruction.Data {
     private final Expr primaryExpression;
     private final Expr secondaryExpression;
 
-    private BlockData(BlockType type, Expr primaryExpression, Expr secondaryExpression) {
+    public BlockData(BlockType type, Expr primaryExpression, Expr secondaryExpression) {
         this.type = type;
         this.primaryExpression = primaryExpression;
         this.secondaryExpression = secondaryExpression;
@@ -24,6 +24,21 @@ public final class Br extends WasmInstruction<LabelData> {
         return LabelData.read(loader);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(LabelData data) {
+        return data.getLabelIndex();
+    }
+
+    @Override
+    public LabelData unpackData(long packed) {
+        return LabelData.of((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, LabelData data) throws WasmAssemblerException {
         final int labelIndex = data.getLabelIndex();
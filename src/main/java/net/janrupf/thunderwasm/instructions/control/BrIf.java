@@ -2,9 +2,11 @@ package net.janrupf.thunderwasm.instructions.control;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
 import net.janrupf.thunderwasm.assembler.WasmFrameState;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeLabel;
 import net.janrupf.thunderwasm.assembler.emitter.JumpCondition;
+import net.janrupf.thunderwasm.assembler.profile.ProfileHelper;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
 import net.janrupf.thunderwasm.instructions.WasmInstruction;
 import net.janrupf.thunderwasm.instructions.control.internal.BlockHelper;
@@ -28,6 +30,26 @@ public final class BrIf extends WasmInstruction<LabelData> {
         return LabelData.read(loader);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(LabelData data) {
+        return data.getLabelIndex();
+    }
+
+    @Override
+    public LabelData unpackData(long packed) {
+        return LabelData.of((int) packed);
+    }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, LabelData data) {
+        context.markBranchSite();
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, LabelData data) throws WasmAssemblerException {
         context.getFrameState().popOperand(NumberType.I32);
@@ -54,6 +76,8 @@ public final class BrIf extends WasmInstruction<LabelData> {
             public void emitBytecode(CodeEmitContext context) throws WasmAssemblerException {
                 WasmFrameState branched = context.getFrameState().branch();
 
+                ProfileHelper.emitRecordBranch(context);
+
                 CodeLabel zeroLabel = context.getEmitter().newLabel();
                 context.getEmitter().jump(JumpCondition.INT_EQUAL_ZERO, zeroLabel);
 
@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.control;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.imports.TypeImportDescription;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
@@ -27,6 +28,21 @@ public final class Call extends WasmInstruction<Call.Data> {
         return new Data(functionIndex);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return data.getFunctionIndex();
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final FoundElement<Integer, TypeImportDescription> functionTypeIndex = context.getLookups().requireFunctionTypeIndex(
@@ -52,6 +68,11 @@ public final class Call extends WasmInstruction<Call.Data> {
         };
     }
 
+    @Override
+    public void runAnalysis(AnalysisContext context, Data data) {
+        context.markCall(data.getFunctionIndex());
+    }
+
     public static final class Data implements WasmInstruction.Data {
         private final int functionIndex;
 
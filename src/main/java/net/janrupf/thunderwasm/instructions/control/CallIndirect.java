@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.control;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.imports.TableImportDescription;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
@@ -31,6 +32,21 @@ public final class CallIndirect extends WasmInstruction<CallIndirect.Data> {
         return new Data(typeIndex, tableIndex);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return ((long) data.getTypeIndex() << 32) | Integer.toUnsignedLong(data.getTableIndex());
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data((int) (packed >>> 32), (int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         context.getFrameState().popOperand(NumberType.I32);
@@ -66,6 +82,12 @@ public final class CallIndirect extends WasmInstruction<CallIndirect.Data> {
         };
     }
 
+    @Override
+    public void runAnalysis(AnalysisContext context, Data data) {
+        context.markCall();
+        context.markIndirectCallSite();
+    }
+
     public static final class Data implements WasmInstruction.Data {
         private final int typeIndex;
         private final int tableIndex;
@@ -7,12 +7,14 @@ import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitter;
 import net.janrupf.thunderwasm.assembler.emitter.CodeLabel;
 import net.janrupf.thunderwasm.assembler.emitter.JumpCondition;
+import net.janrupf.thunderwasm.assembler.profile.ProfileHelper;
 import net.janrupf.thunderwasm.instructions.Expr;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
 import net.janrupf.thunderwasm.instructions.WasmInstruction;
 import net.janrupf.thunderwasm.instructions.control.internal.BlockHelper;
 import net.janrupf.thunderwasm.module.InvalidModuleException;
 import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
 import net.janrupf.thunderwasm.types.NumberType;
 
 import java.io.IOException;
@@ -47,37 +49,43 @@ public final class If extends WasmInstruction<BlockData> {
 
                 Expr falseExpr = data.getSecondaryExpression();
 
+                // Lay out the likely branch as the fall through path and move a cold true branch
+                // behind the false branch
+                boolean trueBranchFirst = falseExpr == null ||
+                        !context.getAnalysisResult().isColdBlock(data.getPrimaryExpression());
+
                 CodeLabel endLabel = emitter.newLabel();
-                CodeLabel falseLabel = falseExpr == null ? endLabel : emitter.newLabel();
+                CodeLabel secondLabel = falseExpr == null ? endLabel : emitter.newLabel();
 
                 WasmFrameState beforeFirstBranch = context.getFrameState().branch();
 
-                emitter.jump(JumpCondition.INT_EQUAL_ZERO, falseLabel);
+                ProfileHelper.emitRecordBranch(context);
+                emitter.jump(trueBranchFirst ? JumpCondition.INT_EQUAL_ZERO : JumpCondition.INT_NOT_EQUAL_ZERO, secondLabel);
 
-                BlockHelper.ProcessedBlock trueBranch = processBranch(context, true);
-                trueBranch.emitBytecode(context);
-                trueBranch.processOutputs(context);
+                BlockHelper.ProcessedBlock firstBranch = processBranch(context, trueBranchFirst);
+                firstBranch.emitBytecode(context);
+                firstBranch.processOutputs(context);
 
                 if (falseExpr != null) {
-                    WasmFrameState trueBranchState = null;
+                    WasmFrameState firstBranchState = null;
 
                     if (context.getFrameState().isReachable()) {
                         emitter.jump(JumpCondition.ALWAYS, endLabel);
-                        trueBranchState = context.getFrameState().branch();
+                        firstBranchState = context.getFrameState().branch();
                     }
-                    emitter.resolveLabel(falseLabel);
+                    emitter.resolveLabel(secondLabel);
 
                     // Reset the stack state to before the branch, it never happened in this timeline
                     context.restoreFrameStateAfterBranch(beforeFirstBranch);
 
-                    BlockHelper.ProcessedBlock falseBranch = processBranch(context, false);
-                    falseBranch.emitBytecode(context);
-                    falseBranch.processOutputs(context);
+                    BlockHelper.ProcessedBlock secondBranch = processBranch(context, !trueBranchFirst);
+                    secondBranch.emitBytecode(context);
+                    secondBranch.processOutputs(context);
 
-                    if (!context.getFrameState().isReachable() && trueBranchState != null) {
+                    if (!context.getFrameState().isReachable() && firstBranchState != null) {
                         // If the second branch is not reachable, but the first one was, we need to restore the state
                         // to what it was after the first branch
-                        context.restoreFrameStateAfterBranch(trueBranchState);
+                        context.restoreFrameStateAfterBranch(firstBranchState);
                     }
                 } else {
                     // Mainly required for correct reachability analysis - an if with only a true branch
@@ -113,11 +121,20 @@ public final class If extends WasmInstruction<BlockData> {
 
     @Override
     public void runAnalysis(AnalysisContext context, BlockData data) throws WasmAssemblerException {
+        context.markBranchSite();
+        BranchHint hint = context.getBranchHint();
+
         AnalysisContext primarySubcontext = context.branchForExpression(data.getPrimaryExpression());
+        if (hint == BranchHint.UNLIKELY) {
+            primarySubcontext.markCold();
+        }
         primarySubcontext.run();
 
         if (data.getSecondaryExpression() != null) {
             AnalysisContext secondarySubcontext = context.branchForExpression(data.getSecondaryExpression());
+            if (hint == BranchHint.LIKELY) {
+                secondarySubcontext.markCold();
+            }
             secondarySubcontext.run();
         }
     }
@@ -6,12 +6,37 @@ import net.janrupf.thunderwasm.module.WasmLoader;
 import java.io.IOException;
 
 public final class LabelData implements WasmInstruction.Data {
+    private static final LabelData[] CACHE = new LabelData[64];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new LabelData(i);
+        }
+    }
+
     private final int labelIndex;
 
-    private LabelData(int labelIndex) {
+    public LabelData(int labelIndex) {
         this.labelIndex = labelIndex;
     }
 
+    /**
+     * Retrieves the data for a label index.
+     * <p>
+     * Data for the innermost labels is shared, which keeps unpacking the data of branch
+     * instructions from an {@link net.janrupf.thunderwasm.instructions.Expr} free of allocations.
+     *
+     * @param labelIndex the index of the label
+     * @return the data for the label index
+     */
+    public static LabelData of(int labelIndex) {
+        if (labelIndex >= 0 && labelIndex < CACHE.length) {
+            return CACHE[labelIndex];
+        }
+
+        return new LabelData(labelIndex);
+    }
+
     /**
      * Retrieves the index of the label.
      *
@@ -34,6 +59,6 @@ public final class LabelData implements WasmInstruction.Data {
      * @throws IOException if an I/O error occurs
      */
     public static LabelData read(WasmLoader loader) throws IOException {
-        return new LabelData(loader.readU32());
+        return of(loader.readU32());
     }
 }
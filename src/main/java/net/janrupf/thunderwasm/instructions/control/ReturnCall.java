@@ -0,0 +1,115 @@
+package net.janrupf.thunderwasm.instructions.control;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
+import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
+import net.janrupf.thunderwasm.assembler.emitter.CodeLabel;
+import net.janrupf.thunderwasm.imports.TypeImportDescription;
+import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
+import net.janrupf.thunderwasm.instructions.WasmInstruction;
+import net.janrupf.thunderwasm.instructions.control.internal.BlockHelper;
+import net.janrupf.thunderwasm.instructions.control.internal.ControlHelper;
+import net.janrupf.thunderwasm.instructions.control.internal.TailCallHelper;
+import net.janrupf.thunderwasm.lookup.FoundElement;
+import net.janrupf.thunderwasm.module.InvalidModuleException;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.types.FunctionType;
+
+import java.io.IOException;
+
+public final class ReturnCall extends WasmInstruction<ReturnCall.Data> {
+    public static final ReturnCall INSTANCE = new ReturnCall();
+
+    private ReturnCall() {
+        super("return_call", (byte) 0x12);
+    }
+
+    @Override
+    public Data readData(WasmLoader loader) throws IOException, InvalidModuleException {
+        int functionIndex = loader.readU32();
+        return new Data(functionIndex);
+    }
+
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return data.getFunctionIndex();
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data((int) packed);
+    }
+
+    @Override
+    public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
+        final FoundElement<Integer, TypeImportDescription> functionTypeIndex = context.getLookups().requireFunctionTypeIndex(
+                LargeArrayIndex.fromU32(data.getFunctionIndex()));
+        final FunctionType functionType = context.getLookups().resovleFunctionType(functionTypeIndex);
+
+        TailCallHelper.validateTailCall(context, functionType);
+        ControlHelper.popArguments(context, functionType);
+
+        return new ProcessedInstruction() {
+            @Override
+            public void emitBytecode(CodeEmitContext context) throws WasmAssemblerException {
+                if (!functionTypeIndex.isImport()) {
+                    CodeLabel selfEntry = TailCallHelper.findSelfTailCallEntry(context, functionTypeIndex.getIndex());
+                    if (selfEntry != null) {
+                        // Calling ourselves, this can be turned into a loop
+                        TailCallHelper.emitSelfTailCall(context, selfEntry, functionType);
+                        return;
+                    }
+
+                    context.getGenerators().getFunctionGenerator()
+                            .emitTailCallFunction(functionTypeIndex.getIndex(), functionType, context);
+                    return;
+                }
+
+                // Imports belong to another instance, perform a regular call followed by a return
+                context.getGenerators().getImportGenerator().emitInvokeFunction(functionTypeIndex.getImport(), context);
+
+                ControlHelper.pushReturnValues(context, functionType);
+                BlockHelper.validateDirectReturn(context);
+                BlockHelper.emitDirectReturn(context);
+            }
+
+            @Override
+            public void processOutputs(CodeEmitContext context) {
+                context.getFrameState().markUnreachable();
+            }
+        };
+    }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, Data data) {
+        context.markTailCall(data.getFunctionIndex());
+    }
+
+    public static final class Data implements WasmInstruction.Data {
+        private final int functionIndex;
+
+        private Data(int functionIndex) {
+            this.functionIndex = functionIndex;
+        }
+
+        /**
+         * Retrieve the index of the function to tail call.
+         *
+         * @return the index of the function to tail call
+         */
+        public int getFunctionIndex() {
+            return functionIndex;
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toUnsignedString(functionIndex, 10);
+        }
+    }
+}
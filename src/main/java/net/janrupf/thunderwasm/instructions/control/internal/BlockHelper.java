@@ -14,7 +14,6 @@ import net.janrupf.thunderwasm.assembler.emitter.types.PrimitiveType;
 import net.janrupf.thunderwasm.instructions.Expr;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
 import net.janrupf.thunderwasm.instructions.control.BlockData;
-import net.janrupf.thunderwasm.runtime.state.BlockReturn;
 import net.janrupf.thunderwasm.types.FunctionType;
 import net.janrupf.thunderwasm.types.ValueType;
 
@@ -22,7 +21,10 @@ import java.util.*;
 
 public final class BlockHelper {
     public static final String BLOCK_RETURN_ENTRY_POINT = "block_return";
-    private static final ObjectType BLOCK_RETURN_TYPE = ObjectType.of(BlockReturn.class);
+
+    // JVM methods are limited to 255 parameter slots, a static method has no implicit 'this'
+    private static final int MAX_ARGUMENT_SLOTS = 255;
+
     private static final ObjectType ILLEGAL_STATE_EXCEPTION_TYPE = ObjectType.of(IllegalStateException.class);
 
     private BlockHelper() {
@@ -150,19 +152,20 @@ public final class BlockHelper {
             int depth,
             List<JavaType> labelArity
     ) throws WasmAssemblerException {
-        CodeEmitter emitter = context.getEmitter();
+        MultiValueHelper.emitStoreStackByIndex(
+                context.getEmitter(),
+                requireSplitBlockFrame(context),
+                labelArity
+        );
 
-        MultiValueHelper.emitCreateMultiValue(emitter, labelArity);
-        MultiValueHelper.emitSaveStack(emitter, labelArity, true);
-
-        emitResumeNonLocalAfterReturn(context, depth, labelArity);
+        emitResumeNonLocalAfterReturn(context, depth);
     }
 
     /**
      * Handle the non-local return from an inner block.
      * <p>
-     * Assumes a multi value with the block return values is
-     * on top of the stack.
+     * Assumes the block return values have been stored in the split
+     * block frame.
      *
      * @param context the context to use
      * @param depth   the depth to handle
@@ -182,7 +185,7 @@ public final class BlockHelper {
         List<JavaType> labelArity = ControlHelper.getJavaTypes(targetLabel.getStackOperands());
 
         if (targetLabel.isNonLocal()) {
-            emitResumeNonLocalAfterReturn(context, calculateNonLocalDepth(context, depth), labelArity);
+            emitResumeNonLocalAfterReturn(context, calculateNonLocalDepth(context, depth));
         } else {
             emitResumeLocalAfterReturn(context, depth, targetLabel.getCodeLabel(), labelArity);
         }
@@ -212,9 +215,8 @@ public final class BlockHelper {
             completeOperandStack.addAll(context.getFrameState(i).getOperandStack());
         }
 
-        // We need to keep exactly 1 value: The multi return
-        UnwindHelper.emitUnwindStack(emitter, 1, completeOperandStack.size());
-        MultiValueHelper.emitRestoreStack(emitter, labelArity, null, false);
+        UnwindHelper.emitUnwindStack(emitter, 0, completeOperandStack.size());
+        MultiValueHelper.emitLoadStackByIndex(emitter, requireSplitBlockFrame(context), labelArity);
 
         // Jump after restoration
         emitter.jump(JumpCondition.ALWAYS, targetLabel);
@@ -222,28 +224,25 @@ public final class BlockHelper {
 
     /**
      * Emit the code required to resume at a non-local label after a non-local return.
+     * <p>
+     * The values expected at the label must already be stored in the split block frame.
      *
-     * @param context    the context to use
-     * @param depth      the return depth to push
-     * @param labelArity the stack operands expected at the label
+     * @param context the context to use
+     * @param depth   the return depth to push
      * @throws WasmAssemblerException if the code could not be emitted
      */
     private static void emitResumeNonLocalAfterReturn(
             CodeEmitContext context,
-            int depth,
-            List<JavaType> labelArity
+            int depth
     ) throws WasmAssemblerException {
         CodeEmitter emitter = context.getEmitter();
 
-        // Discard everything we don't need from the stack now
-        UnwindHelper.emitUnwindStack(emitter, 1);
-
-        // Load the depth and make sure that the multi value is on top in the end
+        // Discard everything from the stack, only the depth is passed on
+        UnwindHelper.emitUnwindStack(emitter, 0);
         emitter.loadConstant(depth);
-        emitter.op(Op.SWAP);
 
-        if (emitter.getStackFrameState().operandStackCount() != 2) {
-            throw new WasmAssemblerException("Expected exactly two values on the stack, but found " + emitter.getStackFrameState().operandStackCount());
+        if (emitter.getStackFrameState().operandStackCount() != 1) {
+            throw new WasmAssemblerException("Expected exactly one value on the stack, but found " + emitter.getStackFrameState().operandStackCount());
         }
 
         CodeLabel returnEntryPoint = context.getLocalGadgets().getEntryPoint(BLOCK_RETURN_ENTRY_POINT);
@@ -282,24 +281,38 @@ public final class BlockHelper {
         List<JavaType> javaReturnTypes = ControlHelper.getJavaTypes(returnTypes);
         CodeEmitter emitter = context.getEmitter();
 
-        List<WasmPushedLabel> labels = context.getAllBlockJumpLabels();
-        if (labels.isEmpty() || !labels.get(0).isNonLocal()) {
+        if (isTopLevel(context)) {
             // Top level method (ie. not a block), return directly
-            if (returnTypes.size() > 1) {
-                MultiValueHelper.emitCreateMultiValue(emitter, javaReturnTypes);
-                MultiValueHelper.emitSaveStack(emitter, javaReturnTypes, true);
-            }
-
-            emitter.doReturn();
+            emitTopLevelReturn(context, javaReturnTypes);
             return;
         }
 
-        MultiValueHelper.emitCreateMultiValue(emitter, javaReturnTypes);
-        MultiValueHelper.emitSaveStack(emitter, javaReturnTypes, true);
+        MultiValueHelper.emitStoreStackByIndex(emitter, requireSplitBlockFrame(context), javaReturnTypes);
 
         emitDirectReturnResumeUnwind(context);
     }
 
+    /**
+     * Emit the code that returns the values on top of the stack from the top level method.
+     *
+     * @param context         the context to use
+     * @param javaReturnTypes the java types of the values to return
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    private static void emitTopLevelReturn(
+            CodeEmitContext context,
+            List<JavaType> javaReturnTypes
+    ) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+
+        if (javaReturnTypes.size() > 1) {
+            MultiValueHelper.emitLoadReturnArea(context, javaReturnTypes);
+            MultiValueHelper.emitSaveStack(emitter, javaReturnTypes, true);
+        }
+
+        emitter.doReturn();
+    }
+
     /**
      * Handle a non-local direct return from a block.
      *
@@ -309,21 +322,14 @@ public final class BlockHelper {
     private static void emitHandleNonLocalDirectReturn(
             CodeEmitContext context
     ) throws WasmAssemblerException {
-        // At this point a multi value is on top of the stack, either resume unwinding
-        // or return here
-        List<ValueType> returnTypes = context.getFrameState().getReturnTypes();
-        List<JavaType> javaReturnTypes = ControlHelper.getJavaTypes(returnTypes);
-        CodeEmitter emitter = context.getEmitter();
-
-        List<WasmPushedLabel> labels = context.getAllBlockJumpLabels();
-        if (labels.isEmpty() || !labels.get(0).isNonLocal()) {
+        // At this point the return values are in the split block frame, either resume
+        // unwinding or return here
+        if (isTopLevel(context)) {
             // Top level method (ie. not a block), return directly
-            if (javaReturnTypes.size() == 1) {
-                // Unpack the multi value
-                MultiValueHelper.emitRestoreStack(emitter, javaReturnTypes, null, false);
-            }
+            List<JavaType> javaReturnTypes = ControlHelper.getJavaTypes(context.getFrameState().getReturnTypes());
 
-            emitter.doReturn();
+            MultiValueHelper.emitLoadStackByIndex(context.getEmitter(), requireSplitBlockFrame(context), javaReturnTypes);
+            emitTopLevelReturn(context, javaReturnTypes);
             return;
         }
 
@@ -342,15 +348,14 @@ public final class BlockHelper {
     ) throws WasmAssemblerException {
         CodeEmitter emitter = context.getEmitter();
 
-        // Keep only the multi value on the stack, unwind everything else
-        UnwindHelper.emitUnwindStack(emitter, 1);
+        // The return values are stored in the split block frame, unwind everything
+        UnwindHelper.emitUnwindStack(emitter, 0);
 
         // -1 is a special constant to signal complete unwind and return
         emitter.loadConstant(-1);
-        emitter.op(Op.SWAP);
 
-        if (emitter.getStackFrameState().operandStackCount() != 2) {
-            throw new WasmAssemblerException("Expected exactly two values on the stack, but found " + emitter.getStackFrameState().operandStackCount());
+        if (emitter.getStackFrameState().operandStackCount() != 1) {
+            throw new WasmAssemblerException("Expected exactly one value on the stack, but found " + emitter.getStackFrameState().operandStackCount());
         }
 
         CodeLabel returnEntryPoint = context.getLocalGadgets().getEntryPoint(BLOCK_RETURN_ENTRY_POINT);
@@ -362,6 +367,33 @@ public final class BlockHelper {
         emitter.jump(JumpCondition.ALWAYS, returnEntryPoint);
     }
 
+    /**
+     * Determine whether code is emitted into the top level method of a function.
+     *
+     * @param context the context to use
+     * @return true if not emitting into a split block, false otherwise
+     */
+    private static boolean isTopLevel(CodeEmitContext context) {
+        List<WasmPushedLabel> labels = context.getAllBlockJumpLabels();
+        return labels.isEmpty() || !labels.get(0).isNonLocal();
+    }
+
+    /**
+     * Retrieve the local holding the frame shared with split blocks.
+     *
+     * @param context the context to use
+     * @return the split block frame local
+     * @throws WasmAssemblerException if the function has no split block frame
+     */
+    private static JavaLocal requireSplitBlockFrame(CodeEmitContext context) throws WasmAssemblerException {
+        JavaLocal frame = context.getLocalVariables().getSplitBlockFrame();
+        if (frame == null) {
+            throw new WasmAssemblerException("Tried to transfer values across split blocks without a split block frame");
+        }
+
+        return frame;
+    }
+
     /**
      * Calculate the non-local return depth of the given block depth.
      *
@@ -431,16 +463,115 @@ public final class BlockHelper {
 
             String blockName = context.nextBlockName();
             CodeEmitter localEmitter = context.getEmitter();
+            LocalVariables localVariables = context.getLocalVariables();
+            JavaLocal frameLocal = requireSplitBlockFrame(context);
 
             ValueType[] wasmInputs = blockType.getInputs().asFlatArray();
             List<JavaType> javaInputs = new ArrayList<>(Arrays.asList(WasmTypeConverter.toJavaTypes(
                     wasmInputs
             )));
+            List<JavaType> blockReturnTypes = ControlHelper.getJavaReturnTypes(blockType);
 
-            int localValuesRestoreIndex = javaInputs.size();
-            javaInputs.add(MultiValueHelper.MULTI_VALUE_TYPE);
+            JavaLocal thisLocal = localVariables.getThis();
+            JavaLocal heapLocal = localVariables.getHeapLocals();
+            JavaLocal continuationLocal = localVariables.getContinuationLocal();
+            JavaLocal returnAreaLocal = localVariables.getReturnArea();
+            JavaLocal tailCallStateLocal = localVariables.getTailCallState();
+
+            int argumentSlots = 1;
+            for (JavaType input : javaInputs) {
+                argumentSlots += input.getSlotCount();
+            }
+
+            if (thisLocal != null) {
+                argumentSlots++;
+            }
+
+            if (heapLocal != null) {
+                argumentSlots++;
+            }
+
+            if (continuationLocal != null) {
+                argumentSlots++;
+            }
+
+            if (returnAreaLocal != null) {
+                argumentSlots++;
+            }
+
+            if (tailCallStateLocal != null) {
+                argumentSlots++;
+            }
+
+            // The frame needs to be able to hold the values of every label the block could
+            // branch to and the function return values, followed by the written locals
+            MultiValueHelper.IndexedBuilder frameLayout = MultiValueHelper.indexedBuilder();
+            frameLayout.reserve(ControlHelper.getJavaTypes(context.getFrameState().getReturnTypes()));
+            frameLayout.reserve(blockReturnTypes);
+            for (WasmPushedLabel label : context.getAllBlockJumpLabels()) {
+                frameLayout.reserve(ControlHelper.getJavaTypes(label.getStackOperands()));
+            }
+
+            // Locals which don't fit into the arguments are passed in the frame, they are consumed
+            // immediately by the block and can start at the first slot
+            MultiValueHelper.IndexedBuilder overflowLayout = MultiValueHelper.indexedBuilder();
+
+            // Calculate the required transfer of local variables into the block and reverse
+            List<JavaLocal> passedLocals = new ArrayList<>();
+            List<JavaLocal> overflowLocals = new ArrayList<>();
+            List<Integer> overflowIndices = new ArrayList<>();
+
+            List<JavaLocal> writtenLocals = new ArrayList<>();
+            List<Integer> writtenIndices = new ArrayList<>();
+
+            // Locals with disjoint live ranges may share a slot, they share a slot in the block as well
+            Set<JavaLocal> transferredOriginalLocals = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<JavaLocal> writtenOriginalLocals = Collections.newSetFromMap(new IdentityHashMap<>());
+            Map<Integer, JavaLocal> originalLocalsById = new LinkedHashMap<>();
+            List<LocalVariables.HeapLocal> heapLocals = new ArrayList<>();
+            List<Integer> heapLocalIds = new ArrayList<>();
+
+            for (Map.Entry<Integer, LocalVariableUsage.Status> localUsageEntry :
+                    context.getAnalysisResult().getLocalVariableUsage(expression).getStatus().entrySet()) {
+                int localId = localUsageEntry.getKey();
+
+                if (localVariables.getType(localId) == LocalVariables.LocalType.HEAP) {
+                    // Heap locals are passed through automatically since the entire heap local
+                    // storage is passed down
+                    heapLocals.add(localVariables.requireHeapById(localId));
+                    heapLocalIds.add(localId);
+                    continue;
+                }
+
+                JavaLocal originalLocal = localVariables.requireById(localId);
+                originalLocalsById.put(localId, originalLocal);
+
+                if (transferredOriginalLocals.add(originalLocal)) {
+                    JavaType type = originalLocal.getType();
+
+                    if (argumentSlots + type.getSlotCount() <= MAX_ARGUMENT_SLOTS) {
+                        argumentSlots += type.getSlotCount();
+                        passedLocals.add(originalLocal);
+                    } else {
+                        int index = overflowLayout.allocate(type);
+                        overflowLocals.add(originalLocal);
+                        overflowIndices.add(index);
+                    }
+                }
+
+                if (localUsageEntry.getValue().wasWritten() && writtenOriginalLocals.add(originalLocal)) {
+                    writtenLocals.add(originalLocal);
+                    writtenIndices.add(frameLayout.allocate(originalLocal.getType()));
+                }
+            }
 
-            JavaLocal thisLocal = context.getLocalVariables().getThis();
+            frameLayout.reserve(overflowLayout);
+
+            // Signature: inputs, passed locals, [this], [heap locals], [continuation], [return area],
+            // [tail call state], frame
+            for (JavaLocal passedLocal : passedLocals) {
+                javaInputs.add(passedLocal.getType());
+            }
 
             int blockThisLocalIndex = -1;
             if (thisLocal != null) {
@@ -448,32 +579,46 @@ public final class BlockHelper {
                 javaInputs.add(thisLocal.getType());
             }
 
-            JavaLocal heapLocal = context.getLocalVariables().getHeapLocals();
             int blockHeapLocalsIndex = -1;
             if (heapLocal != null) {
                 blockHeapLocalsIndex = javaInputs.size();
                 javaInputs.add(heapLocal.getType());
             }
 
-            JavaLocal continuationLocal = context.getLocalVariables().getContinuationLocal();
             int blockContinuationLocalIndex = -1;
             if (continuationLocal != null) {
                 blockContinuationLocalIndex = javaInputs.size();
                 javaInputs.add(ContinuationHelper.CONTINUATION_TYPE);
             }
 
-            // Create a new method for the block
+            int blockReturnAreaLocalIndex = -1;
+            if (returnAreaLocal != null) {
+                blockReturnAreaLocalIndex = javaInputs.size();
+                javaInputs.add(MultiValueHelper.MULTI_VALUE_TYPE);
+            }
+
+            int blockTailCallStateLocalIndex = -1;
+            if (tailCallStateLocal != null) {
+                blockTailCallStateLocalIndex = javaInputs.size();
+                javaInputs.add(TailCallHelper.TAIL_CALL_STATE_TYPE);
+            }
+
+            int blockFrameLocalIndex = javaInputs.size();
+            javaInputs.add(MultiValueHelper.MULTI_VALUE_TYPE);
+
+            // Create a new method for the block, it returns the branch depth
             MethodEmitter blockMethodEmitter = context.getClassFileEmitter().method(
                     blockName,
                     Visibility.PRIVATE,
                     true,
                     false,
-                    BLOCK_RETURN_TYPE,
+                    PrimitiveType.INT,
                     javaInputs,
                     Collections.emptyList()
             );
 
             CodeEmitter blockCodeEmitter = blockMethodEmitter.code();
+            List<JavaLocal> blockArguments = blockMethodEmitter.getArgumentLocals();
 
             // Create non-local labels for all existing labels
             List<WasmPushedLabel> nonLocalLabels = new ArrayList<>();
@@ -485,65 +630,40 @@ public final class BlockHelper {
                 ));
             }
 
-            JavaLocal blockLocalsValueRestoreLocal = blockMethodEmitter.getArgumentLocals().get(localValuesRestoreIndex);
-
-            JavaLocal blockThisLocal = null;
-            if (thisLocal != null) {
-                blockThisLocal = blockMethodEmitter.getArgumentLocals().get(blockThisLocalIndex);
-            }
+            JavaLocal blockFrameLocal = blockArguments.get(blockFrameLocalIndex);
+            LocalVariables blockLocalVariables = new LocalVariables(
+                    thisLocal != null ? blockArguments.get(blockThisLocalIndex) : null,
+                    heapLocal != null ? blockArguments.get(blockHeapLocalsIndex) : null,
+                    continuationLocal != null ? blockArguments.get(blockContinuationLocalIndex) : null,
+                    blockFrameLocal,
+                    returnAreaLocal != null ? blockArguments.get(blockReturnAreaLocalIndex) : null,
+                    tailCallStateLocal != null ? blockArguments.get(blockTailCallStateLocalIndex) : null
+            );
 
-            JavaLocal blockHeapLocal = null;
-            if (heapLocal != null) {
-                blockHeapLocal = blockMethodEmitter.getArgumentLocals().get(blockHeapLocalsIndex);
+            for (int i = 0; i < heapLocals.size(); i++) {
+                LocalVariables.HeapLocal l = heapLocals.get(i);
+                blockLocalVariables.registerKnownHeapLocal(heapLocalIds.get(i), l.getType(), l.getIndex());
             }
 
-            JavaLocal blockContinuationLocal = null;
-            if (continuationLocal != null) {
-                blockContinuationLocal = blockMethodEmitter.getArgumentLocals().get(blockContinuationLocalIndex);
+            // Map the locals into the block, overflowing locals are read from the frame
+            Map<JavaLocal, JavaLocal> blockLocalsByOriginal = new IdentityHashMap<>();
+            for (int i = 0; i < passedLocals.size(); i++) {
+                blockLocalsByOriginal.put(passedLocals.get(i), blockArguments.get(wasmInputs.length + i));
             }
 
-            // Calculate the required transfer of local variables into the block and reverse
-            LocalVariables blockLocalVariables = new LocalVariables(blockThisLocal, blockHeapLocal, blockContinuationLocal);
-
-            List<JavaLocal> localSaveLocals = new ArrayList<>();
-            List<JavaLocal> blockRestoreLocals = new ArrayList<>();
-            List<JavaType> blockReadLocalTypes = new ArrayList<>();
-
-            List<JavaLocal> blockSaveLocals = new ArrayList<>();
-            List<JavaLocal> localRestoreLocals = new ArrayList<>();
-            List<JavaType> blockWriteLocalTypes = new ArrayList<>();
-
-            for (Map.Entry<Integer, LocalVariableUsage.Status> localUsageEntry :
-                    context.getAnalysisResult().getLocalVariableUsage(expression).getStatus().entrySet()) {
-                int localId = localUsageEntry.getKey();
-
-                if (context.getLocalVariables().getType(localId) == LocalVariables.LocalType.HEAP) {
-                    // Heap locals are passed through automatically since the entire heap local
-                    // storage is passed down
-                    LocalVariables.HeapLocal l = context.getLocalVariables().requireHeapById(localId);
-                    blockLocalVariables.registerKnownHeapLocal(localId, l.getType(), l.getIndex());
-                    continue;
-                }
+            for (int i = 0; i < overflowLocals.size(); i++) {
+                JavaLocal overflowLocal = overflowLocals.get(i);
+                JavaLocal blockLocal = blockCodeEmitter.allocateLocal(overflowLocal.getType());
 
-                JavaLocal originalLocal = context.getLocalVariables().requireById(localId);
-                JavaLocal blockLocal = blockCodeEmitter.allocateLocal(originalLocal.getType());
-                blockLocalVariables.registerKnownLocal(localId, blockLocal);
+                MultiValueHelper.emitLoadByIndex(blockCodeEmitter, blockFrameLocal, overflowLocal.getType(), overflowIndices.get(i));
+                blockCodeEmitter.storeLocal(blockLocal);
 
-                // Save locally, restore in block
-                localSaveLocals.add(originalLocal);
-                blockRestoreLocals.add(blockLocal);
-                blockReadLocalTypes.add(originalLocal.getType());
-
-                // Save in block, restore locally
-                if (localUsageEntry.getValue().wasWritten()) {
-                    blockSaveLocals.add(blockLocal);
-                    localRestoreLocals.add(originalLocal);
-                    blockWriteLocalTypes.add(originalLocal.getType());
-                }
+                blockLocalsByOriginal.put(overflowLocal, blockLocal);
             }
 
-            blockCodeEmitter.loadLocal(blockLocalsValueRestoreLocal);
-            MultiValueHelper.emitRestoreLocals(blockCodeEmitter, blockRestoreLocals, false);
+            for (Map.Entry<Integer, JavaLocal> original : originalLocalsById.entrySet()) {
+                blockLocalVariables.registerKnownLocal(original.getKey(), blockLocalsByOriginal.get(original.getValue()));
+            }
 
             CodeEmitContext blockContext = new CodeEmitContext(
                     blockName + "$",
@@ -557,6 +677,7 @@ public final class BlockHelper {
                     blockLocalVariables,
                     context.getConfiguration()
             );
+            blockContext.setFunctionIndex(context.getFunctionIndex());
 
             // TODO: This should probably be before the locals are initialized with zero values
             ContinuationHelper.emitContinuationFunctionEntry(blockContext);
@@ -572,7 +693,7 @@ public final class BlockHelper {
 
             // Restore the stack
             for (int i = 0; i < wasmInputs.length; i++) {
-                blockCodeEmitter.loadLocal(blockMethodEmitter.getArgumentLocals().get(i));
+                blockCodeEmitter.loadLocal(blockArguments.get(i));
             }
 
             if (selfLabelAtStart) {
@@ -587,16 +708,11 @@ public final class BlockHelper {
 
             if (blockContext.getFrameState().isReachable() || (!selfLabelAtStart && blockSelfLabel.isReachable())) {
                 // Could potentially fall through, we need to capture the block return values
-
-                List<JavaType> blockReturnTypes = ControlHelper.getJavaReturnTypes(blockType);
-
-                MultiValueHelper.emitCreateMultiValue(blockCodeEmitter, blockReturnTypes);
-                MultiValueHelper.emitSaveStack(blockCodeEmitter, blockReturnTypes, true);
-                UnwindHelper.emitUnwindStack(blockCodeEmitter, 1);
+                MultiValueHelper.emitStoreStackByIndex(blockCodeEmitter, blockFrameLocal, blockReturnTypes);
+                UnwindHelper.emitUnwindStack(blockCodeEmitter, 0);
 
                 // -2 is the special value that indicates fallthrough
                 blockCodeEmitter.loadConstant(-2);
-                blockCodeEmitter.op(Op.SWAP);
 
                 this.endIsReachable = true;
 
@@ -605,28 +721,27 @@ public final class BlockHelper {
 
             // Construct the block return if it was used
             if (blockReturnLabel.isReachable() || blockContext.getFrameState().isReachable() || (!selfLabelAtStart && blockSelfLabel.isReachable())) {
-                // At this point we expect on the stack:
-                // - int: return depth
-                // - multi value: block return values
+                // At this point we expect the return depth on the stack, the values
+                // are stored in the frame already
                 blockCodeEmitter.resolveLabel(blockReturnLabel);
 
-                MultiValueHelper.emitCreateMultiValue(blockCodeEmitter, blockWriteLocalTypes);
-                MultiValueHelper.emitSaveLocals(blockCodeEmitter, blockSaveLocals, true);
+                for (int i = 0; i < writtenLocals.size(); i++) {
+                    JavaLocal originalLocal = writtenLocals.get(i);
 
-                blockCodeEmitter.invoke(
-                        BLOCK_RETURN_TYPE,
-                        "create",
-                        new JavaType[]{PrimitiveType.INT, MultiValueHelper.MULTI_VALUE_TYPE, MultiValueHelper.MULTI_VALUE_TYPE},
-                        BLOCK_RETURN_TYPE,
-                        InvokeType.STATIC,
-                        false
-                );
+                    blockCodeEmitter.loadLocal(blockLocalsByOriginal.get(originalLocal));
+                    MultiValueHelper.emitStoreByIndex(
+                            blockCodeEmitter,
+                            blockFrameLocal,
+                            originalLocal.getType(),
+                            writtenIndices.get(i)
+                    );
+                }
 
-                // And return it!
+                // And return the depth!
                 blockCodeEmitter.doReturn();
             }
 
-            ContinuationHelper.emitContinuationImplementations(blockContext, MultiValueHelper.MULTI_VALUE_TYPE);
+            ContinuationHelper.emitContinuationImplementations(blockContext, PrimitiveType.INT);
 
             blockCodeEmitter.finish();
             blockMethodEmitter.finish();
@@ -636,11 +751,25 @@ public final class BlockHelper {
                     context,
                     blockType.getInputs().asFlatList(),
                     Collections.emptyList(),
-                    BLOCK_RETURN_TYPE
+                    PrimitiveType.INT
             );
 
-            MultiValueHelper.emitCreateMultiValue(localEmitter, blockReadLocalTypes);
-            MultiValueHelper.emitSaveLocals(localEmitter, localSaveLocals, true);
+            // Make sure the frame can hold everything the block transfers, this only allocates
+            // on the first invocation, or if an earlier block required a smaller frame
+            localEmitter.loadLocal(frameLocal);
+            frameLayout.emitEnsureCapacity(localEmitter);
+            localEmitter.storeLocal(frameLocal);
+
+            for (int i = 0; i < overflowLocals.size(); i++) {
+                JavaLocal overflowLocal = overflowLocals.get(i);
+
+                localEmitter.loadLocal(overflowLocal);
+                MultiValueHelper.emitStoreByIndex(localEmitter, frameLocal, overflowLocal.getType(), overflowIndices.get(i));
+            }
+
+            for (JavaLocal passedLocal : passedLocals) {
+                localEmitter.loadLocal(passedLocal);
+            }
 
             if (thisLocal != null) {
                 localEmitter.loadLocal(thisLocal);
@@ -654,17 +783,35 @@ public final class BlockHelper {
                 localEmitter.loadLocal(continuationLocal);
             }
 
+            if (returnAreaLocal != null) {
+                localEmitter.loadLocal(returnAreaLocal);
+            }
+
+            if (tailCallStateLocal != null) {
+                localEmitter.loadLocal(tailCallStateLocal);
+            }
+
+            localEmitter.loadLocal(frameLocal);
+
             localEmitter.invoke(
-                    blockCodeEmitter.getOwner(),
+                    context.getClassFileEmitter().getDeclaringType(),
                     blockName,
                     javaInputs.toArray(new JavaType[0]),
-                    BLOCK_RETURN_TYPE,
+                    PrimitiveType.INT,
                     InvokeType.STATIC,
                     false
             );
 
             ContinuationHelper.emitFunctionContinuationPointPostReturn(context, pointAndLabel);
 
+            // Restore the locals the block wrote, the depth stays on the stack
+            for (int i = 0; i < writtenLocals.size(); i++) {
+                JavaLocal originalLocal = writtenLocals.get(i);
+
+                MultiValueHelper.emitLoadByIndex(localEmitter, frameLocal, originalLocal.getType(), writtenIndices.get(i));
+                localEmitter.storeLocal(originalLocal);
+            }
+
             // We now need to decide how to operate based on the received depth
             Map<Integer, CodeLabel> switchTargets = new HashMap<>();
             for (int depth = 0; depth < nonLocalLabels.size(); depth++) {
@@ -680,46 +827,7 @@ public final class BlockHelper {
                 switchTargets.put(-1, localEmitter.newLabel());
             }
 
-            // Unpack the data the block returned
-            localEmitter.duplicate();
-            localEmitter.invoke(
-                    BLOCK_RETURN_TYPE,
-                    "getStack",
-                    new JavaType[0],
-                    MultiValueHelper.MULTI_VALUE_TYPE,
-                    InvokeType.VIRTUAL,
-                    false
-            );
-            localEmitter.op(Op.SWAP);
-
             if (!switchTargets.isEmpty()) {
-                // We'll need it again later down
-                localEmitter.duplicate();
-            }
-
-            localEmitter.invoke(
-                    BLOCK_RETURN_TYPE,
-                    "getLocals",
-                    new JavaType[0],
-                    MultiValueHelper.MULTI_VALUE_TYPE,
-                    InvokeType.VIRTUAL,
-                    false
-            );
-
-            // Restore locals
-            MultiValueHelper.emitRestoreLocals(localEmitter, localRestoreLocals, false);
-
-            if (!switchTargets.isEmpty() || context.getAnalysisResult().usesDirectReturn(expression)) {
-                // Get return depth to the top of the stack
-                localEmitter.invoke(
-                        BLOCK_RETURN_TYPE,
-                        "getBranchDepth",
-                        new JavaType[0],
-                        PrimitiveType.INT,
-                        InvokeType.VIRTUAL,
-                        false
-                );
-
                 CodeLabel fallthroughTarget = localEmitter.newLabel();
 
                 localEmitter.lookupSwitch(fallthroughTarget, switchTargets);
@@ -739,6 +847,9 @@ public final class BlockHelper {
 
                 // Fallthrough: we received an unknown value, this means fallthrough
                 localEmitter.resolveLabel(fallthroughTarget);
+            } else {
+                // The block can only fall through
+                localEmitter.pop();
             }
 
             if (!this.endIsReachable) {
@@ -757,12 +868,7 @@ public final class BlockHelper {
 
                 localEmitter.op(Op.THROW);
             } else {
-                MultiValueHelper.emitRestoreStack(
-                        localEmitter,
-                        ControlHelper.getJavaReturnTypes(blockType),
-                        null,
-                        false
-                );
+                MultiValueHelper.emitLoadStackByIndex(localEmitter, frameLocal, blockReturnTypes);
             }
 
             // In the very start we popped the block, we need to push it again with the updated state
@@ -4,7 +4,6 @@ import net.janrupf.thunderwasm.assembler.*;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
 import net.janrupf.thunderwasm.instructions.Expr;
-import net.janrupf.thunderwasm.instructions.InstructionInstance;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
 import net.janrupf.thunderwasm.instructions.WasmInstruction;
 import net.janrupf.thunderwasm.module.encoding.LargeArray;
@@ -54,8 +53,9 @@ public final class ControlHelper {
      * @throws WasmAssemblerException if the expression fails to be emitted
      */
     public static void emitExpression(CodeEmitContext context, Expr expr) throws WasmAssemblerException {
-        for (InstructionInstance instructionInstance : expr.getInstructions()) {
-            emitInstruction(context, instructionInstance.getInstruction(), instructionInstance.getData());
+        for (int i = 0, count = expr.getInstructionCount(); i < count; i++) {
+            context.setInstructionOffset(expr.getInstructionOffset(i));
+            emitInstruction(context, expr.getInstructionType(i), expr.getInstructionData(i));
         }
     }
 
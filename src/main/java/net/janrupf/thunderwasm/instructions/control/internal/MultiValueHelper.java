@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.control.internal;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitter;
 import net.janrupf.thunderwasm.assembler.emitter.InvokeType;
 import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
@@ -84,6 +85,72 @@ public final class MultiValueHelper {
         );
     }
 
+    /**
+     * Load the return area of the current invocation to return the given values in.
+     * <p>
+     * The return area is grown to fit the values and reset. If the caller did not pass
+     * a return area, a new one is allocated.
+     *
+     * @param context the context to use
+     * @param types   the types of the values to return
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitLoadReturnArea(CodeEmitContext context, List<JavaType> types)
+            throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+
+        emitPassReturnArea(context);
+        indexedBuilder().reserve(types).emitEnsureCapacity(emitter);
+        emitter.invoke(
+                MULTI_VALUE_TYPE,
+                "reset",
+                new JavaType[0],
+                MULTI_VALUE_TYPE,
+                InvokeType.VIRTUAL,
+                false
+        );
+    }
+
+    /**
+     * Load the return area to pass to a function returning multiple values.
+     * <p>
+     * Loads null if the current code has no return area, the called function
+     * allocates a new one in that case.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitPassReturnArea(CodeEmitContext context) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        JavaLocal returnArea = context.getLocalVariables().getReturnArea();
+
+        if (returnArea != null) {
+            emitter.loadLocal(returnArea);
+        } else {
+            emitter.loadNull(MULTI_VALUE_TYPE);
+        }
+    }
+
+    /**
+     * Keep the multi value returned by a function as the return area of the current code.
+     * <p>
+     * Expects the returned multi value on top of the stack and leaves it there. Called
+     * functions allocate a return area if none has been passed, keeping it avoids
+     * allocating again on the next call.
+     *
+     * @param context the context to use
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitKeepReturnArea(CodeEmitContext context) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        JavaLocal returnArea = context.getLocalVariables().getReturnArea();
+
+        if (returnArea != null) {
+            emitter.duplicate();
+            emitter.storeLocal(returnArea);
+        }
+    }
+
     /**
      * Saves the given list of locals in that order into a multi
      * value, which is already on top of the stack.
@@ -332,6 +399,93 @@ public final class MultiValueHelper {
         );
     }
 
+    /**
+     * Emit the code storing the value on top of the stack into a multi value by index.
+     *
+     * @param emitter         the emitter to use
+     * @param multiValueLocal the local holding the multi value
+     * @param type            the type of the value to store
+     * @param index           the index of the value in the type specific storage
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitStoreByIndex(
+            CodeEmitter emitter,
+            JavaLocal multiValueLocal,
+            JavaType type,
+            int index
+    ) throws WasmAssemblerException {
+        emitter.loadLocal(multiValueLocal);
+        emitSetByIndex(emitter, type, index);
+    }
+
+    /**
+     * Emit the code loading a value from a multi value by index onto the stack.
+     *
+     * @param emitter         the emitter to use
+     * @param multiValueLocal the local holding the multi value
+     * @param type            the type of the value to load
+     * @param index           the index of the value in the type specific storage
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitLoadByIndex(
+            CodeEmitter emitter,
+            JavaLocal multiValueLocal,
+            JavaType type,
+            int index
+    ) throws WasmAssemblerException {
+        emitter.loadLocal(multiValueLocal);
+        emitGetByIndex(emitter, type, index);
+
+        if (type instanceof ObjectType && !type.equals(ObjectType.OBJECT)) {
+            emitter.checkCast((ObjectType) type);
+        }
+    }
+
+    /**
+     * Emit the code storing values from the top of the stack into a multi value by index.
+     * <p>
+     * The values are stored at the indices a fresh {@link IndexedBuilder} allocates for
+     * them, which is the same layout {@link #emitLoadStackByIndex(CodeEmitter, JavaLocal, List)}
+     * expects.
+     *
+     * @param emitter         the emitter to use
+     * @param multiValueLocal the local holding the multi value
+     * @param toSave          the types to save, the last is assumed to be the top of the stack
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitStoreStackByIndex(
+            CodeEmitter emitter,
+            JavaLocal multiValueLocal,
+            List<JavaType> toSave
+    ) throws WasmAssemblerException {
+        int[] indices = indexedBuilder().allocateAll(toSave);
+
+        for (int i = toSave.size() - 1; i >= 0; i--) {
+            emitStoreByIndex(emitter, multiValueLocal, toSave.get(i), indices[i]);
+        }
+    }
+
+    /**
+     * Emit the code loading values stored by {@link #emitStoreStackByIndex(CodeEmitter, JavaLocal, List)}
+     * back onto the stack.
+     *
+     * @param emitter         the emitter to use
+     * @param multiValueLocal the local holding the multi value
+     * @param toRestore       the types to restore, the last ends up on top of the stack
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitLoadStackByIndex(
+            CodeEmitter emitter,
+            JavaLocal multiValueLocal,
+            List<JavaType> toRestore
+    ) throws WasmAssemblerException {
+        int[] indices = indexedBuilder().allocateAll(toRestore);
+
+        for (int i = 0; i < toRestore.size(); i++) {
+            emitLoadByIndex(emitter, multiValueLocal, toRestore.get(i), indices[i]);
+        }
+    }
+
     private static String multiValueMethodName(JavaType type) {
         if (type instanceof PrimitiveType) {
             if (type.equals(PrimitiveType.LONG)) {
@@ -417,6 +571,52 @@ public final class MultiValueHelper {
             return idx;
         }
 
+        /**
+         * Allocate a slot index for each of the given types.
+         *
+         * @param types the types to allocate slots for
+         * @return the indices of the allocated slots
+         */
+        public int[] allocateAll(List<JavaType> types) {
+            int[] indices = new int[types.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = allocate(types.get(i));
+            }
+
+            return indices;
+        }
+
+        /**
+         * Make sure at least as many slots are allocated as required to store the given types.
+         * <p>
+         * Slots allocated afterward don't overlap with the slots the types are stored in.
+         *
+         * @param types the types to reserve slots for
+         * @return this
+         */
+        public IndexedBuilder reserve(List<JavaType> types) {
+            IndexedBuilder required = new IndexedBuilder();
+            required.allocateAll(types);
+
+            return reserve(required);
+        }
+
+        /**
+         * Make sure at least as many slots are allocated as by another builder.
+         *
+         * @param other the builder to reserve the slots of
+         * @return this
+         */
+        public IndexedBuilder reserve(IndexedBuilder other) {
+            this.intCount = Math.max(this.intCount, other.intCount);
+            this.longCount = Math.max(this.longCount, other.longCount);
+            this.floatCount = Math.max(this.floatCount, other.floatCount);
+            this.doubleCount = Math.max(this.doubleCount, other.doubleCount);
+            this.objectCount = Math.max(this.objectCount, other.objectCount);
+
+            return this;
+        }
+
         /**
          * Emit the code that creates the multi value from this builder.
          *
@@ -426,5 +626,37 @@ public final class MultiValueHelper {
         public void emitCreate(CodeEmitter emitter) throws WasmAssemblerException {
             emitCreateMultiValue(emitter, intCount, longCount, floatCount, doubleCount, objectCount);
         }
+
+        /**
+         * Emit the code that grows a multi value to the size of this builder.
+         * <p>
+         * Expects the multi value, or null, to be on top of the stack and replaces
+         * it with the grown or newly allocated multi value.
+         *
+         * @param emitter the emitter to use
+         * @throws WasmAssemblerException if the code could not be emitted
+         */
+        public void emitEnsureCapacity(CodeEmitter emitter) throws WasmAssemblerException {
+            emitter.loadConstant(intCount);
+            emitter.loadConstant(longCount);
+            emitter.loadConstant(floatCount);
+            emitter.loadConstant(doubleCount);
+            emitter.loadConstant(objectCount);
+            emitter.invoke(
+                    MULTI_VALUE_TYPE,
+                    "ensureCapacity",
+                    new JavaType[]{
+                            MULTI_VALUE_TYPE,
+                            PrimitiveType.INT,
+                            PrimitiveType.INT,
+                            PrimitiveType.INT,
+                            PrimitiveType.INT,
+                            PrimitiveType.INT
+                    },
+                    MULTI_VALUE_TYPE,
+                    InvokeType.STATIC,
+                    false
+            );
+        }
     }
 }
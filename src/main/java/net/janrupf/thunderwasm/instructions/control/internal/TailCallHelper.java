@@ -0,0 +1,260 @@
+package net.janrupf.thunderwasm.instructions.control.internal;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.WasmFrameState;
+import net.janrupf.thunderwasm.assembler.WasmTypeConverter;
+import net.janrupf.thunderwasm.assembler.emitter.*;
+import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
+import net.janrupf.thunderwasm.assembler.emitter.types.JavaType;
+import net.janrupf.thunderwasm.assembler.emitter.types.JavaMethodHandle;
+import net.janrupf.thunderwasm.assembler.emitter.types.ObjectType;
+import net.janrupf.thunderwasm.assembler.emitter.types.PrimitiveType;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.runtime.state.TailCallState;
+import net.janrupf.thunderwasm.types.FunctionType;
+import net.janrupf.thunderwasm.types.ValueType;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+public final class TailCallHelper {
+    public static final ObjectType TAIL_CALL_STATE_TYPE = ObjectType.of(TailCallState.class);
+
+    private static final ObjectType METHOD_HANDLE_TYPE = ObjectType.of(MethodHandle.class);
+
+    private static final String SELF_TAIL_CALL_ENTRY_POINT = "tail_call_self$";
+
+    private TailCallHelper() {
+        throw new AssertionError("Static utility class");
+    }
+
+    /**
+     * Register the entry point self tail calls of a function jump to.
+     * <p>
+     * The label is expected to be resolved after all locals have been initialized
+     * and before the first instruction of the function body.
+     *
+     * @param context       the context of the function
+     * @param functionIndex the local index of the function
+     * @param entry         the label to jump to
+     * @throws WasmAssemblerException if an entry point has already been registered
+     */
+    public static void registerSelfTailCallEntry(
+            CodeEmitContext context,
+            LargeArrayIndex functionIndex,
+            CodeLabel entry
+    ) throws WasmAssemblerException {
+        context.getLocalGadgets().addEntryPoint(SELF_TAIL_CALL_ENTRY_POINT + functionIndex, entry);
+    }
+
+    /**
+     * Look up the entry point for a self tail call.
+     *
+     * @param context       the context to use
+     * @param functionIndex the local index of the tail called function
+     * @return the entry point, or null, if the call is not a self tail call that can be turned into a loop
+     */
+    public static CodeLabel findSelfTailCallEntry(CodeEmitContext context, LargeArrayIndex functionIndex) {
+        return context.getLocalGadgets().getEntryPoint(SELF_TAIL_CALL_ENTRY_POINT + functionIndex);
+    }
+
+    /**
+     * Validate that a tail call to a function with the given type is possible.
+     *
+     * @param context the context to use
+     * @param type    the type of the tail called function
+     * @throws WasmAssemblerException if the tail call is not possible
+     */
+    public static void validateTailCall(CodeEmitContext context, FunctionType type) throws WasmAssemblerException {
+        List<ValueType> returnTypes = context.getFrameState().getReturnTypes();
+
+        if (!returnTypes.equals(type.getOutputs().asFlatList())) {
+            throw new WasmAssemblerException("Tail call target returns " + type.getOutputs().asFlatList() +
+                    " but function returns " + returnTypes);
+        }
+    }
+
+    /**
+     * Emit a self tail call as a jump back to the start of the function.
+     * <p>
+     * Expects the arguments of the call on top of the stack. The arguments
+     * are moved into the argument locals, all other locals are reset to
+     * their default value and the remaining stack is discarded.
+     *
+     * @param context the context to use
+     * @param entry   the entry point of the function
+     * @param type    the type of the function
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitSelfTailCall(
+            CodeEmitContext context,
+            CodeLabel entry,
+            FunctionType type
+    ) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+        LocalVariables localVariables = context.getLocalVariables();
+
+        int argumentCount = (int) type.getInputs().length();
+        for (int i = argumentCount - 1; i >= 0; i--) {
+            emitter.storeLocal(localVariables.requireById(i));
+        }
+
+        UnwindHelper.emitUnwindStack(emitter, 0);
+
+        // Re-initialize all non-argument locals, the callee expects them to be zeroed
+        WasmFrameState frameState = context.getFrameState();
+        for (int id = argumentCount; localVariables.getType(id) != LocalVariables.LocalType.UNDEFINED; id++) {
+            JavaType javaType = WasmTypeConverter.toJavaType(frameState.requireLocal(id));
+
+            Object defaultValue = javaType.getDefaultValue();
+            if (defaultValue == null) {
+                emitter.loadNull((ObjectType) javaType);
+            } else {
+                emitter.loadConstant(defaultValue);
+            }
+
+            if (localVariables.getType(id) == LocalVariables.LocalType.HEAP) {
+                emitter.loadLocal(localVariables.getHeapLocals());
+
+                LocalVariables.HeapLocal l = localVariables.requireHeapById(id);
+                MultiValueHelper.emitSetByIndex(emitter, l.getType(), l.getIndex());
+            } else {
+                emitter.storeLocal(localVariables.requireById(id));
+            }
+        }
+
+        emitter.jump(JumpCondition.ALWAYS, entry);
+    }
+
+    /**
+     * Emit a tail call as a regular call followed by a return.
+     * <p>
+     * Expects the call to have been emitted already, with the return values on top of the stack.
+     *
+     * @param context the context to use
+     * @param type    the type of the called function
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitReturnAfterCall(CodeEmitContext context, FunctionType type) throws WasmAssemblerException {
+        ControlHelper.pushReturnValues(context, type);
+        BlockHelper.validateDirectReturn(context);
+        BlockHelper.emitDirectReturn(context);
+    }
+
+    /**
+     * Move the arguments of a tail call from the stack into the state of the trampoline.
+     *
+     * @param context       the context to use
+     * @param argumentTypes the types of the arguments, the last is assumed to be the top of the stack
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitStoreArguments(CodeEmitContext context, List<JavaType> argumentTypes)
+            throws WasmAssemblerException {
+        if (argumentTypes.isEmpty()) {
+            return;
+        }
+
+        CodeEmitter emitter = context.getEmitter();
+        JavaLocal stateLocal = context.getLocalVariables().getTailCallState();
+
+        // Grow the arguments in place, they are shared by all tail calls of the trampoline
+        emitter.loadLocal(stateLocal);
+        emitter.duplicate();
+        emitter.invoke(
+                TAIL_CALL_STATE_TYPE,
+                "getArguments",
+                new JavaType[0],
+                MultiValueHelper.MULTI_VALUE_TYPE,
+                InvokeType.VIRTUAL,
+                false
+        );
+        MultiValueHelper.indexedBuilder().reserve(argumentTypes).emitEnsureCapacity(emitter);
+
+        JavaLocal argumentsLocal = emitter.allocateLocal(MultiValueHelper.MULTI_VALUE_TYPE);
+        emitter.duplicate();
+        emitter.storeLocal(argumentsLocal);
+        emitter.invoke(
+                TAIL_CALL_STATE_TYPE,
+                "setArguments",
+                new JavaType[]{MultiValueHelper.MULTI_VALUE_TYPE},
+                PrimitiveType.VOID,
+                InvokeType.VIRTUAL,
+                false
+        );
+
+        MultiValueHelper.emitStoreStackByIndex(emitter, argumentsLocal, argumentTypes);
+        argumentsLocal.free();
+    }
+
+    /**
+     * Load the arguments stored by {@link #emitStoreArguments(CodeEmitContext, List)} onto the stack.
+     *
+     * @param emitter       the emitter to use
+     * @param stateLocal    the local holding the state of the trampoline
+     * @param argumentTypes the types of the arguments, the last ends up on top of the stack
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitLoadArguments(CodeEmitter emitter, JavaLocal stateLocal, List<JavaType> argumentTypes)
+            throws WasmAssemblerException {
+        if (argumentTypes.isEmpty()) {
+            return;
+        }
+
+        JavaLocal argumentsLocal = emitter.allocateLocal(MultiValueHelper.MULTI_VALUE_TYPE);
+        emitter.loadLocal(stateLocal);
+        emitter.invoke(
+                TAIL_CALL_STATE_TYPE,
+                "getArguments",
+                new JavaType[0],
+                MultiValueHelper.MULTI_VALUE_TYPE,
+                InvokeType.VIRTUAL,
+                false
+        );
+        emitter.storeLocal(argumentsLocal);
+
+        MultiValueHelper.emitLoadStackByIndex(emitter, argumentsLocal, argumentTypes);
+        argumentsLocal.free();
+    }
+
+    /**
+     * Leave a tail call pending and return from the function.
+     * <p>
+     * The trampoline of the function invokes the target with the instance, the continuation,
+     * the return area and the state of the trampoline once the function has returned. The
+     * values returned here are discarded.
+     *
+     * @param context the context to use
+     * @param target  the method performing the tail call
+     * @param type    the type of the tail called function
+     * @throws WasmAssemblerException if the code could not be emitted
+     */
+    public static void emitPendingReturn(
+            CodeEmitContext context,
+            JavaMethodHandle target,
+            FunctionType type
+    ) throws WasmAssemblerException {
+        CodeEmitter emitter = context.getEmitter();
+
+        emitter.loadLocal(context.getLocalVariables().getTailCallState());
+        emitter.loadConstant(target);
+        emitter.invoke(
+                TAIL_CALL_STATE_TYPE,
+                "setPending",
+                new JavaType[]{METHOD_HANDLE_TYPE},
+                PrimitiveType.VOID,
+                InvokeType.VIRTUAL,
+                false
+        );
+
+        for (JavaType javaType : ControlHelper.getJavaReturnTypes(type)) {
+            Object defaultValue = javaType.getDefaultValue();
+            if (defaultValue == null) {
+                emitter.loadNull((ObjectType) javaType);
+            } else {
+                emitter.loadConstant(defaultValue);
+            }
+        }
+
+        emitReturnAfterCall(context, type);
+    }
+}
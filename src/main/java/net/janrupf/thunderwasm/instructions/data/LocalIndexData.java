@@ -5,10 +5,35 @@ import net.janrupf.thunderwasm.module.WasmLoader;
 import java.io.IOException;
 
 public final class LocalIndexData extends IndexData {
+    private static final LocalIndexData[] CACHE = new LocalIndexData[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new LocalIndexData(i);
+        }
+    }
+
     public LocalIndexData(int index) {
         super(index);
     }
 
+    /**
+     * Retrieves the data for a local index.
+     * <p>
+     * Data for the first locals is shared, which keeps unpacking the data of local
+     * instructions from an {@link net.janrupf.thunderwasm.instructions.Expr} free of allocations.
+     *
+     * @param index the index of the local
+     * @return the data for the local index
+     */
+    public static LocalIndexData of(int index) {
+        if (index >= 0 && index < CACHE.length) {
+            return CACHE[index];
+        }
+
+        return new LocalIndexData(index);
+    }
+
     /**
      * Reads a {@link LocalIndexData} from the given {@link WasmLoader}.
      *
@@ -17,6 +42,6 @@ public final class LocalIndexData extends IndexData {
      * @throws IOException if an I/O error occurs
      */
     public static LocalIndexData read(WasmLoader loader) throws IOException {
-        return new LocalIndexData(loader.readU32());
+        return of(loader.readU32());
     }
 }
@@ -26,6 +26,21 @@ public final class MemoryGrow extends WasmInstruction<MemoryIndexData> {
         return MemoryIndexData.read(loader);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(MemoryIndexData data) {
+        return data.getIndex();
+    }
+
+    @Override
+    public MemoryIndexData unpackData(long packed) {
+        return new MemoryIndexData((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, MemoryIndexData data) throws WasmAssemblerException {
         context.getFrameState().popOperand(NumberType.I32);
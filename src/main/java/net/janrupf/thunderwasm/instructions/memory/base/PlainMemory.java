@@ -27,6 +27,21 @@ public abstract class PlainMemory extends WasmInstruction<PlainMemory.Memarg> {
         return arg;
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Memarg data) {
+        return ((long) data.getAlignment() << 32) | Integer.toUnsignedLong(data.getOffset());
+    }
+
+    @Override
+    public Memarg unpackData(long packed) {
+        return new Memarg((int) (packed >>> 32), (int) packed);
+    }
+
     public final void validate(Memarg memarg, int bitWidth) throws WasmAssemblerException {
         if (bitWidth == -1) {
             bitWidth = getNumberType().getBitWidth();
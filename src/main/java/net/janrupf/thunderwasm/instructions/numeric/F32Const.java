@@ -23,6 +23,21 @@ public final class F32Const extends WasmInstruction<F32Const.Data> {
         return new Data(loader.readF32());
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return Float.floatToRawIntBits(data.getValue());
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data(Float.intBitsToFloat((int) packed));
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final float value = data.getValue();
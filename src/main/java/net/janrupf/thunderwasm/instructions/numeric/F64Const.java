@@ -23,6 +23,21 @@ public final class F64Const extends WasmInstruction<F64Const.Data> {
         return new Data(loader.readF64());
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return Double.doubleToRawLongBits(data.getValue());
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data(Double.longBitsToDouble(packed));
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final double value = data.getValue();
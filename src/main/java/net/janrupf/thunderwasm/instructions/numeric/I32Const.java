@@ -23,6 +23,21 @@ public final class I32Const extends WasmInstruction<I32Const.Data> {
         return new Data(loader.readS32());
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return data.getValue();
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final int constantValue = data.getValue();
@@ -54,7 +69,7 @@ public final class I32Const extends WasmInstruction<I32Const.Data> {
     public static class Data implements WasmInstruction.Data {
         private final int value;
 
-        private Data(int value) {
+        public Data(int value) {
             this.value = value;
         }
 
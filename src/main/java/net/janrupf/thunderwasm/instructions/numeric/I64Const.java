@@ -23,6 +23,21 @@ public final class I64Const extends WasmInstruction<I64Const.Data> {
         return new Data(loader.readS64());
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return data.getValue();
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data(packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final long value = data.getValue();
@@ -53,7 +68,7 @@ public final class I64Const extends WasmInstruction<I64Const.Data> {
     public static class Data implements WasmInstruction.Data {
         private final long value;
 
-        private Data(long value) {
+        public Data(long value) {
             this.value = value;
         }
 
@@ -29,6 +29,21 @@ public final class RefFunc extends WasmInstruction<RefFunc.Data> {
         return new Data(functionIndex);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(Data data) {
+        return data.getFunctionIndex();
+    }
+
+    @Override
+    public Data unpackData(long packed) {
+        return new Data((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, Data data) throws WasmAssemblerException {
         final FoundElement<Integer, TypeImportDescription> functionTypeIndex = context.getLookups().requireFunctionTypeIndex(
@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.table;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.WasmFrameState;
 import net.janrupf.thunderwasm.assembler.emitter.*;
 import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
@@ -231,4 +232,9 @@ public final class TableCopy extends WasmInstruction<DoubleIndexData<TableIndexD
 
         emitter.resolveLabel(endLabel);
     }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, DoubleIndexData<TableIndexData, TableIndexData> data) {
+        context.markTableWrite(data.getFirst().getIndex());
+    }
 }
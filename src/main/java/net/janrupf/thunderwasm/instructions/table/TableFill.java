@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.table;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.assembler.emitter.CommonBytecodeGenerator;
 import net.janrupf.thunderwasm.assembler.emitter.InvokeType;
@@ -74,4 +75,9 @@ public final class TableFill extends WasmInstruction<TableIndexData> {
             }
         };
     }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, TableIndexData data) {
+        context.markTableWrite(data.getIndex());
+    }
 }
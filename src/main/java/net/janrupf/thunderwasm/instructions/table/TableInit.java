@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.table;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.WasmFrameState;
 import net.janrupf.thunderwasm.assembler.emitter.*;
 import net.janrupf.thunderwasm.assembler.emitter.frame.JavaLocal;
@@ -198,4 +199,9 @@ public final class TableInit extends WasmInstruction<DoubleIndexData<ElementInde
 
         emitter.resolveLabel(endLabel);
     }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, DoubleIndexData<ElementIndexData, TableIndexData> data) {
+        context.markTableWrite(data.getSecond().getIndex());
+    }
 }
@@ -1,6 +1,7 @@
 package net.janrupf.thunderwasm.instructions.table;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
 import net.janrupf.thunderwasm.assembler.emitter.CodeEmitContext;
 import net.janrupf.thunderwasm.imports.TableImportDescription;
 import net.janrupf.thunderwasm.instructions.ProcessedInstruction;
@@ -58,4 +59,9 @@ public final class TableSet extends WasmInstruction<TableIndexData> {
             }
         };
     }
+
+    @Override
+    public void runAnalysis(AnalysisContext context, TableIndexData data) {
+        context.markTableWrite(data.getIndex());
+    }
 }
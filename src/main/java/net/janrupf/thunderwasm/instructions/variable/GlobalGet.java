@@ -31,6 +31,21 @@ public final class GlobalGet extends WasmInstruction<GlobalIndexData> {
         return GlobalIndexData.read(loader);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(GlobalIndexData data) {
+        return data.getIndex();
+    }
+
+    @Override
+    public GlobalIndexData unpackData(long packed) {
+        return new GlobalIndexData((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, GlobalIndexData data) throws WasmAssemblerException {
         final FoundElement<Global, GlobalImportDescription> element = context.getLookups().requireGlobal(
@@ -28,6 +28,21 @@ public final class LocalSet extends WasmInstruction<LocalIndexData> {
         return LocalIndexData.read(loader);
     }
 
+    @Override
+    public boolean hasPackedData() {
+        return true;
+    }
+
+    @Override
+    public long packData(LocalIndexData data) {
+        return data.getIndex();
+    }
+
+    @Override
+    public LocalIndexData unpackData(long packed) {
+        return LocalIndexData.of((int) packed);
+    }
+
     @Override
     public ProcessedInstruction processInputs(CodeEmitContext context, LocalIndexData data) throws WasmAssemblerException {
         WasmFrameState frameState = context.getFrameState();
@@ -1,28 +1,44 @@
 package net.janrupf.thunderwasm.lookup;
 
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.analysis.AnalysisContext;
+import net.janrupf.thunderwasm.assembler.profile.ProfileSites;
 import net.janrupf.thunderwasm.data.Global;
 import net.janrupf.thunderwasm.eval.EvalContext;
 import net.janrupf.thunderwasm.exports.Export;
 import net.janrupf.thunderwasm.exports.FunctionExportDescription;
+import net.janrupf.thunderwasm.exports.TableExportDescription;
+import net.janrupf.thunderwasm.instructions.Function;
 import net.janrupf.thunderwasm.imports.*;
 import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.module.InvalidModuleException;
 import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
+import net.janrupf.thunderwasm.module.metadata.BranchHints;
 import net.janrupf.thunderwasm.module.section.*;
 import net.janrupf.thunderwasm.module.section.segment.DataSegment;
 import net.janrupf.thunderwasm.module.section.segment.ElementSegment;
+import net.janrupf.thunderwasm.module.section.segment.ElementSegmentMode;
 import net.janrupf.thunderwasm.runtime.UnresolvedFunctionReference;
 import net.janrupf.thunderwasm.types.*;
+import net.janrupf.thunderwasm.util.ObjectUtil;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class ElementLookups {
     private final ModuleLookups moduleLookups;
-    private Set<Integer> declaredFunctionIndices;
+    private volatile Set<Integer> declaredFunctionIndices;
+    private Set<Integer> writtenTableIndices;
+    private final Map<LargeArrayIndex, int[]> immutableTableContents;
+    private final Map<Class<?>, Import<?>[]> importsByType;
+    private volatile BranchHints branchHints;
+    private volatile ProfileSites profileSites;
 
     public ElementLookups(ModuleLookups moduleLookups) {
         this.moduleLookups = moduleLookups;
+        this.immutableTableContents = new HashMap<>();
+        this.importsByType = new ConcurrentHashMap<>();
     }
 
     /**
@@ -230,26 +246,47 @@ public final class ElementLookups {
             Class<T> type,
             LargeArrayIndex target
     ) throws WasmAssemblerException {
-        ImportSection importSection = moduleLookups.findSingleSection(ImportSection.LOCATOR);
-        if (importSection != null) {
-            LargeArrayIndex elementIndex = LargeArrayIndex.ZERO;
+        Import<?>[] imports = findImportsOfType(type);
 
-            for (Import<?> importEntry : importSection.getImports()) {
-                Import<T> casted = importEntry.tryCast(type);
+        long index = target.toU64();
+        if (Long.compareUnsigned(index, imports.length) < 0) {
+            return ImportSearchResult.found(ObjectUtil.forceCast(imports[(int) index]));
+        }
 
-                if (casted != null) {
-                    if (elementIndex.equals(target)) {
-                        return ImportSearchResult.found(casted);
-                    }
+        return ImportSearchResult.notFound(target.subtract(imports.length));
+    }
+
+    /**
+     * Find all imports with a description of the given type.
+     * <p>
+     * The imports are collected once per type, so that looking up an import by its index
+     * does not require scanning the import section again.
+     *
+     * @param type the type of the import descriptions
+     * @return the imports in the order of the import section
+     * @throws WasmAssemblerException if the import section can not be found
+     */
+    private Import<?>[] findImportsOfType(Class<? extends ImportDescription> type) throws WasmAssemblerException {
+        Import<?>[] imports = importsByType.get(type);
+        if (imports != null) {
+            return imports;
+        }
+
+        List<Import<?>> matching = new ArrayList<>();
 
-                    elementIndex = elementIndex.add(1);
+        ImportSection importSection = moduleLookups.findSingleSection(ImportSection.LOCATOR);
+        if (importSection != null) {
+            for (Import<?> importEntry : importSection.getImports()) {
+                if (importEntry.tryCast(type) != null) {
+                    matching.add(importEntry);
                 }
             }
-
-            return ImportSearchResult.notFound(target.subtract(elementIndex));
         }
 
-        return ImportSearchResult.notFound(target);
+        imports = matching.toArray(new Import<?>[0]);
+        importsByType.put(type, imports);
+
+        return imports;
     }
 
     /**
@@ -261,6 +298,68 @@ public final class ElementLookups {
         return moduleLookups;
     }
 
+    /**
+     * Find the branch hints of a module local function.
+     * <p>
+     * Hints are read from the {@value BranchHints#SECTION_NAME} custom section. A malformed
+     * section is ignored like any other invalid custom section, since hints never change the
+     * semantics of a module.
+     *
+     * @param localFunctionIndex the index of the function in the code section
+     * @return the hints by the offset of the hinted instruction, empty if the function has none
+     * @throws WasmAssemblerException if the sections of the module can not be looked up
+     */
+    public Map<Integer, BranchHint> findBranchHints(LargeArrayIndex localFunctionIndex) throws WasmAssemblerException {
+        BranchHints hints = branchHints;
+        if (hints == null) {
+            hints = readBranchHints();
+            branchHints = hints;
+        }
+
+        if (hints.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        long functionIndex = findImportsOfType(TypeImportDescription.class).length + localFunctionIndex.toU64();
+        if (functionIndex > Integer.MAX_VALUE) {
+            return Collections.emptyMap();
+        }
+
+        return hints.getFunctionHints((int) functionIndex);
+    }
+
+    /**
+     * Find the sites of the module which are instrumented to record a profile.
+     *
+     * @return the profile sites of the module
+     * @throws WasmAssemblerException if the functions of the module can not be analyzed
+     */
+    public ProfileSites findProfileSites() throws WasmAssemblerException {
+        ProfileSites sites = profileSites;
+        if (sites == null) {
+            sites = ProfileSites.compute(this);
+            profileSites = sites;
+        }
+
+        return sites;
+    }
+
+    private BranchHints readBranchHints() throws WasmAssemblerException {
+        for (CustomSection section : moduleLookups.allSections(CustomSection.LOCATOR)) {
+            if (!BranchHints.SECTION_NAME.equals(section.getName())) {
+                continue;
+            }
+
+            try {
+                return BranchHints.read(section);
+            } catch (InvalidModuleException e) {
+                return BranchHints.EMPTY;
+            }
+        }
+
+        return BranchHints.EMPTY;
+    }
+
     // TODO: We should probably move all this to a global evaluation cache
     //       and simply evaluate all global expressions once somewhere
     /**
@@ -272,9 +371,10 @@ public final class ElementLookups {
      * @throws WasmAssemblerException if an error occurs while checking
      */
     public boolean isFunctionDeclaredThroughConstExpression(int functionIndex, EvalContext context) throws WasmAssemblerException {
-        if (declaredFunctionIndices == null) {
-            // Build up the cache
-            declaredFunctionIndices = new HashSet<>();
+        Set<Integer> indices = declaredFunctionIndices;
+        if (indices == null) {
+            // Build up the cache, it is only published once complete since functions are compiled concurrently
+            indices = new HashSet<>();
             ElementSection elementSection = moduleLookups.findSingleSection(ElementSection.LOCATOR);
 
             if (elementSection != null) {
@@ -287,7 +387,7 @@ public final class ElementLookups {
                             );
                         }
 
-                        declaredFunctionIndices.add((((UnresolvedFunctionReference) value).getFunctionIndex()));
+                        indices.add((((UnresolvedFunctionReference) value).getFunctionIndex()));
                     }
                 }
             }
@@ -307,7 +407,7 @@ public final class ElementLookups {
                         );
                     }
 
-                    declaredFunctionIndices.add((((UnresolvedFunctionReference) value).getFunctionIndex()));
+                    indices.add((((UnresolvedFunctionReference) value).getFunctionIndex()));
                 }
             }
 
@@ -319,12 +419,140 @@ public final class ElementLookups {
                         continue;
                     }
 
-                    declaredFunctionIndices.add(functionExport.getDescription().getIndex());
+                    indices.add(functionExport.getDescription().getIndex());
                 }
             }
+
+            declaredFunctionIndices = indices;
+        }
+
+        return indices.contains(functionIndex);
+    }
+
+    /**
+     * Determine the contents of a table if they provably never change.
+     * <p>
+     * A table is immutable if it is a module local funcref table that is neither
+     * exported nor modified by any instruction, and all of its active element
+     * segments have constant offsets. The contents of such a table are exactly
+     * what the element segments put there during instantiation.
+     *
+     * @param i the index of the table
+     * @return the function indices stored in the table with -1 for null entries,
+     * or null, if the table is not provably immutable
+     * @throws WasmAssemblerException if the table could not be found
+     */
+    public int[] findImmutableTableContents(LargeArrayIndex i) throws WasmAssemblerException {
+        synchronized (immutableTableContents) {
+            if (immutableTableContents.containsKey(i)) {
+                return immutableTableContents.get(i);
+            }
+
+            int[] contents = computeImmutableTableContents(i);
+            immutableTableContents.put(i, contents);
+
+            return contents;
+        }
+    }
+
+    private int[] computeImmutableTableContents(LargeArrayIndex i) throws WasmAssemblerException {
+        FoundElement<TableType, TableImportDescription> table = requireTable(i);
+        if (table.isImport() || !table.getElement().getElementType().equals(ReferenceType.FUNCREF)) {
+            return null;
+        }
+
+        ExportSection exportSection = moduleLookups.findSingleSection(ExportSection.LOCATOR);
+        if (exportSection != null) {
+            for (Export<?> export : exportSection.getExports()) {
+                Export<TableExportDescription> tableExport = export.tryCast(TableExportDescription.class);
+                if (tableExport != null && i.equals(LargeArrayIndex.fromU32(tableExport.getDescription().getIndex()))) {
+                    // The host may modify the table
+                    return null;
+                }
+            }
+        }
+
+        if (writtenTableIndices == null) {
+            writtenTableIndices = collectWrittenTables();
+        }
+
+        if (writtenTableIndices == null || writtenTableIndices.contains((int) i.toU64())) {
+            return null;
+        }
+
+        int[] contents = new int[table.getElement().getLimits().getMin()];
+        Arrays.fill(contents, -1);
+
+        ElementSection elementSection = moduleLookups.findSingleSection(ElementSection.LOCATOR);
+        if (elementSection == null) {
+            return contents;
+        }
+
+        for (ElementSegment segment : elementSection.getSegments()) {
+            if (!(segment.getMode() instanceof ElementSegmentMode.Active)) {
+                continue;
+            }
+
+            ElementSegmentMode.Active mode = (ElementSegmentMode.Active) segment.getMode();
+            if (!i.equals(LargeArrayIndex.fromU32(mode.getTableIndex()))) {
+                continue;
+            }
+
+            Object offset = new EvalContext(this, false).evalSingleValue(mode.getTableOffset(), true, NumberType.I32);
+            if (!(offset instanceof Integer)) {
+                // Offset depends on an imported global
+                return null;
+            }
+
+            int start = (Integer) offset;
+            if (start < 0 || segment.getInit().length() > contents.length - start) {
+                // Instantiation is going to trap
+                return null;
+            }
+
+            int index = start;
+            for (Expr init : segment.getInit()) {
+                Object value = new EvalContext(this, true).evalSingleValue(init, true, ReferenceType.FUNCREF);
+                if (value == null || (value instanceof UnresolvedFunctionReference && ((UnresolvedFunctionReference) value).isNull())) {
+                    contents[index++] = -1;
+                } else if (value instanceof UnresolvedFunctionReference) {
+                    contents[index++] = ((UnresolvedFunctionReference) value).getFunctionIndex();
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        return contents;
+    }
+
+    private Set<Integer> collectWrittenTables() {
+        Set<Integer> written = new HashSet<>();
+
+        try {
+            CodeSection codeSection = moduleLookups.findSingleSection(CodeSection.LOCATOR);
+            if (codeSection == null) {
+                FunctionSection functionSection = moduleLookups.findSingleSection(FunctionSection.LOCATOR);
+                if (functionSection != null && functionSection.getTypes().length() > 0) {
+                    // Functions of a module which is still being loaded may write to any table
+                    return null;
+                }
+
+                return written;
+            }
+
+            for (Function function : codeSection.getFunctions()) {
+                AnalysisContext analysisContext = AnalysisContext.createForFunction(function.getExpr());
+                analysisContext.run();
+
+                written.addAll(analysisContext.getWrittenTables());
+            }
+        } catch (WasmAssemblerException e) {
+            // Will be reported when the function is compiled, treat everything as mutable
+            return null;
         }
 
-        return declaredFunctionIndices.contains(functionIndex);
+        return written;
     }
 
     /**
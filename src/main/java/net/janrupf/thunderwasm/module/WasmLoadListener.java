@@ -0,0 +1,30 @@
+package net.janrupf.thunderwasm.module;
+
+import net.janrupf.thunderwasm.instructions.Function;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+
+/**
+ * Receives notifications about the progress of a {@link WasmLoader}.
+ * <p>
+ * All methods are called on the thread loading the module, while it is still being loaded.
+ * Implementations should return quickly and hand off expensive work to other threads.
+ */
+public interface WasmLoadListener {
+    /**
+     * Called when the loader starts reading the code section.
+     *
+     * @param precedingSections a module consisting of all sections read before the code section
+     * @param functionCount     the amount of functions in the code section
+     */
+    default void onCodeSectionStart(WasmModule precedingSections, LargeArrayIndex functionCount) {
+    }
+
+    /**
+     * Called after a function of the code section has been read.
+     *
+     * @param index    the index of the function in the code section
+     * @param function the function that has been read
+     */
+    default void onFunctionLoaded(LargeArrayIndex index, Function function) {
+    }
+}
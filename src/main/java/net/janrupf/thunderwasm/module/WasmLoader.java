@@ -20,9 +20,17 @@ import net.janrupf.thunderwasm.util.ObjectUtil;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class WasmLoader {
     private static final SectionLocator<?>[] SECTION_ORDER = {
@@ -41,21 +49,59 @@ public class WasmLoader {
     };
 
     private final InputStream stream;
+    private final ByteBuffer buffer;
     private final InstructionRegistry instructionRegistry;
     private final CharsetDecoder utf8Decoder;
     private final boolean strictParsing;
     private final Set<Byte> seenSectionIds;
     private int importCounter;
-    private Byte buffered;
+    private int buffered;
     private long cursorPos;
     private int nextSectionIndex;
+    private List<WasmSection> loadedSections;
+    private WasmLoadListener listener;
+    private boolean lazyFunctionBodies;
+    private boolean parallelFunctionDecoding;
+    private long functionBodyStart;
 
     public WasmLoader(InputStream stream, InstructionRegistry instructionRegistry) {
         this(stream, instructionRegistry, true);
     }
 
     public WasmLoader(InputStream stream, InstructionRegistry instructionRegistry, boolean strictParsing) {
-        this.stream = contentStream(stream);
+        this(stream, null, instructionRegistry, strictParsing);
+    }
+
+    /**
+     * Create a loader reading the module from a buffer.
+     * <p>
+     * The module is read from the position to the limit of the buffer, the buffer itself
+     * is not modified. Reading from a buffer avoids the per byte overhead of streams.
+     *
+     * @param buffer              the buffer containing the module
+     * @param instructionRegistry the instructions to use when reading the module
+     */
+    public WasmLoader(ByteBuffer buffer, InstructionRegistry instructionRegistry) {
+        this(buffer, instructionRegistry, true);
+    }
+
+    /**
+     * Create a loader reading the module from a buffer.
+     * <p>
+     * The module is read from the position to the limit of the buffer, the buffer itself
+     * is not modified. Reading from a buffer avoids the per byte overhead of streams.
+     *
+     * @param buffer              the buffer containing the module
+     * @param instructionRegistry the instructions to use when reading the module
+     * @param strictParsing       whether to validate the structure of the module
+     */
+    public WasmLoader(ByteBuffer buffer, InstructionRegistry instructionRegistry, boolean strictParsing) {
+        this(null, buffer.slice().order(ByteOrder.LITTLE_ENDIAN), instructionRegistry, strictParsing);
+    }
+
+    private WasmLoader(InputStream stream, ByteBuffer buffer, InstructionRegistry instructionRegistry, boolean strictParsing) {
+        this.stream = stream != null ? contentStream(stream) : null;
+        this.buffer = buffer;
         this.instructionRegistry = instructionRegistry;
         this.strictParsing = strictParsing;
 
@@ -63,13 +109,82 @@ public class WasmLoader {
                 .onMalformedInput(CodingErrorAction.REPORT)
                 .onUnmappableCharacter(CodingErrorAction.REPORT);
         this.importCounter = 0;
-        this.buffered = null;
+        this.buffered = -1;
         this.cursorPos = 0;
         this.nextSectionIndex = 0;
         this.seenSectionIds = new HashSet<>();
+        this.lazyFunctionBodies = false;
+        this.parallelFunctionDecoding = false;
+        this.functionBodyStart = 0;
+    }
+
+    /**
+     * Create a loader reading the module from a file.
+     * <p>
+     * The file is mapped into memory instead of being read into the heap.
+     *
+     * @param path                the path of the module file
+     * @param instructionRegistry the instructions to use when reading the module
+     * @return the created loader
+     * @throws IOException if the file can not be mapped
+     */
+    public static WasmLoader fromFile(Path path, InstructionRegistry instructionRegistry) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Module file " + path + " is too large to be mapped");
+            }
+
+            // The mapping stays valid after the channel has been closed
+            return new WasmLoader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), instructionRegistry);
+        }
+    }
+
+    /**
+     * Set whether function bodies are decoded lazily.
+     * <p>
+     * When enabled, the loader only records the encoded bodies of the functions and decodes
+     * them when they are first accessed, see {@link Function#getExpr()}. This keeps the memory
+     * usage of large modules low and makes loading modules cheap if only their imports and
+     * exports are of interest. Errors in function bodies are then only reported once the
+     * bodies are decoded.
+     *
+     * @param lazyFunctionBodies whether to decode function bodies lazily
+     */
+    public void setLazyFunctionBodies(boolean lazyFunctionBodies) {
+        this.lazyFunctionBodies = lazyFunctionBodies;
+    }
+
+    /**
+     * Set whether function bodies are decoded in parallel.
+     * <p>
+     * When enabled, the loader first splits the code section into its length prefixed
+     * entries and then decodes the entries on the common fork join pool. This has no effect
+     * if function bodies are decoded lazily, see {@link #setLazyFunctionBodies(boolean)}.
+     *
+     * @param parallelFunctionDecoding whether to decode function bodies in parallel
+     */
+    public void setParallelFunctionDecoding(boolean parallelFunctionDecoding) {
+        this.parallelFunctionDecoding = parallelFunctionDecoding;
     }
 
     public WasmModule load() throws IOException, InvalidModuleException {
+        return load(null);
+    }
+
+    /**
+     * Load the module and report the progress to a listener.
+     * <p>
+     * This allows processing the functions of a module while the remaining module is still
+     * being read, see {@link WasmLoadListener}.
+     *
+     * @param listener the listener to notify, or null
+     * @return the loaded module
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the module is invalid
+     */
+    public WasmModule load(WasmLoadListener listener) throws IOException, InvalidModuleException {
+        this.listener = listener;
+
         byte[] header = this.requireBytes(4);
         if (header[0] != 0 || header[1] != 'a' || header[2] != 's' || header[3] != 'm') {
             throw new InvalidModuleException("Invalid magic header");
@@ -82,6 +197,7 @@ public class WasmLoader {
         }
 
         List<WasmSection> sections = new ArrayList<>();
+        this.loadedSections = sections;
 
         // Read all the remaining data as sections
         while (!this.isEOF()) {
@@ -176,7 +292,7 @@ public class WasmLoader {
     private WasmSection readSection() throws IOException, InvalidModuleException {
         byte id = this.requireByte();
         int sectionSize = this.readU32();
-        long sectionStartPos = this.cursorPos;
+        long sectionStartPos = this.cursorPosition();
 
         WasmSection section;
 
@@ -184,7 +300,7 @@ public class WasmLoader {
             case 0: {
                 String name = this.readName();
 
-                long remainingSectionBytes = sectionStartPos + sectionSize - this.cursorPos;
+                long remainingSectionBytes = sectionStartPos + sectionSize - this.cursorPosition();
                 LargeByteArray data = this.readByteVecBody(LargeArrayIndex.fromU64(remainingSectionBytes));
 
                 section = new CustomSection(id, name, data);
@@ -263,7 +379,7 @@ public class WasmLoader {
         }
 
         // Check if section size matches what we have read
-        long sectionEndPos = this.cursorPos;
+        long sectionEndPos = this.cursorPosition();
         if (sectionEndPos - sectionStartPos != sectionSize) {
             throw new InvalidModuleException("Section " + id + " size does not match the size that was actually read, expected " + sectionSize + " bytes, but read " + (sectionEndPos - sectionStartPos) + " bytes");
         }
@@ -396,10 +512,96 @@ public class WasmLoader {
      * @throws InvalidModuleException if the module is invalid
      */
     public CodeSection readCodeSection(byte id) throws IOException, InvalidModuleException {
-        LargeArray<Function> functions = this.readVec(Function.class, this::readFunction);
+        LargeArrayIndex size = LargeArrayIndex.fromU32(this.readU32());
+        if (listener != null) {
+            listener.onCodeSectionStart(new WasmModule(1, new ArrayList<>(loadedSections)), size);
+        }
+
+        if (parallelFunctionDecoding && !lazyFunctionBodies && size.toU64() > 1 && size.toU64() <= Integer.MAX_VALUE) {
+            return new CodeSection(id, this.readFunctionsInParallel((int) size.toU64()));
+        }
+
+        LargeArrayIndex[] nextIndex = {LargeArrayIndex.ZERO};
+        LargeArray<Function> functions = this.readVecBody(Function.class, size, () -> {
+            Function function = this.readFunction();
+            if (listener != null) {
+                listener.onFunctionLoaded(nextIndex[0], function);
+            }
+            nextIndex[0] = nextIndex[0].add(1);
+
+            return function;
+        });
+
         return new CodeSection(id, functions);
     }
 
+    /**
+     * Read the functions of a code section, decoding them in parallel.
+     * <p>
+     * The entries of the code section are length prefixed, so they can be split up without
+     * decoding them. Every entry is then decoded by its own loader on the common fork join pool.
+     *
+     * @param count the amount of functions in the code section
+     * @return the read functions
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the module is invalid
+     */
+    private LargeArray<Function> readFunctionsInParallel(int count) throws IOException, InvalidModuleException {
+        List<ForkJoinTask<Function>> tasks = new ArrayList<>(count);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                int size = this.readU32();
+                ByteBuffer entry = this.readEncodedBytes(size);
+
+                tasks.add(ForkJoinPool.commonPool().submit(() -> decodeFunctionEntry(entry)));
+            }
+
+            LargeArray<Function> functions = new LargeArray<>(Function.class, LargeArrayIndex.fromU32(count));
+            for (int i = 0; i < count; i++) {
+                LargeArrayIndex index = LargeArrayIndex.fromU32(i);
+                Function function = tasks.get(i).get();
+
+                functions.set(index, function);
+                if (listener != null) {
+                    listener.onFunctionLoaded(index, function);
+                }
+            }
+
+            return functions;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding functions");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InvalidModuleException) {
+                throw (InvalidModuleException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new InvalidModuleException("Failed to decode function", cause);
+        } finally {
+            for (ForkJoinTask<Function> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Decode a code section entry split off by {@link #readFunctionsInParallel(int)}.
+     *
+     * @param entry the encoded entry without its size prefix
+     * @return the decoded function
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the entry is invalid
+     */
+    private Function decodeFunctionEntry(ByteBuffer entry) throws IOException, InvalidModuleException {
+        return new WasmLoader(entry, instructionRegistry, strictParsing).readFunctionContents(entry.remaining());
+    }
+
     /**
      * Read a data section from the stream.
      *
@@ -584,7 +786,20 @@ public class WasmLoader {
      */
     public Function readFunction() throws IOException, InvalidModuleException {
         int size = this.readU32();
-        long currentCursorPos = this.cursorPos;
+        return this.readFunctionContents(size);
+    }
+
+    /**
+     * Read a function after its size prefix.
+     *
+     * @param size the size of the function in bytes
+     * @return the read function
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the module is invalid
+     */
+    private Function readFunctionContents(int size) throws IOException, InvalidModuleException {
+        long currentCursorPos = this.cursorPosition();
+        this.functionBodyStart = currentCursorPos;
 
         LargeArray<Local> locals = this.readVec(Local.class, this::readLocal);
 
@@ -600,15 +815,73 @@ public class WasmLoader {
             }
         }
 
+        if (lazyFunctionBodies) {
+            long bodySize = size - (this.cursorPosition() - currentCursorPos);
+            if (bodySize <= 0) {
+                throw new InvalidModuleException("Function size " + size + " is too small for its locals");
+            }
+
+            long localsSize = size - bodySize;
+            ByteBuffer body = this.readEncodedBytes((int) bodySize);
+            return new Function(() -> decodeFunctionBody(body, localsSize), locals);
+        }
+
         Expr expr = Expr.read(this);
 
-        if (this.cursorPos - currentCursorPos != size) {
-            throw new InvalidModuleException("Function size does not match the size that was actually read, expected " + size + " bytes, but read" + " " + (this.cursorPos - currentCursorPos) + " bytes");
+        long readSize = this.cursorPosition() - currentCursorPos;
+        if (readSize != size) {
+            throw new InvalidModuleException("Function size does not match the size that was actually read, expected " + size + " bytes, but read" + " " + readSize + " bytes");
         }
 
         return new Function(expr, locals);
     }
 
+    /**
+     * Read encoded bytes, such as the body of a function, without decoding them.
+     *
+     * @param size the amount of bytes to read
+     * @return a buffer containing exactly the read bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private ByteBuffer readEncodedBytes(int size) throws IOException {
+        if (buffer == null) {
+            return ByteBuffer.wrap(this.requireBytes(size));
+        }
+
+        requireRemaining(size);
+
+        // Share the memory of the module instead of copying the body
+        ByteBuffer body = buffer.duplicate();
+        body.limit(body.position() + size);
+        buffer.position(buffer.position() + size);
+
+        return body.slice();
+    }
+
+    /**
+     * Decode a function body recorded by {@link #readEncodedBytes(int)}.
+     *
+     * @param body       the encoded body
+     * @param localsSize the size of the local declarations preceding the body
+     * @return the decoded body
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the body is invalid
+     */
+    private Expr decodeFunctionBody(ByteBuffer body, long localsSize) throws IOException, InvalidModuleException {
+        WasmLoader bodyLoader = new WasmLoader(body, instructionRegistry, strictParsing);
+
+        // Keep instruction offsets relative to the local declarations like for eagerly decoded bodies
+        bodyLoader.functionBodyStart = -localsSize;
+        Expr expr = Expr.read(bodyLoader);
+
+        if (!bodyLoader.isEOF()) {
+            throw new InvalidModuleException("Function size does not match the size that was actually read, expected " +
+                    body.remaining() + " bytes, but read " + bodyLoader.cursorPosition() + " bytes");
+        }
+
+        return expr;
+    }
+
     /**
      * Read a local from the stream.
      *
@@ -901,6 +1174,15 @@ public class WasmLoader {
      * @throws IOException if the stream is closed or the end of the stream is reached
      */
     public byte[] requireBytes(byte[] out) throws IOException {
+        if (buffer != null) {
+            if (buffer.remaining() < out.length) {
+                throw new EOFException("Expected " + out.length + " bytes, but got " + buffer.remaining() + " bytes");
+            }
+
+            buffer.get(out);
+            return out;
+        }
+
         int read = stream.read(out);
 
         if (read != out.length) {
@@ -931,6 +1213,14 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public byte requireByte() throws IOException {
+        if (buffer != null) {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("Expected 1 byte, but got 0 bytes");
+            }
+
+            return buffer.get();
+        }
+
         int val = stream.read();
         if (val == -1) {
             throw new EOFException("Expected 1 byte, but got 0 bytes");
@@ -959,16 +1249,20 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public boolean isEOF() throws IOException {
-        if (this.buffered != null) {
+        if (buffer != null) {
+            return !buffer.hasRemaining();
+        }
+
+        if (this.buffered != -1) {
             return false;
         }
 
         int val = stream.read();
-        this.cursorPos--; // We have to decrement the cursor position because we have not actually read a byte
         if (val == -1) {
             return true;
         } else {
-            this.buffered = (byte) val;
+            this.cursorPos--; // We have to decrement the cursor position because we have not actually read a byte
+            this.buffered = val;
             return false;
         }
     }
@@ -980,21 +1274,49 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public byte peekByte() throws IOException {
-        if (this.buffered != null) {
-            return this.buffered;
+        if (buffer != null) {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("Expected 1 byte, but got 0 bytes");
+            }
+
+            return buffer.get(buffer.position());
         }
 
-        int val = stream.read();
-        this.cursorPos--; // We have to decrement the cursor position because we have not actually read a byte
+        if (this.buffered != -1) {
+            return (byte) this.buffered;
+        }
 
+        int val = stream.read();
         if (val == -1) {
             throw new EOFException("Expected 1 byte, but got 0 bytes");
         } else {
-            this.buffered = (byte) val;
-            return this.buffered;
+            this.cursorPos--; // We have to decrement the cursor position because we have not actually read a byte
+            this.buffered = val;
+            return (byte) val;
         }
     }
 
+    /**
+     * Retrieve the offset of the next instruction in the function currently being read.
+     * <p>
+     * The offset is relative to the start of the function body, which begins with the
+     * local declarations. This is the offset used by code metadata such as branch hints.
+     *
+     * @return the offset of the next instruction
+     */
+    public int instructionOffset() {
+        return (int) (this.cursorPosition() - functionBodyStart);
+    }
+
+    /**
+     * Retrieve the amount of bytes read so far.
+     *
+     * @return the current position in the module
+     */
+    private long cursorPosition() {
+        return buffer != null ? buffer.position() : cursorPos;
+    }
+
     /**
      * Read a vector of bytes from the stream.
      *
@@ -1165,7 +1487,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public short readU16() throws IOException {
-        return LEB128Value.readU16(stream);
+        return buffer != null ? LEB128Value.readU16(buffer) : LEB128Value.readU16(stream);
     }
 
     /**
@@ -1175,7 +1497,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public int readU32() throws IOException {
-        return LEB128Value.readU32(stream);
+        return buffer != null ? LEB128Value.readU32(buffer) : LEB128Value.readU32(stream);
     }
 
     /**
@@ -1185,7 +1507,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public long readU64() throws IOException {
-        return LEB128Value.readU64(stream);
+        return buffer != null ? LEB128Value.readU64(buffer) : LEB128Value.readU64(stream);
     }
 
     /**
@@ -1195,7 +1517,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public short readS16() throws IOException {
-        return LEB128Value.readS16(stream);
+        return buffer != null ? LEB128Value.readS16(buffer) : LEB128Value.readS16(stream);
     }
 
     /**
@@ -1205,7 +1527,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public int readS32() throws IOException {
-        return LEB128Value.readS32(stream);
+        return buffer != null ? LEB128Value.readS32(buffer) : LEB128Value.readS32(stream);
     }
 
     /**
@@ -1215,7 +1537,7 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public long readS64() throws IOException {
-        return LEB128Value.readS64(stream);
+        return buffer != null ? LEB128Value.readS64(buffer) : LEB128Value.readS64(stream);
     }
 
     /**
@@ -1225,6 +1547,11 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public float readF32() throws IOException {
+        if (buffer != null) {
+            requireRemaining(4);
+            return buffer.getFloat();
+        }
+
         byte[] raw = this.requireBytes(4);
         int bits = ((((int) raw[3]) & 0xFF) << 24) | ((((int) raw[2]) & 0xFF) << 16) | ((((int) raw[1]) & 0xFF) << 8) | (((int) raw[0]) & 0xFF);
         return Float.intBitsToFloat(bits);
@@ -1237,11 +1564,22 @@ public class WasmLoader {
      * @throws IOException if an I/O error occurs
      */
     public double readF64() throws IOException {
+        if (buffer != null) {
+            requireRemaining(8);
+            return buffer.getDouble();
+        }
+
         byte[] raw = this.requireBytes(8);
         long bits = ((((long) raw[7]) & 0xFF) << 56) | ((((long) raw[6]) & 0xFF) << 48) | ((((long) raw[5]) & 0xFF) << 40) | ((((long) raw[4]) & 0xFF) << 32) | ((((long) raw[3]) & 0xFF) << 24) | ((((long) raw[2]) & 0xFF) << 16) | ((((long) raw[1]) & 0xFF) << 8) | ((((long) raw[0]) & 0xFF));
         return Double.longBitsToDouble(bits);
     }
 
+    private void requireRemaining(int n) throws EOFException {
+        if (buffer.remaining() < n) {
+            throw new EOFException("Expected " + n + " bytes, but got " + buffer.remaining() + " bytes");
+        }
+    }
+
     /**
      * Read an instruction from the stream.
      *
@@ -1263,10 +1601,22 @@ public class WasmLoader {
      * @throws InvalidModuleException if the module is invalid
      */
     public InstructionInstance readInstructionData(byte opCode) throws IOException, InvalidModuleException {
-        InstructionDecoder decoder = instructionRegistry.getDecoder(opCode);
-        WasmInstruction<?> instruction = decoder.decode(opCode, this);
+        return this.readInstructionData(this.decodeInstruction(opCode));
+    }
 
-        return this.readInstructionData(instruction);
+    /**
+     * Decode the instruction identified by an opcode, without reading its data.
+     * <p>
+     * This reads the remainder of the opcode, if the instruction has a multi byte opcode.
+     *
+     * @param opCode the first byte of the opcode of the instruction
+     * @return the decoded instruction
+     * @throws IOException            if an I/O error occurs
+     * @throws InvalidModuleException if the module is invalid
+     */
+    public WasmInstruction<?> decodeInstruction(byte opCode) throws IOException, InvalidModuleException {
+        InstructionDecoder decoder = instructionRegistry.getDecoder(opCode);
+        return decoder.decode(opCode, this);
     }
 
     /**
@@ -1300,7 +1650,7 @@ public class WasmLoader {
      */
     public <T extends WasmInstruction.Data> InstructionInstance readInstructionData(WasmInstruction<T> instruction) throws IOException, InvalidModuleException {
         T data = instruction.readData(this);
-        return new InstructionInstance(instruction, data);
+        return InstructionInstance.of(instruction, data);
     }
 
     /**
@@ -1326,11 +1676,11 @@ public class WasmLoader {
         return new InputStream() {
             @Override
             public int read() throws IOException {
-                if (buffered != null) {
-                    byte buffered = WasmLoader.this.buffered;
-                    WasmLoader.this.buffered = null;
+                if (buffered != -1) {
+                    int buffered = WasmLoader.this.buffered;
+                    WasmLoader.this.buffered = -1;
                     cursorPos++;
-                    return Byte.toUnsignedInt(buffered);
+                    return buffered;
                 }
 
                 int val = stream.read();
@@ -1345,9 +1695,9 @@ public class WasmLoader {
             public int read(byte[] b) throws IOException {
                 int readCount;
 
-                if (buffered != null) {
-                    b[0] = buffered;
-                    buffered = null;
+                if (buffered != -1) {
+                    b[0] = (byte) buffered;
+                    buffered = -1;
                     readCount = stream.read(b, 1, b.length - 1) + 1;
                 } else {
                     readCount = stream.read(b);
@@ -1364,9 +1714,9 @@ public class WasmLoader {
             public int read(byte[] b, int off, int len) throws IOException {
                 int readCount;
 
-                if (buffered != null) {
-                    b[off] = buffered;
-                    buffered = null;
+                if (buffered != -1) {
+                    b[off] = (byte) buffered;
+                    buffered = -1;
                     readCount = stream.read(b, off + 1, len - 1) + 1;
                 } else {
                     readCount = stream.read(b, off, len);
@@ -1381,8 +1731,8 @@ public class WasmLoader {
 
             @Override
             public long skip(long n) throws IOException {
-                if (buffered != null) {
-                    buffered = null;
+                if (buffered != -1) {
+                    buffered = -1;
                     cursorPos++;
                     n--;
                 }
@@ -3,6 +3,7 @@ package net.janrupf.thunderwasm.module.encoding;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public final class LEB128Value {
     /**
@@ -95,6 +96,210 @@ public final class LEB128Value {
             i++;
         } while ((current & 0x80) != 0);
 
+        return validate(result, current, i, bits, isSigned);
+    }
+
+    /**
+     * Reads a signed 16-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded signed 16-bit integer
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static short readS16(ByteBuffer buffer) throws IOException {
+        return (short) read(buffer, 16, true);
+    }
+
+    /**
+     * Reads an unsigned 16-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded unsigned 16-bit integer
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static short readU16(ByteBuffer buffer) throws IOException {
+        return (short) read(buffer, 16, false);
+    }
+
+    /**
+     * Reads a signed 32-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded signed 32-bit integer
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static int readS32(ByteBuffer buffer) throws IOException {
+        int position = buffer.position();
+        if (buffer.limit() - position < 5) {
+            // Not enough bytes left for the unrolled decoding
+            return (int) read(buffer, 32, true);
+        }
+
+        int b = buffer.get(position);
+        int result = b & 0x7F;
+        if (b >= 0) {
+            buffer.position(position + 1);
+            return (result << 25) >> 25;
+        }
+
+        b = buffer.get(position + 1);
+        result |= (b & 0x7F) << 7;
+        if (b >= 0) {
+            buffer.position(position + 2);
+            return (result << 18) >> 18;
+        }
+
+        b = buffer.get(position + 2);
+        result |= (b & 0x7F) << 14;
+        if (b >= 0) {
+            buffer.position(position + 3);
+            return (result << 11) >> 11;
+        }
+
+        b = buffer.get(position + 3);
+        result |= (b & 0x7F) << 21;
+        if (b >= 0) {
+            buffer.position(position + 4);
+            return (result << 4) >> 4;
+        }
+
+        b = buffer.get(position + 4);
+        if (b < 0) {
+            throw new IOException("LEB128 Integer representation too long, exceeds 5 bytes for 32-bit value");
+        }
+
+        // The unused bits of the last byte have to match the sign bit
+        int unusedBits = b & 0x70;
+        if (unusedBits != ((b & 0x08) != 0 ? 0x70 : 0)) {
+            throw new IOException("LEB128 Integer too large");
+        }
+
+        buffer.position(position + 5);
+        return result | (b << 28);
+    }
+
+    /**
+     * Reads an unsigned 32-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded unsigned 32-bit integer as an int
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static int readU32(ByteBuffer buffer) throws IOException {
+        int position = buffer.position();
+        if (buffer.limit() - position < 5) {
+            // Not enough bytes left for the unrolled decoding
+            return (int) read(buffer, 32, false);
+        }
+
+        int b = buffer.get(position);
+        if (b >= 0) {
+            buffer.position(position + 1);
+            return b;
+        }
+
+        int result = b & 0x7F;
+        b = buffer.get(position + 1);
+        result |= (b & 0x7F) << 7;
+        if (b >= 0) {
+            buffer.position(position + 2);
+            return result;
+        }
+
+        b = buffer.get(position + 2);
+        result |= (b & 0x7F) << 14;
+        if (b >= 0) {
+            buffer.position(position + 3);
+            return result;
+        }
+
+        b = buffer.get(position + 3);
+        result |= (b & 0x7F) << 21;
+        if (b >= 0) {
+            buffer.position(position + 4);
+            return result;
+        }
+
+        b = buffer.get(position + 4);
+        if (b < 0) {
+            throw new IOException("LEB128 Integer representation too long, exceeds 5 bytes for 32-bit value");
+        }
+
+        if ((b & 0x70) != 0) {
+            throw new IOException("LEB128 Integer too large");
+        }
+
+        buffer.position(position + 5);
+        return result | (b << 28);
+    }
+
+    /**
+     * Reads a signed 64-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded signed 64-bit integer
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static long readS64(ByteBuffer buffer) throws IOException {
+        return read(buffer, 64, true);
+    }
+
+    /**
+     * Reads an unsigned 64-bit integer from the buffer using LEB128 encoding.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded unsigned 64-bit integer as a long
+     * @throws IOException if the encoding is invalid or the buffer ends prematurely
+     */
+    public static long readU64(ByteBuffer buffer) throws IOException {
+        return read(buffer, 64, false);
+    }
+
+    private static long read(ByteBuffer buffer, int bits, boolean isSigned) throws IOException {
+        long result = 0;
+        int shift = 0;
+        int i = 0;
+        byte current;
+
+        final int maxBytes = (bits + 6) / 7;
+
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        do {
+            if (i >= maxBytes) {
+                throw new IOException("LEB128 Integer representation too long, exceeds " + maxBytes + " bytes for " + bits + "-bit value");
+            }
+
+            if (position == limit) {
+                throw new EOFException("Unexpected end of buffer while reading LEB128 value");
+            }
+            current = buffer.get(position++);
+
+            result |= ((long) (current & 0x7F)) << shift;
+            shift += 7;
+            i++;
+        } while ((current & 0x80) != 0);
+
+        buffer.position(position);
+        return validate(result, current, i, bits, isSigned);
+    }
+
+    /**
+     * Validates a decoded value and applies the sign extension.
+     *
+     * @param result   the decoded bits
+     * @param current  the last byte of the encoding
+     * @param i        the amount of bytes of the encoding
+     * @param bits     the size of the value in bits
+     * @param isSigned whether the value is signed
+     * @return the validated value
+     * @throws IOException if the value is out of range
+     */
+    private static long validate(long result, byte current, int i, int bits, boolean isSigned) throws IOException {
+        final int maxBytes = (bits + 6) / 7;
+        final int shift = i * 7;
+
         if (i == maxBytes) {
             int usedBitsInLastByte = bits - ((maxBytes - 1) * 7);
 
@@ -0,0 +1,16 @@
+package net.janrupf.thunderwasm.module.metadata;
+
+/**
+ * A hint on whether a conditional branch is usually taken.
+ */
+public enum BranchHint {
+    /**
+     * The branch is usually not taken.
+     */
+    UNLIKELY,
+
+    /**
+     * The branch is usually taken.
+     */
+    LIKELY
+}
@@ -0,0 +1,118 @@
+package net.janrupf.thunderwasm.module.metadata;
+
+import net.janrupf.thunderwasm.module.InvalidModuleException;
+import net.janrupf.thunderwasm.module.encoding.LEB128Value;
+import net.janrupf.thunderwasm.module.section.CustomSection;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The branch hints of a module as described by the branch hinting proposal.
+ * <p>
+ * Hints are attached to {@code if} and {@code br_if} instructions and identify them by
+ * their byte offset relative to the start of the function body, which is the first byte
+ * of the local declarations.
+ */
+public final class BranchHints {
+    /**
+     * The name of the custom section containing the branch hints.
+     */
+    public static final String SECTION_NAME = "metadata.code.branch_hint";
+
+    /**
+     * Branch hints of a module without hints.
+     */
+    public static final BranchHints EMPTY = new BranchHints(Collections.emptyMap());
+
+    private final Map<Integer, Map<Integer, BranchHint>> hintsByFunction;
+
+    private BranchHints(Map<Integer, Map<Integer, BranchHint>> hintsByFunction) {
+        this.hintsByFunction = hintsByFunction;
+    }
+
+    /**
+     * Retrieve the branch hints of a function.
+     *
+     * @param functionIndex the index of the function in the function index space
+     * @return the hints by the offset of the hinted instruction
+     */
+    public Map<Integer, BranchHint> getFunctionHints(int functionIndex) {
+        Map<Integer, BranchHint> hints = hintsByFunction.get(functionIndex);
+        return hints == null ? Collections.emptyMap() : hints;
+    }
+
+    /**
+     * Determine whether there are no hints at all.
+     *
+     * @return true if there are no hints, false otherwise
+     */
+    public boolean isEmpty() {
+        return hintsByFunction.isEmpty();
+    }
+
+    /**
+     * Read the branch hints from their custom section.
+     *
+     * @param section the section to read
+     * @return the read hints
+     * @throws InvalidModuleException if the section is malformed
+     */
+    public static BranchHints read(CustomSection section) throws InvalidModuleException {
+        if (!SECTION_NAME.equals(section.getName())) {
+            throw new IllegalArgumentException("Section " + section.getName() + " does not contain branch hints");
+        }
+
+        byte[] data = section.getData().asFlatArray();
+        if (data == null) {
+            throw new InvalidModuleException("Branch hint section is too large");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        Map<Integer, Map<Integer, BranchHint>> hintsByFunction = new HashMap<>();
+
+        try {
+            int functionCount = LEB128Value.readU32(buffer);
+            for (int i = 0; i < functionCount; i++) {
+                int functionIndex = LEB128Value.readU32(buffer);
+                int hintCount = LEB128Value.readU32(buffer);
+
+                Map<Integer, BranchHint> hints = new HashMap<>();
+                for (int j = 0; j < hintCount; j++) {
+                    int offset = LEB128Value.readU32(buffer);
+
+                    int size = LEB128Value.readU32(buffer);
+                    if (size != 1) {
+                        throw new InvalidModuleException("Invalid branch hint size " + Integer.toUnsignedString(size));
+                    }
+
+                    byte value = buffer.get();
+                    if (value == 0) {
+                        hints.put(offset, BranchHint.UNLIKELY);
+                    } else if (value == 1) {
+                        hints.put(offset, BranchHint.LIKELY);
+                    } else {
+                        throw new InvalidModuleException("Invalid branch hint value " + value);
+                    }
+                }
+
+                if (hintsByFunction.put(functionIndex, Collections.unmodifiableMap(hints)) != null) {
+                    throw new InvalidModuleException(
+                            "Duplicate branch hints for function " + Integer.toUnsignedString(functionIndex));
+                }
+            }
+        } catch (IOException | BufferUnderflowException e) {
+            throw new InvalidModuleException("Branch hint section is truncated", e);
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new InvalidModuleException("Branch hint section has " + buffer.remaining() + " trailing bytes");
+        }
+
+        return new BranchHints(hintsByFunction);
+    }
+}
@@ -0,0 +1,42 @@
+package net.janrupf.thunderwasm.runtime;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Helper that is used by the generated code to load data segments stored as resources.
+ */
+@SuppressWarnings("unused") // Used by generated code
+public final class WasmDataSegments {
+    private WasmDataSegments() {
+        throw new AssertionError("This is a helper class for generated code");
+    }
+
+    /**
+     * Load a data segment from a resource next to the class of the lookup.
+     *
+     * @param lookup the lookup of the class the data segment belongs to
+     * @param name   the name of the resource, relative to the class
+     * @param length the expected length of the data segment
+     * @return the loaded data segment
+     * @throws UncheckedIOException if the resource can not be read or is too short
+     */
+    public static byte[] loadResource(MethodHandles.Lookup lookup, String name, int length) {
+        byte[] data = new byte[length];
+
+        try (InputStream stream = lookup.lookupClass().getResourceAsStream(name)) {
+            if (stream == null) {
+                throw new IOException("Data segment resource " + name + " not found");
+            }
+
+            new DataInputStream(stream).readFully(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load data segment " + name, e);
+        }
+
+        return data;
+    }
+}
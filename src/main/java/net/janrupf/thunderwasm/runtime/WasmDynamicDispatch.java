@@ -2,6 +2,8 @@ package net.janrupf.thunderwasm.runtime;
 
 import net.janrupf.thunderwasm.runtime.continuation.Continuation;
 import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.runtime.state.MultiValue;
+import net.janrupf.thunderwasm.runtime.state.TailCallState;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
@@ -42,4 +44,83 @@ public final class WasmDynamicDispatch {
 
         return methodHandle;
     }
+
+    /**
+     * Prepares a method handle for a call_indirect or call (via import) instruction calling
+     * a function which returns multiple values.
+     * <p>
+     * The method handle takes the multi value to return the values in as an additional
+     * last argument, see {@link LinkedFunction.Simple#asReturnAreaMethodHandle()}. Functions
+     * which don't support this ignore the argument and return a new multi value.
+     *
+     * @param reference    the function reference to call
+     * @param continuation the continuation to use
+     * @return a method handle that can be invoked
+     */
+    public static MethodHandle prepareMultiValueCallIndirect(LinkedFunction reference, Continuation continuation) {
+        MethodHandle methodHandle = null;
+        if (reference instanceof LinkedFunction.Simple) {
+            methodHandle = ((LinkedFunction.Simple) reference).asReturnAreaMethodHandle();
+        }
+
+        if (methodHandle == null) {
+            methodHandle = prepareCallIndirect(reference, continuation);
+            return MethodHandles.dropArguments(methodHandle, methodHandle.type().parameterCount(), MultiValue.class);
+        }
+
+        if (reference.getContinuationArgumentIndex() != -1) {
+            methodHandle = MethodHandles.insertArguments(
+                    methodHandle,
+                    reference.getContinuationArgumentIndex(),
+                    continuation
+            );
+        }
+
+        return methodHandle;
+    }
+
+    /**
+     * Prepares a method handle for a return_call_indirect instruction.
+     * <p>
+     * The method handle takes the state of the trampoline performing the tail call as an
+     * additional last argument, following the return area of functions returning multiple
+     * values like with {@link #prepareMultiValueCallIndirect(LinkedFunction, Continuation)}.
+     * Functions of the calling instance are invoked without their trampoline, the tail calls
+     * they leave pending are completed by the trampoline of the caller. All other functions
+     * ignore the state and perform their tail calls themselves.
+     *
+     * @param reference    the function reference to call
+     * @param owner        the instance performing the tail call
+     * @param continuation the continuation to use
+     * @return a method handle that can be invoked
+     */
+    public static MethodHandle prepareTailCallIndirect(
+            LinkedFunction reference,
+            Object owner,
+            Continuation continuation
+    ) {
+        if (reference instanceof LinkedFunction.Simple) {
+            MethodHandle methodHandle = ((LinkedFunction.Simple) reference).asTailCallMethodHandle(owner);
+            if (methodHandle != null) {
+                if (reference.getContinuationArgumentIndex() != -1) {
+                    methodHandle = MethodHandles.insertArguments(
+                            methodHandle,
+                            reference.getContinuationArgumentIndex(),
+                            continuation
+                    );
+                }
+
+                return methodHandle;
+            }
+        }
+
+        MethodHandle methodHandle;
+        if (reference != null && reference.getReturnTypes().size() > 1) {
+            methodHandle = prepareMultiValueCallIndirect(reference, continuation);
+        } else {
+            methodHandle = prepareCallIndirect(reference, continuation);
+        }
+
+        return MethodHandles.dropArguments(methodHandle, methodHandle.type().parameterCount(), TailCallState.class);
+    }
 }
@@ -45,6 +45,11 @@ public class DelegatingRuntimeLinker implements ProbingRuntimeLinker {
         return tryForAll((l) -> l.tryLinkFunction(moduleName, importName, type));
     }
 
+    @Override
+    public Object tryLinkModuleInstance(String moduleName) throws ThunderWasmException {
+        return tryForAll((l) -> l.tryLinkModuleInstance(moduleName));
+    }
+
     private <T> T tryForAll(TryLinkCallback<T> callback) throws ThunderWasmException {
         for (ProbingRuntimeLinker linker : delegates) {
             T result = callback.tryLink(linker);
@@ -0,0 +1,123 @@
+package net.janrupf.thunderwasm.runtime.linker;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.data.Limits;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.runtime.linker.global.LinkedGlobal;
+import net.janrupf.thunderwasm.runtime.linker.global.LinkedGlobalBase;
+import net.janrupf.thunderwasm.runtime.linker.global.LinkedReadOnlyGlobal;
+import net.janrupf.thunderwasm.runtime.linker.memory.LinkedMemory;
+import net.janrupf.thunderwasm.runtime.linker.table.LinkedTable;
+import net.janrupf.thunderwasm.types.FunctionType;
+import net.janrupf.thunderwasm.types.ReferenceType;
+import net.janrupf.thunderwasm.types.ValueType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A runtime linker that links the instances of modules to each other.
+ * <p>
+ * Imports are resolved against the exports of the module instance added under the name
+ * of the imported module. This is the linker to instantiate modules assembled by
+ * {@link net.janrupf.thunderwasm.assembler.WasmModuleSetAssembler} with, as it also
+ * provides the module instances their direct calls are performed on. Modules have to be
+ * added in dependency order, after they have been instantiated with this linker.
+ */
+public class ModuleSetRuntimeLinker implements ProbingRuntimeLinker {
+    private final Map<String, Object> instances;
+
+    public ModuleSetRuntimeLinker() {
+        this.instances = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add a module instance, making it available to modules importing from it.
+     *
+     * @param moduleName the name other modules use to import from this module
+     * @param instance   the instance of the generated module class
+     * @return this
+     * @throws IllegalArgumentException if the instance does not provide its exports, or a module
+     *                                  with the same name has been added already
+     */
+    public ModuleSetRuntimeLinker addInstance(String moduleName, Object instance) {
+        if (!(instance instanceof WasmModuleExports)) {
+            throw new IllegalArgumentException("Module instance does not implement " + WasmModuleExports.class.getName());
+        }
+
+        if (instances.putIfAbsent(moduleName, instance) != null) {
+            throw new IllegalArgumentException("Duplicate module name: " + moduleName);
+        }
+
+        return this;
+    }
+
+    @Override
+    public LinkedGlobalBase tryLinkGlobal(String moduleName, String importName, ValueType type, boolean readOnly)
+            throws ThunderWasmException {
+        LinkedReadOnlyGlobal global = findExport(LinkedReadOnlyGlobal.class, moduleName, importName);
+        if (global == null) {
+            return null;
+        }
+
+        if (!global.getType().equals(type) || (!readOnly && !(global instanceof LinkedGlobal))) {
+            throw new ThunderWasmException("Global '" + moduleName + "@" + importName + "' has an incompatible type");
+        }
+
+        return global;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> LinkedTable<T> tryLinkTable(String moduleName, String importName, ReferenceType type, Limits limits)
+            throws ThunderWasmException {
+        return (LinkedTable<T>) findExport(LinkedTable.class, moduleName, importName);
+    }
+
+    @Override
+    public LinkedMemory tryLinkMemory(String moduleName, String importName, Limits limits) throws ThunderWasmException {
+        return findExport(LinkedMemory.class, moduleName, importName);
+    }
+
+    @Override
+    public LinkedFunction tryLinkFunction(String moduleName, String importName, FunctionType type)
+            throws ThunderWasmException {
+        LinkedFunction function = findExport(LinkedFunction.class, moduleName, importName);
+        if (function == null) {
+            return null;
+        }
+
+        if (!function.getArguments().equals(type.getInputs().asFlatList())
+                || !function.getReturnTypes().equals(type.getOutputs().asFlatList())) {
+            throw new ThunderWasmException("Function '" + moduleName + "@" + importName + "' has an incompatible type");
+        }
+
+        return function;
+    }
+
+    @Override
+    public Object tryLinkModuleInstance(String moduleName) {
+        return instances.get(moduleName);
+    }
+
+    private <T> T findExport(Class<T> type, String moduleName, String importName) throws ThunderWasmException {
+        Object instance = instances.get(moduleName);
+        if (instance == null) {
+            return null;
+        }
+
+        Object export = ((WasmModuleExports) instance).getExports().get(importName);
+        if (export == null) {
+            return null;
+        }
+
+        if (!type.isInstance(export)) {
+            throw new ThunderWasmException(
+                    "Export '" + moduleName + "@" + importName + "' is not a " + type.getSimpleName()
+            );
+        }
+
+        return type.cast(export);
+    }
+}
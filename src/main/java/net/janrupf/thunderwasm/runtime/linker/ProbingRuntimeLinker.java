@@ -121,6 +121,27 @@ public interface ProbingRuntimeLinker extends RuntimeLinker {
         );
     }
 
+    /**
+     * Attempt to link a module instance.
+     *
+     * @param moduleName the name of the module
+     * @return the instance of the module, or null if the module instance could not be found
+     * @throws ThunderWasmException if an error occurs
+     */
+    default Object tryLinkModuleInstance(String moduleName) throws ThunderWasmException {
+        return null;
+    }
+
+    @Override
+    default Object linkModuleInstance(String moduleName) throws ThunderWasmException {
+        Object instance = tryLinkModuleInstance(moduleName);
+        if (instance == null) {
+            throw new ThunderWasmException("Module instance '" + moduleName + "' not found");
+        }
+
+        return instance;
+    }
+
     static <T> T ensureFound(T element, String t, String moduleName, String importName)
             throws ThunderWasmException {
         if (element == null) {
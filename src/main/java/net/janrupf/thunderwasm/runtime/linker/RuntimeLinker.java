@@ -77,6 +77,21 @@ public interface RuntimeLinker {
         throw new ThunderWasmException("Linkage of function is not implemented in this runtime linker");
     }
 
+    /**
+     * Link a module instance.
+     * <p>
+     * This is used by modules which have been assembled together with the modules they
+     * import from, and call their functions directly. The returned object must be an instance
+     * of the class generated for the module with the given name, see {@link ModuleSetRuntimeLinker}.
+     *
+     * @param moduleName the name of the module
+     * @return the instance of the module
+     * @throws ThunderWasmException if the module instance could not be linked
+     */
+    default Object linkModuleInstance(String moduleName) throws ThunderWasmException {
+        throw new ThunderWasmException("Linkage of module instances is not implemented in this runtime linker");
+    }
+
     /**
      * A runtime linker which doesn't provide any imports.
      */
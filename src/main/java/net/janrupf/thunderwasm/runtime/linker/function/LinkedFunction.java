@@ -9,6 +9,7 @@ import net.janrupf.thunderwasm.runtime.continuation.Continuation;
 import net.janrupf.thunderwasm.types.ValueType;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -57,17 +58,82 @@ public interface LinkedFunction {
         private final List<ValueType> arguments;
         private final List<ValueType> returnTypes;
         private final int continuationArgumentIndex;
+        private final MethodHandle returnAreaMethodHandle;
+        private final MethodHandle tailCallMethodHandle;
+        private final Object tailCallOwner;
 
         public Simple(
                 MethodHandle methodHandle,
                 List<ValueType> arguments,
                 List<ValueType> returnTypes,
                 int continuationArgumentIndex
+        ) {
+            this(methodHandle, arguments, returnTypes, continuationArgumentIndex, null, null, null);
+        }
+
+        private Simple(
+                MethodHandle methodHandle,
+                List<ValueType> arguments,
+                List<ValueType> returnTypes,
+                int continuationArgumentIndex,
+                MethodHandle returnAreaMethodHandle,
+                MethodHandle tailCallMethodHandle,
+                Object tailCallOwner
         ) {
             this.methodHandle = methodHandle;
             this.arguments = arguments;
             this.returnTypes = returnTypes;
             this.continuationArgumentIndex = continuationArgumentIndex;
+            this.returnAreaMethodHandle = returnAreaMethodHandle;
+            this.tailCallMethodHandle = tailCallMethodHandle;
+            this.tailCallOwner = tailCallOwner;
+        }
+
+        /**
+         * Create a copy of this function which can be tail called from the given instance.
+         * <p>
+         * The tail call handle takes the same arguments as the return area handle, or the regular
+         * handle if the function has no return area, followed by the state of the trampoline
+         * performing the tail call. It may leave a pending tail call in the state, which has
+         * to be completed by the trampoline.
+         *
+         * @param tailCallMethodHandle the method handle to use for tail calls
+         * @param tailCallOwner        the instance the tail call handle may be used from
+         * @return the new function
+         */
+        public Simple withTailCall(MethodHandle tailCallMethodHandle, Object tailCallOwner) {
+            return new Simple(
+                    methodHandle,
+                    arguments,
+                    returnTypes,
+                    continuationArgumentIndex,
+                    returnAreaMethodHandle,
+                    tailCallMethodHandle,
+                    tailCallOwner
+            );
+        }
+
+        /**
+         * Retrieve the method handle which returns the values in a multi value passed by the caller.
+         * <p>
+         * The handle takes the multi value as an additional last argument. The multi value may be
+         * null, in which case a new one is allocated. The returned values have to be consumed before
+         * the multi value is passed to the next call.
+         *
+         * @return the method handle taking the return area, or null, if the function has none
+         */
+        public MethodHandle asReturnAreaMethodHandle() {
+            return returnAreaMethodHandle;
+        }
+
+        /**
+         * Retrieve the method handle to use for tail calls from the given instance.
+         *
+         * @param owner the instance performing the tail call
+         * @return the method handle to use, or null, if the regular method handle has to be used
+         */
+        public MethodHandle asTailCallMethodHandle(Object owner) {
+            return tailCallOwner == owner ? tailCallMethodHandle : null;
         }
 
         @Override
@@ -90,6 +156,42 @@ public interface LinkedFunction {
             return continuationArgumentIndex;
         }
 
+        /**
+         * Create a function returning multiple values from a method handle taking a return area.
+         * <p>
+         * The regular method handle of the function passes no return area, so every invocation
+         * returns a new multi value. Generated code can use {@link #asReturnAreaMethodHandle()}
+         * to pass its own.
+         *
+         * @param returnAreaMethodHandle    the method handle taking the return area as its last argument
+         * @param arguments                 the argument types of the function
+         * @param returnTypes               the return types of the function
+         * @param continuationArgumentIndex the index of the continuation argument, or -1
+         * @return the created function
+         */
+        public static Simple fromReturnAreaMethodHandle(
+                MethodHandle returnAreaMethodHandle,
+                List<ValueType> arguments,
+                List<ValueType> returnTypes,
+                int continuationArgumentIndex
+        ) {
+            MethodHandle methodHandle = MethodHandles.insertArguments(
+                    returnAreaMethodHandle,
+                    returnAreaMethodHandle.type().parameterCount() - 1,
+                    (Object) null
+            );
+
+            return new Simple(
+                    methodHandle,
+                    arguments,
+                    returnTypes,
+                    continuationArgumentIndex,
+                    returnAreaMethodHandle,
+                    null,
+                    null
+            );
+        }
+
         /**
          * Infers a {@link Simple} from a {@link MethodHandle}.
          *
@@ -1,14 +1,16 @@
 package net.janrupf.thunderwasm.runtime.state;
 
+import java.util.Arrays;
+
 /**
  * Helper used by the generated code to move around multiple values.
  */
 public final class MultiValue {
-    private final int[] intValues;
-    private final long[] longValues;
-    private final float[] floatValues;
-    private final double[] doubleValues;
-    private final Object[] objectValues;
+    private int[] intValues;
+    private long[] longValues;
+    private float[] floatValues;
+    private double[] doubleValues;
+    private Object[] objectValues;
 
     private int intValueCount;
     private int longValueCount;
@@ -135,6 +137,29 @@ public final class MultiValue {
         return this.objectValues[index];
     }
 
+    /**
+     * Discard all values currently stored in this multi value.
+     * <p>
+     * This allows the same instance to be reused for multiple
+     * round trips without allocating a new one each time.
+     *
+     * @return this multi value
+     */
+    public MultiValue reset() {
+        this.intValueCount = 0;
+        this.longValueCount = 0;
+        this.floatValueCount = 0;
+        this.doubleValueCount = 0;
+
+        // Clear out objects so we don't keep them alive longer than required
+        for (int i = 0; i < this.objectValueCount; i++) {
+            this.objectValues[i] = null;
+        }
+        this.objectValueCount = 0;
+
+        return this;
+    }
+
     public static MultiValue allocate(
             int intValueCapacity,
             int longValueCapacity,
@@ -151,6 +176,62 @@ public final class MultiValue {
         );
     }
 
+    /**
+     * Make sure a multi value can store at least the given amount of values by index.
+     * <p>
+     * Multi values are grown in place, references to the multi value stay valid and
+     * keep the values stored so far. A new multi value is only allocated if there is none
+     * yet. This allows a single multi value to be reused for an entire function invocation.
+     *
+     * @param multiValue          the multi value to grow, or null, to allocate a new one
+     * @param intValueCapacity    the minimum amount of integer values
+     * @param longValueCapacity   the minimum amount of long values
+     * @param floatValueCapacity  the minimum amount of float values
+     * @param doubleValueCapacity the minimum amount of double values
+     * @param objectValueCapacity the minimum amount of object values
+     * @return the multi value with at least the given capacity
+     */
+    public static MultiValue ensureCapacity(
+            MultiValue multiValue,
+            int intValueCapacity,
+            int longValueCapacity,
+            int floatValueCapacity,
+            int doubleValueCapacity,
+            int objectValueCapacity
+    ) {
+        if (multiValue == null) {
+            return allocate(
+                    intValueCapacity,
+                    longValueCapacity,
+                    floatValueCapacity,
+                    doubleValueCapacity,
+                    objectValueCapacity
+            );
+        }
+
+        if (multiValue.intValues.length < intValueCapacity) {
+            multiValue.intValues = Arrays.copyOf(multiValue.intValues, intValueCapacity);
+        }
+
+        if (multiValue.longValues.length < longValueCapacity) {
+            multiValue.longValues = Arrays.copyOf(multiValue.longValues, longValueCapacity);
+        }
+
+        if (multiValue.floatValues.length < floatValueCapacity) {
+            multiValue.floatValues = Arrays.copyOf(multiValue.floatValues, floatValueCapacity);
+        }
+
+        if (multiValue.doubleValues.length < doubleValueCapacity) {
+            multiValue.doubleValues = Arrays.copyOf(multiValue.doubleValues, doubleValueCapacity);
+        }
+
+        if (multiValue.objectValues.length < objectValueCapacity) {
+            multiValue.objectValues = Arrays.copyOf(multiValue.objectValues, objectValueCapacity);
+        }
+
+        return multiValue;
+    }
+
     public static void staticPutInt(int value, MultiValue multiValue) {
         multiValue.putInt(value);
     }
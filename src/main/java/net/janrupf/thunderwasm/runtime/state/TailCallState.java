@@ -0,0 +1,121 @@
+package net.janrupf.thunderwasm.runtime.state;
+
+import net.janrupf.thunderwasm.runtime.continuation.Continuation;
+import net.janrupf.thunderwasm.runtime.continuation.ContinuationLayer;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * The tail calls pending in a single invocation of a trampolined function.
+ * <p>
+ * Every invocation of a trampoline owns its own state, which is passed to the body
+ * of the function and to all functions it tail calls. A tail call stores the method
+ * performing it and its arguments here and returns, the trampoline then invokes the
+ * method until no more tail calls are pending.
+ */
+public final class TailCallState {
+    private MethodHandle pending;
+    private MethodHandle running;
+    private MethodHandle function;
+    private MultiValue arguments;
+
+    private TailCallState() {
+    }
+
+    /**
+     * Leave a tail call pending.
+     *
+     * @param target the method performing the tail call
+     */
+    public void setPending(MethodHandle target) {
+        this.pending = target;
+    }
+
+    /**
+     * Start running the pending tail call.
+     *
+     * @return the method performing the tail call, or null, if no tail call is pending
+     */
+    public MethodHandle next() {
+        this.running = pending;
+        this.pending = null;
+
+        return running;
+    }
+
+    /**
+     * Retrieve the method performing the tail call which is currently running.
+     *
+     * @return the running tail call, or null, if the body of the trampolined function is running
+     */
+    public MethodHandle getRunning() {
+        return running;
+    }
+
+    /**
+     * Set the function invoked by a pending indirect tail call.
+     *
+     * @param function the method handle of the function
+     */
+    public void setFunction(MethodHandle function) {
+        this.function = function;
+    }
+
+    /**
+     * Retrieve the function invoked by the running indirect tail call.
+     * <p>
+     * The function is kept, so the tail call can be repeated when a continuation resumes.
+     *
+     * @return the method handle of the function
+     */
+    public MethodHandle getFunction() {
+        return function;
+    }
+
+    /**
+     * Retrieve the arguments of the pending tail call.
+     *
+     * @return the arguments, or null, if no tail call with arguments has been left pending yet
+     */
+    public MultiValue getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Set the arguments of the pending tail call.
+     *
+     * @param arguments the arguments of the tail call
+     */
+    public void setArguments(MultiValue arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Enter a trampoline.
+     * <p>
+     * If the continuation is resuming, the state saved by {@link #suspend(TailCallState, Continuation)}
+     * is restored, otherwise a new state is created.
+     *
+     * @param continuation the continuation of the invocation, or null, if continuations are disabled
+     * @return the state of the trampoline
+     */
+    public static TailCallState enter(Continuation continuation) {
+        ContinuationLayer layer = Continuation.popLayerStatic(continuation);
+        if (layer == null) {
+            return new TailCallState();
+        }
+
+        return (TailCallState) layer.getStack().popObject();
+    }
+
+    /**
+     * Save the state of a trampoline into a paused continuation.
+     *
+     * @param state        the state to save
+     * @param continuation the paused continuation
+     */
+    public static void suspend(TailCallState state, Continuation continuation) {
+        MultiValue stack = MultiValue.allocate(0, 0, 0, 0, 1).withPutObject(state);
+        continuation.pushLayer(ContinuationLayer.create(stack, -1, null, null));
+    }
+}
@@ -5,7 +5,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class LEB128Test {
@@ -93,4 +95,99 @@ public class LEB128Test {
             }
         }
     }
+
+    @Test
+    public void testDecodeSigned32Buffer() throws Exception {
+        assertSigned32(63, 0x3F);
+        assertSigned32(-1, 0x7F);
+        assertSigned32(-128, 0x80, 0x7F);
+        assertSigned32(8191, 0xFF, 0x3F);
+        assertSigned32(-16384, 0x80, 0x80, 0x7F);
+        assertSigned32(-2097152, 0x80, 0x80, 0x80, 0x7F);
+        assertSigned32(Integer.MAX_VALUE, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+        assertSigned32(Integer.MIN_VALUE, 0x80, 0x80, 0x80, 0x80, 0x78);
+    }
+
+    @Test
+    public void testDecodeUnsigned32Buffer() throws Exception {
+        assertUnsigned32(127, 0x7F);
+        assertUnsigned32(128, 0x80, 0x01);
+        assertUnsigned32(16384, 0x80, 0x80, 0x01);
+        assertUnsigned32(2097152, 0x80, 0x80, 0x80, 0x01);
+        assertUnsigned32(0x7FFFFFFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+        assertUnsigned32(0xFFFFFFFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+    }
+
+    @Test
+    public void testDecode32BufferTooLong() {
+        ByteBuffer signed = padded(0x80, 0x80, 0x80, 0x80, 0x80, 0x00);
+        Assertions.assertThrows(IOException.class, () -> LEB128Value.readS32(signed));
+
+        ByteBuffer unsigned = padded(0x80, 0x80, 0x80, 0x80, 0x80, 0x00);
+        Assertions.assertThrows(IOException.class, () -> LEB128Value.readU32(unsigned));
+    }
+
+    @Test
+    public void testDecode32BufferUnusedBits() {
+        // Positive value with unused bits set
+        ByteBuffer signedPositive = padded(0xFF, 0xFF, 0xFF, 0xFF, 0x17);
+        Assertions.assertThrows(IOException.class, () -> LEB128Value.readS32(signedPositive));
+
+        // Negative value with unused bits not set
+        ByteBuffer signedNegative = padded(0x80, 0x80, 0x80, 0x80, 0x48);
+        Assertions.assertThrows(IOException.class, () -> LEB128Value.readS32(signedNegative));
+
+        ByteBuffer unsigned = padded(0xFF, 0xFF, 0xFF, 0xFF, 0x1F);
+        Assertions.assertThrows(IOException.class, () -> LEB128Value.readU32(unsigned));
+    }
+
+    @Test
+    public void testDecode32BufferEndsPrematurely() {
+        ByteBuffer signed = bytes(0x80, 0x80, 0x80);
+        Assertions.assertThrows(EOFException.class, () -> LEB128Value.readS32(signed));
+
+        ByteBuffer unsigned = bytes(0x80, 0x80, 0x80, 0x80);
+        Assertions.assertThrows(EOFException.class, () -> LEB128Value.readU32(unsigned));
+    }
+
+    private static void assertSigned32(int expected, int... encoding) throws IOException {
+        // Enough bytes left for the unrolled decoding
+        ByteBuffer padded = padded(encoding);
+        Assertions.assertEquals(expected, LEB128Value.readS32(padded));
+        Assertions.assertEquals(encoding.length, padded.position());
+
+        // Only the encoding left, which uses the loop for fewer than 5 bytes
+        ByteBuffer exact = bytes(encoding);
+        Assertions.assertEquals(expected, LEB128Value.readS32(exact));
+        Assertions.assertEquals(encoding.length, exact.position());
+    }
+
+    private static void assertUnsigned32(int expected, int... encoding) throws IOException {
+        // Enough bytes left for the unrolled decoding
+        ByteBuffer padded = padded(encoding);
+        Assertions.assertEquals(expected, LEB128Value.readU32(padded));
+        Assertions.assertEquals(encoding.length, padded.position());
+
+        // Only the encoding left, which uses the loop for fewer than 5 bytes
+        ByteBuffer exact = bytes(encoding);
+        Assertions.assertEquals(expected, LEB128Value.readU32(exact));
+        Assertions.assertEquals(encoding.length, exact.position());
+    }
+
+    private static ByteBuffer padded(int... encoding) {
+        // Followed by the start of another value
+        int[] padded = Arrays.copyOf(encoding, encoding.length + 4);
+        Arrays.fill(padded, encoding.length, padded.length, 0xFF);
+
+        return bytes(padded);
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
 }
@@ -0,0 +1,70 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+public class BlockSplitTest {
+    @Test
+    public void testInlinedCallsAreSplit() throws Throwable {
+        Object instance = instantiate(WasmAssemblerConfiguration.builder()
+                .enableInlining(true)
+                .blockSplitSizeThreshold(1500)
+                .build());
+
+        Assertions.assertTrue(hasSplitBlocks(instance), "Blocks of inlined calls should have been split");
+        Assertions.assertEquals(100, (int) run(instance).asMethodHandle().invoke(5));
+    }
+
+    @Test
+    public void testCallsAreNotSplitWithoutInlining() throws Throwable {
+        Object instance = instantiate(WasmAssemblerConfiguration.builder()
+                .enableInlining(false)
+                .blockSplitSizeThreshold(1500)
+                .build());
+
+        Assertions.assertFalse(hasSplitBlocks(instance), "Blocks of plain calls should not have been split");
+        Assertions.assertEquals(100, (int) run(instance).asMethodHandle().invoke(5));
+    }
+
+    @Test
+    public void testInliningIsDisabledByDefault() throws Throwable {
+        Assertions.assertFalse(WasmAssemblerConfiguration.DEFAULT.inliningEnabled());
+
+        Object instance = instantiate(WasmAssemblerConfiguration.builder()
+                .blockSplitSizeThreshold(1500)
+                .build());
+
+        Assertions.assertFalse(hasSplitBlocks(instance), "Calls should not have been inlined by default");
+        Assertions.assertEquals(100, (int) run(instance).asMethodHandle().invoke(5));
+    }
+
+    private static Object instantiate(WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load("assembler/block-split.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, configuration);
+
+        return TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+    }
+
+    private static boolean hasSplitBlocks(Object instance) {
+        for (Method method : instance.getClass().getDeclaredMethods()) {
+            if (method.getName().contains("$block$")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+    }
+}
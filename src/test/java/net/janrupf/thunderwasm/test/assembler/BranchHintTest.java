@@ -0,0 +1,165 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.instructions.Expr;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.instructions.InstructionSet;
+import net.janrupf.thunderwasm.instructions.control.BlockData;
+import net.janrupf.thunderwasm.instructions.control.If;
+import net.janrupf.thunderwasm.module.WasmLoader;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
+import net.janrupf.thunderwasm.module.metadata.BranchHints;
+import net.janrupf.thunderwasm.module.section.CodeSection;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BranchHintTest {
+    private static final InstructionRegistry INSTRUCTION_REGISTRY = InstructionRegistry.builder()
+            .with(InstructionSet.BASE)
+            .build();
+
+    // Hint values as defined by the branch hinting proposal
+    private static final int UNLIKELY = 0;
+    private static final int INVALID = 7;
+
+    @Test
+    public void testUnlikelyArmIsOutlined() throws Throwable {
+        Object instance = instantiate(withHint(UNLIKELY), WasmAssemblerConfiguration.DEFAULT);
+
+        Assertions.assertTrue(hasSplitBlocks(instance), "The unlikely arm should have been outlined");
+        Assertions.assertEquals(-525339558, (int) run(instance).asMethodHandle().invoke(1000));
+    }
+
+    @Test
+    public void testArmIsNotOutlinedWithoutHints() throws Throwable {
+        Object instance = instantiate(readModule(), WasmAssemblerConfiguration.DEFAULT);
+
+        Assertions.assertFalse(hasSplitBlocks(instance), "Arms should not be outlined without hints");
+        Assertions.assertEquals(-525339558, (int) run(instance).asMethodHandle().invoke(1000));
+    }
+
+    @Test
+    public void testHintsCanBeDisabled() throws Throwable {
+        Object instance = instantiate(withHint(UNLIKELY), WasmAssemblerConfiguration.builder()
+                .enableBranchHints(false)
+                .build());
+
+        Assertions.assertFalse(hasSplitBlocks(instance), "Disabled hints should not outline arms");
+        Assertions.assertEquals(1225, (int) run(instance).asMethodHandle().invoke(50));
+    }
+
+    @Test
+    public void testMalformedHintsAreIgnored() throws Throwable {
+        Object instance = instantiate(withHint(INVALID), WasmAssemblerConfiguration.DEFAULT);
+
+        Assertions.assertFalse(hasSplitBlocks(instance), "Malformed hints should be ignored");
+        Assertions.assertEquals(-525339558, (int) run(instance).asMethodHandle().invoke(1000));
+    }
+
+    /**
+     * Append a branch hint section hinting the if of the run function to the module.
+     */
+    private static byte[] withHint(int value) throws Throwable {
+        byte[] module = readModule();
+
+        CodeSection codeSection = TestUtil.getSection(load(module), CodeSection.LOCATOR.getSectionId());
+        int offset = findIf(codeSection.getFunctions().get(LargeArrayIndex.ZERO).getExpr());
+        Assertions.assertTrue(offset >= 0, "The run function should contain an if");
+
+        ByteArrayOutputStream hints = new ByteArrayOutputStream();
+        writeU32(hints, 1); // function count
+        writeU32(hints, 0); // function index
+        writeU32(hints, 1); // hint count
+        writeU32(hints, offset);
+        writeU32(hints, 1); // hint size
+        hints.write(value);
+
+        byte[] name = BranchHints.SECTION_NAME.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        writeU32(content, name.length);
+        content.write(name);
+        hints.writeTo(content);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(module);
+        out.write(0); // custom section id
+        writeU32(out, content.size());
+        content.writeTo(out);
+
+        return out.toByteArray();
+    }
+
+    private static int findIf(Expr expr) {
+        for (int i = 0; i < expr.getInstructionCount(); i++) {
+            if (expr.getInstructionType(i) instanceof If) {
+                return expr.getInstructionOffset(i);
+            }
+
+            if (expr.getInstructionData(i) instanceof BlockData) {
+                int offset = findIf(((BlockData) expr.getInstructionData(i)).getPrimaryExpression());
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static void writeU32(ByteArrayOutputStream out, int value) {
+        do {
+            int b = value & 0x7F;
+            value >>>= 7;
+            out.write(value != 0 ? b | 0x80 : b);
+        } while (value != 0);
+    }
+
+    private static byte[] readModule() throws Throwable {
+        try (InputStream stream = TestUtil.wasmResource("assembler/branch-hints.wasm")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    private static WasmModule load(byte[] module) throws Throwable {
+        return new WasmLoader(ByteBuffer.wrap(module), INSTRUCTION_REGISTRY).load();
+    }
+
+    private static Object instantiate(byte[] module, WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmAssembler assembler = TestUtil.makeAssembler(load(module), configuration);
+        return TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+    }
+
+    private static boolean hasSplitBlocks(Object instance) {
+        for (Method method : instance.getClass().getDeclaredMethods()) {
+            if (method.getName().contains("$block$")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+    }
+}
@@ -0,0 +1,216 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.cache.WasmClassCache;
+import net.janrupf.thunderwasm.assembler.cache.WasmClassCacheKey;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.generator.defaults.DefaultMemoryGenerator;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.instructions.InstructionSet;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ClassCacheTest {
+    private static final InstructionRegistry INSTRUCTION_REGISTRY = InstructionRegistry.builder()
+            .with(InstructionSet.BASE)
+            .build();
+
+    private static final String PACKAGE_NAME = "net.janrupf.thunderwasm.generated.cache";
+
+    @Test
+    public void testHitReturnsSameClasses() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, Long.MAX_VALUE);
+
+        Map<String, byte[]> first = assemble(cache, "companion-classes", "Cached");
+        Map<String, byte[]> second = assemble(cache, "companion-classes", "Cached");
+
+        Assertions.assertEquals(first.keySet(), second.keySet());
+        for (Map.Entry<String, byte[]> entry : first.entrySet()) {
+            Assertions.assertArrayEquals(entry.getValue(), second.get(entry.getKey()));
+        }
+
+        Assertions.assertEquals(1, entries(directory).size());
+        Assertions.assertEquals(1330, (int) run(instantiate(second)).asMethodHandle().invoke(10));
+    }
+
+    @Test
+    public void testHitSkipsAssembly() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, Long.MAX_VALUE);
+
+        WasmClassCacheKey key = WasmClassCacheKey.of(
+                readModule("companion-classes"),
+                new ObjectWebASMClassFileEmitterFactory(),
+                PACKAGE_NAME,
+                "Stored",
+                new WasmGenerators(),
+                WasmAssemblerConfiguration.DEFAULT
+        );
+
+        byte[] stored = "not a class".getBytes(StandardCharsets.UTF_8);
+        cache.store(key, Collections.singletonMap(PACKAGE_NAME + ".Stored", stored));
+
+        Map<String, byte[]> classes = assemble(cache, "companion-classes", "Stored");
+        Assertions.assertArrayEquals(stored, classes.get(PACKAGE_NAME + ".Stored"));
+    }
+
+    @Test
+    public void testDamagedEntryIsRegenerated() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, Long.MAX_VALUE);
+
+        assemble(cache, "companion-classes", "Damaged");
+        Path entry = entries(directory).get(0);
+        Files.write(entry, new byte[]{1, 2, 3});
+
+        Map<String, byte[]> classes = assemble(cache, "companion-classes", "Damaged");
+        Assertions.assertEquals(1330, (int) run(instantiate(classes)).asMethodHandle().invoke(10));
+        Assertions.assertTrue(Files.size(entry) > 3, "The damaged entry should have been replaced");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, 1);
+
+        assemble(cache, "companion-classes", "Evicted");
+        assemble(cache, "dead-functions", "Kept");
+
+        // The cache is too small for any entry, but the most recent one is always kept
+        Assertions.assertEquals(1, entries(directory).size());
+    }
+
+    @Test
+    public void testResourcesAreReplayedOnHit() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, Long.MAX_VALUE);
+
+        Map<String, byte[]> first = new LinkedHashMap<>();
+        assembleWithResources(cache, first);
+
+        Map<String, byte[]> second = new LinkedHashMap<>();
+        assembleWithResources(cache, second);
+
+        Assertions.assertEquals(2, first.size());
+        Assertions.assertEquals(first.keySet(), second.keySet());
+        for (Map.Entry<String, byte[]> entry : first.entrySet()) {
+            Assertions.assertArrayEquals(entry.getValue(), second.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testEmbeddedAndResourceDataAreCachedSeparately() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-cache");
+        WasmClassCache cache = new WasmClassCache(directory, Long.MAX_VALUE);
+
+        assembleWithResources(cache, new LinkedHashMap<>());
+        Map<String, byte[]> classes = assemble(cache, "data-segments", "Segments");
+
+        // Embedding the data segments, so the classes run without any resources
+        Assertions.assertEquals(2, entries(directory).size());
+        Assertions.assertEquals(1202, (int) export(instantiate(classes), "sum").asMethodHandle().invoke());
+    }
+
+    @Test
+    public void testLazyCompilationIsRejected() throws Throwable {
+        WasmClassCache cache = new WasmClassCache(Files.createTempDirectory("thunder-wasm-cache"), Long.MAX_VALUE);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cache.assemble(
+                readModule("companion-classes"),
+                INSTRUCTION_REGISTRY,
+                new ObjectWebASMClassFileEmitterFactory(),
+                PACKAGE_NAME,
+                "Lazy",
+                new WasmGenerators(),
+                WasmAssemblerConfiguration.builder().enableLazyCompilation(true).build()
+        ));
+    }
+
+    private static Map<String, byte[]> assemble(WasmClassCache cache, String module, String className)
+            throws Throwable {
+        return cache.assemble(
+                readModule(module),
+                INSTRUCTION_REGISTRY,
+                new ObjectWebASMClassFileEmitterFactory(),
+                PACKAGE_NAME,
+                className,
+                new WasmGenerators(),
+                WasmAssemblerConfiguration.DEFAULT
+        );
+    }
+
+    private static void assembleWithResources(WasmClassCache cache, Map<String, byte[]> resources) throws Throwable {
+        cache.assemble(
+                readModule("data-segments"),
+                INSTRUCTION_REGISTRY,
+                new ObjectWebASMClassFileEmitterFactory(),
+                PACKAGE_NAME,
+                "Segments",
+                (sink) -> new WasmGenerators().withMemoryGenerator(new DefaultMemoryGenerator(sink)),
+                WasmAssemblerConfiguration.DEFAULT,
+                resources::put
+        );
+    }
+
+    private static byte[] readModule(String name) throws IOException {
+        try (InputStream stream = TestUtil.wasmResource("assembler/" + name + ".wasm")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    private static List<Path> entries(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter((file) -> file.getFileName().toString().endsWith(".classes"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Object instantiate(Map<String, byte[]> classes) throws Throwable {
+        TestClassLoader classLoader = new TestClassLoader();
+        Class<?> moduleClass = null;
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Class<?> loaded = classLoader.loadFromBytes(entry.getKey(), entry.getValue());
+            if (moduleClass == null) {
+                moduleClass = loaded;
+            }
+        }
+
+        return moduleClass.getConstructor(RuntimeLinker.class).newInstance(new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return export(instance, "run");
+    }
+
+    private static LinkedFunction export(Object instance, String name) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get(name);
+    }
+}
@@ -0,0 +1,90 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class CompanionClassTest {
+    @Test
+    public void testModuleIsSplitIntoCompanions() throws Throwable {
+        Map<String, byte[]> classes = assemble(WasmAssemblerConfiguration.builder()
+                .classSplitThreshold(1)
+                .build());
+
+        Assertions.assertTrue(classes.size() > 1, "The module should have been split");
+
+        // The module class comes first, the companions follow
+        String moduleClassName = classes.keySet().iterator().next();
+        for (String name : classes.keySet()) {
+            if (!name.equals(moduleClassName)) {
+                Assertions.assertTrue(name.startsWith(moduleClassName + "$Functions"), "Unexpected class " + name);
+            }
+        }
+    }
+
+    @Test
+    public void testModuleIsNotSplitByDefault() throws Throwable {
+        Assertions.assertEquals(1, assemble(WasmAssemblerConfiguration.DEFAULT).size());
+    }
+
+    @Test
+    public void testSplitModuleRuns() throws Throwable {
+        Object instance = instantiate(assemble(WasmAssemblerConfiguration.builder()
+                .classSplitThreshold(1)
+                .build()));
+
+        Assertions.assertEquals(1330, (int) run(instance).asMethodHandle().invoke(10));
+    }
+
+    @Test
+    public void testSplitModuleRunsWithParallelCompilation() throws Throwable {
+        Object instance = instantiate(assemble(WasmAssemblerConfiguration.builder()
+                .classSplitThreshold(1)
+                .enableParallelCompilation(true)
+                .build()));
+
+        Assertions.assertEquals(1030300, (int) run(instance).asMethodHandle().invoke(100));
+    }
+
+    @Test
+    public void testSplitModuleCanNotBeAssembledToSingleClass() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/companion-classes.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, WasmAssemblerConfiguration.builder()
+                .classSplitThreshold(1)
+                .build());
+
+        Assertions.assertThrows(WasmAssemblerException.class, assembler::assembleToModule);
+    }
+
+    private static Map<String, byte[]> assemble(WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load("assembler/companion-classes.wasm");
+        return TestUtil.makeAssembler(module, configuration).assembleToClasses();
+    }
+
+    private static Object instantiate(Map<String, byte[]> classes) throws Throwable {
+        TestClassLoader classLoader = new TestClassLoader();
+        Class<?> moduleClass = null;
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Class<?> loaded = classLoader.loadFromBytes(entry.getKey(), entry.getValue());
+            if (moduleClass == null) {
+                moduleClass = loaded;
+            }
+        }
+
+        return moduleClass.getConstructor(RuntimeLinker.class).newInstance(new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+    }
+}
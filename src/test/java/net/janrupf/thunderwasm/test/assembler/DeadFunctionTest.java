@@ -0,0 +1,70 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+public class DeadFunctionTest {
+    private static final int USED = 0;
+    private static final int VIA_TABLE = 1;
+    private static final int DEAD = 2;
+    private static final int ALSO_DEAD = 3;
+
+    @Test
+    public void testUnreachableFunctionsAreStubbed() throws Throwable {
+        Object instance = instantiate(WasmAssemblerConfiguration.DEFAULT);
+
+        Assertions.assertEquals(3, (int) run(instance).asMethodHandle().invoke());
+        Assertions.assertEquals(1, callCode(instance, USED));
+        Assertions.assertEquals(2, callCode(instance, VIA_TABLE));
+
+        assertStub(instance, DEAD);
+        assertStub(instance, ALSO_DEAD);
+    }
+
+    @Test
+    public void testUnreachableFunctionsCanBeKept() throws Throwable {
+        Object instance = instantiate(WasmAssemblerConfiguration.builder()
+                .enableDeadFunctionElimination(false)
+                .build());
+
+        Assertions.assertEquals(3, (int) run(instance).asMethodHandle().invoke());
+        Assertions.assertEquals(5, callCode(instance, DEAD));
+        Assertions.assertEquals(4, callCode(instance, ALSO_DEAD));
+    }
+
+    private static void assertStub(Object instance, int index) {
+        InvocationTargetException e = Assertions.assertThrows(
+                InvocationTargetException.class,
+                () -> callCode(instance, index)
+        );
+        Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    private static int callCode(Object instance, int index) throws Exception {
+        Method method = instance.getClass().getDeclaredMethod("$code_" + index, instance.getClass());
+        method.setAccessible(true);
+
+        return (int) method.invoke(null, instance);
+    }
+
+    private static Object instantiate(WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load("assembler/dead-functions.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, configuration);
+
+        return TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+    }
+}
@@ -0,0 +1,100 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.invoke.WrongMethodTypeException;
+
+public class DevirtualizationTest {
+    @Test
+    public void testImmutableTableIsDispatchedDirectly() throws Throwable {
+        ClassNode classNode = assemble();
+
+        Assertions.assertTrue(callsMethod(classNode, "$code_3", "$code_0"), "dispatch should call $add directly");
+        Assertions.assertTrue(callsMethod(classNode, "$code_3", "$code_1"), "dispatch should call $sub directly");
+        Assertions.assertFalse(
+                callsMethod(classNode, "$code_4", "$code_0"),
+                "dispatchExported must not call $add directly, the table is exported"
+        );
+    }
+
+    @Test
+    public void testDevirtualizedCalls() throws Throwable {
+        LinkedFunction dispatch = export(instantiate(), "dispatch");
+
+        Assertions.assertEquals(8, (int) dispatch.asMethodHandle().invoke(0, 5, 3));
+        Assertions.assertEquals(2, (int) dispatch.asMethodHandle().invoke(1, 5, 3));
+    }
+
+    @Test
+    public void testDevirtualizedCallsStillTrap() throws Throwable {
+        LinkedFunction dispatch = export(instantiate(), "dispatch");
+
+        // Type mismatch, null slot and out of bounds all take the dynamic path
+        Assertions.assertThrows(WrongMethodTypeException.class, () -> dispatch.asMethodHandle().invoke(2, 5, 3));
+        Assertions.assertThrows(NullPointerException.class, () -> dispatch.asMethodHandle().invoke(3, 5, 3));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dispatch.asMethodHandle().invoke(4, 5, 3));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dispatch.asMethodHandle().invoke(-1, 5, 3));
+    }
+
+    @Test
+    public void testExportedTableIsDispatchedDynamically() throws Throwable {
+        LinkedFunction dispatchExported = export(instantiate(), "dispatchExported");
+
+        Assertions.assertEquals(8, (int) dispatchExported.asMethodHandle().invoke(0, 5, 3));
+        Assertions.assertEquals(2, (int) dispatchExported.asMethodHandle().invoke(1, 5, 3));
+        Assertions.assertThrows(
+                IndexOutOfBoundsException.class,
+                () -> dispatchExported.asMethodHandle().invoke(2, 5, 3)
+        );
+    }
+
+    private static ClassNode assemble() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/devirtualize.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, WasmAssemblerConfiguration.DEFAULT);
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(assembler.assembleToModule()).accept(classNode, 0);
+
+        return classNode;
+    }
+
+    private static boolean callsMethod(ClassNode classNode, String caller, String callee) {
+        for (MethodNode method : classNode.methods) {
+            if (!method.name.equals(caller)) {
+                continue;
+            }
+
+            for (AbstractInsnNode instruction : method.instructions) {
+                if (instruction instanceof MethodInsnNode && ((MethodInsnNode) instruction).name.equals(callee)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Object instantiate() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/devirtualize.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, WasmAssemblerConfiguration.DEFAULT);
+
+        return TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction export(Object instance, String name) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get(name);
+    }
+}
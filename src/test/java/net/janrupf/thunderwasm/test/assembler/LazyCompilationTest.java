@@ -0,0 +1,76 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmLazyCompiler;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.runtime.state.MultiValue;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class LazyCompilationTest {
+    @Test
+    public void testTailCalls() throws Throwable {
+        Map<String, Object> exports = instantiate();
+
+        Assertions.assertEquals(1, (int) function(exports, "is_even").asMethodHandle().invoke(100));
+        Assertions.assertEquals(0, (int) function(exports, "is_odd").asMethodHandle().invoke(100));
+        Assertions.assertEquals(1, (int) function(exports, "is_odd").asMethodHandle().invoke(1001));
+    }
+
+    @Test
+    public void testMultiValueResults() throws Throwable {
+        Map<String, Object> exports = instantiate();
+
+        MultiValue swapped = (MultiValue) function(exports, "swap").asMethodHandle().invoke(3, 5L);
+        Assertions.assertEquals(5L, swapped.getLong(0));
+        Assertions.assertEquals(3, swapped.getInt(0));
+
+        MultiValue sum = (MultiValue) function(exports, "sum").asMethodHandle().invoke(100, 0L);
+        Assertions.assertEquals(5050L, sum.getLong(0));
+        Assertions.assertEquals(100, sum.getInt(0));
+    }
+
+    @Test
+    public void testMultiValueTailCalls() throws Throwable {
+        Map<String, Object> exports = instantiate();
+
+        MultiValue direct = (MultiValue) function(exports, "swap_tail").asMethodHandle().invoke(7, 9L);
+        Assertions.assertEquals(9L, direct.getLong(0));
+        Assertions.assertEquals(7, direct.getInt(0));
+
+        MultiValue indirect = (MultiValue) function(exports, "swap_indirect").asMethodHandle().invoke(7, 9L, 1);
+        Assertions.assertEquals(9L, indirect.getLong(0));
+        Assertions.assertEquals(7, indirect.getInt(0));
+    }
+
+    private static Map<String, Object> instantiate() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/lazy-compilation.wasm");
+        TestClassLoader classLoader = new TestClassLoader();
+
+        Class<?> moduleClass = new WasmLazyCompiler(
+                module,
+                new ObjectWebASMClassFileEmitterFactory(),
+                "net.janrupf.thunderwasm.generated",
+                "LazyTestModule",
+                WasmGenerators::new,
+                WasmAssemblerConfiguration.DEFAULT,
+                classLoader::loadFromBytes
+        ).defineModuleClass();
+
+        Object instance = moduleClass.getConstructor(RuntimeLinker.class).newInstance(new RuntimeLinker.Empty());
+        return ((WasmModuleExports) instance).getExports();
+    }
+
+    private static LinkedFunction function(Map<String, Object> exports, String name) {
+        return (LinkedFunction) exports.get(name);
+    }
+}
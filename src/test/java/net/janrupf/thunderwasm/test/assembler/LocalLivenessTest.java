@@ -0,0 +1,86 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class LocalLivenessTest {
+    // 1 argument and 204 locals, 100 of them wide
+    private static final int WASM_LOCAL_COUNT = 205;
+
+    @Test
+    public void testLocalsShareSlots() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/local-liveness.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, WasmAssemblerConfiguration.builder()
+                .enableInlining(false)
+                .build());
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(assembler.assembleToModule()).accept(classNode, 0);
+
+        MethodNode run = null;
+        for (MethodNode method : classNode.methods) {
+            if (method.name.equals("$code_0")) {
+                run = method;
+            }
+        }
+
+        Assertions.assertNotNull(run);
+        Assertions.assertTrue(
+                run.maxLocals < WASM_LOCAL_COUNT,
+                "Locals with disjoint live ranges should share slots, but " + run.maxLocals + " slots are used"
+        );
+    }
+
+    @Test
+    public void testDefaultConfiguration() throws Throwable {
+        checkResults(WasmAssemblerConfiguration.builder().build());
+    }
+
+    @Test
+    public void testMethodOptimization() throws Throwable {
+        WasmAssembler assembler = new WasmAssembler(
+                TestUtil.load("assembler/local-liveness.wasm"),
+                new ObjectWebASMClassFileEmitterFactory(true),
+                "net.janrupf.thunderwasm.generated.liveness",
+                "Optimized",
+                new WasmGenerators(),
+                WasmAssemblerConfiguration.DEFAULT
+        );
+
+        checkResults(assembler);
+    }
+
+    @Test
+    public void testExpressionOptimization() throws Throwable {
+        checkResults(WasmAssemblerConfiguration.builder()
+                .enableExpressionOptimization(true)
+                .build());
+    }
+
+    private static void checkResults(WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load("assembler/local-liveness.wasm");
+        checkResults(TestUtil.makeAssembler(module, configuration));
+    }
+
+    private static void checkResults(WasmAssembler assembler) throws Throwable {
+        Object instance = TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+        LinkedFunction run = (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+
+        Assertions.assertEquals(11851L, (long) run.asMethodHandle().invoke(0));
+        Assertions.assertEquals(41577L, (long) run.asMethodHandle().invoke(1));
+        Assertions.assertEquals(308871L, (long) run.asMethodHandle().invoke(10));
+        Assertions.assertEquals(3086051L, (long) run.asMethodHandle().invoke(100));
+    }
+}
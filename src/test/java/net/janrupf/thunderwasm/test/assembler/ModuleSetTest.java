@@ -0,0 +1,80 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.ThunderWasmException;
+import net.janrupf.thunderwasm.assembler.WasmModuleSetAssembler;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.ModuleSetRuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+public class ModuleSetTest {
+    private static final String PACKAGE_NAME = "net.janrupf.thunderwasm.generated.set";
+
+    @Test
+    public void testDirectCallsAcrossModules() throws Throwable {
+        TestClassLoader classLoader = assemble();
+        ModuleSetRuntimeLinker linker = new ModuleSetRuntimeLinker();
+
+        linker.addInstance("lib", instantiate(classLoader, "Lib", linker));
+        linker.addInstance("reexport", instantiate(classLoader, "Reexport", linker));
+        Object app = instantiate(classLoader, "App", linker);
+
+        LinkedFunction run = (LinkedFunction) ((WasmModuleExports) app).getExports().get("run");
+        Assertions.assertEquals(122, (int) run.asMethodHandle().invoke(5));
+
+        // The re-exported function is called directly on the instance of the defining module
+        boolean hasLibInstance = false;
+        for (Field field : app.getClass().getDeclaredFields()) {
+            hasLibInstance |= field.getType().getName().equals(PACKAGE_NAME + ".Lib");
+        }
+        Assertions.assertTrue(hasLibInstance, "App should hold the instance of Lib for direct calls");
+    }
+
+    @Test
+    public void testMissingModuleInstanceIsRejected() throws Throwable {
+        TestClassLoader classLoader = assemble();
+        ModuleSetRuntimeLinker linker = new ModuleSetRuntimeLinker();
+
+        InvocationTargetException e = Assertions.assertThrows(
+                InvocationTargetException.class,
+                () -> instantiate(classLoader, "App", linker)
+        );
+        Assertions.assertInstanceOf(ThunderWasmException.class, e.getCause());
+    }
+
+    private static TestClassLoader assemble() throws Throwable {
+        Map<String, Map<String, byte[]>> modules = new WasmModuleSetAssembler(
+                new ObjectWebASMClassFileEmitterFactory(),
+                PACKAGE_NAME
+        )
+                .addModule("lib", "Lib", TestUtil.load("assembler/module-set/lib.wasm"))
+                .addModule("reexport", "Reexport", TestUtil.load("assembler/module-set/reexport.wasm"))
+                .addModule("app", "App", TestUtil.load("assembler/module-set/app.wasm"))
+                .assemble();
+
+        TestClassLoader classLoader = new TestClassLoader();
+        for (Map<String, byte[]> classes : modules.values()) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                classLoader.loadFromBytes(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return classLoader;
+    }
+
+    private static Object instantiate(TestClassLoader classLoader, String className, RuntimeLinker linker)
+            throws Exception {
+        return classLoader.loadClass(PACKAGE_NAME + "." + className)
+                .getConstructor(RuntimeLinker.class)
+                .newInstance(linker);
+    }
+}
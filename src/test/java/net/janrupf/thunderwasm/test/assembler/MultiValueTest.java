@@ -0,0 +1,71 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.runtime.state.MultiValue;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class MultiValueTest {
+    @Test
+    public void testDirectCall() throws Throwable {
+        Map<String, Object> exports = instantiate();
+
+        MultiValue result = (MultiValue) function(exports, "swap").asMethodHandle().invoke(3, 5L);
+        Assertions.assertEquals(5L, result.getLong(0));
+        Assertions.assertEquals(3, result.getInt(0));
+    }
+
+    @Test
+    public void testIndirectCall() throws Throwable {
+        Map<String, Object> exports = instantiate();
+        LinkedFunction swapIndirect = function(exports, "swap_indirect");
+
+        MultiValue swapped = (MultiValue) swapIndirect.asMethodHandle().invoke(3, 5L, 0);
+        Assertions.assertEquals(5L, swapped.getLong(0));
+        Assertions.assertEquals(3, swapped.getInt(0));
+
+        MultiValue incremented = (MultiValue) swapIndirect.asMethodHandle().invoke(3, 5L, 1);
+        Assertions.assertEquals(6L, incremented.getLong(0));
+        Assertions.assertEquals(4, incremented.getInt(0));
+    }
+
+    @Test
+    public void testIndirectCallsInLoop() throws Throwable {
+        Map<String, Object> exports = instantiate();
+
+        Assertions.assertEquals(16L, (long) function(exports, "sum_indirect").asMethodHandle().invoke(4));
+        Assertions.assertEquals(10000L, (long) function(exports, "sum_indirect").asMethodHandle().invoke(100));
+    }
+
+    @Test
+    public void testResultsAreNotShared() throws Throwable {
+        Map<String, Object> exports = instantiate();
+        LinkedFunction swap = function(exports, "swap");
+
+        MultiValue first = (MultiValue) swap.asMethodHandle().invoke(1, 2L);
+        MultiValue second = (MultiValue) swap.asMethodHandle().invoke(3, 4L);
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(2L, first.getLong(0));
+        Assertions.assertEquals(1, first.getInt(0));
+        Assertions.assertEquals(4L, second.getLong(0));
+        Assertions.assertEquals(3, second.getInt(0));
+    }
+
+    private static Map<String, Object> instantiate() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/multi-value.wasm");
+        Object instance = TestUtil.instantiateModule(module, new RuntimeLinker.Empty());
+
+        return ((WasmModuleExports) instance).getExports();
+    }
+
+    private static LinkedFunction function(Map<String, Object> exports, String name) {
+        return (LinkedFunction) exports.get(name);
+    }
+}
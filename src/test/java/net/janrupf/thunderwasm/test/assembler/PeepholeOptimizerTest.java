@@ -0,0 +1,101 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class PeepholeOptimizerTest {
+    @Test
+    public void testOptimizedMethodsAreSmaller() throws Throwable {
+        int plain = countInstructions(assemble("assembler/companion-classes.wasm", false));
+        int optimized = countInstructions(assemble("assembler/companion-classes.wasm", true));
+
+        Assertions.assertTrue(
+                optimized < plain,
+                "Optimized classes should have fewer instructions, got " + optimized + " instead of " + plain
+        );
+    }
+
+    @Test
+    public void testOptimizedMethodsBehaveTheSame() throws Throwable {
+        Object companion = instantiate(assemble("assembler/companion-classes.wasm", true));
+        Assertions.assertEquals(1030300, (int) export(companion, "run").asMethodHandle().invoke(100));
+
+        Object liveness = instantiate(assemble("assembler/local-liveness.wasm", true));
+        Assertions.assertEquals(3086051L, (long) export(liveness, "run").asMethodHandle().invoke(100));
+
+        Object devirtualize = instantiate(assemble("assembler/devirtualize.wasm", true));
+        Assertions.assertEquals(2, (int) export(devirtualize, "dispatch").asMethodHandle().invoke(1, 5, 3));
+        Assertions.assertThrows(
+                NullPointerException.class,
+                () -> export(devirtualize, "dispatch").asMethodHandle().invoke(3, 5, 3)
+        );
+    }
+
+    @Test
+    public void testOptimizedMethodsPassVerification() throws Throwable {
+        // Loading and running the optimized block split methods requires their frames to be valid
+        Object instance = instantiate(assemble("assembler/block-split.wasm", true, WasmAssemblerConfiguration.builder()
+                .enableInlining(true)
+                .blockSplitSizeThreshold(1500)
+                .build()));
+
+        Assertions.assertEquals(100, (int) export(instance, "run").asMethodHandle().invoke(5));
+    }
+
+    private static byte[] assemble(String name, boolean optimize) throws Throwable {
+        return assemble(name, optimize, WasmAssemblerConfiguration.DEFAULT);
+    }
+
+    private static byte[] assemble(String name, boolean optimize, WasmAssemblerConfiguration configuration)
+            throws Throwable {
+        return new WasmAssembler(
+                TestUtil.load(name),
+                new ObjectWebASMClassFileEmitterFactory(optimize),
+                "net.janrupf.thunderwasm.generated.peephole",
+                "Optimized",
+                new WasmGenerators(),
+                configuration
+        ).assembleToModule();
+    }
+
+    private static int countInstructions(byte[] classBytes) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classBytes).accept(classNode, 0);
+
+        int count = 0;
+        for (MethodNode method : classNode.methods) {
+            for (AbstractInsnNode instruction : method.instructions) {
+                if (instruction.getOpcode() >= 0) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static Object instantiate(byte[] classBytes) throws Throwable {
+        // All modules share the class name, every one needs its own class loader
+        return new TestClassLoader()
+                .loadFromBytes(null, classBytes)
+                .getConstructor(RuntimeLinker.class)
+                .newInstance(new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction export(Object instance, String name) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get(name);
+    }
+}
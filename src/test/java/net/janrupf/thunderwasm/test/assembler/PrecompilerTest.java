@@ -0,0 +1,135 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.precompile.WasmPrecompiler;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfileRecorder;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.jar.JarFile;
+
+public class PrecompilerTest {
+    private static final String PACKAGE_NAME = "net.janrupf.thunderwasm.generated.precompiled";
+
+    @Test
+    public void testJarContainsModules() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-precompile");
+        Path jar = directory.resolve("modules.jar");
+
+        new WasmPrecompiler(PACKAGE_NAME, WasmAssemblerConfiguration.DEFAULT)
+                .addModule("Segments", copyModule(directory, "data-segments"))
+                .addModule("Companion", copyModule(directory, "companion-classes"))
+                .writeJar(jar);
+
+        Properties descriptor = new Properties();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            try (InputStream stream = jarFile.getInputStream(jarFile.getEntry(WasmPrecompiler.DESCRIPTOR_NAME))) {
+                descriptor.load(stream);
+            }
+
+            Assertions.assertEquals(PACKAGE_NAME, descriptor.getProperty("package"));
+            Assertions.assertEquals(PACKAGE_NAME + ".Segments", descriptor.getProperty("Segments.class"));
+            Assertions.assertEquals(PACKAGE_NAME + ".Companion", descriptor.getProperty("Companion.class"));
+
+            // The data segments are stored as resources instead of in the class
+            String[] resources = descriptor.getProperty("Segments.resources").split(",");
+            Assertions.assertEquals(2, resources.length);
+            for (String resource : resources) {
+                Assertions.assertNotNull(jarFile.getEntry(resource), "Missing resource " + resource);
+            }
+        }
+    }
+
+    @Test
+    public void testJarModulesRun() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-precompile");
+        Path jar = directory.resolve("modules.jar");
+
+        new WasmPrecompiler(PACKAGE_NAME, WasmAssemblerConfiguration.DEFAULT)
+                .addModule("Segments", copyModule(directory, "data-segments"))
+                .writeJar(jar);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{jar.toUri().toURL()},
+                PrecompilerTest.class.getClassLoader()
+        )) {
+            Object instance = classLoader.loadClass(PACKAGE_NAME + ".Segments")
+                    .getConstructor(RuntimeLinker.class)
+                    .newInstance(new RuntimeLinker.Empty());
+
+            LinkedFunction sum = (LinkedFunction) ((WasmModuleExports) instance).getExports().get("sum");
+            Assertions.assertEquals(1202, (int) sum.asMethodHandle().invoke());
+        }
+    }
+
+    @Test
+    public void testJarIsReproducible() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-precompile");
+        Path module = copyModule(directory, "data-segments");
+
+        Path first = directory.resolve("first.jar");
+        Path second = directory.resolve("second.jar");
+        new WasmPrecompiler(PACKAGE_NAME, WasmAssemblerConfiguration.DEFAULT)
+                .addModule("Segments", module)
+                .writeJar(first);
+        new WasmPrecompiler(PACKAGE_NAME, WasmAssemblerConfiguration.DEFAULT)
+                .addModule("Segments", module)
+                .writeJar(second);
+
+        Assertions.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    @Test
+    public void testProfileIsRejectedForMultipleModules() throws Throwable {
+        Path directory = Files.createTempDirectory("thunder-wasm-precompile");
+        WasmPrecompiler precompiler = new WasmPrecompiler(PACKAGE_NAME, WasmAssemblerConfiguration.builder()
+                .profile(recordProfile())
+                .build());
+        precompiler.addModule("Segments", copyModule(directory, "data-segments"));
+
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> precompiler.addModule("Companion", copyModule(directory, "companion-classes"))
+        );
+    }
+
+    @Test
+    public void testLazyCompilationIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new WasmPrecompiler(
+                PACKAGE_NAME,
+                WasmAssemblerConfiguration.builder().enableLazyCompilation(true).build()
+        ));
+    }
+
+    private static WasmProfile recordProfile() throws Throwable {
+        WasmAssembler assembler = TestUtil.makeAssembler(
+                TestUtil.load("assembler/data-segments.wasm"),
+                WasmAssemblerConfiguration.builder().enableProfileInstrumentation(true).build()
+        );
+
+        Object instance = TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+        return WasmProfileRecorder.forModuleClass(instance.getClass()).snapshot();
+    }
+
+    private static Path copyModule(Path directory, String name) throws Exception {
+        Path module = directory.resolve(name + ".wasm");
+        try (InputStream stream = TestUtil.wasmResource("assembler/" + name + ".wasm")) {
+            Files.copy(stream, module, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return module;
+    }
+}
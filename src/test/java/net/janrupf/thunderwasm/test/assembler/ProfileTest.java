@@ -0,0 +1,175 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfile;
+import net.janrupf.thunderwasm.assembler.profile.WasmProfileRecorder;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.module.metadata.BranchHint;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+public class ProfileTest {
+    @Test
+    public void testRecordProfile() throws Throwable {
+        WasmProfile profile = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+
+        Assertions.assertEquals(1000, profile.getCallCount(0));
+        Assertions.assertEquals(0, profile.getCallCount(1));
+        Assertions.assertTrue(profile.isHotFunction(0));
+        Assertions.assertTrue(profile.getBranchHints(0).containsValue(BranchHint.UNLIKELY));
+    }
+
+    @Test
+    public void testSiteIdsDoNotDependOnLayout() throws Throwable {
+        WasmProfile single = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+        WasmProfile split = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .enableParallelCompilation(true)
+                .classSplitThreshold(1)
+                .build());
+
+        Assertions.assertArrayEquals(encode(single), encode(split));
+    }
+
+    @Test
+    public void testProfileRoundTrip() throws Throwable {
+        WasmProfile profile = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+
+        WasmProfile read = WasmProfile.read(new ByteArrayInputStream(encode(profile)));
+        Assertions.assertEquals(profile.getModuleHash(), read.getModuleHash());
+        Assertions.assertArrayEquals(encode(profile), encode(read));
+    }
+
+    @Test
+    public void testAssembleWithProfile() throws Throwable {
+        WasmProfile profile = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+
+        Object instance = instantiate("assembler/profile.wasm", WasmAssemblerConfiguration.builder()
+                .profile(profile)
+                .build());
+        Assertions.assertEquals(1090, (int) run(instance).asMethodHandle().invoke(1000));
+    }
+
+    @Test
+    public void testProfileOfOtherModuleIsRejected() throws Throwable {
+        WasmProfile profile = record(WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+
+        WasmModule other = TestUtil.load("assembler/block-split.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(other, WasmAssemblerConfiguration.builder()
+                .profile(profile)
+                .build());
+
+        Assertions.assertThrows(WasmAssemblerException.class, assembler::assembleToClasses);
+    }
+
+    @Test
+    public void testIndirectCallsDispatchToDominantTargets() throws Throwable {
+        String name = "assembler/profile-dispatch.wasm";
+
+        Object instrumented = instantiate(name, WasmAssemblerConfiguration.builder()
+                .enableProfileInstrumentation(true)
+                .build());
+        Assertions.assertEquals(1000, (int) run(instrumented).asMethodHandle().invoke(1000));
+
+        WasmAssemblerConfiguration configuration = WasmAssemblerConfiguration.builder()
+                .profile(WasmProfileRecorder.forModuleClass(instrumented.getClass()).snapshot())
+                .build();
+
+        // The table is too large to dispatch every slot directly, only the profile reveals $common
+        Assertions.assertFalse(callsMethod(name, WasmAssemblerConfiguration.DEFAULT, "$code_2", "$code_0"));
+        Assertions.assertTrue(callsMethod(name, configuration, "$code_2", "$code_0"));
+
+        Object instance = instantiate(name, configuration);
+        Assertions.assertEquals(1000, (int) run(instance).asMethodHandle().invoke(1000));
+    }
+
+    private static WasmProfile record(WasmAssemblerConfiguration configuration) throws Throwable {
+        Object instance = instantiate("assembler/profile.wasm", configuration);
+        Assertions.assertEquals(1090, (int) run(instance).asMethodHandle().invoke(1000));
+
+        WasmProfileRecorder recorder = WasmProfileRecorder.forModuleClass(instance.getClass());
+        Assertions.assertNotNull(recorder);
+
+        return recorder.snapshot();
+    }
+
+    private static boolean callsMethod(
+            String name,
+            WasmAssemblerConfiguration configuration,
+            String caller,
+            String callee
+    ) throws Throwable {
+        WasmAssembler assembler = TestUtil.makeAssembler(TestUtil.load(name), configuration);
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(assembler.assembleToModule()).accept(classNode, 0);
+
+        for (MethodNode method : classNode.methods) {
+            if (!method.name.equals(caller)) {
+                continue;
+            }
+
+            for (AbstractInsnNode instruction : method.instructions) {
+                if (instruction instanceof MethodInsnNode && ((MethodInsnNode) instruction).name.equals(callee)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Object instantiate(String name, WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load(name);
+        WasmAssembler assembler = TestUtil.makeAssembler(module, configuration);
+
+        // The module may be split into companion classes, the module class comes first
+        TestClassLoader classLoader = new TestClassLoader();
+        Class<?> moduleClass = null;
+        for (Map.Entry<String, byte[]> entry : assembler.assembleToClasses().entrySet()) {
+            Class<?> loaded = classLoader.loadFromBytes(entry.getKey(), entry.getValue());
+            if (moduleClass == null) {
+                moduleClass = loaded;
+            }
+        }
+
+        return moduleClass.getConstructor(RuntimeLinker.class).newInstance(new RuntimeLinker.Empty());
+    }
+
+    private static byte[] encode(WasmProfile profile) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profile.write(out);
+
+        return out.toByteArray();
+    }
+
+    private static LinkedFunction run(Object instance) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get("run");
+    }
+}
@@ -0,0 +1,102 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmStreamingAssembler;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.instructions.InstructionRegistry;
+import net.janrupf.thunderwasm.instructions.InstructionSet;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+public class StreamingTest {
+    private static final InstructionRegistry INSTRUCTION_REGISTRY = InstructionRegistry.builder()
+            .with(InstructionSet.BASE)
+            .build();
+
+    @Test
+    public void testStreamedModuleRuns() throws Throwable {
+        Object instance = instantiate(assemble("companion-classes", WasmAssemblerConfiguration.DEFAULT));
+        Assertions.assertEquals(1030300, (int) export(instance, "run").asMethodHandle().invoke(100));
+    }
+
+    @Test
+    public void testStreamedModuleWithDataSegmentsRuns() throws Throwable {
+        Object instance = instantiate(assemble("data-segments", WasmAssemblerConfiguration.DEFAULT));
+        Assertions.assertEquals(1202, (int) export(instance, "sum").asMethodHandle().invoke());
+    }
+
+    @Test
+    public void testStreamedModuleWithParallelCompilationRuns() throws Throwable {
+        Object instance = instantiate(assemble("local-liveness", WasmAssemblerConfiguration.builder()
+                .enableParallelCompilation(true)
+                .build()));
+        Assertions.assertEquals(3086051L, (long) export(instance, "run").asMethodHandle().invoke(100));
+    }
+
+    @Test
+    public void testUnreachableFunctionsAreStubbed() throws Throwable {
+        Object instance = instantiate(assemble("dead-functions", WasmAssemblerConfiguration.DEFAULT));
+        Assertions.assertEquals(3, (int) export(instance, "run").asMethodHandle().invoke());
+
+        Method dead = instance.getClass().getDeclaredMethod("$code_2", instance.getClass());
+        dead.setAccessible(true);
+
+        InvocationTargetException e = Assertions.assertThrows(
+                InvocationTargetException.class,
+                () -> dead.invoke(null, instance)
+        );
+        Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    public void testUnsupportedConfigurationsAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> createAssembler(
+                WasmAssemblerConfiguration.builder().enableLazyCompilation(true).build()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> createAssembler(
+                WasmAssemblerConfiguration.builder().classSplitThreshold(1).build()));
+    }
+
+    private static WasmStreamingAssembler createAssembler(WasmAssemblerConfiguration configuration) {
+        return new WasmStreamingAssembler(
+                INSTRUCTION_REGISTRY,
+                new ObjectWebASMClassFileEmitterFactory(),
+                "net.janrupf.thunderwasm.generated.streaming",
+                "Streamed",
+                new WasmGenerators(),
+                configuration
+        );
+    }
+
+    private static Map<String, byte[]> assemble(String name, WasmAssemblerConfiguration configuration)
+            throws Throwable {
+        try (InputStream stream = TestUtil.wasmResource("assembler/" + name + ".wasm")) {
+            return createAssembler(configuration).assembleToClasses(stream);
+        }
+    }
+
+    private static Object instantiate(Map<String, byte[]> classes) throws Throwable {
+        Assertions.assertEquals(1, classes.size());
+        Map.Entry<String, byte[]> moduleClass = classes.entrySet().iterator().next();
+
+        // All modules share the class name, every one needs its own class loader
+        return new TestClassLoader()
+                .loadFromBytes(moduleClass.getKey(), moduleClass.getValue())
+                .getConstructor(RuntimeLinker.class)
+                .newInstance(new RuntimeLinker.Empty());
+    }
+
+    private static LinkedFunction export(Object instance, String name) {
+        return (LinkedFunction) ((WasmModuleExports) instance).getExports().get(name);
+    }
+}
@@ -0,0 +1,141 @@
+package net.janrupf.thunderwasm.test.assembler;
+
+import net.janrupf.thunderwasm.assembler.WasmAssembler;
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.WasmLazyCompiler;
+import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+import net.janrupf.thunderwasm.module.WasmModule;
+import net.janrupf.thunderwasm.runtime.WasmModuleExports;
+import net.janrupf.thunderwasm.runtime.continuation.Continuation;
+import net.janrupf.thunderwasm.runtime.linker.RuntimeLinker;
+import net.janrupf.thunderwasm.runtime.linker.function.LinkedFunction;
+import net.janrupf.thunderwasm.runtime.state.MultiValue;
+import net.janrupf.thunderwasm.test.TestClassLoader;
+import net.janrupf.thunderwasm.test.util.TestUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class TailCallTest {
+    // Deep enough to overflow the stack if tail calls were performed as regular calls
+    private static final int DEPTH = 1_000_000;
+
+    @Test
+    public void testDeepSelfRecursion() throws Throwable {
+        checkDeepSelfRecursion(instantiate(WasmAssemblerConfiguration.DEFAULT));
+    }
+
+    @Test
+    public void testDeepMutualRecursion() throws Throwable {
+        checkDeepMutualRecursion(instantiate(WasmAssemblerConfiguration.DEFAULT));
+    }
+
+    @Test
+    public void testDeepIndirectRecursion() throws Throwable {
+        checkDeepIndirectRecursion(instantiate(WasmAssemblerConfiguration.DEFAULT));
+    }
+
+    @Test
+    public void testDeepMultiValueRecursion() throws Throwable {
+        checkDeepMultiValueRecursion(instantiate(WasmAssemblerConfiguration.DEFAULT));
+    }
+
+    @Test
+    public void testDeepRecursionWithLazyCompilation() throws Throwable {
+        Map<String, Object> exports = instantiateLazy();
+
+        checkDeepSelfRecursion(exports);
+        checkDeepMutualRecursion(exports);
+        checkDeepIndirectRecursion(exports);
+        checkDeepMultiValueRecursion(exports);
+    }
+
+    @Test
+    public void testDeepRecursionWithContinuations() throws Throwable {
+        Map<String, Object> exports = instantiate(WasmAssemblerConfiguration.builder()
+                .enableContinuations()
+                .build());
+
+        // Pause on every 7th check, so the tail calls are interrupted at varying points
+        int[] checks = {0};
+        Continuation continuation = new Continuation(() -> ++checks[0] % 7 == 0);
+
+        int pauses = 0;
+        long result = (long) function(exports, "loop_sum").asMethodHandle().invoke(DEPTH, 0L, continuation);
+        while (Continuation.isPaused(continuation)) {
+            pauses++;
+            continuation.unpause();
+            result = (long) function(exports, "loop_sum").asMethodHandle().invoke(DEPTH, 0L, continuation);
+        }
+
+        Assertions.assertEquals(3L * DEPTH, result);
+        Assertions.assertTrue(pauses > 0);
+
+        Assertions.assertEquals(
+                500000500000L,
+                (long) function(exports, "sum").asMethodHandle().invoke(DEPTH, 0L, continuation)
+        );
+    }
+
+    private static void checkDeepSelfRecursion(Map<String, Object> exports) throws Throwable {
+        Assertions.assertEquals(500000500000L, (long) function(exports, "sum").asMethodHandle().invoke(DEPTH, 0L));
+    }
+
+    private static void checkDeepMutualRecursion(Map<String, Object> exports) throws Throwable {
+        Assertions.assertEquals(1500000L, (long) function(exports, "sum_even").asMethodHandle().invoke(DEPTH, 0L));
+        Assertions.assertEquals(
+                1499998L,
+                (long) function(exports, "sum_even").asMethodHandle().invoke(DEPTH - 1, 0L)
+        );
+    }
+
+    private static void checkDeepIndirectRecursion(Map<String, Object> exports) throws Throwable {
+        Assertions.assertEquals(
+                1500000L,
+                (long) function(exports, "sum_indirect_even").asMethodHandle().invoke(DEPTH, 0L)
+        );
+        Assertions.assertEquals(3L * DEPTH, (long) function(exports, "loop_sum").asMethodHandle().invoke(DEPTH, 0L));
+    }
+
+    private static void checkDeepMultiValueRecursion(Map<String, Object> exports) throws Throwable {
+        MultiValue direct = (MultiValue) function(exports, "count_even").asMethodHandle().invoke(DEPTH, 0L);
+        Assertions.assertEquals(1500000L, direct.getLong(0));
+        Assertions.assertEquals(1500000, direct.getInt(0));
+
+        MultiValue indirect = (MultiValue) function(exports, "count_indirect").asMethodHandle().invoke(DEPTH, 1L);
+        Assertions.assertEquals(1500001L, indirect.getLong(0));
+        Assertions.assertEquals(1500001, indirect.getInt(0));
+    }
+
+    private static Map<String, Object> instantiate(WasmAssemblerConfiguration configuration) throws Throwable {
+        WasmModule module = TestUtil.load("assembler/tail-calls.wasm");
+        WasmAssembler assembler = TestUtil.makeAssembler(module, configuration);
+        Object instance = TestUtil.instantiateModule(assembler, new RuntimeLinker.Empty());
+
+        return ((WasmModuleExports) instance).getExports();
+    }
+
+    private static Map<String, Object> instantiateLazy() throws Throwable {
+        WasmModule module = TestUtil.load("assembler/tail-calls.wasm");
+        TestClassLoader classLoader = new TestClassLoader();
+
+        Class<?> moduleClass = new WasmLazyCompiler(
+                module,
+                new ObjectWebASMClassFileEmitterFactory(),
+                "net.janrupf.thunderwasm.generated",
+                "LazyTailCallTestModule",
+                WasmGenerators::new,
+                WasmAssemblerConfiguration.DEFAULT,
+                classLoader::loadFromBytes
+        ).defineModuleClass();
+
+        Object instance = moduleClass.getConstructor(RuntimeLinker.class).newInstance(new RuntimeLinker.Empty());
+        return ((WasmModuleExports) instance).getExports();
+    }
+
+    private static LinkedFunction function(Map<String, Object> exports, String name) {
+        return (LinkedFunction) exports.get(name);
+    }
+}
@@ -8,6 +8,7 @@ import net.janrupf.thunderwasm.instructions.control.Block;
 import net.janrupf.thunderwasm.instructions.control.Call;
 import net.janrupf.thunderwasm.instructions.control.Nop;
 import net.janrupf.thunderwasm.instructions.numeric.I32Const;
+import net.janrupf.thunderwasm.module.WasmLoader;
 import net.janrupf.thunderwasm.module.WasmModule;
 import net.janrupf.thunderwasm.module.encoding.LargeArrayIndex;
 import net.janrupf.thunderwasm.module.section.CodeSection;
@@ -73,4 +74,23 @@ public class CodeSectionTest {
                 }
         );
     }
+
+    @Test
+    public void testLazyFunctionBodiesAreDecodedOnce() throws Exception {
+        WasmLoader loader = TestUtil.loaderFor("code-section.wasm");
+        loader.setLazyFunctionBodies(true);
+        WasmModule module = loader.load();
+
+        CodeSection codeSection = TestUtil.getSection(module, (byte) 10);
+        Function firstFunction = codeSection.getFunctions().get(LargeArrayIndex.ZERO);
+
+        Expr first = firstFunction.getExpr();
+        Assertions.assertSame(first, firstFunction.getExpr());
+
+        firstFunction.discardDecodedExpr();
+
+        Expr second = firstFunction.getExpr();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(first.getInstructionCount(), second.getInstructionCount());
+    }
 }
@@ -3,8 +3,8 @@ package net.janrupf.thunderwasm.test.wast;
 import net.janrupf.thunderwasm.ThunderWasmException;
 import net.janrupf.thunderwasm.assembler.WasmAssembler;
 import net.janrupf.thunderwasm.assembler.WasmAssemblerException;
+import net.janrupf.thunderwasm.assembler.WasmLazyCompiler;
 import net.janrupf.thunderwasm.assembler.emitter.WasmGenerators;
-import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
 import net.janrupf.thunderwasm.instructions.InstructionRegistry;
 import net.janrupf.thunderwasm.instructions.InstructionSet;
 import net.janrupf.thunderwasm.module.InvalidModuleException;
@@ -41,6 +41,7 @@ import java.util.*;
  */
 public class WasmTestExecutor {
     private static final Object VOID = new Object();
+    private static final String MODULE_PACKAGE = "net.janrupf.thunderwasm.test.wast.module";
 
     private static final InstructionRegistry BASE_INSTRUCTION_REGISTRY = InstructionRegistry.builder()
             .with(InstructionSet.BASE)
@@ -48,6 +49,7 @@ public class WasmTestExecutor {
 
     private final Map<String, Object> namedModules;
     private final WastTestCollection collection;
+    private final WastTestVariant variant;
     private final TestClassLoader testClassLoader;
     private final WastValueConverter valueConverter;
     private final SpectestEnvironment environment;
@@ -56,9 +58,10 @@ public class WasmTestExecutor {
     private Object currentModule = null;
     private boolean isBroken;
 
-    public WasmTestExecutor(WastTestCollection collection) {
+    public WasmTestExecutor(WastTestCollection collection, WastTestVariant variant) {
         this.namedModules = new HashMap<>();
         this.collection = collection;
+        this.variant = variant;
         this.isBroken = false;
         this.testClassLoader = new TestClassLoader();
         this.valueConverter = new WastValueConverter();
@@ -94,6 +97,15 @@ public class WasmTestExecutor {
         return collection;
     }
 
+    /**
+     * Retrieve the variant the tests are executed with.
+     *
+     * @return the test variant
+     */
+    public WastTestVariant getVariant() {
+        return variant;
+    }
+
     /**
      * Executes a single WAST command and returns the result.
      *
@@ -131,10 +143,7 @@ public class WasmTestExecutor {
      */
     private void executeModuleCommand(ModuleCommand command) throws Exception {
         try {
-            WasmAssembler assembler = loadAndMakeAssembler(command.getFilename());
-
-            byte[] clazz = assembler.assembleToModule();
-            Class<?> moduleClazz = testClassLoader.loadFromBytes(null, clazz);
+            Class<?> moduleClazz = compileModule(command.getFilename());
 
             Constructor<?> constructor = moduleClazz.getConstructor(RuntimeLinker.class);
             this.currentModule = constructor.newInstance(new WastEnvironmentLinker(environment, this.namedModules));
@@ -178,15 +187,19 @@ public class WasmTestExecutor {
      * Validates that a module fails to load as invalid.
      */
     private void executeAssertInvalidCommand(AssertInvalidCommand command) throws Exception {
-        WasmAssembler assembler = loadAndMakeAssembler(command.getFilename());
+        WasmModule module = loadModuleFromResource(command.getFilename());
 
         if (command.getText().equals("multiple memories")) {
             Assumptions.abort("Thunder WASM intentionally supports multiple memories");
         }
 
+        if (!variant.validatesFunctionBodies()) {
+            Assumptions.abort("Variant " + variant.getName() + " does not validate all function bodies");
+        }
+
         try {
-            assembler.assembleToModule();
-            Assertions.fail("expected assembleToModule to throw (" + command.getText() + ")");
+            compileModule(module);
+            Assertions.fail("expected compileModule to throw (" + command.getText() + ")");
         } catch (WasmAssemblerException ignored) {
         }
     }
@@ -223,10 +236,7 @@ public class WasmTestExecutor {
      * Validates that a module fails to instantiate.
      */
     private void executeAssertUninstantiableCommand(AssertUninstantiableCommand command) throws Throwable {
-        WasmAssembler assembler = loadAndMakeAssembler(command.getFilename());
-
-        byte[] clazz = assembler.assembleToModule();
-        Class<?> moduleClazz = testClassLoader.loadFromBytes(null, clazz);
+        Class<?> moduleClazz = compileModule(command.getFilename());
 
         Constructor<?> constructor = moduleClazz.getConstructor(RuntimeLinker.class);
         try {
@@ -244,10 +254,7 @@ public class WasmTestExecutor {
      * Validates that a module fails to link.
      */
     private void executeAssertUnlinkableCommand(AssertUnlinkableCommand command) throws Throwable {
-        WasmAssembler assembler = loadAndMakeAssembler(command.getFilename());
-
-        byte[] clazz = assembler.assembleToModule();
-        Class<?> moduleClazz = testClassLoader.loadFromBytes(null, clazz);
+        Class<?> moduleClazz = compileModule(command.getFilename());
 
         Constructor<?> constructor = moduleClazz.getConstructor(RuntimeLinker.class);
         try {
@@ -406,8 +413,36 @@ public class WasmTestExecutor {
         Assertions.assertArrayEquals(expectedJavaValues.toArray(), expectedReturnValue.toArray());
     }
 
-    private WasmAssembler loadAndMakeAssembler(String fileName) throws ThunderWasmException, IOException {
-        return makeAssembler(loadModuleFromResource(fileName));
+    private Class<?> compileModule(String fileName) throws ThunderWasmException, IOException {
+        return compileModule(loadModuleFromResource(fileName));
+    }
+
+    private Class<?> compileModule(WasmModule module) throws WasmAssemblerException {
+        String className = "WastCollectionModule$$" + collection.getName().replaceAll("(\\.;/_)", "$") + "$" + (assemblerCounter++);
+
+        if (variant.getConfiguration().lazyCompilationEnabled()) {
+            return new WasmLazyCompiler(
+                    module,
+                    variant.createEmitterFactory(),
+                    MODULE_PACKAGE,
+                    className,
+                    WasmGenerators::new,
+                    variant.getConfiguration(),
+                    testClassLoader::loadFromBytes
+            ).defineModuleClass();
+        }
+
+        WasmAssembler assembler = new WasmAssembler(
+                module,
+                variant.createEmitterFactory(),
+                MODULE_PACKAGE,
+                className,
+                new WasmGenerators(),
+                variant.getConfiguration()
+        );
+
+        byte[] clazz = assembler.assembleToModule();
+        return testClassLoader.loadFromBytes(null, clazz);
     }
 
     private WasmModule loadModuleFromResource(String fileName) throws ThunderWasmException, IOException {
@@ -417,14 +452,4 @@ public class WasmTestExecutor {
             return loader.load();
         }
     }
-
-    private WasmAssembler makeAssembler(WasmModule module) {
-        return new WasmAssembler(
-                module,
-                new ObjectWebASMClassFileEmitterFactory(),
-                "net.janrupf.thunderwasm.test.wast.module",
-                "WastCollectionModule$$" + collection.getName().replaceAll("(\\.;/_)", "$") + "$" + (assemblerCounter++),
-                new WasmGenerators()
-        );
-    }
 }
\ No newline at end of file
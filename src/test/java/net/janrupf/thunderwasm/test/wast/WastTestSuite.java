@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class WastTestSuite {
@@ -94,6 +95,17 @@ public class WastTestSuite {
     @TestFactory
     @Execution(ExecutionMode.SAME_THREAD)
     public Stream<DynamicContainer> wastTests() {
+        List<WastTestCollection> collections = readCollections();
+
+        // Every variant runs the entire suite
+        return Arrays.stream(WastTestVariant.values())
+                .map((variant) -> DynamicContainer.dynamicContainer(
+                        variant.getName(),
+                        collections.stream().map((collection) -> processCollection(collection, variant))
+                ));
+    }
+
+    private List<WastTestCollection> readCollections() {
         BufferedReader reader = new BufferedReader(new InputStreamReader(
                 Objects.requireNonNull(WastTestSuite.class.getResourceAsStream("/wast-tests.txt"))
         ));
@@ -114,12 +126,12 @@ public class WastTestSuite {
                         throw new UncheckedIOException(e);
                     }
                 })
-                .map(this::processCollection);
+                .collect(Collectors.toList());
     }
 
-    private DynamicContainer processCollection(WastTestCollection collection) throws UncheckedIOException {
+    private DynamicContainer processCollection(WastTestCollection collection, WastTestVariant variant) {
         // Create a test executor with runtime linker
-        WasmTestExecutor executor = new WasmTestExecutor(collection);
+        WasmTestExecutor executor = new WasmTestExecutor(collection, variant);
 
         return DynamicContainer.dynamicContainer(
                 collection.getName(),
@@ -0,0 +1,79 @@
+package net.janrupf.thunderwasm.test.wast;
+
+import net.janrupf.thunderwasm.assembler.WasmAssemblerConfiguration;
+import net.janrupf.thunderwasm.assembler.emitter.ClassFileEmitterFactory;
+import net.janrupf.thunderwasm.assembler.emitter.objasm.ObjectWebASMClassFileEmitterFactory;
+
+/**
+ * An assembler configuration the WAST tests are run with.
+ */
+public enum WastTestVariant {
+    DEFAULT("default", WasmAssemblerConfiguration.DEFAULT),
+    METHOD_OPTIMIZATION(
+            "method-optimization",
+            WasmAssemblerConfiguration.builder().enableMethodOptimization(true).build()
+    ),
+    EXPRESSION_OPTIMIZATION(
+            "expression-optimization",
+            WasmAssemblerConfiguration.builder().enableExpressionOptimization(true).build()
+    ),
+    PARALLEL_COMPILATION(
+            "parallel-compilation",
+            WasmAssemblerConfiguration.builder().enableParallelCompilation(true).build()
+    ),
+    LAZY_COMPILATION(
+            "lazy-compilation",
+            WasmAssemblerConfiguration.builder().enableLazyCompilation(true).build()
+    ),
+    // Splits almost every block into a method of its own
+    BLOCK_SPLITTING(
+            "block-splitting",
+            WasmAssemblerConfiguration.builder().blockSplitSizeThreshold(16).build()
+    );
+
+    private final String name;
+    private final WasmAssemblerConfiguration configuration;
+
+    WastTestVariant(String name, WasmAssemblerConfiguration configuration) {
+        this.name = name;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Retrieve the name of the variant.
+     *
+     * @return the name of the variant
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieve the configuration modules are assembled with.
+     *
+     * @return the assembler configuration
+     */
+    public WasmAssemblerConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Create the factory for the class file emitters modules are assembled with.
+     *
+     * @return the created factory
+     */
+    public ClassFileEmitterFactory createEmitterFactory() {
+        return new ObjectWebASMClassFileEmitterFactory(configuration.methodOptimizationEnabled());
+    }
+
+    /**
+     * Determines whether all function bodies are validated while assembling the module.
+     * <p>
+     * Lazily compiled functions are only validated once they are invoked.
+     *
+     * @return true if invalid modules are rejected while assembling, false otherwise
+     */
+    public boolean validatesFunctionBodies() {
+        return !configuration.lazyCompilationEnabled();
+    }
+}
@@ -0,0 +1,58 @@
+(module
+  ;; Small enough to be inlined, but considerably larger than a call
+  (func $classify (param $x i32) (result i32)
+    (i32.add
+      (i32.add
+        (i32.add (i32.lt_s (local.get $x) (i32.const 10)) (i32.gt_s (local.get $x) (i32.const 20)))
+        (i32.add (i32.eq (local.get $x) (i32.const 3)) (i32.ne (local.get $x) (i32.const 4))))
+      (i32.add (i32.le_u (local.get $x) (i32.const 30)) (i32.ge_u (local.get $x) (i32.const 40)))))
+
+  ;; Calls $classify 40 times, which only exceeds the split threshold once the calls are inlined
+  (func $run (export "run") (param $x i32) (result i32)
+    (local $acc i32)
+    (block
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 0)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 1)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 2)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 3)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 4)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 5)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 6)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 7)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 8)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 9))))))
+    (block
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 10)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 11)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 12)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 13)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 14)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 15)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 16)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 17)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 18)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 19))))))
+    (block
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 20)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 21)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 22)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 23)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 24)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 25)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 26)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 27)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 28)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 29))))))
+    (block
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 30)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 31)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 32)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 33)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 34)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 35)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 36)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 37)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 38)))))
+      (local.set $acc (i32.add (local.get $acc) (call $classify (i32.add (local.get $x) (i32.const 39))))))
+    (local.get $acc))
+)
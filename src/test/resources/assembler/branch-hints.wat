@@ -0,0 +1,28 @@
+(module
+  ;; The test hints the if as unlikely, which moves its large then arm into its own method
+  (func (export "run") (param $n i32) (result i32)
+    (local $i i32)
+    (local $acc i32)
+    (block $done
+      (loop $next
+        (br_if $done (i32.ge_u (local.get $i) (local.get $n)))
+        (if (i32.eq (i32.rem_u (local.get $i) (i32.const 100)) (i32.const 99))
+          (then
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 3)) (i32.add (local.get $i) (i32.const 1))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 5)) (i32.add (local.get $i) (i32.const 2))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 7)) (i32.add (local.get $i) (i32.const 3))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 9)) (i32.add (local.get $i) (i32.const 4))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 11)) (i32.add (local.get $i) (i32.const 5))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 13)) (i32.add (local.get $i) (i32.const 6))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 15)) (i32.add (local.get $i) (i32.const 7))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 17)) (i32.add (local.get $i) (i32.const 8))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 19)) (i32.add (local.get $i) (i32.const 9))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 21)) (i32.add (local.get $i) (i32.const 10))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 23)) (i32.add (local.get $i) (i32.const 11))))
+            (local.set $acc (i32.xor (i32.mul (local.get $acc) (i32.const 25)) (i32.add (local.get $i) (i32.const 12))))
+          )
+          (else
+            (local.set $acc (i32.add (local.get $acc) (local.get $i)))))
+        (local.set $i (i32.add (local.get $i) (i32.const 1)))
+        (br $next)))
+    (local.get $acc)))
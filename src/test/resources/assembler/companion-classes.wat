@@ -0,0 +1,41 @@
+(module
+  (type $unop (func (param i32) (result i32)))
+
+  (memory 1)
+  (global $calls (mut i32) (i32.const 0))
+
+  (table 2 funcref)
+  (elem (i32.const 0) $square $twice)
+
+  (func $square (type $unop) (param $x i32) (result i32)
+    (global.set $calls (i32.add (global.get $calls) (i32.const 1)))
+    (i32.mul (local.get $x) (local.get $x)))
+
+  (func $twice (type $unop) (param $x i32) (result i32)
+    (global.set $calls (i32.add (global.get $calls) (i32.const 1)))
+    (i32.add (local.get $x) (local.get $x)))
+
+  (func $remember (param $x i32)
+    (i32.store (i32.const 0) (i32.add (i32.load (i32.const 0)) (local.get $x))))
+
+  (func $step (param $x i32) (result i32)
+    (local $result i32)
+    (local.set $result
+      (i32.add
+        (call $square (local.get $x))
+        (call_indirect (type $unop) (local.get $x) (i32.rem_u (local.get $x) (i32.const 2)))))
+    (call $remember (local.get $result))
+    (local.get $result))
+
+  ;; Sums the steps of 1 to n, plus the calls made and the value remembered in memory
+  (func (export "run") (param $n i32) (result i32)
+    (local $sum i32)
+    (block $done
+      (loop $next
+        (br_if $done (i32.eqz (local.get $n)))
+        (local.set $sum (i32.add (local.get $sum) (call $step (local.get $n))))
+        (local.set $n (i32.sub (local.get $n) (i32.const 1)))
+        (br $next)))
+    (i32.add
+      (local.get $sum)
+      (i32.add (global.get $calls) (i32.load (i32.const 0))))))
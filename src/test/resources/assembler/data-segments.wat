@@ -0,0 +1,14 @@
+(module
+  (memory (export "memory") 1)
+  (data (i32.const 16) "thunder")
+  (data (i32.const 64) "wasm")
+
+  ;; Sums the bytes of the first 128 bytes of memory
+  (func (export "sum") (result i32)
+    (local $address i32)
+    (local $sum i32)
+    (loop $next
+      (local.set $sum (i32.add (local.get $sum) (i32.load8_u (local.get $address))))
+      (local.set $address (i32.add (local.get $address) (i32.const 1)))
+      (br_if $next (i32.lt_u (local.get $address) (i32.const 128))))
+    (local.get $sum)))
@@ -0,0 +1,15 @@
+(module
+  (type $get (func (result i32)))
+
+  (table 1 funcref)
+  (elem (i32.const 0) $viaTable)
+
+  (func $used (type $get) (i32.const 1))
+  (func $viaTable (type $get) (i32.const 2))
+
+  ;; Neither exported nor referenced, only called by another unreachable function
+  (func $dead (type $get) (i32.add (call $alsoDead) (i32.const 1)))
+  (func $alsoDead (type $get) (i32.const 4))
+
+  (func (export "run") (result i32)
+    (i32.add (call $used) (call_indirect (type $get) (i32.const 0)))))
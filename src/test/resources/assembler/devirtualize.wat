@@ -0,0 +1,22 @@
+(module
+  (type $binop (func (param i32 i32) (result i32)))
+  (type $unop (func (param i32) (result i32)))
+
+  ;; Never written after instantiation, calls through it dispatch directly
+  (table $fixed 4 funcref)
+  (elem (table $fixed) (i32.const 0) func $add $sub $negate)
+
+  ;; Exported tables may be changed by the host
+  (table $exported (export "table") 2 funcref)
+  (elem (table $exported) (i32.const 0) func $add $sub)
+
+  (func $add (type $binop) (i32.add (local.get 0) (local.get 1)))
+  (func $sub (type $binop) (i32.sub (local.get 0) (local.get 1)))
+  (func $negate (type $unop) (i32.sub (i32.const 0) (local.get 0)))
+
+  ;; Slot 2 has a different type, slot 3 is null and slots from 4 on are out of bounds
+  (func (export "dispatch") (param $slot i32) (param $a i32) (param $b i32) (result i32)
+    (call_indirect $fixed (type $binop) (local.get $a) (local.get $b) (local.get $slot)))
+
+  (func (export "dispatchExported") (param $slot i32) (param $a i32) (param $b i32) (result i32)
+    (call_indirect $exported (type $binop) (local.get $a) (local.get $b) (local.get $slot))))
@@ -0,0 +1,34 @@
+(module
+  (type $pair (func (param i32 i64) (result i64 i32)))
+
+  (table funcref (elem $swap $swap_tail))
+
+  (func $is_even (export "is_even") (param $n i32) (result i32)
+    (if (i32.eqz (local.get $n))
+      (then (return (i32.const 1))))
+    (return_call $is_odd (i32.sub (local.get $n) (i32.const 1))))
+
+  (func $is_odd (export "is_odd") (param $n i32) (result i32)
+    (if (i32.eqz (local.get $n))
+      (then (return (i32.const 0))))
+    (return_call $is_even (i32.sub (local.get $n) (i32.const 1))))
+
+  (func $swap (export "swap") (type $pair)
+    (local.get 1)
+    (local.get 0))
+
+  (func $swap_tail (export "swap_tail") (type $pair)
+    (return_call $swap (local.get 0) (local.get 1)))
+
+  (func $swap_indirect (export "swap_indirect") (param i32 i64 i32) (result i64 i32)
+    (return_call_indirect (type $pair) (local.get 0) (local.get 1) (local.get 2)))
+
+  ;; Sums up the numbers from 1 to $n and returns the sum with the count of steps
+  (func $sum (export "sum") (param $n i32) (param $acc i64) (result i64 i32)
+    (if (i32.eqz (local.get $n))
+      (then (return (local.get $acc) (i32.const 0))))
+    (call $sum
+      (i32.sub (local.get $n) (i32.const 1))
+      (i64.add (local.get $acc) (i64.extend_i32_u (local.get $n))))
+    (i32.add (i32.const 1)))
+)
@@ -0,0 +1,581 @@
+;; More locals than fit into single byte slot indices, with mixed types, disjoint and
+;; overlapping live ranges and locals live across the back edge of a loop
+(module
+  (func (export "run") (param $n i32) (result i64)
+    (local $a0 i32) (local $l0 i64) (local $f0 f32) (local $d0 f64)
+    (local $a1 i32) (local $l1 i64) (local $f1 f32) (local $d1 f64)
+    (local $a2 i32) (local $l2 i64) (local $f2 f32) (local $d2 f64)
+    (local $a3 i32) (local $l3 i64) (local $f3 f32) (local $d3 f64)
+    (local $a4 i32) (local $l4 i64) (local $f4 f32) (local $d4 f64)
+    (local $a5 i32) (local $l5 i64) (local $f5 f32) (local $d5 f64)
+    (local $a6 i32) (local $l6 i64) (local $f6 f32) (local $d6 f64)
+    (local $a7 i32) (local $l7 i64) (local $f7 f32) (local $d7 f64)
+    (local $a8 i32) (local $l8 i64) (local $f8 f32) (local $d8 f64)
+    (local $a9 i32) (local $l9 i64) (local $f9 f32) (local $d9 f64)
+    (local $a10 i32) (local $l10 i64) (local $f10 f32) (local $d10 f64)
+    (local $a11 i32) (local $l11 i64) (local $f11 f32) (local $d11 f64)
+    (local $a12 i32) (local $l12 i64) (local $f12 f32) (local $d12 f64)
+    (local $a13 i32) (local $l13 i64) (local $f13 f32) (local $d13 f64)
+    (local $a14 i32) (local $l14 i64) (local $f14 f32) (local $d14 f64)
+    (local $a15 i32) (local $l15 i64) (local $f15 f32) (local $d15 f64)
+    (local $a16 i32) (local $l16 i64) (local $f16 f32) (local $d16 f64)
+    (local $a17 i32) (local $l17 i64) (local $f17 f32) (local $d17 f64)
+    (local $a18 i32) (local $l18 i64) (local $f18 f32) (local $d18 f64)
+    (local $a19 i32) (local $l19 i64) (local $f19 f32) (local $d19 f64)
+    (local $a20 i32) (local $l20 i64) (local $f20 f32) (local $d20 f64)
+    (local $a21 i32) (local $l21 i64) (local $f21 f32) (local $d21 f64)
+    (local $a22 i32) (local $l22 i64) (local $f22 f32) (local $d22 f64)
+    (local $a23 i32) (local $l23 i64) (local $f23 f32) (local $d23 f64)
+    (local $a24 i32) (local $l24 i64) (local $f24 f32) (local $d24 f64)
+    (local $a25 i32) (local $l25 i64) (local $f25 f32) (local $d25 f64)
+    (local $a26 i32) (local $l26 i64) (local $f26 f32) (local $d26 f64)
+    (local $a27 i32) (local $l27 i64) (local $f27 f32) (local $d27 f64)
+    (local $a28 i32) (local $l28 i64) (local $f28 f32) (local $d28 f64)
+    (local $a29 i32) (local $l29 i64) (local $f29 f32) (local $d29 f64)
+    (local $a30 i32) (local $l30 i64) (local $f30 f32) (local $d30 f64)
+    (local $a31 i32) (local $l31 i64) (local $f31 f32) (local $d31 f64)
+    (local $a32 i32) (local $l32 i64) (local $f32 f32) (local $d32 f64)
+    (local $a33 i32) (local $l33 i64) (local $f33 f32) (local $d33 f64)
+    (local $a34 i32) (local $l34 i64) (local $f34 f32) (local $d34 f64)
+    (local $a35 i32) (local $l35 i64) (local $f35 f32) (local $d35 f64)
+    (local $a36 i32) (local $l36 i64) (local $f36 f32) (local $d36 f64)
+    (local $a37 i32) (local $l37 i64) (local $f37 f32) (local $d37 f64)
+    (local $a38 i32) (local $l38 i64) (local $f38 f32) (local $d38 f64)
+    (local $a39 i32) (local $l39 i64) (local $f39 f32) (local $d39 f64)
+    (local $a40 i32) (local $l40 i64) (local $f40 f32) (local $d40 f64)
+    (local $a41 i32) (local $l41 i64) (local $f41 f32) (local $d41 f64)
+    (local $a42 i32) (local $l42 i64) (local $f42 f32) (local $d42 f64)
+    (local $a43 i32) (local $l43 i64) (local $f43 f32) (local $d43 f64)
+    (local $a44 i32) (local $l44 i64) (local $f44 f32) (local $d44 f64)
+    (local $a45 i32) (local $l45 i64) (local $f45 f32) (local $d45 f64)
+    (local $a46 i32) (local $l46 i64) (local $f46 f32) (local $d46 f64)
+    (local $a47 i32) (local $l47 i64) (local $f47 f32) (local $d47 f64)
+    (local $a48 i32) (local $l48 i64) (local $f48 f32) (local $d48 f64)
+    (local $a49 i32) (local $l49 i64) (local $f49 f32) (local $d49 f64)
+    (local $acc i64) (local $i i32) (local $prev i64) (local $carry i64)
+
+    ;; Disjoint, every local is dead right after it has been read
+    (local.set $a0 (i32.add (local.get $n) (i32.const 0)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a0))))
+    (local.set $l0 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 0)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l0)))
+    (local.set $f0 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 0)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f0))))
+    (local.set $d0 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 0)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d0))))
+    (local.set $a1 (i32.add (local.get $n) (i32.const 1)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a1))))
+    (local.set $l1 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 1)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l1)))
+    (local.set $f1 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 1)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f1))))
+    (local.set $d1 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 1)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d1))))
+    (local.set $a2 (i32.add (local.get $n) (i32.const 2)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a2))))
+    (local.set $l2 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 2)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l2)))
+    (local.set $f2 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 2)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f2))))
+    (local.set $d2 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 2)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d2))))
+    (local.set $a3 (i32.add (local.get $n) (i32.const 3)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a3))))
+    (local.set $l3 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 3)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l3)))
+    (local.set $f3 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 3)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f3))))
+    (local.set $d3 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 3)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d3))))
+    (local.set $a4 (i32.add (local.get $n) (i32.const 4)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a4))))
+    (local.set $l4 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 4)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l4)))
+    (local.set $f4 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 4)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f4))))
+    (local.set $d4 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 4)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d4))))
+    (local.set $a5 (i32.add (local.get $n) (i32.const 5)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a5))))
+    (local.set $l5 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 5)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l5)))
+    (local.set $f5 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 5)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f5))))
+    (local.set $d5 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 5)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d5))))
+    (local.set $a6 (i32.add (local.get $n) (i32.const 6)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a6))))
+    (local.set $l6 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 6)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l6)))
+    (local.set $f6 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 6)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f6))))
+    (local.set $d6 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 6)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d6))))
+    (local.set $a7 (i32.add (local.get $n) (i32.const 7)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a7))))
+    (local.set $l7 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 7)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l7)))
+    (local.set $f7 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 7)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f7))))
+    (local.set $d7 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 7)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d7))))
+    (local.set $a8 (i32.add (local.get $n) (i32.const 8)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a8))))
+    (local.set $l8 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 8)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l8)))
+    (local.set $f8 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 8)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f8))))
+    (local.set $d8 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 8)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d8))))
+    (local.set $a9 (i32.add (local.get $n) (i32.const 9)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a9))))
+    (local.set $l9 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 9)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l9)))
+    (local.set $f9 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 9)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f9))))
+    (local.set $d9 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 9)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d9))))
+    (local.set $a10 (i32.add (local.get $n) (i32.const 10)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a10))))
+    (local.set $l10 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 10)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l10)))
+    (local.set $f10 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 10)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f10))))
+    (local.set $d10 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 10)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d10))))
+    (local.set $a11 (i32.add (local.get $n) (i32.const 11)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a11))))
+    (local.set $l11 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 11)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l11)))
+    (local.set $f11 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 11)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f11))))
+    (local.set $d11 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 11)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d11))))
+    (local.set $a12 (i32.add (local.get $n) (i32.const 12)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a12))))
+    (local.set $l12 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 12)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l12)))
+    (local.set $f12 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 12)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f12))))
+    (local.set $d12 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 12)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d12))))
+    (local.set $a13 (i32.add (local.get $n) (i32.const 13)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a13))))
+    (local.set $l13 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 13)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l13)))
+    (local.set $f13 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 13)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f13))))
+    (local.set $d13 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 13)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d13))))
+    (local.set $a14 (i32.add (local.get $n) (i32.const 14)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a14))))
+    (local.set $l14 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 14)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l14)))
+    (local.set $f14 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 14)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f14))))
+    (local.set $d14 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 14)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d14))))
+    (local.set $a15 (i32.add (local.get $n) (i32.const 15)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a15))))
+    (local.set $l15 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 15)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l15)))
+    (local.set $f15 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 15)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f15))))
+    (local.set $d15 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 15)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d15))))
+    (local.set $a16 (i32.add (local.get $n) (i32.const 16)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a16))))
+    (local.set $l16 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 16)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l16)))
+    (local.set $f16 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 16)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f16))))
+    (local.set $d16 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 16)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d16))))
+    (local.set $a17 (i32.add (local.get $n) (i32.const 17)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a17))))
+    (local.set $l17 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 17)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l17)))
+    (local.set $f17 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 17)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f17))))
+    (local.set $d17 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 17)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d17))))
+    (local.set $a18 (i32.add (local.get $n) (i32.const 18)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a18))))
+    (local.set $l18 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 18)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l18)))
+    (local.set $f18 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 18)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f18))))
+    (local.set $d18 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 18)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d18))))
+    (local.set $a19 (i32.add (local.get $n) (i32.const 19)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a19))))
+    (local.set $l19 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 19)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l19)))
+    (local.set $f19 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 19)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f19))))
+    (local.set $d19 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 19)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d19))))
+    (local.set $a20 (i32.add (local.get $n) (i32.const 20)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a20))))
+    (local.set $l20 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 20)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l20)))
+    (local.set $f20 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 20)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f20))))
+    (local.set $d20 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 20)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d20))))
+    (local.set $a21 (i32.add (local.get $n) (i32.const 21)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a21))))
+    (local.set $l21 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 21)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l21)))
+    (local.set $f21 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 21)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f21))))
+    (local.set $d21 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 21)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d21))))
+    (local.set $a22 (i32.add (local.get $n) (i32.const 22)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a22))))
+    (local.set $l22 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 22)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l22)))
+    (local.set $f22 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 22)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f22))))
+    (local.set $d22 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 22)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d22))))
+    (local.set $a23 (i32.add (local.get $n) (i32.const 23)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a23))))
+    (local.set $l23 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 23)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l23)))
+    (local.set $f23 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 23)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f23))))
+    (local.set $d23 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 23)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d23))))
+    (local.set $a24 (i32.add (local.get $n) (i32.const 24)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a24))))
+    (local.set $l24 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 24)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l24)))
+    (local.set $f24 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 24)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f24))))
+    (local.set $d24 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 24)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d24))))
+    (local.set $a25 (i32.add (local.get $n) (i32.const 25)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a25))))
+    (local.set $l25 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 25)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l25)))
+    (local.set $f25 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 25)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f25))))
+    (local.set $d25 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 25)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d25))))
+    (local.set $a26 (i32.add (local.get $n) (i32.const 26)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a26))))
+    (local.set $l26 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 26)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l26)))
+    (local.set $f26 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 26)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f26))))
+    (local.set $d26 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 26)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d26))))
+    (local.set $a27 (i32.add (local.get $n) (i32.const 27)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a27))))
+    (local.set $l27 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 27)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l27)))
+    (local.set $f27 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 27)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f27))))
+    (local.set $d27 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 27)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d27))))
+    (local.set $a28 (i32.add (local.get $n) (i32.const 28)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a28))))
+    (local.set $l28 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 28)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l28)))
+    (local.set $f28 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 28)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f28))))
+    (local.set $d28 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 28)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d28))))
+    (local.set $a29 (i32.add (local.get $n) (i32.const 29)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a29))))
+    (local.set $l29 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 29)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l29)))
+    (local.set $f29 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 29)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f29))))
+    (local.set $d29 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 29)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d29))))
+    (local.set $a30 (i32.add (local.get $n) (i32.const 30)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a30))))
+    (local.set $l30 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 30)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l30)))
+    (local.set $f30 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 30)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f30))))
+    (local.set $d30 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 30)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d30))))
+    (local.set $a31 (i32.add (local.get $n) (i32.const 31)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a31))))
+    (local.set $l31 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 31)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l31)))
+    (local.set $f31 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 31)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f31))))
+    (local.set $d31 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 31)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d31))))
+    (local.set $a32 (i32.add (local.get $n) (i32.const 32)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a32))))
+    (local.set $l32 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 32)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l32)))
+    (local.set $f32 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 32)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f32))))
+    (local.set $d32 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 32)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d32))))
+    (local.set $a33 (i32.add (local.get $n) (i32.const 33)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a33))))
+    (local.set $l33 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 33)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l33)))
+    (local.set $f33 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 33)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f33))))
+    (local.set $d33 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 33)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d33))))
+    (local.set $a34 (i32.add (local.get $n) (i32.const 34)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a34))))
+    (local.set $l34 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 34)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l34)))
+    (local.set $f34 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 34)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f34))))
+    (local.set $d34 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 34)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d34))))
+    (local.set $a35 (i32.add (local.get $n) (i32.const 35)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a35))))
+    (local.set $l35 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 35)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l35)))
+    (local.set $f35 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 35)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f35))))
+    (local.set $d35 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 35)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d35))))
+    (local.set $a36 (i32.add (local.get $n) (i32.const 36)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a36))))
+    (local.set $l36 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 36)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l36)))
+    (local.set $f36 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 36)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f36))))
+    (local.set $d36 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 36)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d36))))
+    (local.set $a37 (i32.add (local.get $n) (i32.const 37)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a37))))
+    (local.set $l37 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 37)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l37)))
+    (local.set $f37 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 37)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f37))))
+    (local.set $d37 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 37)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d37))))
+    (local.set $a38 (i32.add (local.get $n) (i32.const 38)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a38))))
+    (local.set $l38 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 38)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l38)))
+    (local.set $f38 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 38)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f38))))
+    (local.set $d38 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 38)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d38))))
+    (local.set $a39 (i32.add (local.get $n) (i32.const 39)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a39))))
+    (local.set $l39 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 39)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l39)))
+    (local.set $f39 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 39)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f39))))
+    (local.set $d39 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 39)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d39))))
+    (local.set $a40 (i32.add (local.get $n) (i32.const 40)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a40))))
+    (local.set $l40 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 40)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l40)))
+    (local.set $f40 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 40)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f40))))
+    (local.set $d40 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 40)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d40))))
+    (local.set $a41 (i32.add (local.get $n) (i32.const 41)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a41))))
+    (local.set $l41 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 41)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l41)))
+    (local.set $f41 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 41)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f41))))
+    (local.set $d41 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 41)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d41))))
+    (local.set $a42 (i32.add (local.get $n) (i32.const 42)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a42))))
+    (local.set $l42 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 42)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l42)))
+    (local.set $f42 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 42)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f42))))
+    (local.set $d42 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 42)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d42))))
+    (local.set $a43 (i32.add (local.get $n) (i32.const 43)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a43))))
+    (local.set $l43 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 43)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l43)))
+    (local.set $f43 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 43)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f43))))
+    (local.set $d43 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 43)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d43))))
+    (local.set $a44 (i32.add (local.get $n) (i32.const 44)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a44))))
+    (local.set $l44 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 44)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l44)))
+    (local.set $f44 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 44)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f44))))
+    (local.set $d44 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 44)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d44))))
+    (local.set $a45 (i32.add (local.get $n) (i32.const 45)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a45))))
+    (local.set $l45 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 45)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l45)))
+    (local.set $f45 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 45)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f45))))
+    (local.set $d45 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 45)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d45))))
+    (local.set $a46 (i32.add (local.get $n) (i32.const 46)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a46))))
+    (local.set $l46 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 46)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l46)))
+    (local.set $f46 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 46)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f46))))
+    (local.set $d46 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 46)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d46))))
+    (local.set $a47 (i32.add (local.get $n) (i32.const 47)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a47))))
+    (local.set $l47 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 47)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l47)))
+    (local.set $f47 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 47)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f47))))
+    (local.set $d47 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 47)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d47))))
+    (local.set $a48 (i32.add (local.get $n) (i32.const 48)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a48))))
+    (local.set $l48 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 48)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l48)))
+    (local.set $f48 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 48)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f48))))
+    (local.set $d48 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 48)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d48))))
+    (local.set $a49 (i32.add (local.get $n) (i32.const 49)))
+    (local.set $acc (i64.add (local.get $acc) (i64.extend_i32_s (local.get $a49))))
+    (local.set $l49 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 49)))
+    (local.set $acc (i64.add (local.get $acc) (local.get $l49)))
+    (local.set $f49 (f32.add (f32.convert_i32_s (local.get $n)) (f32.const 49)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f32_s (local.get $f49))))
+    (local.set $d49 (f64.add (f64.mul (f64.convert_i32_s (local.get $n)) (f64.const 2)) (f64.const 49)))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d49))))
+
+    ;; Overlapping, all locals are written before any of them is read
+    (local.set $a25 (i32.add (i32.mul (local.get $n) (i32.const 25)) (i32.const 1)))
+    (local.set $d25 (f64.convert_i32_s (i32.const 25)))
+    (local.set $a26 (i32.add (i32.mul (local.get $n) (i32.const 26)) (i32.const 1)))
+    (local.set $d26 (f64.convert_i32_s (i32.const 26)))
+    (local.set $a27 (i32.add (i32.mul (local.get $n) (i32.const 27)) (i32.const 1)))
+    (local.set $d27 (f64.convert_i32_s (i32.const 27)))
+    (local.set $a28 (i32.add (i32.mul (local.get $n) (i32.const 28)) (i32.const 1)))
+    (local.set $d28 (f64.convert_i32_s (i32.const 28)))
+    (local.set $a29 (i32.add (i32.mul (local.get $n) (i32.const 29)) (i32.const 1)))
+    (local.set $d29 (f64.convert_i32_s (i32.const 29)))
+    (local.set $a30 (i32.add (i32.mul (local.get $n) (i32.const 30)) (i32.const 1)))
+    (local.set $d30 (f64.convert_i32_s (i32.const 30)))
+    (local.set $a31 (i32.add (i32.mul (local.get $n) (i32.const 31)) (i32.const 1)))
+    (local.set $d31 (f64.convert_i32_s (i32.const 31)))
+    (local.set $a32 (i32.add (i32.mul (local.get $n) (i32.const 32)) (i32.const 1)))
+    (local.set $d32 (f64.convert_i32_s (i32.const 32)))
+    (local.set $a33 (i32.add (i32.mul (local.get $n) (i32.const 33)) (i32.const 1)))
+    (local.set $d33 (f64.convert_i32_s (i32.const 33)))
+    (local.set $a34 (i32.add (i32.mul (local.get $n) (i32.const 34)) (i32.const 1)))
+    (local.set $d34 (f64.convert_i32_s (i32.const 34)))
+    (local.set $a35 (i32.add (i32.mul (local.get $n) (i32.const 35)) (i32.const 1)))
+    (local.set $d35 (f64.convert_i32_s (i32.const 35)))
+    (local.set $a36 (i32.add (i32.mul (local.get $n) (i32.const 36)) (i32.const 1)))
+    (local.set $d36 (f64.convert_i32_s (i32.const 36)))
+    (local.set $a37 (i32.add (i32.mul (local.get $n) (i32.const 37)) (i32.const 1)))
+    (local.set $d37 (f64.convert_i32_s (i32.const 37)))
+    (local.set $a38 (i32.add (i32.mul (local.get $n) (i32.const 38)) (i32.const 1)))
+    (local.set $d38 (f64.convert_i32_s (i32.const 38)))
+    (local.set $a39 (i32.add (i32.mul (local.get $n) (i32.const 39)) (i32.const 1)))
+    (local.set $d39 (f64.convert_i32_s (i32.const 39)))
+    (local.set $a40 (i32.add (i32.mul (local.get $n) (i32.const 40)) (i32.const 1)))
+    (local.set $d40 (f64.convert_i32_s (i32.const 40)))
+    (local.set $a41 (i32.add (i32.mul (local.get $n) (i32.const 41)) (i32.const 1)))
+    (local.set $d41 (f64.convert_i32_s (i32.const 41)))
+    (local.set $a42 (i32.add (i32.mul (local.get $n) (i32.const 42)) (i32.const 1)))
+    (local.set $d42 (f64.convert_i32_s (i32.const 42)))
+    (local.set $a43 (i32.add (i32.mul (local.get $n) (i32.const 43)) (i32.const 1)))
+    (local.set $d43 (f64.convert_i32_s (i32.const 43)))
+    (local.set $a44 (i32.add (i32.mul (local.get $n) (i32.const 44)) (i32.const 1)))
+    (local.set $d44 (f64.convert_i32_s (i32.const 44)))
+    (local.set $a45 (i32.add (i32.mul (local.get $n) (i32.const 45)) (i32.const 1)))
+    (local.set $d45 (f64.convert_i32_s (i32.const 45)))
+    (local.set $a46 (i32.add (i32.mul (local.get $n) (i32.const 46)) (i32.const 1)))
+    (local.set $d46 (f64.convert_i32_s (i32.const 46)))
+    (local.set $a47 (i32.add (i32.mul (local.get $n) (i32.const 47)) (i32.const 1)))
+    (local.set $d47 (f64.convert_i32_s (i32.const 47)))
+    (local.set $a48 (i32.add (i32.mul (local.get $n) (i32.const 48)) (i32.const 1)))
+    (local.set $d48 (f64.convert_i32_s (i32.const 48)))
+    (local.set $a49 (i32.add (i32.mul (local.get $n) (i32.const 49)) (i32.const 1)))
+    (local.set $d49 (f64.convert_i32_s (i32.const 49)))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a49)) (i64.const 25))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d49))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a48)) (i64.const 24))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d48))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a47)) (i64.const 23))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d47))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a46)) (i64.const 22))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d46))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a45)) (i64.const 21))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d45))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a44)) (i64.const 20))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d44))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a43)) (i64.const 19))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d43))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a42)) (i64.const 18))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d42))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a41)) (i64.const 17))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d41))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a40)) (i64.const 16))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d40))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a39)) (i64.const 15))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d39))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a38)) (i64.const 14))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d38))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a37)) (i64.const 13))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d37))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a36)) (i64.const 12))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d36))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a35)) (i64.const 11))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d35))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a34)) (i64.const 10))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d34))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a33)) (i64.const 9))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d33))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a32)) (i64.const 8))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d32))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a31)) (i64.const 7))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d31))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a30)) (i64.const 6))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d30))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a29)) (i64.const 5))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d29))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a28)) (i64.const 4))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d28))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a27)) (i64.const 3))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d27))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a26)) (i64.const 2))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d26))))
+    (local.set $acc (i64.add (local.get $acc) (i64.mul (i64.extend_i32_s (local.get $a25)) (i64.const 1))))
+    (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d25))))
+
+    ;; $carry and $d0 are live throughout the loop, $prev and $l1 are live across its back edge
+    (local.set $carry (local.get $acc))
+    (local.set $l1 (i64.mul (i64.extend_i32_s (local.get $n)) (i64.const 7)))
+    (local.set $d0 (f64.const 1000.5))
+    (block $done
+      (br_if $done (i32.eqz (local.get $n)))
+      (loop $continue
+        (local.set $prev (i64.add (local.get $prev) (local.get $l1)))
+        (local.set $a0 (i32.mul (local.get $i) (i32.const 3)))
+        (local.set $prev (i64.add (local.get $prev)
+          (i64.add (i64.extend_i32_s (local.get $a0)) (i64.and (local.get $carry) (i64.const 255)))))
+        (local.set $d1 (f64.convert_i32_s (local.get $i)))
+        (local.set $acc (i64.add (local.get $acc) (i64.trunc_f64_s (local.get $d1))))
+        (local.set $l2 (i64.extend_i32_s (local.get $i)))
+        (local.set $acc (i64.add (local.get $acc) (i64.mul (local.get $l2) (i64.const 2))))
+        (local.set $i (i32.add (local.get $i) (i32.const 1)))
+        (br_if $continue (i32.lt_s (local.get $i) (local.get $n)))))
+
+    (i64.add (local.get $acc)
+      (i64.add (local.get $prev)
+        (i64.add (local.get $carry) (i64.trunc_f64_s (f64.mul (local.get $d0) (f64.const 2))))))))
@@ -0,0 +1,15 @@
+(module
+  (import "lib" "add" (func $add (param i32 i32) (result i32)))
+  (import "lib" "pair" (func $pair (result i32 i64)))
+  (import "reexport" "add2" (func $add2 (param i32 i32) (result i32)))
+
+  ;; (x + 10 + 7) + 100
+  (func (export "run") (param $x i32) (result i32)
+    local.get $x
+    i32.const 10
+    call $add
+    call $pair
+    drop
+    i32.add
+    i32.const 100
+    call $add2))
@@ -0,0 +1,9 @@
+(module
+  (func $add (export "add") (param i32 i32) (result i32)
+    local.get 0
+    local.get 1
+    i32.add)
+
+  (func $pair (export "pair") (result i32 i64)
+    i32.const 7
+    i64.const 9))
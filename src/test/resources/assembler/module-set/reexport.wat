@@ -0,0 +1,3 @@
+(module
+  (import "lib" "add" (func $add (param i32 i32) (result i32)))
+  (export "add2" (func $add)))
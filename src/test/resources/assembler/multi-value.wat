@@ -0,0 +1,72 @@
+(module
+  (type $pair (func (param i32 i64) (result i64 i32)))
+
+  (table 2 funcref)
+  (elem (i32.const 0) $swap $swap_increment)
+
+  (func $swap (type $pair)
+    local.get 1
+    local.get 0
+  )
+
+  (func $swap_increment (type $pair)
+    local.get 1
+    i64.const 1
+    i64.add
+    local.get 0
+    i32.const 1
+    i32.add
+  )
+
+  (func (export "swap") (param i32 i64) (result i64 i32)
+    local.get 0
+    local.get 1
+    call $swap
+  )
+
+  (func (export "swap_indirect") (param i32 i64 i32) (result i64 i32)
+    local.get 0
+    local.get 1
+    local.get 2
+    call_indirect (type $pair)
+  )
+
+  ;; Calls both functions through the table in a loop, every call returns through the same return area
+  (func (export "sum_indirect") (param $count i32) (result i64)
+    (local $sum i64)
+    (local $i i32)
+    (local $result i32)
+
+    (block $done
+      (loop $next
+        local.get $i
+        local.get $count
+        i32.ge_u
+        br_if $done
+
+        local.get $i
+        local.get $i
+        i64.extend_i32_u
+        local.get $i
+        i32.const 1
+        i32.and
+        call_indirect (type $pair)
+        local.set $result
+        local.get $sum
+        i64.add
+        local.get $result
+        i64.extend_i32_u
+        i64.add
+        local.set $sum
+
+        local.get $i
+        i32.const 1
+        i32.add
+        local.set $i
+        br $next
+      )
+    )
+
+    local.get $sum
+  )
+)
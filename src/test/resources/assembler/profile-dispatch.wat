@@ -0,0 +1,33 @@
+(module
+  (type $unop (func (param i32) (result i32)))
+
+  ;; Too large to dispatch every slot directly, a profile tells which targets are common
+  (table 100 funcref)
+  (elem (i32.const 0) func
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare
+    $common $common $common $common $common $common $common $common $common $rare)
+
+  (func $common (type $unop) (param $x i32) (result i32)
+    (i32.add (local.get $x) (i32.const 1)))
+
+  (func $rare (type $unop) (param $x i32) (result i32)
+    (i32.mul (local.get $x) (i32.const 2)))
+
+  ;; Dispatches through slot 0, which holds $common, n times
+  (func (export "run") (param $n i32) (result i32)
+    (local $value i32)
+    (block $done
+      (loop $next
+        (br_if $done (i32.eqz (local.get $n)))
+        (local.set $value (call_indirect (type $unop) (local.get $value) (i32.const 0)))
+        (local.set $n (i32.sub (local.get $n) (i32.const 1)))
+        (br $next)))
+    (local.get $value)))
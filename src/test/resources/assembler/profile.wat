@@ -0,0 +1,28 @@
+(module
+  (type $classify_t (func (param i32) (result i32)))
+
+  (table 2 funcref)
+  (elem (i32.const 0) $classify $negate)
+
+  ;; Multiples of 100 are rare, the branch is hardly ever taken
+  (func $classify (type $classify_t) (param $x i32) (result i32)
+    (if (result i32) (i32.eqz (i32.rem_u (local.get $x) (i32.const 100)))
+      (then (i32.const 10))
+      (else (i32.const 1))))
+
+  (func $negate (type $classify_t) (param $x i32) (result i32)
+    (i32.sub (i32.const 0) (local.get $x)))
+
+  ;; Sums the classification of 1 to n, always dispatching to $classify
+  (func (export "run") (param $n i32) (result i32)
+    (local $sum i32)
+    (block $done
+      (loop $next
+        (br_if $done (i32.eqz (local.get $n)))
+        (local.set $sum
+          (i32.add
+            (local.get $sum)
+            (call_indirect (type $classify_t) (local.get $n) (i32.const 0))))
+        (local.set $n (i32.sub (local.get $n) (i32.const 1)))
+        (br $next)))
+    (local.get $sum)))
@@ -0,0 +1,78 @@
+(module
+  (type $step (func (param i32 i64) (result i64)))
+  (type $pair (func (param i32 i64) (result i64 i32)))
+
+  (table funcref (elem $sum_indirect_even $sum_indirect_odd $count_even $loop_sum))
+
+  ;; Sums up the numbers from 1 to $n
+  (func $sum (export "sum") (type $step)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (return_call $sum
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.extend_i32_u (local.get 0)))))
+
+  ;; Adds 1 on even and 2 on odd steps
+  (func $sum_even (export "sum_even") (type $step)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (return_call $sum_odd
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 1))))
+
+  (func $sum_odd (type $step)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (return_call $sum_even
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 2))))
+
+  ;; Same as $sum_even, but tail calls through the table
+  (func $sum_indirect_even (export "sum_indirect_even") (type $step)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (return_call_indirect (type $step)
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 1))
+      (i32.const 1)))
+
+  (func $sum_indirect_odd (type $step)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (return_call_indirect (type $step)
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 2))
+      (i32.const 0)))
+
+  ;; Returns the sum together with its lower 32 bits
+  (func $count_even (export "count_even") (type $pair)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1) (i32.wrap_i64 (local.get 1)))))
+    (return_call $count_odd
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 1))))
+
+  (func $count_odd (type $pair)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1) (i32.wrap_i64 (local.get 1)))))
+    (return_call $count_even
+      (i32.sub (local.get 0) (i32.const 1))
+      (i64.add (local.get 1) (i64.const 2))))
+
+  (func $count_indirect (export "count_indirect") (type $pair)
+    (return_call_indirect (type $pair) (local.get 0) (local.get 1) (i32.const 2)))
+
+  ;; Loops before every tail call, so a continuation can pause in between
+  (func $loop_sum (export "loop_sum") (type $step)
+    (local $i i32)
+    (if (i32.eqz (local.get 0))
+      (then (return (local.get 1))))
+    (local.set $i (i32.const 3))
+    (loop $again
+      (local.set 1 (i64.add (local.get 1) (i64.const 1)))
+      (br_if $again (local.tee $i (i32.sub (local.get $i) (i32.const 1)))))
+    (return_call_indirect (type $step)
+      (i32.sub (local.get 0) (i32.const 1))
+      (local.get 1)
+      (i32.const 3)))
+)